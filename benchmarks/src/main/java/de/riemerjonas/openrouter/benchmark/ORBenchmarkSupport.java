@@ -0,0 +1,35 @@
+package de.riemerjonas.openrouter.benchmark;
+
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+
+/**
+ * Fixed inputs shared by the benchmarks, so every run measures the same queries.
+ */
+final class ORBenchmarkSupport
+{
+    static final long SEED = 42;
+    /** Number of precomputed queries, a power of two so the query index can be masked. */
+    static final int QUERY_COUNT = 1024;
+
+    private ORBenchmarkSupport()
+    {
+    }
+
+    /**
+     * Returns the bounding box of the graph nodes.
+     * @return min latitude, min longitude, max latitude, max longitude in degrees
+     */
+    static double[] bounds(OpenRouterGraph graph)
+    {
+        double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (OpenRouterNode node : graph.getNodes())
+        {
+            bounds[0] = Math.min(bounds[0], node.getLatitude());
+            bounds[1] = Math.min(bounds[1], node.getLongitude());
+            bounds[2] = Math.max(bounds[2], node.getLatitude());
+            bounds[3] = Math.max(bounds[3], node.getLongitude());
+        }
+        return bounds;
+    }
+}
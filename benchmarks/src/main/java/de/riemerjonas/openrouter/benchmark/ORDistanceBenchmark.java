@@ -0,0 +1,74 @@
+package de.riemerjonas.openrouter.benchmark;
+
+import de.riemerjonas.openrouter.core.geometry.ORDistance;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distances from one origin to a batch of coordinates within about 10 km, as in snapping to a tile.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ORDistanceBenchmark
+{
+    private static final int ORIGIN_LATITUDE_E6 = 48050000;
+    private static final int ORIGIN_LONGITUDE_E6 = 11050000;
+
+    @Param({"4096"})
+    public int count;
+
+    private int[] latitudes;
+    private int[] longitudes;
+    private double[] result;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        Random random = new Random(ORBenchmarkSupport.SEED);
+        latitudes = new int[count];
+        longitudes = new int[count];
+        result = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            latitudes[i] = ORIGIN_LATITUDE_E6 - 50000 + random.nextInt(100000);
+            longitudes[i] = ORIGIN_LONGITUDE_E6 - 50000 + random.nextInt(100000);
+        }
+    }
+
+    @Benchmark
+    public double haversine()
+    {
+        double sum = 0;
+        for (int i = 0; i < count; i++)
+        {
+            sum += IGeoCoordinate.haversine(ORIGIN_LATITUDE_E6 / 1E6, ORIGIN_LONGITUDE_E6 / 1E6, latitudes[i] / 1E6, longitudes[i] / 1E6);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double flat()
+    {
+        double sum = 0;
+        for (int i = 0; i < count; i++)
+        {
+            sum += ORDistance.flat(ORIGIN_LATITUDE_E6, ORIGIN_LONGITUDE_E6, latitudes[i], longitudes[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double[] flatSquaredBatch()
+    {
+        ORDistance.flatSquared(ORIGIN_LATITUDE_E6, ORIGIN_LONGITUDE_E6, ORDistance.cosLatitudeE6(ORIGIN_LATITUDE_E6),
+                latitudes, longitudes, count, result);
+        return result;
+    }
+}
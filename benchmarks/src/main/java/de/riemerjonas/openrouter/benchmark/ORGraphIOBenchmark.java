@@ -0,0 +1,70 @@
+package de.riemerjonas.openrouter.benchmark;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterShapeStore;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORGraphHandler;
+import de.riemerjonas.openrouter.graph.core.OROsmIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and saving graph files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ORGraphIOBenchmark
+{
+    @Param({"GRID", "GEOMETRIC"})
+    public ORSyntheticGraph.Type type;
+
+    @Param({"10000", "250000"})
+    public int size;
+
+    private OpenRouterGraph graph;
+    private File loadFile;
+    private File saveFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        OpenRouterLog.setLogLevel(OpenRouterLog.LOG_LEVEL.WARNING);
+        graph = ORSyntheticGraph.generate(type, size, ORBenchmarkSupport.SEED);
+        loadFile = File.createTempFile("benchmark-load", ".graph");
+        saveFile = File.createTempFile("benchmark-save", ".graph");
+        ORGraphHandler.save(loadFile, graph);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        delete(loadFile);
+        delete(saveFile);
+    }
+
+    @Benchmark
+    public OpenRouterGraph load()
+    {
+        return ORGraphHandler.load(loadFile);
+    }
+
+    @Benchmark
+    public void save()
+    {
+        ORGraphHandler.save(saveFile, graph);
+    }
+
+    private static void delete(File graphFile)
+    {
+        graphFile.delete();
+        OpenRouterShapeStore.getShapeFile(graphFile).delete();
+        OROsmIndex.getIndexFile(graphFile).delete();
+    }
+}
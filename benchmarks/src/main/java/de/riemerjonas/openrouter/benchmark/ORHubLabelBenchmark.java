@@ -0,0 +1,75 @@
+package de.riemerjonas.openrouter.benchmark;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.core.profiles.RoutingProfileFast;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.algorithm.ORGraphRouter;
+import de.riemerjonas.openrouter.graph.algorithm.ORHubLabelBuilder;
+import de.riemerjonas.openrouter.graph.algorithm.ORHubLabels;
+import de.riemerjonas.openrouter.graph.algorithm.ORRouteResult;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchBudget;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distance between random nodes from the hub labels compared to a search, both without snapping.
+ * The labels are built once per trial and queried from the heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ORHubLabelBenchmark
+{
+    @Param({"GRID", "GEOMETRIC"})
+    public ORSyntheticGraph.Type type;
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    private OpenRouterGraph graph;
+    private IRoutingProfile profile;
+    private ORHubLabels labels;
+    private int[] starts;
+    private int[] ends;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        OpenRouterLog.setLogLevel(OpenRouterLog.LOG_LEVEL.WARNING);
+        graph = ORSyntheticGraph.generate(type, size, ORBenchmarkSupport.SEED);
+        profile = new RoutingProfileFast();
+        labels = ORHubLabelBuilder.build(graph, profile);
+        List<OpenRouterNode> nodes = graph.getNodes();
+        Random random = new Random(ORBenchmarkSupport.SEED);
+        starts = new int[ORBenchmarkSupport.QUERY_COUNT];
+        ends = new int[ORBenchmarkSupport.QUERY_COUNT];
+        for (int i = 0; i < ORBenchmarkSupport.QUERY_COUNT; i++)
+        {
+            starts[i] = nodes.get(random.nextInt(nodes.size())).getId();
+            ends[i] = nodes.get(random.nextInt(nodes.size())).getId();
+        }
+    }
+
+    @Benchmark
+    public double labels()
+    {
+        int i = next++ & (ORBenchmarkSupport.QUERY_COUNT - 1);
+        return labels.getWeight(starts[i], ends[i]);
+    }
+
+    @Benchmark
+    public ORRouteResult search()
+    {
+        int i = next++ & (ORBenchmarkSupport.QUERY_COUNT - 1);
+        return ORGraphRouter.searchRoute(starts[i], ends[i], graph, profile, ORSearchBudget.UNLIMITED);
+    }
+}
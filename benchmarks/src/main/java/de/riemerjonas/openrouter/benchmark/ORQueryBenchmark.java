@@ -0,0 +1,73 @@
+package de.riemerjonas.openrouter.benchmark;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterViewBox;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spatial queries: the nearest node of a coordinate and the nodes in a view box of about 1 km.
+ * Every invocation uses the next of {@link ORBenchmarkSupport#QUERY_COUNT} precomputed queries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ORQueryBenchmark
+{
+    private static final double VIEW_BOX_DEGREES = 0.01;
+
+    @Param({"GRID", "GEOMETRIC"})
+    public ORSyntheticGraph.Type type;
+
+    @Param({"10000", "250000"})
+    public int size;
+
+    private OpenRouterGraph graph;
+    private double[] latitudes;
+    private double[] longitudes;
+    private OpenRouterViewBox[] viewBoxes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        OpenRouterLog.setLogLevel(OpenRouterLog.LOG_LEVEL.WARNING);
+        graph = ORSyntheticGraph.generate(type, size, ORBenchmarkSupport.SEED);
+        double[] bounds = ORBenchmarkSupport.bounds(graph);
+        Random random = new Random(ORBenchmarkSupport.SEED);
+        latitudes = new double[ORBenchmarkSupport.QUERY_COUNT];
+        longitudes = new double[ORBenchmarkSupport.QUERY_COUNT];
+        viewBoxes = new OpenRouterViewBox[ORBenchmarkSupport.QUERY_COUNT];
+        for (int i = 0; i < ORBenchmarkSupport.QUERY_COUNT; i++)
+        {
+            latitudes[i] = bounds[0] + random.nextDouble() * (bounds[2] - bounds[0]);
+            longitudes[i] = bounds[1] + random.nextDouble() * (bounds[3] - bounds[1]);
+            viewBoxes[i] = new OpenRouterViewBox(
+                    (int) Math.round(latitudes[i] * 1E6), (int) Math.round(longitudes[i] * 1E6),
+                    (int) Math.round((latitudes[i] + VIEW_BOX_DEGREES) * 1E6), (int) Math.round((longitudes[i] + VIEW_BOX_DEGREES * 1.5) * 1E6));
+        }
+        // the first call builds the lazy indexes, which is not part of a query
+        graph.getNearestNode(latitudes[0], longitudes[0]);
+    }
+
+    @Benchmark
+    public OpenRouterNode nearestNode()
+    {
+        int i = next++ & (ORBenchmarkSupport.QUERY_COUNT - 1);
+        return graph.getNearestNode(latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public List<OpenRouterNode> nodesInViewBox()
+    {
+        return graph.getTileMap().getNodesInViewBox(viewBoxes[next++ & (ORBenchmarkSupport.QUERY_COUNT - 1)]);
+    }
+}
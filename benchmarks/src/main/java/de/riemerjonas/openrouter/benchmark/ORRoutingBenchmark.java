@@ -0,0 +1,68 @@
+package de.riemerjonas.openrouter.benchmark;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.core.profiles.RoutingProfileFast;
+import de.riemerjonas.openrouter.core.profiles.RoutingProfileShort;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.algorithm.ORGraphRouter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point to point routing between random nodes, including snapping the coordinates and building the route.
+ * Every invocation uses the next of {@link ORBenchmarkSupport#QUERY_COUNT} precomputed node pairs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ORRoutingBenchmark
+{
+    @Param({"GRID", "GEOMETRIC"})
+    public ORSyntheticGraph.Type type;
+
+    @Param({"10000", "250000"})
+    public int size;
+
+    @Param({"fast", "short"})
+    public String profileName;
+
+    private OpenRouterGraph graph;
+    private IRoutingProfile profile;
+    private OpenRouterNode[] starts;
+    private OpenRouterNode[] ends;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        OpenRouterLog.setLogLevel(OpenRouterLog.LOG_LEVEL.WARNING);
+        graph = ORSyntheticGraph.generate(type, size, ORBenchmarkSupport.SEED);
+        profile = profileName.equals("fast") ? new RoutingProfileFast() : new RoutingProfileShort();
+        List<OpenRouterNode> nodes = graph.getNodes();
+        Random random = new Random(ORBenchmarkSupport.SEED);
+        starts = new OpenRouterNode[ORBenchmarkSupport.QUERY_COUNT];
+        ends = new OpenRouterNode[ORBenchmarkSupport.QUERY_COUNT];
+        for (int i = 0; i < ORBenchmarkSupport.QUERY_COUNT; i++)
+        {
+            starts[i] = nodes.get(random.nextInt(nodes.size()));
+            ends[i] = nodes.get(random.nextInt(nodes.size()));
+        }
+        // components and search arrays are built on first use
+        ORGraphRouter.route(starts[0], ends[0], graph, profile);
+    }
+
+    @Benchmark
+    public List<OpenRouterNode> route()
+    {
+        int i = next++ & (ORBenchmarkSupport.QUERY_COUNT - 1);
+        return ORGraphRouter.route(starts[i], ends[i], graph, profile);
+    }
+}
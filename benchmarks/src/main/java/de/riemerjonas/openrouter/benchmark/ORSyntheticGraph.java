@@ -0,0 +1,259 @@
+package de.riemerjonas.openrouter.benchmark;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterEdgeMeta;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterShapeStore;
+import de.riemerjonas.openrouter.core.types.RoadClass;
+import de.riemerjonas.openrouter.core.types.VehicleType;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORGraphHandler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic synthetic road networks, so benchmarks run without a PBF file and different engines can be compared
+ * on identical inputs. The same type, size and seed always produce the same graph.
+ * <ul>
+ *     <li>{@link Type#GRID} - a jittered grid with a primary road every tenth row and column, oneways, missing
+ *     blocks and shape points, similar to a city</li>
+ *     <li>{@link Type#GEOMETRIC} - random points connected to their nearest neighbours, similar to rural roads</li>
+ * </ul>
+ * Both are placed around 48N 11E with about 500 m between neighbouring nodes.
+ */
+public final class ORSyntheticGraph
+{
+    public enum Type
+    {
+        GRID,
+        GEOMETRIC
+    }
+
+    private static final double ORIGIN_LATITUDE = 48.0;
+    private static final double ORIGIN_LONGITUDE = 11.0;
+    private static final double SPACING_DEGREES = 0.005;
+    private static final int GEOMETRIC_NEIGHBOURS = 3;
+    private static final int ALL_VEHICLES = VehicleType.CAR.getAccessBit() | VehicleType.BIKE.getAccessBit() | VehicleType.FOOT.getAccessBit();
+
+    private ORSyntheticGraph()
+    {
+    }
+
+    /**
+     * Generates a graph.
+     * @param type the network type
+     * @param nodeCount the approximate number of nodes
+     * @param seed the random seed
+     * @return the graph with a shape store
+     */
+    public static OpenRouterGraph generate(Type type, int nodeCount, long seed)
+    {
+        return type == Type.GRID ? grid(nodeCount, seed) : geometric(nodeCount, seed);
+    }
+
+    /**
+     * Generates a square grid.
+     * @param nodeCount the approximate number of nodes, rounded to a square
+     * @param seed the random seed
+     * @return the graph
+     */
+    public static OpenRouterGraph grid(int nodeCount, long seed)
+    {
+        Random random = new Random(seed);
+        int side = Math.max(2, (int) Math.round(Math.sqrt(nodeCount)));
+        List<OpenRouterNode> nodes = new ArrayList<>(side * side);
+        for (int row = 0; row < side; row++)
+        {
+            for (int col = 0; col < side; col++)
+            {
+                double jitter = SPACING_DEGREES * 0.2;
+                nodes.add(new OpenRouterNode(row * side + col,
+                        ORIGIN_LATITUDE + row * SPACING_DEGREES + (random.nextDouble() - 0.5) * jitter,
+                        ORIGIN_LONGITUDE + col * SPACING_DEGREES * 1.5 + (random.nextDouble() - 0.5) * jitter));
+            }
+        }
+
+        Builder builder = new Builder(nodes, random);
+        for (int row = 0; row < side; row++)
+        {
+            for (int col = 0; col < side; col++)
+            {
+                int node = row * side + col;
+                boolean primaryRow = row % 10 == 0;
+                boolean primaryCol = col % 10 == 0;
+                // about 5% of the residential streets are missing, primary roads are complete
+                if (col + 1 < side && (primaryRow || random.nextInt(20) > 0)) builder.connect(node, node + 1, primaryRow);
+                if (row + 1 < side && (primaryCol || random.nextInt(20) > 0)) builder.connect(node, node + side, primaryCol);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Generates a random geometric graph, every node is connected to its nearest neighbours.
+     * @param nodeCount the number of nodes
+     * @param seed the random seed
+     * @return the graph
+     */
+    public static OpenRouterGraph geometric(int nodeCount, long seed)
+    {
+        Random random = new Random(seed);
+        int side = Math.max(1, (int) Math.ceil(Math.sqrt(nodeCount)));
+        List<OpenRouterNode> nodes = new ArrayList<>(nodeCount);
+        for (int id = 0; id < nodeCount; id++)
+        {
+            nodes.add(new OpenRouterNode(id,
+                    ORIGIN_LATITUDE + random.nextDouble() * side * SPACING_DEGREES,
+                    ORIGIN_LONGITUDE + random.nextDouble() * side * SPACING_DEGREES * 1.5));
+        }
+
+        // cells of about one node each, the neighbours are searched in growing rings of cells
+        int[] cellStart = new int[side * side + 1];
+        int[] cellOf = new int[nodeCount];
+        for (int id = 0; id < nodeCount; id++)
+        {
+            cellOf[id] = cellOf(nodes.get(id), side);
+            cellStart[cellOf[id] + 1]++;
+        }
+        for (int cell = 0; cell < side * side; cell++) cellStart[cell + 1] += cellStart[cell];
+        int[] cellNodes = new int[nodeCount];
+        int[] fill = Arrays.copyOf(cellStart, cellStart.length);
+        for (int id = 0; id < nodeCount; id++) cellNodes[fill[cellOf[id]]++] = id;
+
+        Builder builder = new Builder(nodes, random);
+        int[] nearest = new int[GEOMETRIC_NEIGHBOURS];
+        double[] nearestDistance = new double[GEOMETRIC_NEIGHBOURS];
+        for (int id = 0; id < nodeCount; id++)
+        {
+            OpenRouterNode node = nodes.get(id);
+            Arrays.fill(nearest, -1);
+            Arrays.fill(nearestDistance, Double.POSITIVE_INFINITY);
+            int row = cellOf[id] / side;
+            int col = cellOf[id] % side;
+            for (int ring = 1; ring <= side; ring++)
+            {
+                for (int r = Math.max(0, row - ring); r <= Math.min(side - 1, row + ring); r++)
+                {
+                    for (int c = Math.max(0, col - ring); c <= Math.min(side - 1, col + ring); c++)
+                    {
+                        // only the cells of the new ring
+                        if (Math.abs(r - row) != ring && Math.abs(c - col) != ring && ring > 1) continue;
+                        int cell = r * side + c;
+                        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++)
+                        {
+                            int other = cellNodes[i];
+                            if (other != id) insert(other, node.distanceTo(nodes.get(other)), nearest, nearestDistance);
+                        }
+                    }
+                }
+                // a node outside the searched rings is at least ring cells away
+                double ringMeters = ring * SPACING_DEGREES * 111_000;
+                if (nearest[GEOMETRIC_NEIGHBOURS - 1] >= 0 && nearestDistance[GEOMETRIC_NEIGHBOURS - 1] <= ringMeters) break;
+            }
+            for (int other : nearest)
+            {
+                if (other >= 0) builder.connect(id, other, false);
+            }
+        }
+        return builder.build();
+    }
+
+    private static int cellOf(OpenRouterNode node, int side)
+    {
+        int row = (int) ((node.getLatitude() - ORIGIN_LATITUDE) / SPACING_DEGREES);
+        int col = (int) ((node.getLongitude() - ORIGIN_LONGITUDE) / (SPACING_DEGREES * 1.5));
+        return Math.min(side - 1, row) * side + Math.min(side - 1, col);
+    }
+
+    private static void insert(int id, double distance, int[] nearest, double[] nearestDistance)
+    {
+        int position = nearest.length;
+        while (position > 0 && distance < nearestDistance[position - 1]) position--;
+        if (position == nearest.length) return;
+        System.arraycopy(nearest, position, nearest, position + 1, nearest.length - position - 1);
+        System.arraycopy(nearestDistance, position, nearestDistance, position + 1, nearest.length - position - 1);
+        nearest[position] = id;
+        nearestDistance[position] = distance;
+    }
+
+    /**
+     * Creates the edges in both directions with road attributes, bearings and occasional shape points.
+     * Every pair of nodes is connected once.
+     */
+    private static final class Builder
+    {
+        final List<OpenRouterNode> nodes;
+        final Random random;
+        final List<OpenRouterEdge> edges = new ArrayList<>();
+        final OpenRouterShapeStore shapeStore = new OpenRouterShapeStore();
+        final Set<Long> connected = new HashSet<>();
+
+        Builder(List<OpenRouterNode> nodes, Random random)
+        {
+            this.nodes = nodes;
+            this.random = random;
+        }
+
+        void connect(int from, int to, boolean primary)
+        {
+            if (!connected.add(((long) Math.min(from, to) << 32) | Math.max(from, to))) return;
+            OpenRouterNode a = nodes.get(from);
+            OpenRouterNode b = nodes.get(to);
+
+            int shapeRef = OpenRouterShapeStore.NO_SHAPE;
+            double distance;
+            if (random.nextInt(4) == 0)
+            {
+                // one shape point beside the middle of the edge
+                int lat = (a.getLatitudeE6() + b.getLatitudeE6()) / 2 + random.nextInt(401) - 200;
+                int lon = (a.getLongitudeE6() + b.getLongitudeE6()) / 2 + random.nextInt(401) - 200;
+                int shapeId = shapeStore.addShape(new int[]{lat}, new int[]{lon}, 1);
+                shapeRef = OpenRouterShapeStore.toShapeRef(shapeId, false);
+                distance = shapeStore.getLength(a, b, shapeRef);
+            }
+            else
+            {
+                distance = a.distanceTo(b);
+            }
+
+            RoadClass roadClass = primary ? RoadClass.PRIMARY : RoadClass.RESIDENTIAL;
+            int speed = primary ? 70 + 10 * random.nextInt(4) : 30 + 10 * random.nextInt(3);
+            boolean oneway = !primary && random.nextInt(10) == 0;
+            long meta = new OpenRouterEdgeMeta(distance, speed, roadClass, ALL_VEHICLES, oneway, false, false, 0).getPackedData();
+            edges.add(new OpenRouterEdge(from, to, OpenRouterEdgeMeta.withBearings(meta, a, b, shapeStore, shapeRef), shapeRef));
+            if (!oneway)
+            {
+                int reverseRef = shapeRef == OpenRouterShapeStore.NO_SHAPE ? shapeRef : shapeRef | 1;
+                edges.add(new OpenRouterEdge(to, from, OpenRouterEdgeMeta.withBearings(meta, b, a, shapeStore, reverseRef), reverseRef));
+            }
+        }
+
+        OpenRouterGraph build()
+        {
+            OpenRouterGraph graph = new OpenRouterGraph(nodes, edges);
+            graph.setShapeStore(shapeStore);
+            return graph;
+        }
+    }
+
+    /**
+     * Writes a synthetic graph file.
+     * @param args the type ({@code grid} or {@code geometric}), the node count, the seed and the output file
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 4)
+        {
+            System.err.println("Usage: ORSyntheticGraph <grid|geometric> <node count> <seed> <graph file>");
+            return;
+        }
+        OpenRouterGraph graph = generate(Type.valueOf(args[0].toUpperCase()), Integer.parseInt(args[1]), Long.parseLong(args[2]));
+        ORGraphHandler.save(new File(args[3]), graph);
+    }
+}
@@ -0,0 +1,148 @@
+package de.riemerjonas.openrouter.core;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous appender of {@link OpenRouterLog}: a bounded lock-free ring buffer written by any thread and drained
+ * to stdout and stderr by one daemon thread.
+ * <p>
+ * Producers claim a slot with a CAS on the tail and publish it with the slot's sequence number (bounded queue after
+ * D. Vyukov). A full buffer drops the line instead of waiting, the number of dropped lines is logged once space is
+ * available again. The writer thread polls every millisecond while the buffer is empty.
+ */
+final class ORLogRingBuffer
+{
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final String[] lines;
+    private final boolean[] errors;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private long head;
+    private volatile boolean running = true;
+
+    /**
+     * Creates the buffer and starts its writer thread.
+     * @param capacity the number of lines, rounded up to a power of two
+     */
+    ORLogRingBuffer(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.lines = new String[size];
+        this.errors = new boolean[size];
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+        this.writer = new Thread(this::run, "OpenRouterLog-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Adds a line without blocking.
+     * @param line the formatted line
+     * @param error true for stderr
+     * @return false if the buffer was full and the line was dropped
+     */
+    boolean offer(String line, boolean error)
+    {
+        long position = tail.get();
+        while (true)
+        {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0)
+            {
+                if (tail.compareAndSet(position, position + 1))
+                {
+                    lines[index] = line;
+                    errors[index] = error;
+                    // the volatile write publishes the line to the writer thread
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0)
+            {
+                dropped.incrementAndGet();
+                return false;
+            }
+            else
+            {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread after it wrote all buffered lines.
+     */
+    void close()
+    {
+        running = false;
+        LockSupport.unpark(writer);
+        try
+        {
+            writer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run()
+    {
+        while (true)
+        {
+            boolean stopping = !running;
+            if (drain() == 0)
+            {
+                if (stopping) return;
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Writes all published lines.
+     * @return the number of written lines
+     */
+    private int drain()
+    {
+        int count = 0;
+        boolean wroteOut = false;
+        boolean wroteErr = false;
+        while (true)
+        {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) break;
+            String line = lines[index];
+            boolean error = errors[index];
+            lines[index] = null;
+            sequences.set(index, head + mask + 1);
+            head++;
+            count++;
+            PrintStream stream = error ? System.err : System.out;
+            stream.println(line);
+            wroteOut |= !error;
+            wroteErr |= error;
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0)
+        {
+            System.err.println(OpenRouterLog.formatLog("OpenRouterLog", "WARN ") + lost + " log lines dropped, the buffer was full");
+            wroteErr = true;
+        }
+        if (wroteOut) System.out.flush();
+        if (wroteErr) System.err.flush();
+        return count;
+    }
+}
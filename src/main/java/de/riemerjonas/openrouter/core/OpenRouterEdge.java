@@ -4,22 +4,37 @@ import java.util.List;
 
 public class OpenRouterEdge
 {
+    /** Serialized size of one edge: fromID, toID and the 64-bit meta data. */
+    public static final int BYTES = 16;
+
     private final int fromID;
     private final int toID;
-    private final int metaData;
+    private final long metaData;
+    private final int shapeRef;
+
+    public OpenRouterEdge(int fromID, int toID, long metaData)
+    {
+        this(fromID, toID, metaData, OpenRouterShapeStore.NO_SHAPE);
+    }
 
-    public OpenRouterEdge(int fromID, int toID, int metaData)
+    /**
+     * Creates a new OpenRouterEdge with intermediate shape points.
+     * @param fromID the ID of the start node
+     * @param toID the ID of the end node
+     * @param metaData the packed meta data
+     * @param shapeRef the shape reference into the {@link OpenRouterShapeStore} of the graph
+     */
+    public OpenRouterEdge(int fromID, int toID, long metaData, int shapeRef)
     {
         this.fromID = fromID;
         this.toID = toID;
         this.metaData = metaData;
+        this.shapeRef = shapeRef;
     }
 
     public OpenRouterEdge(int fromID, int toID, OpenRouterEdgeMeta metaData)
     {
-        this.fromID = fromID;
-        this.toID = toID;
-        this.metaData = metaData.getPackedData();
+        this(fromID, toID, metaData.getPackedData());
     }
 
     public int getFromID()
@@ -32,23 +47,75 @@ public class OpenRouterEdge
         return toID;
     }
 
-    public int getMetaData()
+    public long getMetaData()
     {
         return metaData;
     }
 
+    /**
+     * Returns the shape reference of this edge.
+     * @return the shape reference or {@link OpenRouterShapeStore#NO_SHAPE}
+     */
+    public int getShapeRef()
+    {
+        return shapeRef;
+    }
+
+    /**
+     * Returns a copy of this edge with other meta data.
+     * @param metaData the new packed meta data
+     * @return the new edge
+     */
+    public OpenRouterEdge withMetaData(long metaData)
+    {
+        return new OpenRouterEdge(fromID, toID, metaData, shapeRef);
+    }
+
     public OpenRouterEdgeMeta getMetaDataAsObject()
     {
         return OpenRouterEdgeMeta.fromPackedData(metaData);
     }
 
+    /**
+     * Reads a serialized edge from the given buffer.
+     * @param data the buffer
+     * @param offset the offset of the edge
+     * @return the edge
+     */
+    public static OpenRouterEdge deserialize(byte[] data, int offset)
+    {
+        return deserialize(data, offset, OpenRouterShapeStore.NO_SHAPE);
+    }
+
+    /**
+     * Reads a serialized edge from the given buffer.
+     * @param data the buffer
+     * @param offset the offset of the edge
+     * @param shapeRef the shape reference of the edge
+     * @return the edge
+     */
+    public static OpenRouterEdge deserialize(byte[] data, int offset, int shapeRef)
+    {
+        int fromID = ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) |
+                ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+
+        int toID = ((data[offset + 4] & 0xFF) << 24) | ((data[offset + 5] & 0xFF) << 16) |
+                ((data[offset + 6] & 0xFF) << 8) | (data[offset + 7] & 0xFF);
+
+        long metaData = 0;
+        for (int b = 0; b < 8; b++) {
+            metaData = (metaData << 8) | (data[offset + 8 + b] & 0xFF);
+        }
+        return new OpenRouterEdge(fromID, toID, metaData, shapeRef);
+    }
+
     public static byte[] serialize(List<OpenRouterEdge> edges) {
         int size = edges.size();
-        byte[] data = new byte[size * 12];
+        byte[] data = new byte[size * BYTES];
 
         for (int i = 0; i < size; i++) {
             OpenRouterEdge edge = edges.get(i);
-            int offset = i * 12;
+            int offset = i * BYTES;
 
             // fromID
             data[offset]     = (byte) (edge.fromID >> 24);
@@ -63,10 +130,9 @@ public class OpenRouterEdge
             data[offset + 7] = (byte) edge.toID;
 
             // metaData
-            data[offset + 8]  = (byte) (edge.metaData >> 24);
-            data[offset + 9]  = (byte) (edge.metaData >> 16);
-            data[offset + 10] = (byte) (edge.metaData >> 8);
-            data[offset + 11] = (byte) edge.metaData;
+            for (int b = 0; b < 8; b++) {
+                data[offset + 8 + b] = (byte) (edge.metaData >> (56 - b * 8));
+            }
         }
 
         return data;
@@ -1,70 +1,301 @@
 package de.riemerjonas.openrouter.core;
 
+import de.riemerjonas.openrouter.core.encoding.OpenRouterEdgeEncoder;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+import de.riemerjonas.openrouter.core.types.RoadClass;
+import de.riemerjonas.openrouter.core.types.VehicleType;
+
 /**
  * Represents the metadata of an edge in the OpenRouter graph.
- * This class is used to store the maximum speed, distance, and additional time for an edge.
+ * All attributes are packed into a single 64-bit word, the bit layout is defined by {@link OpenRouterEdgeEncoder}.
  */
 public class OpenRouterEdgeMeta
 {
-    private final int packedData;
+    /** Number of steps of a full circle in the stored bearings, one step is 5.625 degrees. */
+    public static final int BEARING_STEPS = 64;
+
+    private final long packedData;
+
+    /**
+     * Creates a new OpenRouterEdgeMeta from an already packed word.
+     * @param packedData the packed data
+     */
+    public OpenRouterEdgeMeta(long packedData)
+    {
+        this.packedData = packedData;
+    }
 
     /**
-     * Creates a new OpenRouterEdgeMeta with the given maximum speed, distance, and additional time.
+     * Creates a new OpenRouterEdgeMeta with the given attributes.
      *
-     * @param maxSpeedMs      the maximum speed in meters per second
      * @param distanceMeter   the distance in meters
-     * @param additionalTime  the additional time in seconds
+     * @param maxSpeedKmh     the maximum speed in km/h
+     * @param roadClass       the road class
+     * @param accessFlags     the access flags, combined bits of {@link VehicleType#getAccessBit()}
+     * @param oneway          true if the edge belongs to a oneway street
+     * @param roundabout      true if the edge belongs to a roundabout
+     * @param toll            true if the edge is a toll road
+     * @param timePenalty     the additional time in seconds
+     */
+    public OpenRouterEdgeMeta(double distanceMeter, int maxSpeedKmh, RoadClass roadClass, int accessFlags,
+                              boolean oneway, boolean roundabout, boolean toll, int timePenalty)
+    {
+        long packed = 0;
+        packed = OpenRouterEdgeEncoder.DISTANCE_DM.set(packed, Math.round(distanceMeter * 10));
+        packed = OpenRouterEdgeEncoder.SPEED_KMH.set(packed, maxSpeedKmh);
+        packed = OpenRouterEdgeEncoder.ROAD_CLASS.set(packed, roadClass.getValue());
+        packed = OpenRouterEdgeEncoder.ACCESS.set(packed, accessFlags);
+        packed = OpenRouterEdgeEncoder.ONEWAY.setFlag(packed, oneway);
+        packed = OpenRouterEdgeEncoder.ROUNDABOUT.setFlag(packed, roundabout);
+        packed = OpenRouterEdgeEncoder.TOLL.setFlag(packed, toll);
+        packed = OpenRouterEdgeEncoder.TIME_PENALTY.set(packed, timePenalty);
+        this.packedData = packed;
+    }
+
+    /**
+     * Returns the maximum speed in km/h.
+     * @return the maximum speed in km/h
      */
-    public OpenRouterEdgeMeta(short maxSpeedMs, short distanceMeter, short additionalTime)
+    public int getMaxSpeedKmh()
     {
-        this.packedData = (maxSpeedMs & 0xFFFF) | ((distanceMeter & 0xFFFF) << 16) | ((additionalTime & 0xFFFF) << 32);
+        return OpenRouterEdgeEncoder.SPEED_KMH.getInt(packedData);
     }
 
     /**
      * Returns the maximum speed in meters per second.
      * @return the maximum speed in meters per second
      */
-    public short getMaxSpeedMs()
+    public double getMaxSpeedMs()
     {
-        return (short) (packedData & 0xFFFF);
+        return getMaxSpeedKmh() / 3.6;
+    }
+
+    /**
+     * Returns the distance in decimeters.
+     * @return the distance in decimeters
+     */
+    public int getDistanceDecimeter()
+    {
+        return OpenRouterEdgeEncoder.DISTANCE_DM.getInt(packedData);
     }
 
     /**
      * Returns the distance in meters.
      * @return the distance in meters
      */
-    public short getDistanceMeter()
+    public double getDistanceMeter()
+    {
+        return distanceMeter(packedData);
+    }
+
+    /**
+     * Returns the road class.
+     * @return the road class
+     */
+    public RoadClass getRoadClass()
     {
-        return (short) ((packedData >> 16) & 0xFFFF);
+        return RoadClass.fromValue(OpenRouterEdgeEncoder.ROAD_CLASS.getInt(packedData));
+    }
+
+    /**
+     * Returns true if the given vehicle type may use this edge.
+     * @param vehicleType the vehicle type
+     * @return true if accessible
+     */
+    public boolean hasAccess(VehicleType vehicleType)
+    {
+        return hasAccess(packedData, vehicleType);
+    }
+
+    /**
+     * Returns true if the edge belongs to a oneway street.
+     * @return true if oneway
+     */
+    public boolean isOneway()
+    {
+        return OpenRouterEdgeEncoder.ONEWAY.getFlag(packedData);
+    }
+
+    /**
+     * Returns true if the edge belongs to a roundabout.
+     * @return true if roundabout
+     */
+    public boolean isRoundabout()
+    {
+        return OpenRouterEdgeEncoder.ROUNDABOUT.getFlag(packedData);
+    }
+
+    /**
+     * Returns true if the edge is a toll road.
+     * @return true if toll road
+     */
+    public boolean isToll()
+    {
+        return OpenRouterEdgeEncoder.TOLL.getFlag(packedData);
     }
 
     /**
      * Returns the additional time in seconds.
      * @return the additional time in seconds
      */
-    public short getAdditionalTime()
+    public int getAdditionalTime()
+    {
+        return OpenRouterEdgeEncoder.TIME_PENALTY.getInt(packedData);
+    }
+
+    /**
+     * Returns the travel time at maximum speed including the additional time.
+     * @return the travel time in seconds
+     */
+    public double getTravelTimeSeconds()
     {
-        return (short) ((packedData >> 32) & 0xFFFF);
+        return travelTimeSeconds(packedData);
     }
 
     /**
-     * Returns the packed data as an integer.
+     * Returns the bearing when leaving the start node.
+     * @return the bearing in degrees clockwise from north
+     */
+    public double getStartBearing()
+    {
+        return startBearing(packedData);
+    }
+
+    /**
+     * Returns the bearing when arriving at the end node.
+     * @return the bearing in degrees clockwise from north
+     */
+    public double getEndBearing()
+    {
+        return endBearing(packedData);
+    }
+
+    /**
+     * Returns the packed data.
      * @return the packed data
      */
-    public int getPackedData()
+    public long getPackedData()
     {
         return packedData;
     }
 
     /**
-     * Returns a OpenRouterEdgeMeta from integer.
+     * Returns a OpenRouterEdgeMeta from the packed data.
      * @param packedData the packed data to read from
      * @return the OpenRouterEdgeMeta
      */
-    public static OpenRouterEdgeMeta fromPackedData(int packedData)
+    public static OpenRouterEdgeMeta fromPackedData(long packedData)
+    {
+        return new OpenRouterEdgeMeta(packedData);
+    }
+
+    /**
+     * Reads the distance in meters directly from the packed data.
+     * @param packedData the packed data
+     * @return the distance in meters
+     */
+    public static double distanceMeter(long packedData)
     {
-        return new OpenRouterEdgeMeta((short) (packedData & 0xFFFF), (short) ((packedData >> 16) & 0xFFFF), (short) ((packedData >> 32) & 0xFFFF));
+        return OpenRouterEdgeEncoder.DISTANCE_DM.get(packedData) / 10.0;
     }
 
+    /**
+     * Reads the travel time in seconds directly from the packed data.
+     * @param packedData the packed data
+     * @return the travel time in seconds
+     */
+    public static double travelTimeSeconds(long packedData)
+    {
+        int speed = Math.max(1, OpenRouterEdgeEncoder.SPEED_KMH.getInt(packedData));
+        return distanceMeter(packedData) * 3.6 / speed + OpenRouterEdgeEncoder.TIME_PENALTY.getInt(packedData);
+    }
 
+    /**
+     * Reads the bearing when leaving the start node directly from the packed data.
+     * @param packedData the packed data
+     * @return the bearing in degrees clockwise from north
+     */
+    public static double startBearing(long packedData)
+    {
+        return OpenRouterEdgeEncoder.START_BEARING.getInt(packedData) * 360.0 / BEARING_STEPS;
+    }
+
+    /**
+     * Reads the bearing when arriving at the end node directly from the packed data.
+     * @param packedData the packed data
+     * @return the bearing in degrees clockwise from north
+     */
+    public static double endBearing(long packedData)
+    {
+        return OpenRouterEdgeEncoder.END_BEARING.getInt(packedData) * 360.0 / BEARING_STEPS;
+    }
+
+    /**
+     * Stores the bearings at both ends of an edge, rounded to {@link #BEARING_STEPS}.
+     * @param packedData the packed data
+     * @param startBearing the bearing when leaving the start node in degrees
+     * @param endBearing the bearing when arriving at the end node in degrees
+     * @return the packed data with the bearings
+     */
+    public static long withBearings(long packedData, double startBearing, double endBearing)
+    {
+        packedData = OpenRouterEdgeEncoder.START_BEARING.set(packedData, toBearingStep(startBearing));
+        return OpenRouterEdgeEncoder.END_BEARING.set(packedData, toBearingStep(endBearing));
+    }
+
+    /**
+     * Computes and stores the bearings of an edge from the first and the last segment of its geometry.
+     * Segments of zero length are skipped.
+     * @param packedData the packed data
+     * @param from the start node
+     * @param to the end node
+     * @param shapeStore the shape store of the graph, may be null
+     * @param shapeRef the shape reference of the edge
+     * @return the packed data with the bearings
+     */
+    public static long withBearings(long packedData, IGeoCoordinate from, IGeoCoordinate to, OpenRouterShapeStore shapeStore, int shapeRef)
+    {
+        int count = shapeStore != null ? shapeStore.getPointCount(shapeRef) : 0;
+        int firstLat = to.getLatitudeE6();
+        int firstLon = to.getLongitudeE6();
+        for (int i = 0; i < count; i++)
+        {
+            int lat = shapeStore.getLatitudeE6(shapeRef, i);
+            int lon = shapeStore.getLongitudeE6(shapeRef, i);
+            if (lat == from.getLatitudeE6() && lon == from.getLongitudeE6()) continue;
+            firstLat = lat;
+            firstLon = lon;
+            break;
+        }
+        int lastLat = from.getLatitudeE6();
+        int lastLon = from.getLongitudeE6();
+        for (int i = count - 1; i >= 0; i--)
+        {
+            int lat = shapeStore.getLatitudeE6(shapeRef, i);
+            int lon = shapeStore.getLongitudeE6(shapeRef, i);
+            if (lat == to.getLatitudeE6() && lon == to.getLongitudeE6()) continue;
+            lastLat = lat;
+            lastLon = lon;
+            break;
+        }
+        double start = IGeoCoordinate.bearing(from.getLatitude(), from.getLongitude(), firstLat / 1E6, firstLon / 1E6);
+        double end = IGeoCoordinate.bearing(lastLat / 1E6, lastLon / 1E6, to.getLatitude(), to.getLongitude());
+        return withBearings(packedData, start, end);
+    }
+
+    private static int toBearingStep(double bearing)
+    {
+        return (int) Math.round(bearing * BEARING_STEPS / 360.0) & (BEARING_STEPS - 1);
+    }
+
+    /**
+     * Checks the access flag of the given vehicle directly on the packed data.
+     * @param packedData the packed data
+     * @param vehicleType the vehicle type
+     * @return true if accessible
+     */
+    public static boolean hasAccess(long packedData, VehicleType vehicleType)
+    {
+        return (OpenRouterEdgeEncoder.ACCESS.getInt(packedData) & vehicleType.getAccessBit()) != 0;
+    }
 }
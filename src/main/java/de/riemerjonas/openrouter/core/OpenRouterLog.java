@@ -1,10 +1,33 @@
 package de.riemerjonas.openrouter.core;
 
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Supplier;
 
+/**
+ * Logs to stdout and stderr, optionally through an asynchronous ring buffer, see {@link #setAsync(boolean)}.
+ * The buffer is enabled at startup with the system property {@code openrouter.log.async=true}.
+ * <p>
+ * Messages that are expensive to build should use the supplier or {@code {}} pattern overloads, which check the
+ * level before the message is built.
+ */
 public class OpenRouterLog
 {
-    private static LOG_LEVEL log_Level = LOG_LEVEL.INFO;
+    /** Capacity of the asynchronous buffer in lines. */
+    public static final int ASYNC_CAPACITY = 8192;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("hh:mm:ss");
+
+    private static volatile LOG_LEVEL log_Level = LOG_LEVEL.INFO;
+    private static volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, "");
+    private static volatile ORLogRingBuffer asyncBuffer;
+    private static boolean shutdownHookAdded;
+
+    static
+    {
+        if (Boolean.getBoolean("openrouter.log.async")) setAsync(true);
+    }
 
     public static enum LOG_LEVEL
     {
@@ -30,12 +53,67 @@ public class OpenRouterLog
     }
 
     /**
-     * Returns the current timestamp in the format hh:mm:ss
+     * Returns true if messages of the given level are logged.
+     * @param level the level
+     * @return true if logged
+     */
+    public static boolean isLoggable(LOG_LEVEL level)
+    {
+        return log_Level.getLevel() <= level.getLevel();
+    }
+
+    /**
+     * Returns true if debug messages are logged, to guard the building of expensive messages.
+     * @return true if debug is enabled
+     */
+    public static boolean isDebugEnabled()
+    {
+        return isLoggable(LOG_LEVEL.DEBUG);
+    }
+
+    /**
+     * Switches between writing on the calling thread and writing through a ring buffer on a background thread.
+     * Asynchronous logging never blocks the caller, lines are dropped while the buffer is full.
+     * Switching back to synchronous logging writes all buffered lines first.
+     * @param async true to log asynchronously
+     */
+    public static synchronized void setAsync(boolean async)
+    {
+        if (async == (asyncBuffer != null)) return;
+        if (async)
+        {
+            asyncBuffer = new ORLogRingBuffer(ASYNC_CAPACITY);
+            if (!shutdownHookAdded)
+            {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> setAsync(false), "OpenRouterLog-shutdown"));
+                shutdownHookAdded = true;
+            }
+        }
+        else
+        {
+            ORLogRingBuffer buffer = asyncBuffer;
+            asyncBuffer = null;
+            buffer.close();
+        }
+    }
+
+    /**
+     * Returns the current timestamp in the format hh:mm:ss.
+     * The formatted text is cached for the current second.
      * @return the current timestamp
      */
     public static String getTimestamp()
     {
-        return new SimpleDateFormat("hh:mm:ss").format(System.currentTimeMillis());
+        long millis = System.currentTimeMillis();
+        long second = Math.floorDiv(millis, 1000);
+        Timestamp cached = timestamp;
+        if (cached.second != second)
+        {
+            String text = TIMESTAMP_FORMAT.format(LocalTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()));
+            cached = new Timestamp(second, text);
+            timestamp = cached;
+        }
+        return cached.text;
     }
 
     /**
@@ -46,7 +124,27 @@ public class OpenRouterLog
      */
     public static String formatLog(String tag, String type)
     {
-        return String.format("[%s] [%s] [%s] ", getTimestamp(), type, tag);
+        return "[" + getTimestamp() + "] [" + type + "] [" + tag + "] ";
+    }
+
+    /**
+     * Replaces every {@code {}} in the pattern with the next argument.
+     * @param pattern the message pattern
+     * @param args the arguments
+     * @return the message
+     */
+    public static String format(String pattern, Object... args)
+    {
+        StringBuilder builder = new StringBuilder(pattern.length() + 16 * args.length);
+        int start = 0;
+        int arg = 0;
+        int index;
+        while (arg < args.length && (index = pattern.indexOf("{}", start)) >= 0)
+        {
+            builder.append(pattern, start, index).append(args[arg++]);
+            start = index + 2;
+        }
+        return builder.append(pattern, start, pattern.length()).toString();
     }
 
     /**
@@ -58,7 +156,7 @@ public class OpenRouterLog
     {
         if(log_Level.getLevel() <= LOG_LEVEL.INFO.getLevel())
         {
-            System.out.println(formatLog(tag, "INFO ") + message);
+            print(formatLog(tag, "INFO ") + message, false);
         }
     }
 
@@ -71,7 +169,7 @@ public class OpenRouterLog
     {
         if(log_Level.getLevel() <= LOG_LEVEL.DEBUG.getLevel())
         {
-            System.out.println(formatLog(tag, "DEBUG") + message);
+            print(formatLog(tag, "DEBUG") + message, false);
         }
     }
 
@@ -84,7 +182,7 @@ public class OpenRouterLog
     {
         if(log_Level.getLevel() <= LOG_LEVEL.WARNING.getLevel())
         {
-            System.out.println(formatLog(tag, "WARN ") + message);
+            print(formatLog(tag, "WARN ") + message, false);
         }
     }
 
@@ -97,7 +195,7 @@ public class OpenRouterLog
     {
         if(log_Level.getLevel() <= LOG_LEVEL.ERROR.getLevel())
         {
-            System.err.println(formatLog(tag, "ERROR") + message);
+            print(formatLog(tag, "ERROR") + message, true);
         }
     }
 
@@ -118,16 +216,112 @@ public class OpenRouterLog
 
             int length = Math.max(line1.length(), Math.max(line2.length(),
                             Math.max(line3.length(), Math.max(line4.length(), line5.length()))));
-            StringBuilder separator = new StringBuilder();
-            separator.append("-".repeat(length));
-
-            System.err.println(line1);
-            System.err.println(separator);
-            System.err.println(line2);
-            System.err.println(line3);
-            System.err.println(line4);
-            System.err.println(line5);
-            System.err.println(separator);
+            String separator = "-".repeat(length);
+
+            print(line1, true);
+            print(separator, true);
+            print(line2, true);
+            print(line3, true);
+            print(line4, true);
+            print(line5, true);
+            print(separator, true);
+        }
+    }
+
+    /**
+     * Logs a debug message built only if debug messages are logged.
+     * @param tag the tag of the log message
+     * @param message the supplier of the message
+     */
+    public static void d(String tag, Supplier<String> message)
+    {
+        if (isLoggable(LOG_LEVEL.DEBUG)) d(tag, message.get());
+    }
+
+    /**
+     * Logs a debug message, {@code {}} in the pattern is replaced by the argument if debug messages are logged.
+     */
+    public static void d(String tag, String pattern, Object arg)
+    {
+        if (isLoggable(LOG_LEVEL.DEBUG)) d(tag, format(pattern, arg));
+    }
+
+    /**
+     * Logs a debug message, each {@code {}} in the pattern is replaced by the next argument if debug messages are logged.
+     */
+    public static void d(String tag, String pattern, Object arg1, Object arg2)
+    {
+        if (isLoggable(LOG_LEVEL.DEBUG)) d(tag, format(pattern, arg1, arg2));
+    }
+
+    /**
+     * Logs a debug message, each {@code {}} in the pattern is replaced by the next argument if debug messages are logged.
+     */
+    public static void d(String tag, String pattern, Object... args)
+    {
+        if (isLoggable(LOG_LEVEL.DEBUG)) d(tag, format(pattern, args));
+    }
+
+    /**
+     * Logs an info message built only if info messages are logged.
+     * @param tag the tag of the log message
+     * @param message the supplier of the message
+     */
+    public static void i(String tag, Supplier<String> message)
+    {
+        if (isLoggable(LOG_LEVEL.INFO)) i(tag, message.get());
+    }
+
+    /**
+     * Logs an info message, each {@code {}} in the pattern is replaced by the next argument if info messages are logged.
+     */
+    public static void i(String tag, String pattern, Object... args)
+    {
+        if (isLoggable(LOG_LEVEL.INFO)) i(tag, format(pattern, args));
+    }
+
+    /**
+     * Logs a warning message built only if warnings are logged.
+     * @param tag the tag of the log message
+     * @param message the supplier of the message
+     */
+    public static void w(String tag, Supplier<String> message)
+    {
+        if (isLoggable(LOG_LEVEL.WARNING)) w(tag, message.get());
+    }
+
+    /**
+     * Logs a warning message, each {@code {}} in the pattern is replaced by the next argument if warnings are logged.
+     */
+    public static void w(String tag, String pattern, Object... args)
+    {
+        if (isLoggable(LOG_LEVEL.WARNING)) w(tag, format(pattern, args));
+    }
+
+    private static void print(String line, boolean error)
+    {
+        ORLogRingBuffer buffer = asyncBuffer;
+        if (buffer != null)
+        {
+            buffer.offer(line, error);
+            return;
+        }
+        if (error) System.err.println(line);
+        else System.out.println(line);
+    }
+
+    /**
+     * Formatted timestamp of one second.
+     */
+    private static final class Timestamp
+    {
+        final long second;
+        final String text;
+
+        Timestamp(long second, String text)
+        {
+            this.second = second;
+            this.text = text;
         }
     }
 
@@ -0,0 +1,103 @@
+package de.riemerjonas.openrouter.core;
+
+import de.riemerjonas.openrouter.core.geometry.ORLineSimplifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a route search.
+ * Holds the graph nodes and edges of the path and the full geometry including the shape points of compressed edges.
+ */
+public class OpenRouterRoute
+{
+    private final List<OpenRouterNode> nodes;
+    private final List<OpenRouterEdge> edges;
+    private final double weight;
+    private final OpenRouterShapeStore shapeStore;
+    private List<OpenRouterPoint> geometry;
+
+    /**
+     * Creates a new OpenRouterRoute.
+     * @param nodes the graph nodes of the path, starting with the start node
+     * @param edges the edges between the nodes, one less than nodes
+     * @param weight the total weight of the route in the unit of the routing profile
+     * @param shapeStore the shape store of the graph, may be null
+     */
+    public OpenRouterRoute(List<OpenRouterNode> nodes, List<OpenRouterEdge> edges, double weight, OpenRouterShapeStore shapeStore)
+    {
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.edges = Collections.unmodifiableList(edges);
+        this.weight = weight;
+        this.shapeStore = shapeStore;
+    }
+
+    /**
+     * Returns the graph nodes of the path.
+     * @return the nodes
+     */
+    public List<OpenRouterNode> getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Returns the edges of the path.
+     * @return the edges
+     */
+    public List<OpenRouterEdge> getEdges()
+    {
+        return edges;
+    }
+
+    /**
+     * Returns the total weight in the unit of the routing profile.
+     * @return the weight
+     */
+    public double getWeight()
+    {
+        return weight;
+    }
+
+    /**
+     * Returns the total distance along the edges in meters.
+     * @return the distance
+     */
+    public double getDistanceMeter()
+    {
+        double distance = 0;
+        for (OpenRouterEdge edge : edges) distance += OpenRouterEdgeMeta.distanceMeter(edge.getMetaData());
+        return distance;
+    }
+
+    /**
+     * Returns the full geometry of the route, the nodes with the shape points of all edges in between.
+     * @return the geometry
+     */
+    public List<OpenRouterPoint> getGeometry()
+    {
+        if (geometry == null)
+        {
+            List<OpenRouterPoint> points = new ArrayList<>();
+            for (int i = 0; i < nodes.size(); i++)
+            {
+                if (i > 0 && shapeStore != null) shapeStore.appendPoints(edges.get(i - 1).getShapeRef(), points);
+                points.add(nodes.get(i).getCoordinate());
+            }
+            geometry = Collections.unmodifiableList(points);
+        }
+        return geometry;
+    }
+
+    /**
+     * Returns the geometry of the route simplified with {@link ORLineSimplifier}.
+     * @param toleranceMeter the maximum distance of a removed point to the simplified line, 0 for the full geometry
+     * @return the geometry
+     */
+    public List<OpenRouterPoint> getGeometry(double toleranceMeter)
+    {
+        if (toleranceMeter <= 0) return getGeometry();
+        return Collections.unmodifiableList(ORLineSimplifier.simplify(getGeometry(), toleranceMeter));
+    }
+}
@@ -0,0 +1,401 @@
+package de.riemerjonas.openrouter.core;
+
+import de.riemerjonas.openrouter.core.geometry.ORDistance;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores the intermediate shape points of compressed edges.
+ * Only junctions are graph nodes, the points between them are kept here and are only
+ * needed to produce route geometry. Both directions of an edge share one shape, the
+ * shape reference of an edge encodes the shape ID and whether it is read in reverse.
+ */
+public class OpenRouterShapeStore
+{
+    private static final String TAG = "OpenRouterShapeStore";
+    public static final String FILE_SUFFIX = ".shapes";
+    public static final int NO_SHAPE = -1;
+
+    private int shapeCount;
+    private int[] offsets = new int[] {0};
+    private int pointCount;
+    private int[] latitudes = new int[1024];
+    private int[] longitudes = new int[1024];
+
+    /**
+     * Adds a shape.
+     * @param latitudesE6 the latitudes of the shape points in E6 format
+     * @param longitudesE6 the longitudes of the shape points in E6 format
+     * @param count the number of points
+     * @return the shape ID
+     */
+    public int addShape(int[] latitudesE6, int[] longitudesE6, int count)
+    {
+        if (pointCount + count > latitudes.length)
+        {
+            int capacity = Math.max(pointCount + count, latitudes.length * 2);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+        }
+        System.arraycopy(latitudesE6, 0, latitudes, pointCount, count);
+        System.arraycopy(longitudesE6, 0, longitudes, pointCount, count);
+        pointCount += count;
+
+        if (shapeCount + 2 > offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        offsets[++shapeCount] = pointCount;
+        return shapeCount - 1;
+    }
+
+    /**
+     * Returns a copy of this store. Shapes added to the copy do not change this store, existing shape references are
+     * valid in both.
+     * @return the copy
+     */
+    public OpenRouterShapeStore copy()
+    {
+        OpenRouterShapeStore copy = new OpenRouterShapeStore();
+        copy.shapeCount = shapeCount;
+        copy.offsets = Arrays.copyOf(offsets, shapeCount + 2);
+        copy.pointCount = pointCount;
+        copy.latitudes = Arrays.copyOf(latitudes, Math.max(1, pointCount));
+        copy.longitudes = Arrays.copyOf(longitudes, Math.max(1, pointCount));
+        return copy;
+    }
+
+    /**
+     * Returns the shape reference for an edge.
+     * @param shapeId the shape ID
+     * @param reversed true if the edge runs against the stored point order
+     * @return the shape reference
+     */
+    public static int toShapeRef(int shapeId, boolean reversed)
+    {
+        return (shapeId << 1) | (reversed ? 1 : 0);
+    }
+
+    public int getShapeCount()
+    {
+        return shapeCount;
+    }
+
+    public int getTotalPointCount()
+    {
+        return pointCount;
+    }
+
+    /**
+     * Returns the number of shape points of the given shape reference.
+     * @param shapeRef the shape reference of an edge
+     * @return the number of points, 0 for {@link #NO_SHAPE}
+     */
+    public int getPointCount(int shapeRef)
+    {
+        if (shapeRef == NO_SHAPE) return 0;
+        int shapeId = shapeRef >>> 1;
+        return offsets[shapeId + 1] - offsets[shapeId];
+    }
+
+    /**
+     * Returns the latitude of a shape point in the direction of the edge.
+     * @param shapeRef the shape reference of an edge
+     * @param index the point index
+     * @return the latitude in E6 format
+     */
+    public int getLatitudeE6(int shapeRef, int index)
+    {
+        return latitudes[getPointIndex(shapeRef, index)];
+    }
+
+    /**
+     * Returns the longitude of a shape point in the direction of the edge.
+     * @param shapeRef the shape reference of an edge
+     * @param index the point index
+     * @return the longitude in E6 format
+     */
+    public int getLongitudeE6(int shapeRef, int index)
+    {
+        return longitudes[getPointIndex(shapeRef, index)];
+    }
+
+    /**
+     * Returns the index of a shape point among all points of the store, which stays the same when the store is saved,
+     * loaded or copied.
+     * @param shapeRef the shape reference of an edge
+     * @param index the point index in the direction of the edge
+     * @return the index in the store
+     */
+    public int getPointIndex(int shapeRef, int index)
+    {
+        int shapeId = shapeRef >>> 1;
+        int start = offsets[shapeId];
+        int end = offsets[shapeId + 1];
+        return (shapeRef & 1) == 0 ? start + index : end - 1 - index;
+    }
+
+    /**
+     * Appends the shape points of an edge in travel direction.
+     * @param shapeRef the shape reference of the edge
+     * @param points the list to append to
+     */
+    public void appendPoints(int shapeRef, List<OpenRouterPoint> points)
+    {
+        int count = getPointCount(shapeRef);
+        for (int i = 0; i < count; i++)
+        {
+            points.add(new OpenRouterPoint(getLatitudeE6(shapeRef, i), getLongitudeE6(shapeRef, i)));
+        }
+    }
+
+    /**
+     * Returns the length of an edge along its shape.
+     * @param from the start node of the edge
+     * @param to the end node of the edge
+     * @param shapeRef the shape reference of the edge
+     * @return the length in meters
+     */
+    public double getLength(IGeoCoordinate from, IGeoCoordinate to, int shapeRef)
+    {
+        double length = 0;
+        int lat = from.getLatitudeE6();
+        int lon = from.getLongitudeE6();
+        int count = getPointCount(shapeRef);
+        for (int i = 0; i < count; i++)
+        {
+            int nextLat = getLatitudeE6(shapeRef, i);
+            int nextLon = getLongitudeE6(shapeRef, i);
+            length += ORDistance.flat(lat, lon, nextLat, nextLon);
+            lat = nextLat;
+            lon = nextLon;
+        }
+        return length + ORDistance.flat(lat, lon, to.getLatitudeE6(), to.getLongitudeE6());
+    }
+
+    /**
+     * Returns the shape file belonging to the given graph file.
+     * @param graphFile the graph file
+     * @return the shape file
+     */
+    public static File getShapeFile(File graphFile)
+    {
+        return new File(graphFile.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * Saves the shapes and the shape reference of every edge.
+     * Points are delta encoded as zigzag varints, consecutive shape points are close to each other.
+     * @param file the file to save to
+     * @param store the shape store
+     * @param edges the edges of the graph
+     * @throws IOException if writing fails
+     */
+    public static void save(File file, OpenRouterShapeStore store, List<OpenRouterEdge> edges) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+        {
+            out.writeInt(edges.size());
+            for (OpenRouterEdge edge : edges) out.writeInt(edge.getShapeRef());
+
+            out.writeInt(store.shapeCount);
+            out.writeInt(store.pointCount);
+            for (int shape = 0; shape < store.shapeCount; shape++)
+            {
+                writeVarint(out, store.offsets[shape + 1] - store.offsets[shape]);
+            }
+            int lat = 0, lon = 0;
+            for (int i = 0; i < store.pointCount; i++)
+            {
+                writeVarint(out, zigzag(store.latitudes[i] - lat));
+                writeVarint(out, zigzag(store.longitudes[i] - lon));
+                lat = store.latitudes[i];
+                lon = store.longitudes[i];
+            }
+        }
+        OpenRouterLog.d(TAG, "Saved " + store.shapeCount + " shapes with " + store.pointCount + " points");
+    }
+
+    /**
+     * Loads shapes saved by {@link #save(File, OpenRouterShapeStore, List)}.
+     * @param file the file to load from
+     * @param edgeShapeRefs receives the shape reference of every edge, must have the size of the edge list
+     * @return the shape store
+     * @throws IOException if reading fails or the file does not match the edges
+     */
+    public static OpenRouterShapeStore load(File file, int[] edgeShapeRefs) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+        {
+            int edgeCount = in.readInt();
+            if (edgeCount != edgeShapeRefs.length)
+            {
+                throw new IOException("Shape file has " + edgeCount + " edges, graph has " + edgeShapeRefs.length);
+            }
+            for (int i = 0; i < edgeCount; i++) edgeShapeRefs[i] = in.readInt();
+
+            OpenRouterShapeStore store = new OpenRouterShapeStore();
+            store.shapeCount = in.readInt();
+            store.pointCount = in.readInt();
+            store.offsets = new int[store.shapeCount + 1];
+            for (int shape = 0; shape < store.shapeCount; shape++)
+            {
+                store.offsets[shape + 1] = store.offsets[shape] + readVarint(in);
+            }
+            store.latitudes = new int[Math.max(1, store.pointCount)];
+            store.longitudes = new int[Math.max(1, store.pointCount)];
+            int lat = 0, lon = 0;
+            for (int i = 0; i < store.pointCount; i++)
+            {
+                lat += unzigzag(readVarint(in));
+                lon += unzigzag(readVarint(in));
+                store.latitudes[i] = lat;
+                store.longitudes[i] = lon;
+            }
+            OpenRouterLog.d(TAG, "Loaded " + store.shapeCount + " shapes with " + store.pointCount + " points");
+            return store;
+        }
+    }
+
+    /**
+     * Writes a shape file sequentially without keeping the shapes in memory.
+     * Shapes and edge references are spilled to temporary files and combined into the
+     * format of {@link #save(File, OpenRouterShapeStore, List)} by {@link #finish(File)}.
+     */
+    public static class SequentialWriter implements Closeable
+    {
+        private final File refsFile;
+        private final File countsFile;
+        private final File pointsFile;
+        private final DataOutputStream refs;
+        private final DataOutputStream counts;
+        private final DataOutputStream points;
+        private int edgeCount;
+        private int shapeCount;
+        private int pointCount;
+        private int lastLat, lastLon;
+
+        /**
+         * Creates a new SequentialWriter.
+         * @param tempDir the directory for temporary files
+         * @throws IOException if the temporary files cannot be created
+         */
+        public SequentialWriter(File tempDir) throws IOException
+        {
+            refsFile = File.createTempFile("shape-refs", ".bin", tempDir);
+            countsFile = File.createTempFile("shape-counts", ".bin", tempDir);
+            pointsFile = File.createTempFile("shape-points", ".bin", tempDir);
+            refs = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(refsFile), 1 << 16));
+            counts = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(countsFile), 1 << 16));
+            points = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pointsFile), 1 << 16));
+        }
+
+        /**
+         * Adds a shape.
+         * @param latitudesE6 the latitudes of the shape points in E6 format
+         * @param longitudesE6 the longitudes of the shape points in E6 format
+         * @param count the number of points
+         * @return the shape ID
+         * @throws IOException if writing fails
+         */
+        public int addShape(int[] latitudesE6, int[] longitudesE6, int count) throws IOException
+        {
+            writeVarint(counts, count);
+            for (int i = 0; i < count; i++)
+            {
+                writeVarint(points, zigzag(latitudesE6[i] - lastLat));
+                writeVarint(points, zigzag(longitudesE6[i] - lastLon));
+                lastLat = latitudesE6[i];
+                lastLon = longitudesE6[i];
+            }
+            pointCount += count;
+            return shapeCount++;
+        }
+
+        /**
+         * Returns the number of points of all added shapes.
+         * @return the number of points
+         */
+        public int getPointCount()
+        {
+            return pointCount;
+        }
+
+        /**
+         * Adds the shape reference of the next edge, in the order of the edges in the graph file.
+         * @param shapeRef the shape reference
+         * @throws IOException if writing fails
+         */
+        public void addEdge(int shapeRef) throws IOException
+        {
+            refs.writeInt(shapeRef);
+            edgeCount++;
+        }
+
+        /**
+         * Writes the shape file.
+         * @param file the shape file
+         * @throws IOException if writing fails
+         */
+        public void finish(File file) throws IOException
+        {
+            refs.close();
+            counts.close();
+            points.close();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+            {
+                out.writeInt(edgeCount);
+                Files.copy(refsFile.toPath(), out);
+                out.writeInt(shapeCount);
+                out.writeInt(pointCount);
+                Files.copy(countsFile.toPath(), out);
+                Files.copy(pointsFile.toPath(), out);
+            }
+            OpenRouterLog.d(TAG, "Saved " + shapeCount + " shapes with " + pointCount + " points");
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            refs.close();
+            counts.close();
+            points.close();
+            refsFile.delete();
+            countsFile.delete();
+            pointsFile.delete();
+        }
+    }
+
+    private static int zigzag(int value)
+    {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -1,5 +1,6 @@
 package de.riemerjonas.openrouter.core;
 
+import de.riemerjonas.openrouter.core.geometry.ORDistance;
 import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
 
 import java.io.*;
@@ -7,13 +8,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
 
 public class OpenRouterTileMap
 {
     private static final String TAG = "OpenRouterTileMap";
     private static final double TILE_FACTOR = 10;
+    private static final ThreadLocal<double[]> distanceBuffer = ThreadLocal.withInitial(() -> new double[1024]);
 
     private final Map<Short, List<OpenRouterNode>> tileMap;
+    // coordinates of the tiles as primitive arrays, packed on the first nearest node query
+    private final Map<Short, PackedTile> packedTiles = new ConcurrentHashMap<>();
 
     public OpenRouterTileMap(Map<Short, List<OpenRouterNode>> tileMap)
     {
@@ -65,19 +71,41 @@ public class OpenRouterTileMap
     }
 
     public OpenRouterNode getNearestNode(double latitude, double longitude)
+    {
+        return getNearestNode(latitude, longitude, id -> true);
+    }
+
+    /**
+     * Returns the nearest node to the given latitude and longitude which is accepted by the filter.
+     * @param latitude is the latitude in degrees
+     * @param longitude is the longitude in degrees
+     * @param filter accepts node IDs
+     * @return the nearest accepted node or null if the tile has none
+     */
+    public OpenRouterNode getNearestNode(double latitude, double longitude, IntPredicate filter)
     {
         short tileID = getTileID(latitude, longitude);
-        List<OpenRouterNode> nodes = getNodesInTile(tileID);
+        PackedTile tile = packedTiles.computeIfAbsent(tileID, id -> new PackedTile(getNodesInTile(id)));
+        int latitudeE6 = (int) Math.round(latitude * 1E6);
+        int longitudeE6 = (int) Math.round(longitude * 1E6);
+        double[] distances = distanceBuffer.get();
+        if (distances.length < tile.nodes.length)
+        {
+            distances = new double[tile.nodes.length];
+            distanceBuffer.set(distances);
+        }
+        // ranked by the flat approximation, callers measure the distance to the result exactly
+        ORDistance.flatSquared(latitudeE6, longitudeE6, ORDistance.cosLatitudeE6(latitudeE6),
+                tile.latitudes, tile.longitudes, tile.nodes.length, distances);
+
         OpenRouterNode nearestNode = null;
         double minDistance = Double.MAX_VALUE;
-
-        for (OpenRouterNode node : nodes)
+        for (int i = 0; i < tile.nodes.length; i++)
         {
-            double distance = node.distanceTo(new OpenRouterPoint(latitude, longitude));
-            if (distance < minDistance)
+            if (distances[i] < minDistance && filter.test(tile.nodes[i].getId()))
             {
-                minDistance = distance;
-                nearestNode = node;
+                minDistance = distances[i];
+                nearestNode = tile.nodes[i];
             }
         }
         return nearestNode;
@@ -246,4 +274,26 @@ public class OpenRouterTileMap
             this.length = length;
         }
     }
+
+    /**
+     * Nodes of a tile with their coordinates in primitive arrays.
+     */
+    private static final class PackedTile
+    {
+        final OpenRouterNode[] nodes;
+        final int[] latitudes;
+        final int[] longitudes;
+
+        PackedTile(List<OpenRouterNode> nodes)
+        {
+            this.nodes = nodes.toArray(new OpenRouterNode[0]);
+            this.latitudes = new int[this.nodes.length];
+            this.longitudes = new int[this.nodes.length];
+            for (int i = 0; i < this.nodes.length; i++)
+            {
+                latitudes[i] = this.nodes[i].getLatitudeE6();
+                longitudes[i] = this.nodes[i].getLongitudeE6();
+            }
+        }
+    }
 }
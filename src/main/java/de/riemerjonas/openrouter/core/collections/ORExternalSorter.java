@@ -0,0 +1,322 @@
+package de.riemerjonas.openrouter.core.collections;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorts records of a fixed number of longs that may not fit into memory.
+ * Records are collected in a buffer of at most {@code memoryBytes}, full buffers are sorted and written to
+ * temporary run files. Reading merges all runs with a k-way merge. Records are ordered by their first long,
+ * ties by the following ones.
+ * <p>
+ * Usage: {@link #add} all records, then {@link #reader()} once. {@link #close()} deletes the run files.
+ */
+public class ORExternalSorter implements Closeable
+{
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int IO_BUFFER = 1 << 16;
+
+    private final int width;
+    private final long maxLongs;
+    private final File tempDir;
+    private final List<File> runs = new ArrayList<>();
+
+    private long[] buffer;
+    private int bufferLongs;
+    private long size;
+
+    /**
+     * Creates a new ORExternalSorter.
+     * @param width the number of longs per record
+     * @param memoryBytes the maximum size of the in-memory buffer
+     * @param tempDir the directory for run files
+     */
+    public ORExternalSorter(int width, long memoryBytes, File tempDir)
+    {
+        if (width < 1) throw new IllegalArgumentException("Record width must be positive");
+        this.width = width;
+        long longs = Math.min(Integer.MAX_VALUE - 8, Math.max(width * 1024L, memoryBytes / Long.BYTES));
+        this.maxLongs = longs - longs % width;
+        this.tempDir = tempDir;
+        this.buffer = new long[(int) Math.min(maxLongs, INITIAL_CAPACITY - INITIAL_CAPACITY % width)];
+    }
+
+    public void add(long key) throws IOException
+    {
+        ensureSpace();
+        buffer[bufferLongs++] = key;
+        size++;
+    }
+
+    public void add(long key, long value) throws IOException
+    {
+        ensureSpace();
+        buffer[bufferLongs++] = key;
+        buffer[bufferLongs++] = value;
+        size++;
+    }
+
+    public void add(long key, long value1, long value2) throws IOException
+    {
+        ensureSpace();
+        buffer[bufferLongs++] = key;
+        buffer[bufferLongs++] = value1;
+        buffer[bufferLongs++] = value2;
+        size++;
+    }
+
+    public void add(long key, long value1, long value2, long value3) throws IOException
+    {
+        ensureSpace();
+        buffer[bufferLongs++] = key;
+        buffer[bufferLongs++] = value1;
+        buffer[bufferLongs++] = value2;
+        buffer[bufferLongs++] = value3;
+        size++;
+    }
+
+    /**
+     * Returns the number of added records.
+     * @return the number of records
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of run files written so far.
+     * @return the number of runs
+     */
+    public int getRunCount()
+    {
+        return runs.size();
+    }
+
+    private void ensureSpace() throws IOException
+    {
+        if (bufferLongs + width <= buffer.length) return;
+        if (buffer.length < maxLongs)
+        {
+            long capacity = Math.min(maxLongs, (long) buffer.length * 2);
+            buffer = Arrays.copyOf(buffer, (int) capacity);
+            return;
+        }
+        spill();
+    }
+
+    private void spill() throws IOException
+    {
+        sort(0, bufferLongs / width - 1);
+        File run = File.createTempFile("run", ".bin", tempDir);
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), IO_BUFFER)))
+        {
+            for (int i = 0; i < bufferLongs; i++) out.writeLong(buffer[i]);
+        }
+        bufferLongs = 0;
+    }
+
+    /**
+     * Returns a reader over all records in sorted order. No records may be added afterwards.
+     * @return the reader
+     * @throws IOException if writing the last run or opening the runs fails
+     */
+    public Reader reader() throws IOException
+    {
+        if (runs.isEmpty())
+        {
+            sort(0, bufferLongs / width - 1);
+            return new MemoryReader();
+        }
+        if (bufferLongs > 0) spill();
+        buffer = new long[0];
+        return new MergeReader();
+    }
+
+    @Override
+    public void close()
+    {
+        buffer = new long[0];
+        bufferLongs = 0;
+        for (File run : runs) run.delete();
+        runs.clear();
+    }
+
+    // --- in-memory sort of whole records ---
+
+    private void sort(int low, int high)
+    {
+        while (high - low > 16)
+        {
+            int pivot = partition(low, high);
+            if (pivot - low < high - pivot)
+            {
+                sort(low, pivot - 1);
+                low = pivot + 1;
+            }
+            else
+            {
+                sort(pivot + 1, high);
+                high = pivot - 1;
+            }
+        }
+        for (int i = low + 1; i <= high; i++)
+        {
+            for (int j = i; j > low && compare(j - 1, j) > 0; j--) swap(j - 1, j);
+        }
+    }
+
+    private int partition(int low, int high)
+    {
+        swap((low + high) >>> 1, high);
+        int store = low;
+        for (int i = low; i < high; i++)
+        {
+            if (compare(i, high) < 0) swap(i, store++);
+        }
+        swap(store, high);
+        return store;
+    }
+
+    private int compare(int a, int b)
+    {
+        int offsetA = a * width;
+        int offsetB = b * width;
+        for (int k = 0; k < width; k++)
+        {
+            int c = Long.compare(buffer[offsetA + k], buffer[offsetB + k]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    private void swap(int a, int b)
+    {
+        if (a == b) return;
+        int offsetA = a * width;
+        int offsetB = b * width;
+        for (int k = 0; k < width; k++)
+        {
+            long t = buffer[offsetA + k];
+            buffer[offsetA + k] = buffer[offsetB + k];
+            buffer[offsetB + k] = t;
+        }
+    }
+
+    /**
+     * Reads sorted records.
+     */
+    public interface Reader extends Closeable
+    {
+        /**
+         * Reads the next record.
+         * @param record receives the record, must have the width of the sorter
+         * @return false if there are no more records
+         * @throws IOException if reading a run fails
+         */
+        boolean next(long[] record) throws IOException;
+
+        @Override
+        default void close() throws IOException
+        {
+        }
+    }
+
+    private class MemoryReader implements Reader
+    {
+        private int position;
+
+        @Override
+        public boolean next(long[] record)
+        {
+            if (position >= bufferLongs) return false;
+            System.arraycopy(buffer, position, record, 0, width);
+            position += width;
+            return true;
+        }
+    }
+
+    /**
+     * Merges the runs with a binary min-heap of run indices.
+     */
+    private class MergeReader implements Reader
+    {
+        private final DataInputStream[] inputs;
+        private final long[][] heads;
+        private final int[] heap;
+        private int heapSize;
+
+        MergeReader() throws IOException
+        {
+            inputs = new DataInputStream[runs.size()];
+            heads = new long[runs.size()][width];
+            heap = new int[runs.size()];
+            for (int i = 0; i < runs.size(); i++)
+            {
+                inputs[i] = new DataInputStream(new BufferedInputStream(new FileInputStream(runs.get(i)), IO_BUFFER));
+                if (readHead(i)) heap[heapSize++] = i;
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; i--) siftDown(i);
+        }
+
+        private boolean readHead(int run) throws IOException
+        {
+            try
+            {
+                for (int k = 0; k < width; k++) heads[run][k] = inputs[run].readLong();
+                return true;
+            }
+            catch (EOFException e)
+            {
+                return false;
+            }
+        }
+
+        @Override
+        public boolean next(long[] record) throws IOException
+        {
+            if (heapSize == 0) return false;
+            int run = heap[0];
+            System.arraycopy(heads[run], 0, record, 0, width);
+            if (!readHead(run)) heap[0] = heap[--heapSize];
+            siftDown(0);
+            return true;
+        }
+
+        private void siftDown(int i)
+        {
+            while (true)
+            {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < heapSize && less(heap[left], heap[smallest])) smallest = left;
+                if (right < heapSize && less(heap[right], heap[smallest])) smallest = right;
+                if (smallest == i) return;
+                int t = heap[i];
+                heap[i] = heap[smallest];
+                heap[smallest] = t;
+                i = smallest;
+            }
+        }
+
+        private boolean less(int runA, int runB)
+        {
+            for (int k = 0; k < width; k++)
+            {
+                int c = Long.compare(heads[runA][k], heads[runB][k]);
+                if (c != 0) return c < 0;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            for (DataInputStream in : inputs) in.close();
+        }
+    }
+}
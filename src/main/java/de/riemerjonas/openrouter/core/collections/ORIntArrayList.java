@@ -0,0 +1,59 @@
+package de.riemerjonas.openrouter.core.collections;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints.
+ */
+public class ORIntArrayList
+{
+    private int[] values;
+    private int size;
+
+    public ORIntArrayList()
+    {
+        this(1024);
+    }
+
+    public ORIntArrayList(int capacity)
+    {
+        this.values = new int[Math.max(1, capacity)];
+    }
+
+    public void add(int value)
+    {
+        if (size == values.length) values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        values[size++] = value;
+    }
+
+    public int get(int index)
+    {
+        if (index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        return values[index];
+    }
+
+    public void set(int index, int value)
+    {
+        if (index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        values[index] = value;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Returns a copy of the values.
+     * @return the values
+     */
+    public int[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,93 @@
+package de.riemerjonas.openrouter.core.collections;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Growable list of primitive longs.
+ */
+public class ORLongArrayList
+{
+    private long[] values;
+    private int size;
+
+    public ORLongArrayList()
+    {
+        this(1024);
+    }
+
+    public ORLongArrayList(int capacity)
+    {
+        this.values = new long[Math.max(1, capacity)];
+    }
+
+    public void add(long value)
+    {
+        if (size == values.length) values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        values[size++] = value;
+    }
+
+    public long get(int index)
+    {
+        if (index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        return values[index];
+    }
+
+    public void set(int index, long value)
+    {
+        if (index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        values[index] = value;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Returns a copy of the values.
+     * @return the values
+     */
+    public long[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Sorts the values, removes duplicates and releases the internal buffer.
+     * The list is empty afterwards.
+     * @return the sorted, duplicate free values
+     */
+    public ORSortedLongArray toSortedArray()
+    {
+        return toSortedArray(null);
+    }
+
+    /**
+     * Sorts the values, removes duplicates and releases the internal buffer.
+     * The list is empty afterwards.
+     * @param duplicates receives the index of every value that occurred more than once, may be null
+     * @return the sorted, duplicate free values
+     */
+    public ORSortedLongArray toSortedArray(BitSet duplicates)
+    {
+        long[] sorted = values;
+        int length = size;
+        values = new long[1];
+        size = 0;
+
+        Arrays.parallelSort(sorted, 0, length);
+        int unique = 0;
+        for (int i = 0; i < length; i++)
+        {
+            if (unique == 0 || sorted[unique - 1] != sorted[i]) sorted[unique++] = sorted[i];
+            else if (duplicates != null) duplicates.set(unique - 1);
+        }
+        return new ORSortedLongArray(unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique));
+    }
+}
@@ -0,0 +1,141 @@
+package de.riemerjonas.openrouter.core.collections;
+
+import java.util.Arrays;
+
+/**
+ * Map from long keys to int values for a fixed key set, e.g. OSM node IDs to graph node IDs.
+ * Keys are a {@link ORSortedLongArray}, values are stored by the dense key index in pages of
+ * {@value #PAGE_SIZE} ints, so no single huge array is needed. Needs 12 bytes per entry.
+ */
+public class ORLongIntArrayMap
+{
+    private static final int PAGE_SHIFT = 20;
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    public static final int NO_VALUE = -1;
+
+    private final ORSortedLongArray keys;
+    private final int[][] pages;
+
+    /**
+     * Creates a new ORLongIntArrayMap with all values set to {@link #NO_VALUE}.
+     * @param keys the key set
+     */
+    public ORLongIntArrayMap(ORSortedLongArray keys)
+    {
+        this.keys = keys;
+        this.pages = new int[(keys.size() + PAGE_SIZE - 1) >>> PAGE_SHIFT][];
+        for (int i = 0; i < pages.length; i++)
+        {
+            int length = Math.min(PAGE_SIZE, keys.size() - (i << PAGE_SHIFT));
+            pages[i] = new int[length];
+            Arrays.fill(pages[i], NO_VALUE);
+        }
+    }
+
+    /**
+     * Creates a map from unsorted key value pairs.
+     * @param keys the keys, must be unique
+     * @param values the values
+     * @return the map
+     */
+    public static ORLongIntArrayMap fromUnsorted(long[] keys, int[] values)
+    {
+        long[] sortedKeys = Arrays.copyOf(keys, keys.length);
+        int[] sortedValues = Arrays.copyOf(values, values.length);
+        sort(sortedKeys, sortedValues, 0, sortedKeys.length - 1);
+
+        ORLongIntArrayMap map = new ORLongIntArrayMap(new ORSortedLongArray(sortedKeys));
+        for (int i = 0; i < sortedValues.length; i++) map.setByIndex(i, sortedValues[i]);
+        return map;
+    }
+
+    public ORSortedLongArray getKeys()
+    {
+        return keys;
+    }
+
+    public int size()
+    {
+        return keys.size();
+    }
+
+    /**
+     * Returns the value of the given key.
+     * @param key the key
+     * @return the value or {@link #NO_VALUE}
+     */
+    public int get(long key)
+    {
+        int index = keys.indexOf(key);
+        return index < 0 ? NO_VALUE : getByIndex(index);
+    }
+
+    /**
+     * Sets the value of the given key.
+     * @param key the key
+     * @param value the value
+     * @return false if the key is not part of the key set
+     */
+    public boolean put(long key, int value)
+    {
+        int index = keys.indexOf(key);
+        if (index < 0) return false;
+        setByIndex(index, value);
+        return true;
+    }
+
+    public int getByIndex(int index)
+    {
+        return pages[index >>> PAGE_SHIFT][index & (PAGE_SIZE - 1)];
+    }
+
+    public void setByIndex(int index, int value)
+    {
+        pages[index >>> PAGE_SHIFT][index & (PAGE_SIZE - 1)] = value;
+    }
+
+    private static void sort(long[] keys, int[] values, int low, int high)
+    {
+        while (high - low > 16)
+        {
+            long pivot = medianOfThree(keys[low], keys[(low + high) >>> 1], keys[high]);
+            int i = low, j = high;
+            while (i <= j)
+            {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) swap(keys, values, i++, j--);
+            }
+            // recurse into the smaller part to bound the stack depth
+            if (j - low < high - i)
+            {
+                sort(keys, values, low, j);
+                low = i;
+            }
+            else
+            {
+                sort(keys, values, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++)
+        {
+            for (int j = i; j > low && keys[j - 1] > keys[j]; j--) swap(keys, values, j, j - 1);
+        }
+    }
+
+    private static long medianOfThree(long a, long b, long c)
+    {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(long[] keys, int[] values, int i, int j)
+    {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
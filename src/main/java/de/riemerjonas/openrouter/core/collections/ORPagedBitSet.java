@@ -0,0 +1,103 @@
+package de.riemerjonas.openrouter.core.collections;
+
+import java.util.Arrays;
+
+/**
+ * Sparse bit set for non-negative long keys such as OSM IDs.
+ * Bits are stored in pages of {@value #PAGE_BITS} bits which are only allocated when a bit in them is set,
+ * so memory grows with the number of occupied key ranges instead of the largest key.
+ */
+public class ORPagedBitSet
+{
+    private static final int PAGE_SHIFT = 16;
+    public static final int PAGE_BITS = 1 << PAGE_SHIFT;
+    private static final int WORDS_PER_PAGE = PAGE_BITS >>> 6;
+
+    private long[][] pages = new long[16][];
+    private long cardinality;
+
+    /**
+     * Sets the bit of the given key.
+     * @param key the key, must not be negative
+     * @return true if the bit was not set before
+     */
+    public boolean set(long key)
+    {
+        if (key < 0) throw new IllegalArgumentException("Negative key: " + key);
+        int pageIndex = pageIndex(key);
+        if (pageIndex >= pages.length) pages = Arrays.copyOf(pages, Math.max(pageIndex + 1, pages.length * 2));
+
+        long[] page = pages[pageIndex];
+        if (page == null) page = pages[pageIndex] = new long[WORDS_PER_PAGE];
+
+        int word = (int) ((key & (PAGE_BITS - 1)) >>> 6);
+        long mask = 1L << key;
+        if ((page[word] & mask) != 0) return false;
+        page[word] |= mask;
+        cardinality++;
+        return true;
+    }
+
+    /**
+     * Clears the bit of the given key.
+     * @param key the key
+     * @return true if the bit was set before
+     */
+    public boolean clear(long key)
+    {
+        long[] page = page(key);
+        if (page == null) return false;
+
+        int word = (int) ((key & (PAGE_BITS - 1)) >>> 6);
+        long mask = 1L << key;
+        if ((page[word] & mask) == 0) return false;
+        page[word] &= ~mask;
+        cardinality--;
+        return true;
+    }
+
+    /**
+     * Returns true if the bit of the given key is set.
+     * @param key the key
+     * @return true if set
+     */
+    public boolean get(long key)
+    {
+        long[] page = page(key);
+        return page != null && (page[(int) ((key & (PAGE_BITS - 1)) >>> 6)] & (1L << key)) != 0;
+    }
+
+    /**
+     * Returns the number of set bits.
+     * @return the cardinality
+     */
+    public long cardinality()
+    {
+        return cardinality;
+    }
+
+    /**
+     * Returns the number of allocated pages.
+     * @return the page count
+     */
+    public int getPageCount()
+    {
+        int count = 0;
+        for (long[] page : pages) if (page != null) count++;
+        return count;
+    }
+
+    private long[] page(long key)
+    {
+        if (key < 0) return null;
+        int pageIndex = pageIndex(key);
+        return pageIndex < pages.length ? pages[pageIndex] : null;
+    }
+
+    private static int pageIndex(long key)
+    {
+        long index = key >>> PAGE_SHIFT;
+        if (index > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Key too large: " + key);
+        return (int) index;
+    }
+}
@@ -0,0 +1,103 @@
+package de.riemerjonas.openrouter.core.collections;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of longs stored as a sorted array.
+ * Needs 8 bytes per entry and maps every key to a dense index in [0, size).
+ */
+public class ORSortedLongArray
+{
+    private final long[] keys;
+
+    /**
+     * Creates a new ORSortedLongArray.
+     * @param sortedKeys the keys in strictly ascending order, the array is not copied
+     */
+    public ORSortedLongArray(long[] sortedKeys)
+    {
+        this.keys = sortedKeys;
+    }
+
+    public int size()
+    {
+        return keys.length;
+    }
+
+    public long get(int index)
+    {
+        return keys[index];
+    }
+
+    /**
+     * Returns the dense index of the given key.
+     * @param key the key
+     * @return the index or -1 if the key is not contained
+     */
+    public int indexOf(long key)
+    {
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? index : -1;
+    }
+
+    public boolean contains(long key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns a cursor for lookups with ascending keys, e.g. the sorted node IDs of a PBF file.
+     * @return a new cursor
+     */
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    /**
+     * Looks up ascending keys by advancing through the array instead of searching it.
+     * Costs O(n + m) for m ascending lookups. Falls back to binary search if a key is smaller than its predecessor.
+     */
+    public class Cursor
+    {
+        private int position;
+        private long lastKey = Long.MIN_VALUE;
+
+        /**
+         * Returns the dense index of the given key.
+         * @param key the key
+         * @return the index or -1 if the key is not contained
+         */
+        public int indexOf(long key)
+        {
+            if (key < lastKey)
+            {
+                int index = Arrays.binarySearch(keys, key);
+                position = index >= 0 ? index : -index - 1;
+                lastKey = key;
+                return Math.max(index, -1);
+            }
+            lastKey = key;
+
+            // gallop forward, then binary search in the last step
+            int step = 1;
+            int low = position;
+            while (position < keys.length && keys[position] < key)
+            {
+                low = position;
+                position = Math.min(keys.length, position + step);
+                step <<= 1;
+            }
+            if (position < keys.length && keys[position] == key) return position;
+
+            int index = Arrays.binarySearch(keys, low, position, key);
+            if (index >= 0)
+            {
+                position = index;
+                return index;
+            }
+            position = -index - 1;
+            return -1;
+        }
+    }
+}
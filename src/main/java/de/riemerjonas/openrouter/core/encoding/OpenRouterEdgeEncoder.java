@@ -0,0 +1,94 @@
+package de.riemerjonas.openrouter.core.encoding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of all bit fields inside the 64-bit packed edge attribute word.
+ * The standard fields are registered on class load in a fixed order, so the layout
+ * is identical for import, serialization and routing profiles.
+ * The standard fields use all 64 bits, {@link #register} throws for any additional field. Adding one requires
+ * narrowing a standard field, which changes the layout of saved graphs.
+ */
+public final class OpenRouterEdgeEncoder
+{
+    private static final Map<String, OpenRouterEdgeField> fields = new LinkedHashMap<>();
+    private static int usedBits = 0;
+
+    /** Distance in decimeters, up to ~1677 km. */
+    public static final OpenRouterEdgeField DISTANCE_DM = register("distance_dm", 24);
+    /** Maximum speed in km/h. */
+    public static final OpenRouterEdgeField SPEED_KMH = register("speed_kmh", 8);
+    /** Road class, see {@link de.riemerjonas.openrouter.core.types.RoadClass}. */
+    public static final OpenRouterEdgeField ROAD_CLASS = register("road_class", 4);
+    /** Access flags per vehicle, see {@link de.riemerjonas.openrouter.core.types.VehicleType}. */
+    public static final OpenRouterEdgeField ACCESS = register("access", 3);
+    /** Edge belongs to a oneway street. */
+    public static final OpenRouterEdgeField ONEWAY = register("oneway", 1);
+    /** Edge belongs to a roundabout. */
+    public static final OpenRouterEdgeField ROUNDABOUT = register("roundabout", 1);
+    /** Edge is a toll road. */
+    public static final OpenRouterEdgeField TOLL = register("toll", 1);
+    /** Additional time penalty in seconds. */
+    public static final OpenRouterEdgeField TIME_PENALTY = register("time_penalty", 10);
+    /** Bearing when leaving the start node, in 64 steps clockwise from north. */
+    public static final OpenRouterEdgeField START_BEARING = register("start_bearing", 6);
+    /** Bearing when arriving at the end node, in 64 steps clockwise from north. */
+    public static final OpenRouterEdgeField END_BEARING = register("end_bearing", 6);
+
+    private OpenRouterEdgeEncoder() {}
+
+    /**
+     * Registers a new field in the next free bits. The standard fields leave none.
+     * @param name the unique name of the field
+     * @param bits the number of bits
+     * @return the registered field
+     * @throws IllegalStateException if the name is taken or the word has not enough free bits
+     */
+    public static synchronized OpenRouterEdgeField register(String name, int bits)
+    {
+        if (fields.containsKey(name))
+        {
+            throw new IllegalStateException("Edge field already registered: " + name);
+        }
+        if (usedBits + bits > 64)
+        {
+            throw new IllegalStateException("Not enough free bits for edge field " + name + " (" + (64 - usedBits) + " left)");
+        }
+        OpenRouterEdgeField field = new OpenRouterEdgeField(name, usedBits, bits);
+        fields.put(name, field);
+        usedBits += bits;
+        return field;
+    }
+
+    /**
+     * Returns the field with the given name.
+     * @param name the name of the field
+     * @return the field or null if not registered
+     */
+    public static synchronized OpenRouterEdgeField getField(String name)
+    {
+        return fields.get(name);
+    }
+
+    /**
+     * Returns all registered fields in layout order.
+     * @return the registered fields
+     */
+    public static synchronized List<OpenRouterEdgeField> getFields()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(fields.values()));
+    }
+
+    /**
+     * Returns the number of bits not yet assigned to a field.
+     * @return the number of free bits
+     */
+    public static synchronized int getFreeBits()
+    {
+        return 64 - usedBits;
+    }
+}
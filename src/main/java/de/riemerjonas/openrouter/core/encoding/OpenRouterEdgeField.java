@@ -0,0 +1,127 @@
+package de.riemerjonas.openrouter.core.encoding;
+
+/**
+ * Represents a named bit field inside the 64-bit packed edge attribute word.
+ * Values are stored unsigned and clamped to the maximum value of the field.
+ */
+public final class OpenRouterEdgeField
+{
+    private final String name;
+    private final int shift;
+    private final int bits;
+    private final long mask;
+
+    /**
+     * Creates a new OpenRouterEdgeField.
+     * @param name the name of the field
+     * @param shift the position of the lowest bit
+     * @param bits the number of bits
+     */
+    OpenRouterEdgeField(String name, int shift, int bits)
+    {
+        if (bits < 1 || shift < 0 || shift + bits > 64)
+        {
+            throw new IllegalArgumentException("Invalid field layout for " + name + ": shift=" + shift + ", bits=" + bits);
+        }
+        this.name = name;
+        this.shift = shift;
+        this.bits = bits;
+        this.mask = bits == 64 ? -1L : (1L << bits) - 1;
+    }
+
+    /**
+     * Returns the name of this field.
+     * @return the name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the position of the lowest bit of this field.
+     * @return the shift
+     */
+    public int getShift()
+    {
+        return shift;
+    }
+
+    /**
+     * Returns the number of bits of this field.
+     * @return the number of bits
+     */
+    public int getBits()
+    {
+        return bits;
+    }
+
+    /**
+     * Returns the largest value this field can hold.
+     * @return the maximum value
+     */
+    public long getMaxValue()
+    {
+        return mask;
+    }
+
+    /**
+     * Reads the value of this field from the packed word.
+     * @param packed the packed edge attributes
+     * @return the value of this field
+     */
+    public long get(long packed)
+    {
+        return (packed >>> shift) & mask;
+    }
+
+    /**
+     * Reads the value of this field as int.
+     * @param packed the packed edge attributes
+     * @return the value of this field
+     */
+    public int getInt(long packed)
+    {
+        return (int) ((packed >>> shift) & mask);
+    }
+
+    /**
+     * Reads this field as flag.
+     * @param packed the packed edge attributes
+     * @return true if any bit of the field is set
+     */
+    public boolean getFlag(long packed)
+    {
+        return ((packed >>> shift) & mask) != 0;
+    }
+
+    /**
+     * Writes the value into the packed word. Values outside of the field range are clamped, a field of 64 bits
+     * holds every value as unsigned.
+     * @param packed the packed edge attributes
+     * @param value the value to write
+     * @return the new packed edge attributes
+     */
+    public long set(long packed, long value)
+    {
+        long clamped = bits == 64 ? value : Math.max(0, Math.min(mask, value));
+        return (packed & ~(mask << shift)) | (clamped << shift);
+    }
+
+    /**
+     * Writes a flag into the packed word.
+     * @param packed the packed edge attributes
+     * @param flag the flag to write
+     * @return the new packed edge attributes
+     */
+    public long setFlag(long packed, boolean flag)
+    {
+        return set(packed, flag ? 1 : 0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + "[" + shift + ".." + (shift + bits - 1) + "]";
+    }
+}
@@ -0,0 +1,112 @@
+package de.riemerjonas.openrouter.core.geometry;
+
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+/**
+ * Fast distance approximations on E6 coordinates, for ranking candidates and for short segments.
+ * <p>
+ * The equirectangular projection scales longitude differences by the cosine of the latitude, which is read from a
+ * table in bands of 0.1 degrees and interpolated linearly, with an error below 4E-7. Up to some kilometers the
+ * distances differ from {@link IGeoCoordinate#haversine} by less than 1E-5 relative, without any trigonometric call.
+ * Reported distances should still use the haversine formula.
+ * <p>
+ * The batch method is a plain counted loop over primitive arrays without branches or calls, which the JIT compiles
+ * to SIMD instructions.
+ */
+public final class ORDistance
+{
+    public static final double EARTH_RADIUS_METER = 6371000;
+    public static final double METERS_PER_DEGREE = EARTH_RADIUS_METER * Math.PI / 180;
+    /** Meters per E6 unit of latitude. */
+    public static final double METERS_PER_E6 = METERS_PER_DEGREE / 1E6;
+    private static final int E6_PER_BAND = 100000;
+    private static final double[] COS_TABLE = new double[180 * 1000000 / E6_PER_BAND + 2];
+
+    static
+    {
+        for (int i = 0; i < COS_TABLE.length; i++)
+        {
+            COS_TABLE[i] = Math.cos(Math.toRadians(-90 + i * (E6_PER_BAND / 1E6)));
+        }
+    }
+
+    private ORDistance()
+    {
+    }
+
+    /**
+     * Returns the cosine of a latitude.
+     * @param latitudeE6 the latitude in E6 format, -90 to 90 degrees
+     * @return the cosine, at least 0
+     */
+    public static double cosLatitudeE6(int latitudeE6)
+    {
+        int offset = Math.max(0, Math.min(180000000, latitudeE6 + 90000000));
+        int band = offset / E6_PER_BAND;
+        double fraction = (offset - band * E6_PER_BAND) / (double) E6_PER_BAND;
+        return COS_TABLE[band] + (COS_TABLE[band + 1] - COS_TABLE[band]) * fraction;
+    }
+
+    /**
+     * Returns the equirectangular distance between two coordinates, scaled by the cosine of their mean latitude.
+     * @param latitude1E6 the latitude of the first coordinate
+     * @param longitude1E6 the longitude of the first coordinate
+     * @param latitude2E6 the latitude of the second coordinate
+     * @param longitude2E6 the longitude of the second coordinate
+     * @return the distance in meters
+     */
+    public static double flat(int latitude1E6, int longitude1E6, int latitude2E6, int longitude2E6)
+    {
+        double cosLat = cosLatitudeE6((int) (((long) latitude1E6 + latitude2E6) / 2));
+        double dx = (double) (longitude2E6 - longitude1E6) * cosLat;
+        double dy = latitude2E6 - latitude1E6;
+        return Math.sqrt(dx * dx + dy * dy) * METERS_PER_E6;
+    }
+
+    /**
+     * Returns a squared distance for ranking coordinates around an origin.
+     * @param latitudeE6 the latitude of the origin
+     * @param longitudeE6 the longitude of the origin
+     * @param cosLat the cosine of the latitude of the origin, see {@link #cosLatitudeE6(int)}
+     * @param otherLatitudeE6 the latitude of the other coordinate
+     * @param otherLongitudeE6 the longitude of the other coordinate
+     * @return the squared distance in E6 units of latitude, see {@link #toMeters(double)}
+     */
+    public static double flatSquared(int latitudeE6, int longitudeE6, double cosLat, int otherLatitudeE6, int otherLongitudeE6)
+    {
+        double dx = (double) (otherLongitudeE6 - longitudeE6) * cosLat;
+        double dy = otherLatitudeE6 - latitudeE6;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Computes {@link #flatSquared} for many coordinates at once.
+     * @param latitudeE6 the latitude of the origin
+     * @param longitudeE6 the longitude of the origin
+     * @param cosLat the cosine of the latitude of the origin, see {@link #cosLatitudeE6(int)}
+     * @param latitudesE6 the latitudes of the other coordinates
+     * @param longitudesE6 the longitudes of the other coordinates
+     * @param count the number of coordinates
+     * @param result receives the squared distances, at least count long
+     */
+    public static void flatSquared(int latitudeE6, int longitudeE6, double cosLat,
+                                   int[] latitudesE6, int[] longitudesE6, int count, double[] result)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            double dx = (double) (longitudesE6[i] - longitudeE6) * cosLat;
+            double dy = latitudesE6[i] - latitudeE6;
+            result[i] = dx * dx + dy * dy;
+        }
+    }
+
+    /**
+     * Converts a squared distance of {@link #flatSquared} to meters.
+     * @param flatSquared the squared distance
+     * @return the distance in meters
+     */
+    public static double toMeters(double flatSquared)
+    {
+        return Math.sqrt(flatSquared) * METERS_PER_E6;
+    }
+}
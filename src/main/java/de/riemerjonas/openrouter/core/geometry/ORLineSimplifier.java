@@ -0,0 +1,145 @@
+package de.riemerjonas.openrouter.core.geometry;
+
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Douglas-Peucker simplification of lines in E6 coordinates.
+ * <p>
+ * Distances are measured in a local equirectangular projection of the E6 values, with the longitude scaled by the
+ * cosine of the mean latitude. The split ranges are kept on an explicit stack instead of recursion, so long routes
+ * cannot overflow the call stack. The first and the last point are always kept.
+ */
+public final class ORLineSimplifier
+{
+    /** Meters per E6 unit of latitude. */
+    private static final double METERS_PER_E6 = 6371000 * Math.PI / 180 / 1E6;
+    /** Meters per pixel at the equator in zoom level 0 of 256 pixel web mercator tiles. */
+    private static final double METERS_PER_PIXEL_ZOOM_0 = 156543.034;
+    public static final int MAX_ZOOM = 24;
+
+    private ORLineSimplifier()
+    {
+    }
+
+    /**
+     * Returns the tolerance at which the simplification is invisible on a web map.
+     * @param zoom the web mercator zoom level, 0 to {@link #MAX_ZOOM}
+     * @param latitude the latitude of the line in degrees
+     * @return the size of one pixel in meters
+     */
+    public static double toleranceForZoom(int zoom, double latitude)
+    {
+        if (zoom < 0 || zoom > MAX_ZOOM) throw new IllegalArgumentException("Zoom must be between 0 and " + MAX_ZOOM);
+        return METERS_PER_PIXEL_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / (1 << zoom);
+    }
+
+    /**
+     * Simplifies a line.
+     * @param points the points of the line
+     * @param toleranceMeter the maximum distance of a removed point to the simplified line
+     * @return the kept points in their original order
+     */
+    public static <T extends IGeoCoordinate> List<T> simplify(List<T> points, double toleranceMeter)
+    {
+        int count = points.size();
+        int[] latitudes = new int[count];
+        int[] longitudes = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            latitudes[i] = points.get(i).getLatitudeE6();
+            longitudes[i] = points.get(i).getLongitudeE6();
+        }
+        int[] kept = simplify(latitudes, longitudes, count, toleranceMeter);
+        List<T> result = new ArrayList<>(kept.length);
+        for (int index : kept) result.add(points.get(index));
+        return result;
+    }
+
+    /**
+     * Simplifies a line.
+     * @param latitudesE6 the latitudes of the points
+     * @param longitudesE6 the longitudes of the points
+     * @param count the number of points
+     * @param toleranceMeter the maximum distance of a removed point to the simplified line
+     * @return the ascending indices of the kept points
+     */
+    public static int[] simplify(int[] latitudesE6, int[] longitudesE6, int count, double toleranceMeter)
+    {
+        if (count <= 2 || toleranceMeter <= 0)
+        {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) all[i] = i;
+            return all;
+        }
+
+        long latitudeSum = 0;
+        for (int i = 0; i < count; i++) latitudeSum += latitudesE6[i];
+        double lonScale = Math.cos(Math.toRadians(latitudeSum / (double) count / 1E6));
+        double tolerance = toleranceMeter / METERS_PER_E6;
+        double toleranceSq = tolerance * tolerance;
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        int keptCount = 2;
+        int[] stack = new int[64];
+        int size = 0;
+        stack[size++] = 0;
+        stack[size++] = count - 1;
+        while (size > 0)
+        {
+            int last = stack[--size];
+            int first = stack[--size];
+
+            double ax = longitudesE6[first] * lonScale;
+            double ay = latitudesE6[first];
+            double dx = longitudesE6[last] * lonScale - ax;
+            double dy = latitudesE6[last] - ay;
+            double lengthSq = dx * dx + dy * dy;
+            double maxSq = toleranceSq;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++)
+            {
+                double px = longitudesE6[i] * lonScale - ax;
+                double py = latitudesE6[i] - ay;
+                // distance to the segment, not the infinite line, so loops and turnarounds are kept
+                double t = lengthSq > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSq)) : 0;
+                double ex = px - t * dx;
+                double ey = py - t * dy;
+                double distanceSq = ex * ex + ey * ey;
+                if (distanceSq > maxSq)
+                {
+                    maxSq = distanceSq;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) continue;
+
+            keep[farthest] = true;
+            keptCount++;
+            if (size + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            if (farthest - first > 1)
+            {
+                stack[size++] = first;
+                stack[size++] = farthest;
+            }
+            if (last - farthest > 1)
+            {
+                stack[size++] = farthest;
+                stack[size++] = last;
+            }
+        }
+
+        int[] kept = new int[keptCount];
+        int n = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (keep[i]) kept[n++] = i;
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,75 @@
+package de.riemerjonas.openrouter.core.geometry;
+
+import de.riemerjonas.openrouter.core.OpenRouterPoint;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+import java.util.List;
+
+/**
+ * Polygon with holes. Rings are closed, the last point repeats the first one. The outer ring is counterclockwise and
+ * holes are clockwise, as required by GeoJSON.
+ */
+public final class ORPolygon
+{
+    /** Meters per E6 unit of latitude. */
+    private static final double METERS_PER_E6 = 6371000 * Math.PI / 180 / 1E6;
+
+    private final List<OpenRouterPoint> outer;
+    private final List<List<OpenRouterPoint>> holes;
+
+    /**
+     * Creates a new ORPolygon.
+     * @param outer the closed outer ring
+     * @param holes the closed holes
+     */
+    public ORPolygon(List<OpenRouterPoint> outer, List<List<OpenRouterPoint>> holes)
+    {
+        this.outer = outer;
+        this.holes = holes;
+    }
+
+    public List<OpenRouterPoint> getOuter()
+    {
+        return outer;
+    }
+
+    public List<List<OpenRouterPoint>> getHoles()
+    {
+        return holes;
+    }
+
+    /**
+     * Returns the area without the holes, in a local equirectangular projection.
+     * @return the area in square meters
+     */
+    public double getArea()
+    {
+        double area = Math.abs(getSignedArea(outer));
+        for (List<OpenRouterPoint> hole : holes) area -= Math.abs(getSignedArea(hole));
+        return area;
+    }
+
+    /**
+     * Returns the signed area of a closed ring, positive if counterclockwise.
+     * @param ring the ring
+     * @return the area in square meters
+     */
+    public static double getSignedArea(List<? extends IGeoCoordinate> ring)
+    {
+        if (ring.size() < 3) return 0;
+        IGeoCoordinate origin = ring.get(0);
+        double scaleLon = METERS_PER_E6 * Math.cos(Math.toRadians(origin.getLatitude()));
+        double sum = 0;
+        for (int i = 1; i < ring.size() - 1; i++)
+        {
+            IGeoCoordinate a = ring.get(i);
+            IGeoCoordinate b = ring.get(i + 1);
+            double ax = (a.getLongitudeE6() - origin.getLongitudeE6()) * scaleLon;
+            double ay = (a.getLatitudeE6() - origin.getLatitudeE6()) * METERS_PER_E6;
+            double bx = (b.getLongitudeE6() - origin.getLongitudeE6()) * scaleLon;
+            double by = (b.getLatitudeE6() - origin.getLatitudeE6()) * METERS_PER_E6;
+            sum += ax * by - bx * ay;
+        }
+        return sum / 2;
+    }
+}
@@ -54,16 +54,48 @@ public interface IGeoCoordinate
      */
     default double distanceTo(double latitude, double longitude)
     {
-        double diffLat = Math.toRadians(latitude - getLatitude());
-        double diffLon = Math.toRadians(longitude - getLongitude());
+        return haversine(getLatitude(), getLongitude(), latitude, longitude);
+    }
+
+    /**
+     * Calculates the great circle distance between two coordinates in meters.
+     * @param lat1 the latitude of the first coordinate in degrees
+     * @param lon1 the longitude of the first coordinate in degrees
+     * @param lat2 the latitude of the second coordinate in degrees
+     * @param lon2 the longitude of the second coordinate in degrees
+     * @return the distance in meters
+     */
+    static double haversine(double lat1, double lon1, double lat2, double lon2)
+    {
+        double diffLat = Math.toRadians(lat2 - lat1);
+        double diffLon = Math.toRadians(lon2 - lon1);
         double a = Math.sin(diffLat / 2) * Math.sin(diffLat / 2) +
-                Math.cos(Math.toRadians(getLatitude())) * Math.cos(Math.toRadians(latitude)) *
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
                         Math.sin(diffLon / 2) * Math.sin(diffLon / 2);
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
         double radius = 6371000;
         return radius * c;
     }
 
+    /**
+     * Calculates the initial bearing from the first to the second coordinate.
+     * @param lat1 the latitude of the first coordinate in degrees
+     * @param lon1 the longitude of the first coordinate in degrees
+     * @param lat2 the latitude of the second coordinate in degrees
+     * @param lon2 the longitude of the second coordinate in degrees
+     * @return the bearing in degrees clockwise from north, 0 to 360
+     */
+    static double bearing(double lat1, double lon1, double lat2, double lon2)
+    {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double diffLon = Math.toRadians(lon2 - lon1);
+        double y = Math.sin(diffLon) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(diffLon);
+        double bearing = Math.toDegrees(Math.atan2(y, x));
+        return bearing < 0 ? bearing + 360 : bearing;
+    }
+
     /**
      * Converts the coordinate to a byte array.
      * The byte array is in the format: [lat1, lat2, lat3, lat4, lon1, lon2, lon3, lon4]
@@ -4,6 +4,27 @@ import de.riemerjonas.openrouter.core.OpenRouterEdge;
 
 public interface IRoutingProfile {
 
-    double getWeight(OpenRouterEdge edge);
+    /**
+     * Returns the weight of an edge from its packed meta data.
+     * @param edgeMeta the packed edge meta data
+     * @return the weight
+     */
+    double getWeight(long edgeMeta);
+
+    /**
+     * Returns true if the profile may use an edge with the given packed meta data.
+     * @param edgeMeta the packed edge meta data
+     * @return true if accessible
+     */
+    default boolean isAccessible(long edgeMeta)
+    {
+        return true;
+    }
+
+    default double getWeight(OpenRouterEdge edge)
+    {
+        return getWeight(edge.getMetaData());
+    }
+
     String getName();
 }
@@ -0,0 +1,166 @@
+package de.riemerjonas.openrouter.core.io;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Buffered byte output for the route writers. Numbers are formatted digit by digit into the buffer and
+ * text is encoded as UTF-8 on the fly, so writing a route creates no strings per point.
+ * The target is flushed but never closed, channels must be in blocking mode.
+ */
+final class ORByteOutput implements Flushable
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] digits = new byte[20];
+    private int position;
+
+    ORByteOutput(OutputStream stream)
+    {
+        this.stream = stream;
+        this.channel = null;
+    }
+
+    ORByteOutput(WritableByteChannel channel)
+    {
+        this.stream = null;
+        this.channel = channel;
+    }
+
+    void write(int b) throws IOException
+    {
+        if (position == buffer.length) drain();
+        buffer[position++] = (byte) b;
+    }
+
+    void write(byte[] bytes) throws IOException
+    {
+        if (bytes.length > buffer.length - position)
+        {
+            drain();
+            if (bytes.length > buffer.length)
+            {
+                writeTarget(bytes, bytes.length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Writes a number in decimal.
+     * @param value the number
+     * @throws IOException if writing fails
+     */
+    void writeLong(long value) throws IOException
+    {
+        if (value < 0) write('-');
+        int count = 0;
+        do
+        {
+            digits[count++] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        }
+        while (value != 0);
+        while (count > 0) write(digits[--count]);
+    }
+
+    /**
+     * Writes a fixed point number, e.g. a coordinate in E6 format with 6 decimals.
+     * @param scaled the number multiplied by 10^decimals
+     * @param decimals the number of decimals, at least 1
+     * @throws IOException if writing fails
+     */
+    void writeFixed(long scaled, int decimals) throws IOException
+    {
+        long factor = 1;
+        for (int i = 0; i < decimals; i++) factor *= 10;
+        if (scaled < 0) write('-');
+        long abs = Math.abs(scaled);
+        writeLong(abs / factor);
+        write('.');
+        long fraction = abs % factor;
+        for (long f = factor / 10; f > 0; f /= 10)
+        {
+            write((int) ('0' + fraction / f));
+            fraction %= f;
+        }
+    }
+
+    /**
+     * Writes text as UTF-8.
+     * @param text the text
+     * @throws IOException if writing fails
+     */
+    void writeUtf8(CharSequence text) throws IOException
+    {
+        for (int i = 0; i < text.length(); i++) writeCodePoint(text.charAt(i), text, i);
+    }
+
+    /**
+     * Writes one character of a text as UTF-8, surrogate pairs are written with their first half.
+     */
+    void writeCodePoint(char c, CharSequence text, int index) throws IOException
+    {
+        if (c < 0x80)
+        {
+            write(c);
+        }
+        else if (c < 0x800)
+        {
+            write(0xC0 | (c >> 6));
+            write(0x80 | (c & 0x3F));
+        }
+        else if (Character.isHighSurrogate(c) && index + 1 < text.length() && Character.isLowSurrogate(text.charAt(index + 1)))
+        {
+            int codePoint = Character.toCodePoint(c, text.charAt(index + 1));
+            write(0xF0 | (codePoint >> 18));
+            write(0x80 | ((codePoint >> 12) & 0x3F));
+            write(0x80 | ((codePoint >> 6) & 0x3F));
+            write(0x80 | (codePoint & 0x3F));
+        }
+        else if (Character.isSurrogate(c))
+        {
+            // the low half of a pair was written with the high half, lone surrogates become '?'
+            if (!Character.isLowSurrogate(c) || index == 0 || !Character.isHighSurrogate(text.charAt(index - 1))) write('?');
+        }
+        else
+        {
+            write(0xE0 | (c >> 12));
+            write(0x80 | ((c >> 6) & 0x3F));
+            write(0x80 | (c & 0x3F));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        drain();
+        if (stream != null) stream.flush();
+    }
+
+    private void drain() throws IOException
+    {
+        if (position == 0) return;
+        writeTarget(buffer, position);
+        position = 0;
+    }
+
+    private void writeTarget(byte[] bytes, int length) throws IOException
+    {
+        if (stream != null)
+        {
+            stream.write(bytes, 0, length);
+            return;
+        }
+        ByteBuffer wrapped = ByteBuffer.wrap(bytes, 0, length);
+        while (wrapped.hasRemaining()) channel.write(wrapped);
+    }
+}
@@ -0,0 +1,86 @@
+package de.riemerjonas.openrouter.core.io;
+
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes a GeoJSON Feature with a LineString geometry. The properties contain the name and, for routes,
+ * the distance in meters and the weight.
+ */
+final class ORGeoJsonWriter extends ORRouteWriter
+{
+    private static final byte[] HEADER = ascii("{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+    private static final byte[] PROPERTIES = ascii("]},\"properties\":{");
+
+    @Override
+    public String getContentType()
+    {
+        return "application/geo+json";
+    }
+
+    @Override
+    void write(List<? extends IGeoCoordinate> points, String name, OpenRouterRoute route, ORByteOutput out) throws IOException
+    {
+        out.write(HEADER);
+        boolean first = true;
+        for (IGeoCoordinate point : points)
+        {
+            if (!first) out.write(',');
+            first = false;
+            out.write('[');
+            out.writeFixed(point.getLongitudeE6(), 6);
+            out.write(',');
+            out.writeFixed(point.getLatitudeE6(), 6);
+            out.write(']');
+        }
+        out.write(PROPERTIES);
+        boolean hasProperty = false;
+        if (name != null)
+        {
+            out.write(ascii("\"name\":"));
+            writeString(name, out);
+            hasProperty = true;
+        }
+        if (route != null)
+        {
+            if (hasProperty) out.write(',');
+            out.write(ascii("\"distance\":"));
+            out.writeFixed(Math.round(route.getDistanceMeter() * 10), 1);
+            out.write(ascii(",\"weight\":"));
+            out.writeFixed(Math.round(route.getWeight() * 1000), 3);
+        }
+        out.write(ascii("}}"));
+    }
+
+    private static void writeString(String text, ORByteOutput out) throws IOException
+    {
+        out.write('"');
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            switch (c)
+            {
+                case '"': out.write(ascii("\\\"")); break;
+                case '\\': out.write(ascii("\\\\")); break;
+                case '\n': out.write(ascii("\\n")); break;
+                case '\r': out.write(ascii("\\r")); break;
+                case '\t': out.write(ascii("\\t")); break;
+                default:
+                    if (c < 0x20)
+                    {
+                        out.write(ascii("\\u00"));
+                        out.write(Character.forDigit(c >> 4, 16));
+                        out.write(Character.forDigit(c & 0xF, 16));
+                    }
+                    else
+                    {
+                        out.writeCodePoint(c, text, i);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,70 @@
+package de.riemerjonas.openrouter.core.io;
+
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes a GPX 1.1 track with one segment.
+ */
+final class ORGpxWriter extends ORRouteWriter
+{
+    private static final byte[] HEADER = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<gpx version=\"1.1\" creator=\"OpenRouter\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n<trk>\n");
+    private static final byte[] NAME = ascii("<name>");
+    private static final byte[] NAME_END = ascii("</name>\n");
+    private static final byte[] SEGMENT = ascii("<trkseg>\n");
+    private static final byte[] POINT_LAT = ascii("<trkpt lat=\"");
+    private static final byte[] POINT_LON = ascii("\" lon=\"");
+    private static final byte[] POINT_END = ascii("\"/>\n");
+    private static final byte[] FOOTER = ascii("</trkseg>\n</trk>\n</gpx>\n");
+
+    @Override
+    public String getContentType()
+    {
+        return "application/gpx+xml";
+    }
+
+    @Override
+    void write(List<? extends IGeoCoordinate> points, String name, OpenRouterRoute route, ORByteOutput out) throws IOException
+    {
+        out.write(HEADER);
+        if (name != null)
+        {
+            out.write(NAME);
+            writeEscaped(name, out);
+            out.write(NAME_END);
+        }
+        out.write(SEGMENT);
+        for (IGeoCoordinate point : points)
+        {
+            out.write(POINT_LAT);
+            out.writeFixed(point.getLatitudeE6(), 6);
+            out.write(POINT_LON);
+            out.writeFixed(point.getLongitudeE6(), 6);
+            out.write(POINT_END);
+        }
+        out.write(FOOTER);
+    }
+
+    private static void writeEscaped(String text, ORByteOutput out) throws IOException
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            switch (c)
+            {
+                case '<': out.write(ascii("&lt;")); break;
+                case '>': out.write(ascii("&gt;")); break;
+                case '&': out.write(ascii("&amp;")); break;
+                case '"': out.write(ascii("&quot;")); break;
+                default:
+                    // control characters are not allowed in XML 1.0
+                    if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') out.write('?');
+                    else out.writeCodePoint(c, text, i);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package de.riemerjonas.openrouter.core.io;
+
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the Google encoded polyline format: latitude and longitude deltas, zigzag encoded and split into
+ * 5 bit chunks offset by 63. The name and route properties are not part of the format.
+ */
+final class ORPolylineWriter extends ORRouteWriter
+{
+    private final int precision;
+
+    /**
+     * @param precision the number of decimals, 5 or 6
+     */
+    ORPolylineWriter(int precision)
+    {
+        if (precision != 5 && precision != 6) throw new IllegalArgumentException("Precision must be 5 or 6");
+        this.precision = precision;
+    }
+
+    @Override
+    public String getContentType()
+    {
+        return "text/plain; charset=US-ASCII";
+    }
+
+    @Override
+    void write(List<? extends IGeoCoordinate> points, String name, OpenRouterRoute route, ORByteOutput out) throws IOException
+    {
+        long lastLatitude = 0;
+        long lastLongitude = 0;
+        for (IGeoCoordinate point : points)
+        {
+            long latitude = scale(point.getLatitudeE6());
+            long longitude = scale(point.getLongitudeE6());
+            writeValue(latitude - lastLatitude, out);
+            writeValue(longitude - lastLongitude, out);
+            lastLatitude = latitude;
+            lastLongitude = longitude;
+        }
+    }
+
+    private long scale(int e6)
+    {
+        return precision == 6 ? e6 : Math.round(e6 / 10.0);
+    }
+
+    private static void writeValue(long delta, ORByteOutput out) throws IOException
+    {
+        long value = delta < 0 ? ~(delta << 1) : delta << 1;
+        while (value >= 0x20)
+        {
+            out.write((int) ((0x20 | (value & 0x1F)) + 63));
+            value >>= 5;
+        }
+        out.write((int) (value + 63));
+    }
+}
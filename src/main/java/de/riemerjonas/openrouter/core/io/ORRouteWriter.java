@@ -0,0 +1,138 @@
+package de.riemerjonas.openrouter.core.io;
+
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes route geometries directly to a stream or channel in an exchange format.
+ * Coordinates are formatted from their E6 values into a byte buffer, no intermediate strings are built.
+ * Errors of the target are thrown as IOException. The target is flushed but not closed.
+ * <p>
+ * Writers are stateless and thread-safe, use {@link #forName(String)} or the constants.
+ */
+public abstract class ORRouteWriter
+{
+    /** GPX 1.1 track. */
+    public static final ORRouteWriter GPX = new ORGpxWriter();
+    /** GeoJSON feature with a LineString, coordinates in longitude, latitude order. */
+    public static final ORRouteWriter GEOJSON = new ORGeoJsonWriter();
+    /** Google encoded polyline with 5 decimals, the common format of web maps. */
+    public static final ORRouteWriter POLYLINE = new ORPolylineWriter(5);
+    /** Encoded polyline with 6 decimals, lossless for E6 coordinates. */
+    public static final ORRouteWriter POLYLINE6 = new ORPolylineWriter(6);
+
+    ORRouteWriter()
+    {
+    }
+
+    /**
+     * Returns the writer of a format.
+     * @param name gpx, geojson, polyline or polyline6
+     * @return the writer or null if the format is unknown
+     */
+    public static ORRouteWriter forName(String name)
+    {
+        switch (name)
+        {
+            case "gpx": return GPX;
+            case "geojson": return GEOJSON;
+            case "polyline": return POLYLINE;
+            case "polyline6": return POLYLINE6;
+            default: return null;
+        }
+    }
+
+    /**
+     * Returns the MIME type of the format.
+     * @return the content type
+     */
+    public abstract String getContentType();
+
+    /**
+     * Writes a route.
+     * @param route the route
+     * @param name the name of the route, may be null
+     * @param out the target
+     * @throws IOException if writing fails
+     */
+    public void write(OpenRouterRoute route, String name, OutputStream out) throws IOException
+    {
+        ORByteOutput output = new ORByteOutput(out);
+        write(route.getGeometry(), name, route, output);
+        output.flush();
+    }
+
+    /**
+     * Writes a route with another geometry, e.g. a simplified one.
+     * @param route the route
+     * @param geometry the geometry to write instead of the full geometry of the route
+     * @param name the name of the route, may be null
+     * @param out the target
+     * @throws IOException if writing fails
+     */
+    public void write(OpenRouterRoute route, List<? extends IGeoCoordinate> geometry, String name, OutputStream out) throws IOException
+    {
+        ORByteOutput output = new ORByteOutput(out);
+        write(geometry, name, route, output);
+        output.flush();
+    }
+
+    /**
+     * Writes a route.
+     * @param route the route
+     * @param name the name of the route, may be null
+     * @param channel the target, in blocking mode
+     * @throws IOException if writing fails
+     */
+    public void write(OpenRouterRoute route, String name, WritableByteChannel channel) throws IOException
+    {
+        ORByteOutput output = new ORByteOutput(channel);
+        write(route.getGeometry(), name, route, output);
+        output.flush();
+    }
+
+    /**
+     * Writes a line of coordinates.
+     * @param points the coordinates
+     * @param name the name of the line, may be null
+     * @param out the target
+     * @throws IOException if writing fails
+     */
+    public void write(List<? extends IGeoCoordinate> points, String name, OutputStream out) throws IOException
+    {
+        ORByteOutput output = new ORByteOutput(out);
+        write(points, name, null, output);
+        output.flush();
+    }
+
+    /**
+     * Writes a line of coordinates.
+     * @param points the coordinates
+     * @param name the name of the line, may be null
+     * @param channel the target, in blocking mode
+     * @throws IOException if writing fails
+     */
+    public void write(List<? extends IGeoCoordinate> points, String name, WritableByteChannel channel) throws IOException
+    {
+        ORByteOutput output = new ORByteOutput(channel);
+        write(points, name, null, output);
+        output.flush();
+    }
+
+    /**
+     * Writes the format.
+     * @param route the route of the points for additional properties, may be null
+     */
+    abstract void write(List<? extends IGeoCoordinate> points, String name, OpenRouterRoute route, ORByteOutput out) throws IOException;
+
+    static byte[] ascii(String text)
+    {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,17 +1,22 @@
 package de.riemerjonas.openrouter.core.profiles;
 
-import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterEdgeMeta;
 import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.core.types.VehicleType;
 
 public class RoutingProfileFast implements IRoutingProfile
 {
 
     @Override
-    public double getWeight(OpenRouterEdge edge)
+    public double getWeight(long edgeMeta)
     {
-        short speed = edge.getMetaDataAsObject().getMaxSpeedMs();
-        short distance = edge.getMetaDataAsObject().getDistanceMeter();
-        return (short) Math.max(1, distance / speed);
+        return OpenRouterEdgeMeta.travelTimeSeconds(edgeMeta);
+    }
+
+    @Override
+    public boolean isAccessible(long edgeMeta)
+    {
+        return OpenRouterEdgeMeta.hasAccess(edgeMeta, VehicleType.CAR);
     }
 
     @Override
@@ -1,15 +1,22 @@
 package de.riemerjonas.openrouter.core.profiles;
 
-import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterEdgeMeta;
 import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.core.types.VehicleType;
 
 public class RoutingProfileShort implements IRoutingProfile
 {
 
     @Override
-    public double getWeight(OpenRouterEdge edge)
+    public double getWeight(long edgeMeta)
     {
-        return edge.getMetaDataAsObject().getDistanceMeter();
+        return OpenRouterEdgeMeta.distanceMeter(edgeMeta);
+    }
+
+    @Override
+    public boolean isAccessible(long edgeMeta)
+    {
+        return OpenRouterEdgeMeta.hasAccess(edgeMeta, VehicleType.CAR);
     }
 
     @Override
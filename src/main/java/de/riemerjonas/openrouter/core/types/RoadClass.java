@@ -0,0 +1,63 @@
+package de.riemerjonas.openrouter.core.types;
+
+public enum RoadClass
+{
+    OTHER(0),
+    MOTORWAY(1),
+    TRUNK(2),
+    PRIMARY(3),
+    SECONDARY(4),
+    TERTIARY(5),
+    UNCLASSIFIED(6),
+    RESIDENTIAL(7),
+    LIVING_STREET(8),
+    SERVICE(9),
+    ROAD(10),
+    BUS_GUIDEWAY(11);
+
+    private final int value;
+
+    RoadClass(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public static RoadClass fromValue(int value) {
+        for (RoadClass rc : values()) {
+            if (rc.value == value) {
+                return rc;
+            }
+        }
+        throw new IllegalArgumentException("Invalid value: " + value);
+    }
+
+    /**
+     * Returns the road class for an OSM highway tag value.
+     * Link roads (e.g. motorway_link) share the class of their main road.
+     * @param highway the value of the highway tag
+     * @return the road class, OTHER if the value is unknown
+     */
+    public static RoadClass fromHighwayTag(String highway)
+    {
+        if (highway == null) return OTHER;
+        String base = highway.endsWith("_link") ? highway.substring(0, highway.length() - 5) : highway;
+        switch (base)
+        {
+            case "motorway": return MOTORWAY;
+            case "trunk": return TRUNK;
+            case "primary": return PRIMARY;
+            case "secondary": return SECONDARY;
+            case "tertiary": return TERTIARY;
+            case "unclassified": return UNCLASSIFIED;
+            case "residential": return RESIDENTIAL;
+            case "living_street": return LIVING_STREET;
+            case "service": return SERVICE;
+            case "road": return ROAD;
+            case "bus_guideway": return BUS_GUIDEWAY;
+            default: return OTHER;
+        }
+    }
+}
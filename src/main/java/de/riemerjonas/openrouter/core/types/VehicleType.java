@@ -0,0 +1,35 @@
+package de.riemerjonas.openrouter.core.types;
+
+public enum VehicleType
+{
+    CAR(0),
+    BIKE(1),
+    FOOT(2);
+
+    private final int value;
+
+    VehicleType(int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the bit of this vehicle type inside an access flag set.
+     * @return the access bit
+     */
+    public int getAccessBit() {
+        return 1 << value;
+    }
+
+    public static VehicleType fromValue(int value) {
+        for (VehicleType vt : values()) {
+            if (vt.value == value) {
+                return vt;
+            }
+        }
+        throw new IllegalArgumentException("Invalid value: " + value);
+    }
+}
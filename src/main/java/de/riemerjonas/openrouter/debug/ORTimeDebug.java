@@ -1,7 +1,14 @@
 package de.riemerjonas.openrouter.debug;
 
-import de.riemerjonas.openrouter.core.OpenRouterLog;
-
+import de.riemerjonas.openrouter.metrics.ORMetrics;
+import de.riemerjonas.openrouter.metrics.ORTimer;
+
+/**
+ * Measures a single duration and prints it.
+ * @deprecated use an {@link ORTimer} from {@link ORMetrics}, which aggregates all measurements. Durations measured
+ * here are recorded into the timer of the same name.
+ */
+@Deprecated
 public class ORTimeDebug
 {
     private String name;
@@ -18,17 +25,23 @@ public class ORTimeDebug
 
     public void start()
     {
-        this.startTime = System.currentTimeMillis();
+        this.startTime = System.nanoTime();
+        this.endTime = 0;
     }
 
     public void end()
     {
-        this.endTime = System.currentTimeMillis();
+        this.endTime = System.nanoTime();
+        ORMetrics.timer(name).record(endTime - startTime);
     }
 
+    /**
+     * Returns the measured duration.
+     * @return the duration in milliseconds
+     */
     public long getDuration()
     {
-        return this.endTime - this.startTime;
+        return (this.endTime - this.startTime) / 1_000_000;
     }
 
     public String getName()
@@ -3,19 +3,40 @@ package de.riemerjonas.openrouter.graph;
 import de.riemerjonas.openrouter.core.OpenRouterEdge;
 import de.riemerjonas.openrouter.core.OpenRouterLog;
 import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterPoint;
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.OpenRouterShapeStore;
 import de.riemerjonas.openrouter.core.OpenRouterTileMap;
 import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
 import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.algorithm.ORComponents;
 import de.riemerjonas.openrouter.graph.algorithm.ORGraphRouter;
+import de.riemerjonas.openrouter.graph.algorithm.ORHubLabels;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchPool;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
 import de.riemerjonas.openrouter.graph.core.ORGraphHandler;
+import de.riemerjonas.openrouter.graph.core.OROsmIndex;
+import de.riemerjonas.openrouter.graph.core.ORSegmentIndex;
+import de.riemerjonas.openrouter.metrics.ORSnapEvent;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class OpenRouterGraph
 {
     private final OpenRouterTileMap tileMap;
     private final List<OpenRouterEdge> edges;
+    private OROsmIndex osmIndex;
+    private OpenRouterShapeStore shapeStore;
+    private final List<Runnable> releaseHooks = new CopyOnWriteArrayList<>();
+    private final Map<String, ORHubLabels> hubLabels = new ConcurrentHashMap<>();
+    private volatile ORAdjacency adjacency;
+    private volatile ORComponents components;
+    private volatile ORSegmentIndex segmentIndex;
+    private volatile ORSearchPool searchPool;
 
     /**
      * Creates a new OpenRouterGraph with the given tile map.
@@ -55,6 +76,138 @@ public class OpenRouterGraph
         return edges;
     }
 
+    /**
+     * Returns the OSM index of this graph.
+     * @return the OSM index or null if the graph has no OSM origin information
+     */
+    public OROsmIndex getOsmIndex()
+    {
+        return osmIndex;
+    }
+
+    /**
+     * Sets the OSM index of this graph.
+     * @param osmIndex the OSM index
+     */
+    public void setOsmIndex(OROsmIndex osmIndex)
+    {
+        this.osmIndex = osmIndex;
+    }
+
+    /**
+     * Returns the hub labels of this graph for a profile.
+     * @param profile the routing profile
+     * @return the labels or null if none are attached for the profile
+     */
+    public ORHubLabels getHubLabels(IRoutingProfile profile)
+    {
+        return hubLabels.get(profile.getName());
+    }
+
+    /**
+     * Attaches hub labels to this graph, replacing those of the same profile.
+     * @param labels the labels, see {@link ORHubLabels#matches(OpenRouterGraph)}
+     */
+    public void setHubLabels(ORHubLabels labels)
+    {
+        hubLabels.put(labels.getProfileName(), labels);
+    }
+
+    /**
+     * Returns the shape store with the intermediate points of compressed edges.
+     * @return the shape store or null if the edges have no shapes
+     */
+    public OpenRouterShapeStore getShapeStore()
+    {
+        return shapeStore;
+    }
+
+    /**
+     * Sets the shape store of this graph.
+     * @param shapeStore the shape store
+     */
+    public void setShapeStore(OpenRouterShapeStore shapeStore)
+    {
+        this.shapeStore = shapeStore;
+    }
+
+    /**
+     * Returns the adjacency of this graph, built on first use.
+     * @return the adjacency
+     */
+    public ORAdjacency getAdjacency()
+    {
+        ORAdjacency result = adjacency;
+        if (result == null)
+        {
+            synchronized (this)
+            {
+                result = adjacency;
+                if (result == null) adjacency = result = ORAdjacency.build(getNodes(), edges);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the strongly connected components of this graph, computed on first use.
+     * @return the components
+     */
+    public ORComponents getComponents()
+    {
+        ORComponents result = components;
+        if (result == null)
+        {
+            synchronized (this)
+            {
+                result = components;
+                if (result == null) components = result = ORComponents.compute(getAdjacency());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index for snapping coordinates onto edges, built on first use.
+     * @return the segment index
+     */
+    public ORSegmentIndex getSegmentIndex()
+    {
+        ORSegmentIndex result = segmentIndex;
+        if (result == null)
+        {
+            synchronized (this)
+            {
+                result = segmentIndex;
+                if (result == null) segmentIndex = result = ORSegmentIndex.build(this);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the pool of search objects for this graph, created on first use. It keeps two idle searches per
+     * processor, at least 4, as requests overlap while they wait for I/O. The pool is cleared on {@link #release()}.
+     * @return the search pool
+     */
+    public ORSearchPool getSearchPool()
+    {
+        ORSearchPool result = searchPool;
+        if (result == null)
+        {
+            synchronized (this)
+            {
+                result = searchPool;
+                if (result == null)
+                {
+                    searchPool = result = new ORSearchPool(this, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+                    addReleaseHook(result::clear);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns all nodes in the graph.
      * @return all nodes in the graph
@@ -76,6 +229,18 @@ public class OpenRouterGraph
         return ORGraphRouter.route(from, to, this, profile);
     }
 
+    /**
+     * Returns a route with edges and full geometry from the given start node to the given end node.
+     * @param from is the start node
+     * @param to is the end node
+     * @param profile is the routing profile
+     * @return the route or null if no route was found
+     */
+    public OpenRouterRoute findRoute(IGeoCoordinate from, IGeoCoordinate to, IRoutingProfile profile)
+    {
+        return ORGraphRouter.findRoute(from, to, this, profile);
+    }
+
     /**
      * Returns the nearest node to the given latitude and longitude.
      * @param latitude is the latitude in degrees
@@ -84,7 +249,37 @@ public class OpenRouterGraph
      */
     public OpenRouterNode getNearestNode(double latitude, double longitude)
     {
-        return tileMap.getNearestNode(latitude, longitude);
+        return getNearestNode(latitude, longitude, ORComponents.DEFAULT_MIN_SIZE);
+    }
+
+    /**
+     * Returns the nearest node to the given latitude and longitude, preferring nodes in components with at least
+     * {@code minComponentSize} nodes. Falls back to the nearest node of any component.
+     * Recorded as {@link ORSnapEvent} while Flight Recorder is running.
+     * @param latitude is the latitude in degrees
+     * @param longitude is the longitude in degrees
+     * @param minComponentSize is the preferred minimum component size
+     * @return the nearest node
+     */
+    public OpenRouterNode getNearestNode(double latitude, double longitude, int minComponentSize)
+    {
+        ORSnapEvent event = new ORSnapEvent();
+        event.begin();
+        ORComponents components = getComponents();
+        int size = Math.min(minComponentSize, components.getComponentSize(components.getLargestComponent()));
+        OpenRouterNode node = tileMap.getNearestNode(latitude, longitude, id -> components.isInComponentOfSize(id, size));
+        if (node == null) node = tileMap.getNearestNode(latitude, longitude);
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.latitude = latitude;
+            event.longitude = longitude;
+            event.node = node != null ? node.getId() : -1;
+            event.distance = node != null ? node.distanceTo(new OpenRouterPoint(latitude, longitude)) : Double.NaN;
+            event.candidates = tileMap.getNodesInTile(OpenRouterTileMap.getTileID(latitude, longitude)).size();
+            event.commit();
+        }
+        return node;
     }
 
     /**
@@ -94,7 +289,7 @@ public class OpenRouterGraph
      */
     public OpenRouterNode getNearestNode(IGeoCoordinate coordinate)
     {
-        return tileMap.getNearestNode(coordinate.getLatitude(), coordinate.getLongitude());
+        return getNearestNode(coordinate.getLatitude(), coordinate.getLongitude());
     }
 
     /**
@@ -106,6 +301,34 @@ public class OpenRouterGraph
         ORGraphHandler.save(file, this);
     }
 
+    /**
+     * Registers an action which frees resources of this graph, e.g. mapped memory of an attached index.
+     * @param hook the action to run on {@link #release()}
+     */
+    public void addReleaseHook(Runnable hook)
+    {
+        releaseHooks.add(hook);
+    }
+
+    /**
+     * Releases all resources held by this graph. The graph must not be used afterwards.
+     */
+    public void release()
+    {
+        for (Runnable hook : releaseHooks)
+        {
+            try
+            {
+                hook.run();
+            }
+            catch (RuntimeException e)
+            {
+                OpenRouterLog.e("OpenRouterGraph", "Release hook failed", e);
+            }
+        }
+        releaseHooks.clear();
+    }
+
     /**
      * Loads a graph from a file.
      * @param file is the file to load
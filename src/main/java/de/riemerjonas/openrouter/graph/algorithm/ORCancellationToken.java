@@ -0,0 +1,45 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+/**
+ * Cancels running searches from another thread. Searches poll the token, so cancellation takes effect within
+ * a few hundred settled nodes. A token may be shared by several searches, e.g. all searches of one request.
+ */
+public class ORCancellationToken
+{
+    private final ORCancellationToken parent;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a new ORCancellationToken.
+     */
+    public ORCancellationToken()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates a token which is also cancelled by its parent.
+     * @param parent the parent token, may be null
+     */
+    public ORCancellationToken(ORCancellationToken parent)
+    {
+        this.parent = parent;
+    }
+
+    /**
+     * Cancels all searches using this token.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Returns true if the token was cancelled.
+     * @return true if cancelled
+     */
+    public boolean isCancelled()
+    {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+}
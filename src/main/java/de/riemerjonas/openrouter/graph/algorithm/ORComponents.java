@@ -0,0 +1,295 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterTileMap;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
+import de.riemerjonas.openrouter.graph.core.OROsmIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Strongly and weakly connected components of a graph.
+ * Every node gets a strongly connected component ID, so snapping can skip small islands like private parking lots.
+ * Nodes in different weakly connected components are not linked by any edge path, so routes between them are
+ * rejected in O(1). Different strongly connected components do not allow this, one may reach the other one-way.
+ * Computed with an iterative Tarjan algorithm and a union-find over primitive arrays.
+ */
+public class ORComponents
+{
+    private static final String TAG = "ORComponents";
+    public static final int DEFAULT_MIN_SIZE = 100;
+    public static final int NO_COMPONENT = -1;
+
+    private final int[] componentIds;
+    private final int[] componentSizes;
+    private final int[] weakComponentIds;
+    private final int largestComponent;
+
+    private ORComponents(int[] componentIds, int[] componentSizes, int[] weakComponentIds)
+    {
+        this.componentIds = componentIds;
+        this.componentSizes = componentSizes;
+        this.weakComponentIds = weakComponentIds;
+        int largest = NO_COMPONENT;
+        for (int c = 0; c < componentSizes.length; c++)
+        {
+            if (largest == NO_COMPONENT || componentSizes[c] > componentSizes[largest]) largest = c;
+        }
+        this.largestComponent = largest;
+    }
+
+    /**
+     * Computes the strongly and weakly connected components of the given adjacency.
+     * @param adjacency the adjacency of the graph
+     * @return the components
+     */
+    public static ORComponents compute(ORAdjacency adjacency)
+    {
+        int n = adjacency.getNodeCount();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] componentIds = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+        Arrays.fill(componentIds, NO_COMPONENT);
+
+        int[] stack = new int[n];
+        int stackSize = 0;
+        // explicit call stack: node and position in its outgoing edges
+        int[] callNode = new int[n];
+        int[] callPosition = new int[n];
+        int callSize = 0;
+
+        int counter = 0;
+        int componentCount = 0;
+        int[] sizes = new int[16];
+
+        for (int root = 0; root < n; root++)
+        {
+            if (index[root] != -1 || !adjacency.nodeExists(root)) continue;
+
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callNode[callSize] = root;
+            callPosition[callSize++] = adjacency.getOutStart(root);
+
+            while (callSize > 0)
+            {
+                int v = callNode[callSize - 1];
+                int position = callPosition[callSize - 1];
+                if (position < adjacency.getOutEnd(v))
+                {
+                    callPosition[callSize - 1]++;
+                    int w = adjacency.getEdgeTo(adjacency.getOutEdge(position));
+                    if (index[w] == -1)
+                    {
+                        index[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callNode[callSize] = w;
+                        callPosition[callSize++] = adjacency.getOutStart(w);
+                    }
+                    else if (onStack[w])
+                    {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+
+                callSize--;
+                if (low[v] == index[v])
+                {
+                    if (componentCount == sizes.length) sizes = Arrays.copyOf(sizes, sizes.length * 2);
+                    int size = 0;
+                    int w;
+                    do
+                    {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        componentIds[w] = componentCount;
+                        size++;
+                    }
+                    while (w != v);
+                    sizes[componentCount++] = size;
+                }
+                if (callSize > 0)
+                {
+                    int parent = callNode[callSize - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+
+        ORComponents components = new ORComponents(componentIds, Arrays.copyOf(sizes, componentCount), computeWeak(adjacency));
+        OpenRouterLog.d(TAG, "Found " + componentCount + " components, largest has "
+                + (componentCount == 0 ? 0 : components.getComponentSize(components.largestComponent)) + " nodes");
+        return components;
+    }
+
+    /**
+     * Computes the weakly connected components: every edge joins the sets of its nodes regardless of direction.
+     * @param adjacency the adjacency of the graph
+     * @return the weakly connected component ID per node, the ID of a component is one of its nodes
+     */
+    private static int[] computeWeak(ORAdjacency adjacency)
+    {
+        int n = adjacency.getNodeCount();
+        int[] parent = new int[n];
+        for (int v = 0; v < n; v++) parent[v] = v;
+        for (int v = 0; v < n; v++)
+        {
+            if (!adjacency.nodeExists(v)) continue;
+            for (int position = adjacency.getOutStart(v); position < adjacency.getOutEnd(v); position++)
+            {
+                int a = find(parent, v);
+                int b = find(parent, adjacency.getEdgeTo(adjacency.getOutEdge(position)));
+                if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+        for (int v = 0; v < n; v++) parent[v] = adjacency.nodeExists(v) ? find(parent, v) : NO_COMPONENT;
+        return parent;
+    }
+
+    private static int find(int[] parent, int v)
+    {
+        while (parent[v] != v)
+        {
+            // path halving
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    /**
+     * Returns the component ID of a node.
+     * @param node the node ID
+     * @return the component ID or {@link #NO_COMPONENT}
+     */
+    public int getComponentId(int node)
+    {
+        return node >= 0 && node < componentIds.length ? componentIds[node] : NO_COMPONENT;
+    }
+
+    /**
+     * Returns the number of nodes in a component.
+     * @param componentId the component ID
+     * @return the size
+     */
+    public int getComponentSize(int componentId)
+    {
+        return componentId >= 0 && componentId < componentSizes.length ? componentSizes[componentId] : 0;
+    }
+
+    public int getComponentCount()
+    {
+        return componentSizes.length;
+    }
+
+    /**
+     * Returns the ID of the component with the most nodes.
+     * @return the component ID or {@link #NO_COMPONENT} for an empty graph
+     */
+    public int getLargestComponent()
+    {
+        return largestComponent;
+    }
+
+    /**
+     * Returns true if both nodes are in the same strongly connected component, so each is reachable from the other.
+     * @param from the first node ID
+     * @param to the second node ID
+     * @return true if in the same component
+     */
+    public boolean isSameComponent(int from, int to)
+    {
+        int component = getComponentId(from);
+        return component != NO_COMPONENT && component == getComponentId(to);
+    }
+
+    /**
+     * Returns the weakly connected component ID of a node.
+     * @param node the node ID
+     * @return the weakly connected component ID or {@link #NO_COMPONENT}
+     */
+    public int getWeakComponentId(int node)
+    {
+        return node >= 0 && node < weakComponentIds.length ? weakComponentIds[node] : NO_COMPONENT;
+    }
+
+    /**
+     * Returns true if no route can exist between the nodes: they are in different weakly connected components.
+     * Nodes in the same weakly connected component may still be unreachable one-way.
+     * @param from the start node ID
+     * @param to the end node ID
+     * @return true if the nodes are known to be disconnected
+     */
+    public boolean isDisconnected(int from, int to)
+    {
+        int component = getWeakComponentId(from);
+        return component == NO_COMPONENT || component != getWeakComponentId(to);
+    }
+
+    /**
+     * Returns true if the node belongs to a component with at least the given number of nodes.
+     * @param node the node ID
+     * @param minSize the minimum component size
+     * @return true if the component is large enough
+     */
+    public boolean isInComponentOfSize(int node, int minSize)
+    {
+        return getComponentSize(getComponentId(node)) >= minSize;
+    }
+
+    /**
+     * Removes all nodes in components with less than {@code minSize} nodes and their edges.
+     * Node IDs are kept, so the OSM index and shapes of the graph stay valid.
+     * @param graph the graph
+     * @param minSize the minimum component size
+     * @return the pruned graph
+     */
+    public static OpenRouterGraph prune(OpenRouterGraph graph, int minSize)
+    {
+        ORComponents components = graph.getComponents();
+
+        List<OpenRouterNode> nodes = new ArrayList<>();
+        for (OpenRouterNode node : graph.getNodes())
+        {
+            if (components.isInComponentOfSize(node.getId(), minSize)) nodes.add(node);
+        }
+
+        List<OpenRouterEdge> oldEdges = graph.getEdges();
+        OROsmIndex index = graph.getOsmIndex();
+        List<OpenRouterEdge> edges = new ArrayList<>(oldEdges.size());
+        long[] edgeWayIds = new long[oldEdges.size()];
+        for (int i = 0; i < oldEdges.size(); i++)
+        {
+            OpenRouterEdge edge = oldEdges.get(i);
+            if (!components.isInComponentOfSize(edge.getFromID(), minSize)
+                    || !components.isInComponentOfSize(edge.getToID(), minSize)) continue;
+            if (index != null) edgeWayIds[edges.size()] = index.getEdgeWayId(i);
+            edges.add(edge);
+        }
+
+        OpenRouterGraph pruned = new OpenRouterGraph(OpenRouterTileMap.create(nodes), edges);
+        pruned.setShapeStore(graph.getShapeStore());
+        if (index != null)
+        {
+            long[] nodeOsmIds = index.getNodeOsmIds().clone();
+            for (int id = 0; id < nodeOsmIds.length; id++)
+            {
+                if (!components.isInComponentOfSize(id, minSize)) nodeOsmIds[id] = -1;
+            }
+            pruned.setOsmIndex(new OROsmIndex(nodeOsmIds, Arrays.copyOf(edgeWayIds, edges.size()), index.getShapePointOsmIds()));
+        }
+        OpenRouterLog.i(TAG, "Pruned " + (graph.getNodes().size() - nodes.size()) + " nodes and "
+                + (oldEdges.size() - edges.size()) + " edges in components smaller than " + minSize);
+        return pruned;
+    }
+}
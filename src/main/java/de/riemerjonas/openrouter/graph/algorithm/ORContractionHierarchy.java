@@ -0,0 +1,453 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Node order and upward graph of a contraction hierarchy, the basis of {@link ORHubLabelBuilder}.
+ * <p>
+ * Nodes are contracted one by one in the order of their priority: the number of shortcuts contracting a node would
+ * add minus the number of arcs it removes, plus the number of its already contracted neighbors, which spreads the
+ * contraction evenly over the graph. Contracting a node adds a shortcut between each pair of its remaining in- and
+ * out-neighbors, unless a witness search finds a path that is not longer without the node. Witness searches are
+ * limited in size, so some shortcuts are unnecessary, but none is missing.
+ * Priorities are updated lazily when a node is taken from the queue and for the neighbors of every contracted node.
+ * <p>
+ * The arcs of a node to nodes contracted after it, including shortcuts, form the upward graph: the shortest path
+ * between any two nodes consists of an upward path from the start and a downward path to the target.
+ */
+final class ORContractionHierarchy
+{
+    private static final String TAG = "ORContractionHierarchy";
+    private static final int SIMULATION_SETTLED_LIMIT = 8;
+    private static final int CONTRACTION_SETTLED_LIMIT = 128;
+
+    private final int nodeCount;
+    // remaining graph, arcs to contracted nodes are removed
+    private final int[][] outNodes;
+    private final double[][] outWeights;
+    private final int[] outCounts;
+    private final int[][] inNodes;
+    private final double[][] inWeights;
+    private final int[] inCounts;
+    private final boolean[] contracted;
+    private final int[] contractedNeighbors;
+    private final int[] priorities;
+    private final ThreadLocal<Witness> witnesses;
+
+    /** Position of every node in the contraction order, higher is more important. */
+    final int[] rank;
+    /** Arcs to nodes of higher rank, per node. */
+    final int[][] upOutNodes;
+    final double[][] upOutWeights;
+    /** Arcs from nodes of higher rank, per node. */
+    final int[][] upInNodes;
+    final double[][] upInWeights;
+
+    private ORContractionHierarchy(int nodeCount)
+    {
+        this.nodeCount = nodeCount;
+        this.outNodes = new int[nodeCount][];
+        this.outWeights = new double[nodeCount][];
+        this.outCounts = new int[nodeCount];
+        this.inNodes = new int[nodeCount][];
+        this.inWeights = new double[nodeCount][];
+        this.inCounts = new int[nodeCount];
+        this.contracted = new boolean[nodeCount];
+        this.contractedNeighbors = new int[nodeCount];
+        this.priorities = new int[nodeCount];
+        this.witnesses = ThreadLocal.withInitial(() -> new Witness(nodeCount));
+        this.rank = new int[nodeCount];
+        this.upOutNodes = new int[nodeCount][];
+        this.upOutWeights = new double[nodeCount][];
+        this.upInNodes = new int[nodeCount][];
+        this.upInWeights = new double[nodeCount][];
+    }
+
+    /**
+     * Contracts all nodes of an adjacency, using the edges accessible for a profile.
+     * @param adjacency the adjacency of the graph
+     * @param profile the routing profile
+     * @return the hierarchy
+     */
+    static ORContractionHierarchy build(ORAdjacency adjacency, IRoutingProfile profile)
+    {
+        long start = System.nanoTime();
+        int n = adjacency.getNodeCount();
+        ORContractionHierarchy hierarchy = new ORContractionHierarchy(n);
+        for (int v = 0; v < n; v++)
+        {
+            int degree = adjacency.nodeExists(v) ? adjacency.getOutEnd(v) - adjacency.getOutStart(v) : 0;
+            hierarchy.outNodes[v] = new int[Math.max(2, degree)];
+            hierarchy.outWeights[v] = new double[Math.max(2, degree)];
+            hierarchy.inNodes[v] = new int[2];
+            hierarchy.inWeights[v] = new double[2];
+        }
+        for (int e = 0; e < adjacency.getEdgeCount(); e++)
+        {
+            long meta = adjacency.getEdgeMeta(e);
+            int from = adjacency.getEdgeFrom(e);
+            int to = adjacency.getEdgeTo(e);
+            if (from == to || !profile.isAccessible(meta)) continue;
+            hierarchy.addArc(from, to, profile.getWeight(meta));
+        }
+        hierarchy.contractAll();
+        OpenRouterLog.i(TAG, "Contracted " + n + " nodes in " + (System.nanoTime() - start) / 1000000 + " ms");
+        return hierarchy;
+    }
+
+    private void contractAll()
+    {
+        // initial priorities are independent of each other
+        IntStream.range(0, nodeCount).parallel().forEach(v -> priorities[v] = computePriority(v, witnesses.get()));
+        NodeQueue queue = new NodeQueue(nodeCount);
+        for (int v = 0; v < nodeCount; v++) queue.push(priorities[v], v);
+
+        Witness witness = witnesses.get();
+        int position = 0;
+        while (!queue.isEmpty())
+        {
+            long entry = queue.pop();
+            int v = NodeQueue.node(entry);
+            if (contracted[v] || NodeQueue.priority(entry) != priorities[v]) continue;
+
+            int priority = computePriority(v, witness);
+            if (!queue.isEmpty() && priority > NodeQueue.priority(queue.peek()))
+            {
+                priorities[v] = priority;
+                queue.push(priority, v);
+                continue;
+            }
+            contract(v, witness);
+            rank[v] = position++;
+
+            for (int i = 0; i < upOutNodes[v].length; i++) updateNeighbor(upOutNodes[v][i], queue, witness);
+            for (int i = 0; i < upInNodes[v].length; i++) updateNeighbor(upInNodes[v][i], queue, witness);
+        }
+    }
+
+    private void updateNeighbor(int u, NodeQueue queue, Witness witness)
+    {
+        contractedNeighbors[u]++;
+        int priority = computePriority(u, witness);
+        if (priority == priorities[u]) return;
+        priorities[u] = priority;
+        queue.push(priority, u);
+    }
+
+    private int computePriority(int v, Witness witness)
+    {
+        int shortcuts = processShortcuts(v, witness, true);
+        return shortcuts - inCounts[v] - outCounts[v] + contractedNeighbors[v];
+    }
+
+    /**
+     * Removes a node from the remaining graph, records its arcs as upward arcs and adds the needed shortcuts.
+     */
+    private void contract(int v, Witness witness)
+    {
+        upOutNodes[v] = Arrays.copyOf(outNodes[v], outCounts[v]);
+        upOutWeights[v] = Arrays.copyOf(outWeights[v], outCounts[v]);
+        upInNodes[v] = Arrays.copyOf(inNodes[v], inCounts[v]);
+        upInWeights[v] = Arrays.copyOf(inWeights[v], inCounts[v]);
+
+        processShortcuts(v, witness, false);
+        contracted[v] = true;
+        for (int u : upInNodes[v]) removeArc(u, v);
+        for (int x : upOutNodes[v]) removeArc(v, x);
+        // the node keeps no arcs of its own
+        outNodes[v] = inNodes[v] = null;
+        outWeights[v] = inWeights[v] = null;
+        outCounts[v] = inCounts[v] = 0;
+    }
+
+    /**
+     * Counts or adds the shortcuts needed to contract a node.
+     * @param simulate true to only count them
+     * @return the number of shortcuts
+     */
+    private int processShortcuts(int v, Witness witness, boolean simulate)
+    {
+        int shortcuts = 0;
+        int limit = simulate ? SIMULATION_SETTLED_LIMIT : CONTRACTION_SETTLED_LIMIT;
+        int[] pendingFrom = null;
+        int[] pendingTo = null;
+        double[] pendingWeight = null;
+        for (int i = 0; i < inCounts[v]; i++)
+        {
+            int u = inNodes[v][i];
+            double inWeight = inWeights[v][i];
+            double maxWeight = 0;
+            for (int j = 0; j < outCounts[v]; j++)
+            {
+                if (outNodes[v][j] != u) maxWeight = Math.max(maxWeight, inWeight + outWeights[v][j]);
+            }
+            if (maxWeight == 0) continue;
+            witness.search(this, u, v, maxWeight, limit, outNodes[v], outCounts[v]);
+            for (int j = 0; j < outCounts[v]; j++)
+            {
+                int x = outNodes[v][j];
+                double weight = inWeight + outWeights[v][j];
+                if (x == u || witness.getWeight(x) <= weight) continue;
+                if (!simulate)
+                {
+                    if (pendingFrom == null || shortcuts == pendingFrom.length)
+                    {
+                        int size = Math.max(8, shortcuts * 2);
+                        pendingFrom = pendingFrom == null ? new int[size] : Arrays.copyOf(pendingFrom, size);
+                        pendingTo = pendingTo == null ? new int[size] : Arrays.copyOf(pendingTo, size);
+                        pendingWeight = pendingWeight == null ? new double[size] : Arrays.copyOf(pendingWeight, size);
+                    }
+                    pendingFrom[shortcuts] = u;
+                    pendingTo[shortcuts] = x;
+                    pendingWeight[shortcuts] = weight;
+                }
+                shortcuts++;
+            }
+        }
+        // added after all witness searches, which must not use shortcuts via the node itself
+        for (int s = 0; !simulate && s < shortcuts; s++) addArc(pendingFrom[s], pendingTo[s], pendingWeight[s]);
+        return shortcuts;
+    }
+
+    private void addArc(int from, int to, double weight)
+    {
+        for (int i = 0; i < outCounts[from]; i++)
+        {
+            if (outNodes[from][i] != to) continue;
+            if (weight < outWeights[from][i])
+            {
+                outWeights[from][i] = weight;
+                for (int j = 0; j < inCounts[to]; j++)
+                {
+                    if (inNodes[to][j] == from) inWeights[to][j] = weight;
+                }
+            }
+            return;
+        }
+        if (outCounts[from] == outNodes[from].length)
+        {
+            outNodes[from] = Arrays.copyOf(outNodes[from], outCounts[from] * 2);
+            outWeights[from] = Arrays.copyOf(outWeights[from], outCounts[from] * 2);
+        }
+        outNodes[from][outCounts[from]] = to;
+        outWeights[from][outCounts[from]++] = weight;
+        if (inCounts[to] == inNodes[to].length)
+        {
+            inNodes[to] = Arrays.copyOf(inNodes[to], inCounts[to] * 2);
+            inWeights[to] = Arrays.copyOf(inWeights[to], inCounts[to] * 2);
+        }
+        inNodes[to][inCounts[to]] = from;
+        inWeights[to][inCounts[to]++] = weight;
+    }
+
+    private void removeArc(int from, int to)
+    {
+        if (!contracted[from])
+        {
+            int i = indexOf(outNodes[from], outCounts[from], to);
+            int last = --outCounts[from];
+            outNodes[from][i] = outNodes[from][last];
+            outWeights[from][i] = outWeights[from][last];
+        }
+        if (!contracted[to])
+        {
+            int i = indexOf(inNodes[to], inCounts[to], from);
+            int last = --inCounts[to];
+            inNodes[to][i] = inNodes[to][last];
+            inWeights[to][i] = inWeights[to][last];
+        }
+    }
+
+    private static int indexOf(int[] nodes, int count, int node)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            if (nodes[i] == node) return i;
+        }
+        throw new IllegalStateException("Missing arc to node " + node);
+    }
+
+    /**
+     * Bounded Dijkstra search on the remaining graph that avoids one node, stopped once all targets are settled.
+     */
+    private static final class Witness
+    {
+        private final double[] weights;
+        private final int[] stamps;
+        private final int[] targetStamps;
+        private int stamp;
+        private int[] heapNodes = new int[64];
+        private double[] heapWeights = new double[64];
+        private int heapSize;
+
+        Witness(int nodeCount)
+        {
+            this.weights = new double[nodeCount];
+            this.stamps = new int[nodeCount];
+            this.targetStamps = new int[nodeCount];
+        }
+
+        void search(ORContractionHierarchy hierarchy, int start, int avoid, double maxWeight, int settledLimit,
+                    int[] targets, int targetCount)
+        {
+            stamp++;
+            heapSize = 0;
+            int remaining = 0;
+            for (int i = 0; i < targetCount; i++)
+            {
+                if (targets[i] == start || targetStamps[targets[i]] == stamp) continue;
+                targetStamps[targets[i]] = stamp;
+                remaining++;
+            }
+            weights[start] = 0;
+            stamps[start] = stamp;
+            push(start, 0);
+            int settled = 0;
+            while (heapSize > 0 && settled < settledLimit && remaining > 0)
+            {
+                int node = heapNodes[0];
+                double weight = heapWeights[0];
+                pop();
+                if (weight > weights[node]) continue;
+                if (weight > maxWeight) break;
+                settled++;
+                if (targetStamps[node] == stamp)
+                {
+                    targetStamps[node] = 0;
+                    remaining--;
+                }
+                int[] arcTargets = hierarchy.outNodes[node];
+                double[] arcWeights = hierarchy.outWeights[node];
+                for (int i = 0; i < hierarchy.outCounts[node]; i++)
+                {
+                    int target = arcTargets[i];
+                    if (target == avoid) continue;
+                    double candidate = weight + arcWeights[i];
+                    if (stamps[target] != stamp || candidate < weights[target])
+                    {
+                        stamps[target] = stamp;
+                        weights[target] = candidate;
+                        push(target, candidate);
+                    }
+                }
+            }
+        }
+
+        double getWeight(int node)
+        {
+            return stamps[node] == stamp ? weights[node] : Double.POSITIVE_INFINITY;
+        }
+
+        private void push(int node, double weight)
+        {
+            if (heapSize == heapNodes.length)
+            {
+                heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+                heapWeights = Arrays.copyOf(heapWeights, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0)
+            {
+                int parent = (i - 1) >>> 1;
+                if (heapWeights[parent] <= weight) break;
+                heapNodes[i] = heapNodes[parent];
+                heapWeights[i] = heapWeights[parent];
+                i = parent;
+            }
+            heapNodes[i] = node;
+            heapWeights[i] = weight;
+        }
+
+        private void pop()
+        {
+            int node = heapNodes[--heapSize];
+            double weight = heapWeights[heapSize];
+            int i = 0;
+            while (true)
+            {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && heapWeights[child + 1] < heapWeights[child]) child++;
+                if (heapWeights[child] >= weight) break;
+                heapNodes[i] = heapNodes[child];
+                heapWeights[i] = heapWeights[child];
+                i = child;
+            }
+            heapNodes[i] = node;
+            heapWeights[i] = weight;
+        }
+    }
+
+    /**
+     * Min-heap of nodes by priority, packed as priority and node in one long. Outdated entries stay in the heap and
+     * are skipped when their priority no longer matches.
+     */
+    private static final class NodeQueue
+    {
+        private long[] entries;
+        private int size;
+
+        NodeQueue(int capacity)
+        {
+            this.entries = new long[Math.max(16, capacity)];
+        }
+
+        static int node(long entry)
+        {
+            return (int) entry;
+        }
+
+        static int priority(long entry)
+        {
+            return (int) (entry >> 32);
+        }
+
+        boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        long peek()
+        {
+            return entries[0];
+        }
+
+        void push(int priority, int node)
+        {
+            long entry = ((long) priority << 32) | (node & 0xFFFFFFFFL);
+            if (size == entries.length) entries = Arrays.copyOf(entries, size * 2);
+            int i = size++;
+            while (i > 0)
+            {
+                int parent = (i - 1) >>> 1;
+                if (entries[parent] <= entry) break;
+                entries[i] = entries[parent];
+                i = parent;
+            }
+            entries[i] = entry;
+        }
+
+        long pop()
+        {
+            long top = entries[0];
+            long entry = entries[--size];
+            int i = 0;
+            while (true)
+            {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && entries[child + 1] < entries[child]) child++;
+                if (entries[child] >= entry) break;
+                entries[i] = entries[child];
+                i = child;
+            }
+            if (size > 0) entries[i] = entry;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.collections.ORIntArrayList;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
+import de.riemerjonas.openrouter.metrics.ORSearchEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dijkstra search on the {@link ORAdjacency} of a graph, from one start node to one or many target nodes.
+ * A backward search follows the edges against their direction and yields the weights from the targets to the start.
+ * <p>
+ * All state is kept in primitive arrays indexed by node ID. Arrays are not cleared between searches, entries are
+ * valid only if their stamp matches the current search, so a search costs only the nodes it touches.
+ * A search object is not thread-safe, borrow one per query from the {@link ORSearchPool} of the graph:
+ * <pre>{@code
+ * try (ORDijkstra dijkstra = ORDijkstra.acquire(graph))
+ * {
+ *     dijkstra.search(start, targets, profile);
+ * }
+ * }</pre>
+ * <p>
+ * Every search is recorded as {@link ORSearchEvent} while Flight Recorder is running.
+ */
+public class ORDijkstra implements AutoCloseable
+{
+    private static final int[] NO_TARGETS = new int[0];
+
+    private final OpenRouterGraph graph;
+    private final ORAdjacency adjacency;
+    // the pool to return to on close, null for a search created directly
+    private final ORSearchPool pool;
+
+    private final double[] weights;
+    private final int[] previousEdges;
+    private final int[] stamps;
+    private final boolean[] settled;
+    private final int[] targetStamps;
+    private int stamp;
+
+    // binary min-heap with lazy deletion, a node may be contained several times
+    private int[] heapNodes = new int[64];
+    private double[] heapWeights = new double[64];
+    private int heapSize;
+
+    private int settledCount;
+    private long scannedEdgeCount;
+    private long pushCount;
+    private boolean backward;
+    // settled nodes in order, only recorded by searchAll
+    private final ORIntArrayList settledNodes = new ORIntArrayList();
+    private boolean recordSettled;
+
+    /**
+     * Creates a new ORDijkstra.
+     * @param graph the graph to search
+     */
+    public ORDijkstra(OpenRouterGraph graph)
+    {
+        this(graph, null);
+    }
+
+    ORDijkstra(OpenRouterGraph graph, ORSearchPool pool)
+    {
+        this.graph = graph;
+        this.pool = pool;
+        this.adjacency = graph.getAdjacency();
+        int nodeCount = adjacency.getNodeCount();
+        this.weights = new double[nodeCount];
+        this.previousEdges = new int[nodeCount];
+        this.stamps = new int[nodeCount];
+        this.settled = new boolean[nodeCount];
+        this.targetStamps = new int[nodeCount];
+    }
+
+    /**
+     * Borrows a search object for the graph from its {@link ORSearchPool}.
+     * @param graph the graph to search
+     * @return the search object, must be closed after the query and not be used afterwards
+     */
+    public static ORDijkstra acquire(OpenRouterGraph graph)
+    {
+        return graph.getSearchPool().acquire();
+    }
+
+    /**
+     * Returns this search object to the pool it was borrowed from, does nothing for one created directly.
+     */
+    @Override
+    public void close()
+    {
+        if (pool != null) pool.release(this);
+    }
+
+    /**
+     * Searches from the start node until all target nodes are settled or no node is left.
+     * @param start the start node ID
+     * @param targets the target node IDs, may contain duplicates
+     * @param profile the routing profile
+     * @return FOUND if all targets were reached, NOT_FOUND if some are unreachable
+     */
+    public ORSearchStatus search(int start, int[] targets, IRoutingProfile profile)
+    {
+        return search(start, targets, profile, ORSearchBudget.UNLIMITED);
+    }
+
+    /**
+     * Searches from the start node until all target nodes are settled, no node is left or the budget is used up.
+     * Targets settled before the search was stopped are reached and have their final weight.
+     * @param start the start node ID
+     * @param targets the target node IDs, may contain duplicates
+     * @param profile the routing profile
+     * @param budget the limits of the search
+     * @return FOUND if all targets were reached, NOT_FOUND if some are unreachable, otherwise why the search stopped
+     */
+    public ORSearchStatus search(int start, int[] targets, IRoutingProfile profile, ORSearchBudget budget)
+    {
+        return search(start, targets, profile, budget, false);
+    }
+
+    /**
+     * Settles all nodes reachable from the start node up to the weight limit of the budget, e.g. for isochrones.
+     * The reached nodes are available from {@link #getReachedNodes()}.
+     * @param start the start node ID
+     * @param profile the routing profile
+     * @param budget the limits of the search, usually with a weight limit
+     * @return FOUND if all nodes up to the weight limit were settled, NOT_FOUND if the start node does not exist,
+     * otherwise why the search stopped
+     */
+    public ORSearchStatus searchAll(int start, IRoutingProfile profile, ORSearchBudget budget)
+    {
+        recordSettled = true;
+        try
+        {
+            return search(start, NO_TARGETS, profile, budget, false);
+        }
+        finally
+        {
+            recordSettled = false;
+        }
+    }
+
+    /**
+     * Searches backward from the start node, following incoming edges, until all target nodes are settled,
+     * no node is left or the budget is used up. The weight of a node is then the weight of its route to the start node.
+     * @param start the start node ID, the end of all routes
+     * @param targets the target node IDs, may contain duplicates
+     * @param profile the routing profile
+     * @param budget the limits of the search
+     * @return FOUND if all targets were reached, NOT_FOUND if some are unreachable, otherwise why the search stopped
+     */
+    public ORSearchStatus searchBackward(int start, int[] targets, IRoutingProfile profile, ORSearchBudget budget)
+    {
+        return search(start, targets, profile, budget, true);
+    }
+
+    private ORSearchStatus search(int start, int[] targets, IRoutingProfile profile, ORSearchBudget budget, boolean backward)
+    {
+        ORSearchEvent event = new ORSearchEvent();
+        event.begin();
+        ORSearchStatus status = run(start, targets, profile, budget, backward);
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.profile = profile.getName();
+            event.startNode = start;
+            event.targets = targets.length;
+            event.backward = backward;
+            event.status = status.name();
+            event.settledNodes = settledCount;
+            event.scannedEdges = scannedEdgeCount;
+            event.heapPushes = pushCount;
+            event.commit();
+        }
+        return status;
+    }
+
+    private ORSearchStatus run(int start, int[] targets, IRoutingProfile profile, ORSearchBudget budget, boolean backward)
+    {
+        this.backward = backward;
+        nextStamp();
+        heapSize = 0;
+        settledCount = 0;
+        scannedEdgeCount = 0;
+        pushCount = 0;
+        settledNodes.clear();
+
+        int remaining = 0;
+        boolean missing = false;
+        for (int target : targets)
+        {
+            if (!adjacency.nodeExists(target))
+            {
+                missing = true;
+                continue;
+            }
+            if (targetStamps[target] == stamp) continue;
+            targetStamps[target] = stamp;
+            remaining++;
+        }
+        if (!adjacency.nodeExists(start)) return ORSearchStatus.NOT_FOUND;
+        if (remaining == 0 && !recordSettled) return missing ? ORSearchStatus.NOT_FOUND : ORSearchStatus.FOUND;
+
+        int maxSettled = budget.getMaxSettledNodes();
+        double maxWeight = budget.getMaxWeight();
+        long deadline = budget.getDeadline(System.nanoTime());
+
+        touch(start);
+        weights[start] = 0;
+        push(start, 0);
+
+        while (heapSize > 0)
+        {
+            double weight = heapWeights[0];
+            int node = pop();
+            if (settled[node]) continue;
+            if (weight > maxWeight) return recordSettled ? ORSearchStatus.FOUND : ORSearchStatus.BUDGET_EXCEEDED;
+            settled[node] = true;
+            settledCount++;
+            if (recordSettled) settledNodes.add(node);
+
+            if (targetStamps[node] == stamp && --remaining == 0) break;
+            if (settledCount >= maxSettled) return ORSearchStatus.BUDGET_EXCEEDED;
+            if (settledCount % ORSearchBudget.CHECK_INTERVAL == 0)
+            {
+                ORSearchStatus stop = budget.check(deadline);
+                if (stop != null) return stop;
+            }
+
+            int first = backward ? adjacency.getInStart(node) : adjacency.getOutStart(node);
+            int last = backward ? adjacency.getInEnd(node) : adjacency.getOutEnd(node);
+            scannedEdgeCount += last - first;
+            for (int i = first; i < last; i++)
+            {
+                int edge = backward ? adjacency.getInEdge(i) : adjacency.getOutEdge(i);
+                long meta = adjacency.getEdgeMeta(edge);
+                if (!profile.isAccessible(meta)) continue;
+
+                int neighbor = backward ? adjacency.getEdgeFrom(edge) : adjacency.getEdgeTo(edge);
+                double newWeight = weight + profile.getWeight(meta);
+                if (stamps[neighbor] != stamp) touch(neighbor);
+                else if (settled[neighbor] || newWeight >= weights[neighbor]) continue;
+                weights[neighbor] = newWeight;
+                previousEdges[neighbor] = edge;
+                push(neighbor, newWeight);
+            }
+        }
+        return remaining == 0 && !missing ? ORSearchStatus.FOUND : ORSearchStatus.NOT_FOUND;
+    }
+
+    /**
+     * Returns true if the node was settled by the last search.
+     * @param node the node ID
+     * @return true if the node is reachable from the start node
+     */
+    public boolean isReached(int node)
+    {
+        return adjacency.nodeExists(node) && stamps[node] == stamp && settled[node];
+    }
+
+    /**
+     * Returns the weight of the shortest path to a node of the last search.
+     * @param node the node ID
+     * @return the weight or infinity if the node was not reached
+     */
+    public double getWeight(int node)
+    {
+        return isReached(node) ? weights[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the number of nodes settled by the last search.
+     * @return the number of settled nodes
+     */
+    public int getSettledCount()
+    {
+        return settledCount;
+    }
+
+    /**
+     * Returns the nodes settled by the last {@link #searchAll} in order of their weight.
+     * @return the node IDs
+     */
+    public int[] getReachedNodes()
+    {
+        return settledNodes.toArray();
+    }
+
+    /**
+     * Returns the number of edges of settled nodes scanned by the last search, including inaccessible ones.
+     * @return the number of scanned edges
+     */
+    public long getScannedEdgeCount()
+    {
+        return scannedEdgeCount;
+    }
+
+    /**
+     * Returns the number of edges relaxed by the last search, i.e. edges which improved the weight of a node.
+     * @return the number of relaxed edges
+     */
+    public long getRelaxedEdgeCount()
+    {
+        // every relaxation pushes the node, the start node is pushed without one
+        return Math.max(0, pushCount - 1);
+    }
+
+    /**
+     * Returns the number of heap insertions of the last search.
+     * @return the number of pushes
+     */
+    public long getHeapPushCount()
+    {
+        return pushCount;
+    }
+
+    /**
+     * Returns the number of heap removals of the last search, including stale entries of already settled nodes.
+     * @return the number of pops
+     */
+    public long getHeapPopCount()
+    {
+        return pushCount - heapSize;
+    }
+
+    /**
+     * Builds the route of the last search between the start node and a node, in driving direction:
+     * from the start to the node for a forward search, from the node to the start for a backward search.
+     * @param target the target node ID
+     * @return the route or null if the node was not reached
+     */
+    public OpenRouterRoute getRoute(int target)
+    {
+        if (!isReached(target)) return null;
+
+        List<OpenRouterEdge> graphEdges = graph.getEdges();
+        ArrayList<OpenRouterNode> nodes = new ArrayList<>();
+        ArrayList<OpenRouterEdge> edges = new ArrayList<>();
+        int node = target;
+        nodes.add(adjacency.getNode(node));
+        while (previousEdges[node] >= 0)
+        {
+            int edge = previousEdges[node];
+            edges.add(graphEdges.get(edge));
+            node = backward ? adjacency.getEdgeTo(edge) : adjacency.getEdgeFrom(edge);
+            nodes.add(adjacency.getNode(node));
+        }
+        if (!backward)
+        {
+            Collections.reverse(nodes);
+            Collections.reverse(edges);
+        }
+        return new OpenRouterRoute(nodes, edges, weights[target], graph.getShapeStore());
+    }
+
+    private void nextStamp()
+    {
+        if (++stamp == Integer.MAX_VALUE)
+        {
+            Arrays.fill(stamps, 0);
+            Arrays.fill(targetStamps, 0);
+            stamp = 1;
+        }
+    }
+
+    private void touch(int node)
+    {
+        stamps[node] = stamp;
+        settled[node] = false;
+        previousEdges[node] = -1;
+    }
+
+    // --- heap ---
+
+    private void push(int node, double weight)
+    {
+        pushCount++;
+        if (heapSize == heapNodes.length)
+        {
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            heapWeights = Arrays.copyOf(heapWeights, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            if (heapWeights[parent] <= weight) break;
+            heapNodes[i] = heapNodes[parent];
+            heapWeights[i] = heapWeights[parent];
+            i = parent;
+        }
+        heapNodes[i] = node;
+        heapWeights[i] = weight;
+    }
+
+    private int pop()
+    {
+        int result = heapNodes[0];
+        int node = heapNodes[--heapSize];
+        double weight = heapWeights[heapSize];
+        int i = 0;
+        while (true)
+        {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapWeights[child + 1] < heapWeights[child]) child++;
+            if (weight <= heapWeights[child]) break;
+            heapNodes[i] = heapNodes[child];
+            heapWeights[i] = heapWeights[child];
+            i = child;
+        }
+        heapNodes[i] = node;
+        heapWeights[i] = weight;
+        return result;
+    }
+}
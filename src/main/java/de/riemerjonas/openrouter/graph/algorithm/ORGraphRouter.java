@@ -1,11 +1,17 @@
 package de.riemerjonas.openrouter.graph.algorithm;
 
-import de.riemerjonas.openrouter.core.*;
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterPoint;
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.OpenRouterTileMap;
 import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
 import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
 import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.metrics.ORMetrics;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.List;
 
 public class ORGraphRouter {
 
@@ -15,114 +21,187 @@ public class ORGraphRouter {
     {
         return route(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude(), graph, profile);
     }
+
     public static List<OpenRouterNode> route(double latStart, double lonStart, double latEnd, double lonEnd, OpenRouterGraph graph, IRoutingProfile profile)
+    {
+        OpenRouterRoute route = findRoute(latStart, lonStart, latEnd, lonEnd, graph, profile);
+        return route == null ? null : route.getNodes();
+    }
+
+    public static OpenRouterRoute findRoute(IGeoCoordinate start, IGeoCoordinate end, OpenRouterGraph graph, IRoutingProfile profile)
+    {
+        return findRoute(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude(), graph, profile);
+    }
+
+    /**
+     * Searches the route between the nearest nodes of the given coordinates.
+     * @return the route with edges and full geometry or null if no route was found
+     */
+    public static OpenRouterRoute findRoute(double latStart, double lonStart, double latEnd, double lonEnd, OpenRouterGraph graph, IRoutingProfile profile)
+    {
+        return searchRoute(latStart, lonStart, latEnd, lonEnd, graph, profile, ORSearchBudget.UNLIMITED).getRoute();
+    }
+
+    /**
+     * Searches the route between two nodes.
+     * @return the route with edges and full geometry or null if no route was found
+     */
+    public static OpenRouterRoute findRoute(int startId, int endId, OpenRouterGraph graph, IRoutingProfile profile)
+    {
+        return searchRoute(startId, endId, graph, profile, ORSearchBudget.UNLIMITED).getRoute();
+    }
+
+    /**
+     * Searches the routes from one node to many nodes with a single search.
+     * @param startId the start node ID
+     * @param endIds the end node IDs
+     * @return the route per end node, null entries for unreachable nodes
+     */
+    public static OpenRouterRoute[] findRoutes(int startId, int[] endIds, OpenRouterGraph graph, IRoutingProfile profile)
+    {
+        ORRouteResult[] results = searchRoutes(startId, endIds, graph, profile, ORSearchBudget.UNLIMITED);
+        OpenRouterRoute[] routes = new OpenRouterRoute[results.length];
+        for (int i = 0; i < results.length; i++) routes[i] = results[i].getRoute();
+        return routes;
+    }
+
+    public static ORRouteResult searchRoute(IGeoCoordinate start, IGeoCoordinate end, OpenRouterGraph graph, IRoutingProfile profile, ORSearchBudget budget)
+    {
+        return searchRoute(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude(), graph, profile, budget);
+    }
+
+    /**
+     * Searches the route between the nearest nodes of the given coordinates within a budget.
+     * @return the result, NOT_FOUND if no nodes are near the coordinates
+     */
+    public static ORRouteResult searchRoute(double latStart, double lonStart, double latEnd, double lonEnd, OpenRouterGraph graph, IRoutingProfile profile, ORSearchBudget budget)
+    {
+        return searchRoute(latStart, lonStart, latEnd, lonEnd, graph, profile, budget, null);
+    }
+
+    /**
+     * Searches the route between the nearest nodes of the given coordinates within a budget and collects statistics.
+     * @param stats the statistics to fill, null to collect none
+     * @return the result with the statistics, NOT_FOUND if no nodes are near the coordinates
+     */
+    public static ORRouteResult searchRoute(double latStart, double lonStart, double latEnd, double lonEnd, OpenRouterGraph graph, IRoutingProfile profile, ORSearchBudget budget, ORSearchStats stats)
     {
         // Getting start and end nodes
+        long statsStart = stats != null ? System.nanoTime() : 0;
+        long snapStart = ORMetrics.SNAP.start();
         OpenRouterNode startNode = graph.getNearestNode(latStart, lonStart);
         OpenRouterNode endNode = graph.getNearestNode(latEnd, lonEnd);
-
-        // Setting up a ViewBox with margin
-        double margin = 0.2;
-        double latMin = Math.min(latStart, latEnd) - margin;
-        double latMax = Math.max(latStart, latEnd) + margin;
-        double lonMin = Math.min(lonStart, lonEnd) - margin;
-        double lonMax = Math.max(lonStart, lonEnd) + margin;
-        OpenRouterPoint viewBoxPoint1 = new OpenRouterPoint(latMin, lonMin);
-        OpenRouterPoint viewBoxPoint2 = new OpenRouterPoint(latMax, lonMax);
-        OpenRouterViewBox viewBox = new OpenRouterViewBox(viewBoxPoint1, viewBoxPoint2);
+        ORMetrics.SNAP.stop(snapStart);
+        if (stats != null)
+        {
+            long nanos = System.nanoTime() - statsStart;
+            OpenRouterTileMap tileMap = graph.getTileMap();
+            int candidates = tileMap.getNodesInTile(OpenRouterTileMap.getTileID(latStart, lonStart)).size()
+                    + tileMap.getNodesInTile(OpenRouterTileMap.getTileID(latEnd, lonEnd)).size();
+            stats.recordSnap(nanos, snapDistance(startNode, latStart, lonStart), snapDistance(endNode, latEnd, lonEnd), candidates);
+        }
 
         if (startNode == null || endNode == null)
         {
             OpenRouterLog.e(TAG, "Start or end node is null");
-            return null;
+            return withStats(ORRouteResult.of(ORSearchStatus.NOT_FOUND), stats);
         }
-        else
+        else if (OpenRouterLog.isDebugEnabled())
         {
             OpenRouterLog.d(TAG, "Start node: " + startNode.getId() + " (" + startNode.getLatitude() + ", " + startNode.getLongitude() + ")");
             OpenRouterLog.d(TAG, "End node: " + endNode.getId() + " (" + endNode.getLatitude() + ", " + endNode.getLongitude() + ")");
         }
+        return searchRoute(startNode.getId(), endNode.getId(), graph, profile, budget, stats);
+    }
 
+    /**
+     * Searches the route between two nodes within a budget.
+     * @return the result
+     */
+    public static ORRouteResult searchRoute(int startId, int endId, OpenRouterGraph graph, IRoutingProfile profile, ORSearchBudget budget)
+    {
+        return searchRoute(startId, endId, graph, profile, budget, null);
+    }
 
-        // Prepare Dijkstra's algorithm
-        List<OpenRouterNode> nodes = graph.getTileMap().getNodesInViewBox(viewBox);
-        List<OpenRouterEdge> edges = viewBox.filterEdges(graph.getEdges(), nodes);
-
-        OpenRouterLog.d(TAG, "Use " + nodes.size() + " nodes and " + edges.size() + " edges for routing.");
-
-        Map<Integer, OpenRouterNode> nodeById = new HashMap<>();
-        for (OpenRouterNode node : nodes)
+    /**
+     * Searches the route between two nodes within a budget and collects statistics.
+     * @param stats the statistics to fill, null to collect none
+     * @return the result with the statistics
+     */
+    public static ORRouteResult searchRoute(int startId, int endId, OpenRouterGraph graph, IRoutingProfile profile, ORSearchBudget budget, ORSearchStats stats)
+    {
+        // Nodes in different weakly connected components are not connected by any path
+        if (graph.getComponents().isDisconnected(startId, endId))
         {
-            nodeById.put(node.getId(), node);
+            OpenRouterLog.d(TAG, "Start and end node are in different components");
+            return withStats(ORRouteResult.of(ORSearchStatus.NOT_FOUND), stats);
         }
 
-        Map<Integer, List<OpenRouterEdge>> edgesByFrom = new HashMap<>();
-        for (OpenRouterEdge edge : edges)
+        try (ORDijkstra dijkstra = ORDijkstra.acquire(graph))
         {
-            edgesByFrom.computeIfAbsent(edge.getFromID(), k -> new ArrayList<>()).add(edge);
+            long statsStart = stats != null ? System.nanoTime() : 0;
+            long searchStart = ORMetrics.SEARCH.start();
+            ORSearchStatus status = dijkstra.search(startId, new int[]{endId}, profile, budget);
+            ORMetrics.SEARCH.stop(searchStart);
+            if (stats != null) stats.recordSearch(System.nanoTime() - statsStart, dijkstra);
+            if (OpenRouterLog.isDebugEnabled()) OpenRouterLog.d(TAG, "Settled " + dijkstra.getSettledCount() + " nodes for routing: " + status);
+            if (status != ORSearchStatus.FOUND) return withStats(ORRouteResult.of(status), stats);
+
+            statsStart = stats != null ? System.nanoTime() : 0;
+            long unpackStart = ORMetrics.UNPACK.start();
+            OpenRouterRoute route = dijkstra.getRoute(endId);
+            ORMetrics.UNPACK.stop(unpackStart);
+            if (stats != null) stats.recordUnpack(System.nanoTime() - statsStart);
+            return withStats(ORRouteResult.found(route), stats);
         }
+    }
 
-        Map<Integer, Integer> previous = new HashMap<>(); // id → Vorgänger-ID
-        Map<Integer, Double> distance = new HashMap<>();
-        PriorityQueue<NodeEntry> queue = new PriorityQueue<>(Comparator.comparingDouble(n -> n.priority));
-
-        // Check for start and end nodes
-        if (edgesByFrom.get(startNode.getId()) == null)
-        {
-            OpenRouterLog.e(TAG, "Start node has no outgoing edges!");
-        }
-        if (edgesByFrom.get(endNode.getId()) == null)
+    /**
+     * Searches the routes from one node to many nodes with a single search within a budget.
+     * Targets reached before the budget was used up are FOUND, the others get the status of the search.
+     * @param startId the start node ID
+     * @param endIds the end node IDs
+     * @return the result per end node
+     */
+    public static ORRouteResult[] searchRoutes(int startId, int[] endIds, OpenRouterGraph graph, IRoutingProfile profile, ORSearchBudget budget)
+    {
+        ORRouteResult[] results = new ORRouteResult[endIds.length];
+        Arrays.fill(results, ORRouteResult.of(ORSearchStatus.NOT_FOUND));
+        ORComponents components = graph.getComponents();
+        int[] targets = new int[endIds.length];
+        int count = 0;
+        for (int endId : endIds)
         {
-            OpenRouterLog.e(TAG, "End node has no incoming edges?");
+            // an unreachable target would make the search exhaust the graph
+            if (!components.isDisconnected(startId, endId)) targets[count++] = endId;
         }
+        if (count == 0) return results;
 
-
-        // Initialisierung
-        distance.put(startNode.getId(), 0.0);
-        queue.add(new NodeEntry(startNode.getId(), 0.0));
-
-        while (!queue.isEmpty())
+        try (ORDijkstra dijkstra = ORDijkstra.acquire(graph))
         {
-            NodeEntry current = queue.poll();
-            int currentId = current.nodeId;
-
-            if (currentId == endNode.getId()) break;
-
-            List<OpenRouterEdge> neighbors = edgesByFrom.getOrDefault(currentId, Collections.emptyList());
-            for (OpenRouterEdge edge : neighbors)
+            long searchStart = ORMetrics.SEARCH.start();
+            ORSearchStatus status = dijkstra.search(startId, Arrays.copyOf(targets, count), profile, budget);
+            ORMetrics.SEARCH.stop(searchStart);
+            long unpackStart = ORMetrics.UNPACK.start();
+            ORRouteResult unreached = ORRouteResult.of(status == ORSearchStatus.FOUND ? ORSearchStatus.NOT_FOUND : status);
+            for (int i = 0; i < endIds.length; i++)
             {
-                int neighborId = edge.getToID();
-                double cost = profile.getWeight(edge);
-
-                double newDist = distance.get(currentId) + cost;
-                if (newDist < distance.getOrDefault(neighborId, Double.POSITIVE_INFINITY))
-                {
-                    distance.put(neighborId, newDist);
-                    previous.put(neighborId, currentId);
-                    queue.add(new NodeEntry(neighborId, newDist));
-                }
+                OpenRouterRoute route = dijkstra.getRoute(endIds[i]);
+                if (route != null) results[i] = ORRouteResult.found(route);
+                else if (!components.isDisconnected(startId, endIds[i])) results[i] = unreached;
             }
+            ORMetrics.UNPACK.stop(unpackStart);
         }
-
-        // Weg rückverfolgen
-        LinkedList<OpenRouterNode> path = new LinkedList<>();
-        Integer current = endNode.getId();
-        while (current != null && nodeById.containsKey(current))
-        {
-            path.addFirst(nodeById.get(current));
-            current = previous.get(current);
-        }
-
-        return path.isEmpty() || !path.getFirst().equals(startNode) ? null : path;
+        return results;
     }
 
-    // Hilfsklasse
-    private static class NodeEntry {
-        int nodeId;
-        double priority;
+    private static ORRouteResult withStats(ORRouteResult result, ORSearchStats stats)
+    {
+        return stats != null ? result.withStats(stats) : result;
+    }
 
-        NodeEntry(int nodeId, double priority) {
-            this.nodeId = nodeId;
-            this.priority = priority;
-        }
+    private static double snapDistance(OpenRouterNode node, double latitude, double longitude)
+    {
+        return node != null ? node.distanceTo(new OpenRouterPoint(latitude, longitude)) : Double.NaN;
     }
 }
@@ -0,0 +1,322 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.collections.ORIntArrayList;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.core.profiles.RoutingProfileFast;
+import de.riemerjonas.openrouter.core.profiles.RoutingProfileShort;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
+import de.riemerjonas.openrouter.graph.core.ORGraphHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the {@link ORHubLabels} of a graph for a profile.
+ * <p>
+ * The nodes are ordered by an {@link ORContractionHierarchy}, the most important node is hub 0. Labels are computed
+ * top-down: the forward label of a node is the node itself plus the forward labels of its upward neighbors, extended
+ * by the arc weights, backward labels likewise. An entry is pruned if the label reaches its hub shorter via another
+ * hub, checked against the backward label of the hub. A node only depends on nodes of higher rank, so all nodes of one
+ * level, the length of the longest upward path from them, are computed in parallel.
+ * <p>
+ * {@link #buildAndSave} writes the label file next to the graph file, where {@link ORGraphHandler#load(File)} finds
+ * it; {@link #main} does so for the default profiles of a saved graph.
+ */
+public final class ORHubLabelBuilder
+{
+    private static final String TAG = "ORHubLabelBuilder";
+    // relative tolerance of pruning, larger than the rounding of the float weights, so no shortest entry is pruned
+    private static final double PRUNE_TOLERANCE = 1E-5;
+
+    private ORHubLabelBuilder()
+    {
+    }
+
+    /**
+     * Builds the hub labels of a graph.
+     * @param graph the graph
+     * @param profile the routing profile
+     * @return the labels in memory, see {@link ORHubLabels#save}
+     */
+    public static ORHubLabels build(OpenRouterGraph graph, IRoutingProfile profile)
+    {
+        ORAdjacency adjacency = graph.getAdjacency();
+        ORContractionHierarchy hierarchy = ORContractionHierarchy.build(adjacency, profile);
+        long start = System.nanoTime();
+        int n = adjacency.getNodeCount();
+        int[] hubOf = new int[n];
+        int[] nodeOfHub = new int[n];
+        for (int v = 0; v < n; v++)
+        {
+            hubOf[v] = n - 1 - hierarchy.rank[v];
+            nodeOfHub[hubOf[v]] = v;
+        }
+
+        // level of a node: length of the longest upward path from it, nodes are grouped by level
+        int[] levels = new int[n];
+        int levelCount = 0;
+        for (int hub = 0; hub < n; hub++)
+        {
+            int v = nodeOfHub[hub];
+            int level = 0;
+            for (int u : hierarchy.upOutNodes[v]) level = Math.max(level, levels[u] + 1);
+            for (int u : hierarchy.upInNodes[v]) level = Math.max(level, levels[u] + 1);
+            levels[v] = level;
+            levelCount = Math.max(levelCount, level + 1);
+        }
+        int[] levelStart = new int[levelCount + 1];
+        for (int v = 0; v < n; v++) levelStart[levels[v] + 1]++;
+        for (int l = 0; l < levelCount; l++) levelStart[l + 1] += levelStart[l];
+        int[] levelNodes = new int[n];
+        int[] position = Arrays.copyOf(levelStart, levelCount);
+        for (int v = 0; v < n; v++) levelNodes[position[levels[v]]++] = v;
+
+        Labels forward = new Labels(n);
+        Labels backward = new Labels(n);
+        ThreadLocal<Scratch> scratches = ThreadLocal.withInitial(() -> new Scratch(n));
+        for (int l = 0; l < levelCount; l++)
+        {
+            IntStream.range(levelStart[l], levelStart[l + 1]).parallel().forEach(i -> {
+                int v = levelNodes[i];
+                if (!adjacency.nodeExists(v)) return;
+                Scratch scratch = scratches.get();
+                computeLabel(v, hubOf[v], hierarchy.upOutNodes[v], hierarchy.upOutWeights[v], forward, backward, nodeOfHub, scratch);
+                computeLabel(v, hubOf[v], hierarchy.upInNodes[v], hierarchy.upInWeights[v], backward, forward, nodeOfHub, scratch);
+            });
+        }
+
+        ORHubLabels labels = encode(profile.getName(), ORHubLabels.checksum(graph), n, forward, backward);
+        OpenRouterLog.i(TAG, "Built hub labels for " + profile.getName() + " in " + (System.nanoTime() - start) / 1000000
+                + " ms, " + levelCount + " levels, " + String.format("%.1f", (forward.entryCount() + backward.entryCount()) / (2.0 * n))
+                + " entries per label, " + labels.getDataSize() / 1024 + " KiB");
+        return labels;
+    }
+
+    /**
+     * Builds the hub labels of a graph, saves them next to its graph file and attaches them to the graph.
+     * @param graphFile the file the graph was loaded from or saved to
+     * @param graph the graph
+     * @param profile the routing profile
+     * @return the label file, see {@link ORHubLabels#getLabelFile}
+     * @throws IOException if writing fails
+     */
+    public static File buildAndSave(File graphFile, OpenRouterGraph graph, IRoutingProfile profile) throws IOException
+    {
+        ORHubLabels labels = build(graph, profile);
+        File labelFile = ORHubLabels.getLabelFile(graphFile, profile);
+        // a previous file may still be mapped, e.g. by a server, replacing it keeps that mapping valid
+        File tempFile = new File(labelFile.getPath() + ".tmp");
+        labels.save(tempFile);
+        Files.move(tempFile.toPath(), labelFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        graph.setHubLabels(labels);
+        OpenRouterLog.i(TAG, "Saved hub labels to file: " + labelFile.getAbsolutePath());
+        return labelFile;
+    }
+
+    /**
+     * Builds and saves the hub labels of a graph file for the fast and the short profile.
+     * @param args the graph file
+     * @throws IOException if writing fails
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: ORHubLabelBuilder <graph file>");
+            return;
+        }
+        File graphFile = new File(args[0]);
+        OpenRouterGraph graph = ORGraphHandler.load(graphFile);
+        if (graph == null) return;
+        for (IRoutingProfile profile : new IRoutingProfile[]{new RoutingProfileFast(), new RoutingProfileShort()})
+        {
+            buildAndSave(graphFile, graph, profile);
+        }
+        graph.release();
+    }
+
+    /**
+     * Computes one label of a node from the labels of the same direction of its upward neighbors.
+     * @param labels the labels of the direction to compute
+     * @param opposite the labels of the other direction, for pruning
+     */
+    private static void computeLabel(int v, int hub, int[] neighbors, double[] weights, Labels labels, Labels opposite,
+                                     int[] nodeOfHub, Scratch scratch)
+    {
+        scratch.begin();
+        scratch.offer(hub, 0);
+        for (int i = 0; i < neighbors.length; i++)
+        {
+            int u = neighbors[i];
+            int[] hubs = labels.hubs[u];
+            float[] hubWeights = labels.weights[u];
+            if (hubs == null) continue;
+            for (int k = 0; k < hubs.length; k++) scratch.offer(hubs[k], weights[i] + hubWeights[k]);
+        }
+
+        int[] candidates = scratch.touched.toArray();
+        Arrays.sort(candidates);
+        int[] hubs = new int[candidates.length];
+        float[] hubWeights = new float[candidates.length];
+        int count = 0;
+        for (int h : candidates)
+        {
+            double weight = scratch.weights[h];
+            if (h != hub && isDominated(scratch, opposite, nodeOfHub[h], weight)) continue;
+            hubs[count] = h;
+            hubWeights[count++] = (float) weight;
+        }
+        labels.hubs[v] = Arrays.copyOf(hubs, count);
+        labels.weights[v] = Arrays.copyOf(hubWeights, count);
+    }
+
+    /**
+     * Returns true if the hub node is reached shorter than the weight via another hub of the label in the scratch.
+     */
+    private static boolean isDominated(Scratch scratch, Labels opposite, int hubNode, double weight)
+    {
+        int[] hubs = opposite.hubs[hubNode];
+        float[] hubWeights = opposite.weights[hubNode];
+        double limit = weight * (1 - PRUNE_TOLERANCE);
+        for (int k = 0; k < hubs.length; k++)
+        {
+            if (scratch.contains(hubs[k]) && scratch.weights[hubs[k]] + hubWeights[k] < limit) return true;
+        }
+        return false;
+    }
+
+    private static ORHubLabels encode(String profileName, long checksum, int n, Labels forward, Labels backward)
+    {
+        long[] offsets = new long[2 * (n + 1)];
+        long size = 0;
+        int maxLabelBytes = 0;
+        for (int i = 0; i < 2 * n; i++)
+        {
+            Labels labels = i < n ? forward : backward;
+            int v = i < n ? i : i - n;
+            offsets[i < n ? i : i + 1] = size;
+            int bytes = encodedSize(labels.hubs[v]);
+            maxLabelBytes = Math.max(maxLabelBytes, bytes);
+            size += bytes;
+            if (i == n - 1) offsets[n] = size;
+        }
+        offsets[2 * n + 1] = size;
+
+        ByteBuffer[] chunks = new ByteBuffer[(int) Math.max(1, (size + ORHubLabels.CHUNK_SIZE - 1) / ORHubLabels.CHUNK_SIZE)];
+        for (int k = 0; k < chunks.length; k++)
+        {
+            long chunkStart = (long) k * ORHubLabels.CHUNK_SIZE;
+            chunks[k] = ByteBuffer.allocate((int) Math.min(size - chunkStart, (long) ORHubLabels.CHUNK_SIZE + maxLabelBytes));
+        }
+        for (int i = 0; i < 2 * n; i++)
+        {
+            Labels labels = i < n ? forward : backward;
+            int v = i < n ? i : i - n;
+            long offset = offsets[i < n ? i : i + 1];
+            int[] hubs = labels.hubs[v];
+            if (hubs == null) continue;
+            ByteBuffer chunk = chunks[(int) (offset / ORHubLabels.CHUNK_SIZE)];
+            chunk.position((int) (offset % ORHubLabels.CHUNK_SIZE));
+            int previous = 0;
+            for (int k = 0; k < hubs.length; k++)
+            {
+                int delta = hubs[k] - previous;
+                previous = hubs[k];
+                while ((delta & ~0x7F) != 0)
+                {
+                    chunk.put((byte) ((delta & 0x7F) | 0x80));
+                    delta >>>= 7;
+                }
+                chunk.put((byte) delta);
+                chunk.putFloat(labels.weights[v][k]);
+            }
+        }
+        return new ORHubLabels(profileName, checksum, n, maxLabelBytes, size, LongBuffer.wrap(offsets), chunks);
+    }
+
+    private static int encodedSize(int[] hubs)
+    {
+        if (hubs == null) return 0;
+        int size = 0;
+        int previous = 0;
+        for (int hub : hubs)
+        {
+            int delta = hub - previous;
+            previous = hub;
+            size += 4 + (32 - Integer.numberOfLeadingZeros(delta | 1) + 6) / 7;
+        }
+        return size;
+    }
+
+    /**
+     * Labels of one direction during the build, sorted by hub.
+     */
+    private static final class Labels
+    {
+        final int[][] hubs;
+        final float[][] weights;
+
+        Labels(int nodeCount)
+        {
+            this.hubs = new int[nodeCount][];
+            this.weights = new float[nodeCount][];
+        }
+
+        long entryCount()
+        {
+            long count = 0;
+            for (int[] label : hubs) count += label != null ? label.length : 0;
+            return count;
+        }
+    }
+
+    /**
+     * Weights per hub of the label being computed, valid if their stamp matches.
+     */
+    private static final class Scratch
+    {
+        final double[] weights;
+        final int[] stamps;
+        final ORIntArrayList touched = new ORIntArrayList();
+        int stamp;
+
+        Scratch(int nodeCount)
+        {
+            this.weights = new double[nodeCount];
+            this.stamps = new int[nodeCount];
+        }
+
+        void begin()
+        {
+            stamp++;
+            touched.clear();
+        }
+
+        boolean contains(int hub)
+        {
+            return stamps[hub] == stamp;
+        }
+
+        void offer(int hub, double weight)
+        {
+            if (stamps[hub] != stamp)
+            {
+                stamps[hub] = stamp;
+                weights[hub] = weight;
+                touched.add(hub);
+            }
+            else if (weight < weights[hub])
+            {
+                weights[hub] = weight;
+            }
+        }
+    }
+}
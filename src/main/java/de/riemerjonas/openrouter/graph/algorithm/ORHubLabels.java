@@ -0,0 +1,372 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
+import de.riemerjonas.openrouter.graph.core.ORGraphHandler;
+import de.riemerjonas.openrouter.graph.core.ORGraphHolder;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Hub labels of a graph for one profile, answer the weight of the shortest path between two nodes without a search.
+ * <p>
+ * Every node has a forward label, the hubs it reaches with their weights, and a backward label, the hubs reaching it.
+ * The shortest path between two nodes passes a hub in the forward label of the start and the backward label of the
+ * target, so its weight is the minimum over their common hubs, found by merging the two labels sorted by hub.
+ * Hubs are numbered by importance, important hubs are shared by most labels and get the smallest numbers.
+ * Labels are built and saved by {@link ORHubLabelBuilder#buildAndSave}.
+ * <p>
+ * A label is stored as varint encoded hub differences, each followed by the weight as float. All labels lie in one
+ * data section which is memory-mapped in chunks of {@value #CHUNK_SIZE} bytes, each extended by the largest label,
+ * so every label can be read from the chunk it starts in. The file lies next to the graph file, named after the
+ * profile, and is attached to the graph by {@link ORGraphHandler#load(File)}. Its header holds a checksum of the
+ * edges, so labels of another graph are rejected.
+ * <p>
+ * Queries are thread-safe. A mapped file is unmapped on {@link OpenRouterGraph#release()}.
+ */
+public final class ORHubLabels
+{
+    private static final String TAG = "ORHubLabels";
+    public static final String FILE_SUFFIX = ".hublabels";
+    private static final int MAGIC = 0x4F52484C; // ORHL
+    private static final int VERSION = 1;
+    static final int CHUNK_SIZE = 1 << 30;
+
+    private final String profileName;
+    private final long checksum;
+    private final int nodeCount;
+    private final int maxLabelBytes;
+    private final long dataSize;
+    // forward label starts of all nodes and the end, then the same for the backward labels
+    private LongBuffer offsets;
+    private ByteBuffer[] chunks;
+    // all mapped regions of a loaded file, null for labels in memory
+    private MappedByteBuffer[] mapped;
+
+    ORHubLabels(String profileName, long checksum, int nodeCount, int maxLabelBytes, long dataSize,
+                LongBuffer offsets, ByteBuffer[] chunks)
+    {
+        this.profileName = profileName;
+        this.checksum = checksum;
+        this.nodeCount = nodeCount;
+        this.maxLabelBytes = maxLabelBytes;
+        this.dataSize = dataSize;
+        this.offsets = offsets;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Returns the weight of the shortest path between two nodes.
+     * @param from the start node ID
+     * @param to the target node ID
+     * @return the weight or infinity if the target is unreachable
+     */
+    public double getWeight(int from, int to)
+    {
+        if (from < 0 || to < 0 || from >= nodeCount || to >= nodeCount) return Double.POSITIVE_INFINITY;
+        LongBuffer offsets = this.offsets;
+        ByteBuffer[] chunks = this.chunks;
+        if (offsets == null) throw new IllegalStateException("Hub labels are released");
+
+        long forward = offsets.get(from);
+        long backward = offsets.get(nodeCount + 1 + to);
+        ByteBuffer a = chunks[(int) (forward / CHUNK_SIZE)];
+        ByteBuffer b = chunks[(int) (backward / CHUNK_SIZE)];
+        int aPosition = (int) (forward % CHUNK_SIZE);
+        int bPosition = (int) (backward % CHUNK_SIZE);
+        int aEnd = aPosition + (int) (offsets.get(from + 1) - forward);
+        int bEnd = bPosition + (int) (offsets.get(nodeCount + 2 + to) - backward);
+
+        double best = Double.POSITIVE_INFINITY;
+        int aHub = 0;
+        int bHub = 0;
+        float aWeight = 0;
+        float bWeight = 0;
+        boolean readA = true;
+        boolean readB = true;
+        while (true)
+        {
+            if (readA)
+            {
+                if (aPosition == aEnd) break;
+                int delta = 0;
+                int shift = 0;
+                byte value;
+                do
+                {
+                    value = a.get(aPosition++);
+                    delta |= (value & 0x7F) << shift;
+                    shift += 7;
+                }
+                while (value < 0);
+                aHub += delta;
+                aWeight = a.getFloat(aPosition);
+                aPosition += 4;
+            }
+            if (readB)
+            {
+                if (bPosition == bEnd) break;
+                int delta = 0;
+                int shift = 0;
+                byte value;
+                do
+                {
+                    value = b.get(bPosition++);
+                    delta |= (value & 0x7F) << shift;
+                    shift += 7;
+                }
+                while (value < 0);
+                bHub += delta;
+                bWeight = b.getFloat(bPosition);
+                bPosition += 4;
+            }
+            if (aHub == bHub)
+            {
+                best = Math.min(best, (double) aWeight + bWeight);
+                readA = true;
+                readB = true;
+            }
+            else
+            {
+                readA = aHub < bHub;
+                readB = !readA;
+            }
+        }
+        return best;
+    }
+
+    public String getProfileName()
+    {
+        return profileName;
+    }
+
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the size of all labels.
+     * @return the size in bytes
+     */
+    public long getDataSize()
+    {
+        return dataSize;
+    }
+
+    /**
+     * Returns true if the labels were built for a graph, see {@link #checksum(OpenRouterGraph)}.
+     * @param graph the graph
+     * @return true if the labels belong to the graph
+     */
+    public boolean matches(OpenRouterGraph graph)
+    {
+        return graph.getAdjacency().getNodeCount() == nodeCount && checksum(graph) == checksum;
+    }
+
+    // --- file ---
+
+    /**
+     * Returns the label file of a profile belonging to the given graph file.
+     * @param graphFile the graph file
+     * @param profile the routing profile
+     * @return the label file
+     */
+    public static File getLabelFile(File graphFile, IRoutingProfile profile)
+    {
+        return new File(graphFile.getPath() + "." + profile.getName() + FILE_SUFFIX);
+    }
+
+    /**
+     * Saves the labels.
+     * @param file the file
+     * @throws IOException if writing fails
+     */
+    public void save(File file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+        {
+            byte[] name = profileName.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(checksum);
+            out.writeInt(nodeCount);
+            out.writeInt(maxLabelBytes);
+            out.writeLong(dataSize);
+            out.writeInt(name.length);
+            out.write(name);
+            for (int i = 0; i < offsets.capacity(); i++) out.writeLong(offsets.get(i));
+
+            byte[] buffer = new byte[maxLabelBytes];
+            for (int i = 0; i + 1 < offsets.capacity(); i++)
+            {
+                // the forward end of the last node is the start of the first backward label
+                if (i == nodeCount) continue;
+                long start = offsets.get(i);
+                int length = (int) (offsets.get(i + 1) - start);
+                chunks[(int) (start / CHUNK_SIZE)].get((int) (start % CHUNK_SIZE), buffer, 0, length);
+                out.write(buffer, 0, length);
+            }
+        }
+        OpenRouterLog.d(TAG, "Saved hub labels to file: " + file.getAbsolutePath());
+    }
+
+    /**
+     * Maps a label file and registers its release with the graph.
+     * @param file the label file
+     * @param graph the graph the labels were built for
+     * @return the labels
+     * @throws IOException if reading fails or the file does not belong to the graph
+     */
+    public static ORHubLabels load(File file, OpenRouterGraph graph) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 12)))
+        {
+            if (in.readInt() != MAGIC) throw new IOException("Not a hub label file: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported hub label version " + version);
+            long checksum = in.readLong();
+            int nodeCount = in.readInt();
+            int maxLabelBytes = in.readInt();
+            long dataSize = in.readLong();
+            byte[] name = new byte[in.readInt()];
+            in.readFully(name);
+            long headerSize = 36L + name.length;
+
+            ORHubLabels labels = new ORHubLabels(new String(name, StandardCharsets.UTF_8), checksum, nodeCount, maxLabelBytes,
+                    dataSize, null, null);
+            if (!labels.matches(graph)) throw new IOException("Hub labels do not belong to the graph: " + file);
+
+            long offsetsSize = 16L * (nodeCount + 1);
+            long dataStart = headerSize + offsetsSize;
+            if (channel.size() != dataStart + dataSize) throw new IOException("Truncated hub label file: " + file);
+            int chunkCount = (int) Math.max(1, (dataSize + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[chunkCount + 1];
+            mapped[chunkCount] = channel.map(FileChannel.MapMode.READ_ONLY, headerSize, offsetsSize);
+            for (int k = 0; k < chunkCount; k++)
+            {
+                long start = (long) k * CHUNK_SIZE;
+                long size = Math.min(dataSize - start, (long) CHUNK_SIZE + maxLabelBytes);
+                mapped[k] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + start, Math.max(0, size));
+            }
+            labels.offsets = mapped[chunkCount].asLongBuffer();
+            labels.chunks = Arrays.copyOf(mapped, chunkCount, ByteBuffer[].class);
+            labels.mapped = mapped;
+            graph.addReleaseHook(labels::release);
+            OpenRouterLog.i(TAG, "Mapped hub labels for " + labels.profileName + " from file: " + file.getAbsolutePath());
+            return labels;
+        }
+    }
+
+    /**
+     * Maps all label files next to a graph file and attaches them to the graph.
+     * Files which cannot be mapped are skipped with a warning.
+     * @param graphFile the graph file
+     * @param graph the loaded graph
+     */
+    public static void attachAll(File graphFile, OpenRouterGraph graph)
+    {
+        File directory = graphFile.getAbsoluteFile().getParentFile();
+        String prefix = graphFile.getName() + ".";
+        File[] files = directory != null ? directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(FILE_SUFFIX)) : null;
+        if (files == null) return;
+        for (File file : files)
+        {
+            try
+            {
+                graph.setHubLabels(load(file, graph));
+            }
+            catch (IOException e)
+            {
+                OpenRouterLog.w(TAG, "Skipped hub labels " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns a checksum of the edges of a graph, which identifies the graph the labels were built for.
+     * @param graph the graph
+     * @return the checksum
+     */
+    static long checksum(OpenRouterGraph graph)
+    {
+        ORAdjacency adjacency = graph.getAdjacency();
+        long hash = adjacency.getNodeCount();
+        for (int e = 0; e < adjacency.getEdgeCount(); e++)
+        {
+            hash = hash * 31 + adjacency.getEdgeFrom(e);
+            hash = hash * 31 + adjacency.getEdgeTo(e);
+            hash = hash * 31 + adjacency.getEdgeMeta(e);
+        }
+        return hash;
+    }
+
+    /**
+     * Drops the buffers and unmaps mapped chunks right away instead of at garbage collection.
+     * No query may run on the labels anymore, which {@link ORGraphHolder}
+     * ensures by releasing a graph only after its last lease.
+     */
+    private void release()
+    {
+        MappedByteBuffer[] regions = mapped;
+        offsets = null;
+        chunks = null;
+        mapped = null;
+        if (regions == null) return;
+        for (MappedByteBuffer region : regions) Unmapper.unmap(region);
+    }
+
+    /**
+     * Unmaps buffers with {@code sun.misc.Unsafe.invokeCleaner}, if available.
+     */
+    private static final class Unmapper
+    {
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static
+        {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try
+            {
+                Class<?> type = Class.forName("sun.misc.Unsafe");
+                Field field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            }
+            catch (ReflectiveOperationException | RuntimeException e)
+            {
+                OpenRouterLog.w(TAG, "Mapped hub labels are released by the garbage collector: " + e);
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        static void unmap(ByteBuffer buffer)
+        {
+            if (INVOKE_CLEANER == null) return;
+            try
+            {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                OpenRouterLog.w(TAG, "Unmapping hub labels failed: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.types.TurningIntroduction;
+
+/**
+ * A maneuver at a junction of a route, created by {@link ORInstructions}.
+ */
+public final class ORInstruction
+{
+    private final TurningIntroduction turn;
+    private final double turnAngle;
+    private final OpenRouterNode node;
+    private final int edgeIndex;
+    private final double distanceFromStart;
+
+    ORInstruction(TurningIntroduction turn, double turnAngle, OpenRouterNode node, int edgeIndex, double distanceFromStart)
+    {
+        this.turn = turn;
+        this.turnAngle = turnAngle;
+        this.node = node;
+        this.edgeIndex = edgeIndex;
+        this.distanceFromStart = distanceFromStart;
+    }
+
+    /**
+     * Returns the type of the turn.
+     * @return the turn
+     */
+    public TurningIntroduction getTurn()
+    {
+        return turn;
+    }
+
+    /**
+     * Returns the change of direction, rounded to the stored edge bearings.
+     * @return the angle in degrees, positive to the right, -180 to 180
+     */
+    public double getTurnAngle()
+    {
+        return turnAngle;
+    }
+
+    /**
+     * Returns the junction of the turn.
+     * @return the node
+     */
+    public OpenRouterNode getNode()
+    {
+        return node;
+    }
+
+    /**
+     * Returns the index of the route edge the turn leads into.
+     * @return the edge index, at least 1
+     */
+    public int getEdgeIndex()
+    {
+        return edgeIndex;
+    }
+
+    /**
+     * Returns the distance along the route from the start to the junction.
+     * @return the distance in meters
+     */
+    public double getDistanceFromStart()
+    {
+        return distanceFromStart;
+    }
+
+    @Override
+    public String toString()
+    {
+        return turn + " at node " + node.getId() + " after " + Math.round(distanceFromStart) + " m";
+    }
+}
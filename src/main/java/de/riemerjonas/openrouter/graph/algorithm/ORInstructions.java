@@ -0,0 +1,108 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterEdgeMeta;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.encoding.OpenRouterEdgeEncoder;
+import de.riemerjonas.openrouter.core.types.TurningIntroduction;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates turn instructions for a route.
+ * <p>
+ * The turn at every node of the route is the difference between the arriving bearing of the previous edge and the
+ * leaving bearing of the next edge. Both are stored in the edge meta data at import, so this is a single pass over
+ * the edges with integer arithmetic on the bearing steps.
+ * No instruction is created for straight continuations, for nodes without another way to continue and inside
+ * roundabouts.
+ */
+public final class ORInstructions
+{
+    private static final int HALF_CIRCLE = OpenRouterEdgeMeta.BEARING_STEPS / 2;
+    // upper limits of the turn types in bearing steps of 5.625 degrees
+    private static final int STRAIGHT_STEPS = 2;
+    private static final int SLIGHT_STEPS = 7;
+    private static final int TURN_STEPS = 21;
+    private static final int SHARP_STEPS = 29;
+
+    private ORInstructions()
+    {
+    }
+
+    /**
+     * Creates the instructions of a route.
+     * @param route the route
+     * @param graph the graph the route was found in
+     * @return the instructions in route order
+     */
+    public static List<ORInstruction> create(OpenRouterRoute route, OpenRouterGraph graph)
+    {
+        List<OpenRouterEdge> edges = route.getEdges();
+        List<OpenRouterNode> nodes = route.getNodes();
+        ORAdjacency adjacency = graph.getAdjacency();
+        List<ORInstruction> instructions = new ArrayList<>();
+        double distance = 0;
+        for (int i = 1; i < edges.size(); i++)
+        {
+            OpenRouterEdge entry = edges.get(i - 1);
+            OpenRouterEdge exit = edges.get(i);
+            distance += OpenRouterEdgeMeta.distanceMeter(entry.getMetaData());
+
+            int steps = getTurnSteps(entry.getMetaData(), exit.getMetaData());
+            TurningIntroduction turn = classify(steps);
+            if (turn == TurningIntroduction.STRAIGHT) continue;
+            if (OpenRouterEdgeEncoder.ROUNDABOUT.getFlag(entry.getMetaData()) && OpenRouterEdgeEncoder.ROUNDABOUT.getFlag(exit.getMetaData())) continue;
+            if (turn != TurningIntroduction.U_TURN && !hasAlternative(adjacency, exit.getFromID(), entry.getFromID(), exit.getToID())) continue;
+
+            instructions.add(new ORInstruction(turn, steps * 360.0 / OpenRouterEdgeMeta.BEARING_STEPS, nodes.get(i), i, distance));
+        }
+        return instructions;
+    }
+
+    /**
+     * Returns the turn between two consecutive edges.
+     * @param entryMeta the meta data of the arriving edge
+     * @param exitMeta the meta data of the leaving edge
+     * @return the turn in bearing steps, positive to the right, -32 to 31
+     */
+    static int getTurnSteps(long entryMeta, long exitMeta)
+    {
+        int entry = OpenRouterEdgeEncoder.END_BEARING.getInt(entryMeta);
+        int exit = OpenRouterEdgeEncoder.START_BEARING.getInt(exitMeta);
+        return ((exit - entry + HALF_CIRCLE) & (OpenRouterEdgeMeta.BEARING_STEPS - 1)) - HALF_CIRCLE;
+    }
+
+    /**
+     * Classifies a turn.
+     * @param steps the turn in bearing steps, positive to the right
+     * @return the turn type
+     */
+    static TurningIntroduction classify(int steps)
+    {
+        int abs = Math.abs(steps);
+        if (abs <= STRAIGHT_STEPS) return TurningIntroduction.STRAIGHT;
+        if (abs > SHARP_STEPS) return TurningIntroduction.U_TURN;
+        boolean right = steps > 0;
+        if (abs <= SLIGHT_STEPS) return right ? TurningIntroduction.SLIGHT_RIGHT : TurningIntroduction.SLIGHT_LEFT;
+        if (abs <= TURN_STEPS) return right ? TurningIntroduction.RIGHT : TurningIntroduction.LEFT;
+        return right ? TurningIntroduction.SHARP_RIGHT : TurningIntroduction.SHARP_LEFT;
+    }
+
+    /**
+     * Returns true if the node has an outgoing edge other than the taken one and the one back.
+     */
+    private static boolean hasAlternative(ORAdjacency adjacency, int node, int previous, int next)
+    {
+        for (int position = adjacency.getOutStart(node); position < adjacency.getOutEnd(node); position++)
+        {
+            int to = adjacency.getEdgeTo(adjacency.getOutEdge(position));
+            if (to != previous && to != next) return true;
+        }
+        return false;
+    }
+}
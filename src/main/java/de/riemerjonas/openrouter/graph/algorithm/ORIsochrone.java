@@ -0,0 +1,49 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.geometry.ORPolygon;
+
+import java.util.List;
+
+/**
+ * Area reachable within a travel time, see {@link ORIsochrones}.
+ */
+public final class ORIsochrone
+{
+    private final double limitSeconds;
+    private final List<ORPolygon> polygons;
+
+    ORIsochrone(double limitSeconds, List<ORPolygon> polygons)
+    {
+        this.limitSeconds = limitSeconds;
+        this.polygons = polygons;
+    }
+
+    /**
+     * Returns the travel time limit.
+     * @return the limit in seconds
+     */
+    public double getLimitSeconds()
+    {
+        return limitSeconds;
+    }
+
+    /**
+     * Returns the reachable area, one polygon per connected part.
+     * @return the polygons
+     */
+    public List<ORPolygon> getPolygons()
+    {
+        return polygons;
+    }
+
+    /**
+     * Returns the reachable area.
+     * @return the area in square meters
+     */
+    public double getArea()
+    {
+        double area = 0;
+        for (ORPolygon polygon : polygons) area += polygon.getArea();
+        return area;
+    }
+}
@@ -0,0 +1,518 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterEdgeMeta;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterPoint;
+import de.riemerjonas.openrouter.core.OpenRouterShapeStore;
+import de.riemerjonas.openrouter.core.collections.ORIntArrayList;
+import de.riemerjonas.openrouter.core.geometry.ORLineSimplifier;
+import de.riemerjonas.openrouter.core.geometry.ORPolygon;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes isochrones, the areas reachable from a start point within travel time limits.
+ * <p>
+ * One search with {@link ORDijkstra#searchAll} settles all nodes up to the largest limit, so any number of limits
+ * costs a single search. The travel times are rasterized into a grid in a local equirectangular projection: every
+ * reached node and the reachable part of every edge leaving it, sampled along its geometry. A min filter of
+ * {@link #FILTER_CELLS} cells widens the roads into an area. The polygons of each limit are the boundaries between
+ * the cells within and beyond the limit, traced cell edge by cell edge and simplified to one cell.
+ */
+public final class ORIsochrones
+{
+    private static final double METERS_PER_DEGREE = 6371000 * Math.PI / 180;
+    /** Smallest cell size in meters. */
+    public static final double MIN_CELL_METER = 25;
+    /** Largest number of cells per side, larger areas use larger cells. */
+    public static final int MAX_GRID_CELLS = 1024;
+    /** Radius of the min filter in cells. */
+    private static final int FILTER_CELLS = 2;
+    // directions of the cell boundary edges, counterclockwise from east
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+    // left, straight, right as direction offsets
+    private static final int[] TURNS = {1, 0, 3};
+
+    private final ORSearchStatus status;
+    private final List<ORIsochrone> isochrones;
+    private final int reachedNodeCount;
+    private final double cellMeter;
+
+    private ORIsochrones(ORSearchStatus status, List<ORIsochrone> isochrones, int reachedNodeCount, double cellMeter)
+    {
+        this.status = status;
+        this.isochrones = isochrones;
+        this.reachedNodeCount = reachedNodeCount;
+        this.cellMeter = cellMeter;
+    }
+
+    /**
+     * Computes the isochrones around the node nearest to a coordinate, without search limits.
+     * @param graph the graph
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @param profile the routing profile, only its accessibility is used
+     * @param limitsSeconds the travel time limits
+     * @return the isochrones
+     */
+    public static ORIsochrones compute(OpenRouterGraph graph, double latitude, double longitude, IRoutingProfile profile,
+                                       double... limitsSeconds)
+    {
+        OpenRouterNode start = graph.getNearestNode(latitude, longitude);
+        if (start == null) return new ORIsochrones(ORSearchStatus.NOT_FOUND, Collections.emptyList(), 0, 0);
+        return compute(graph, start.getId(), profile, ORSearchBudget.UNLIMITED, 0, limitsSeconds);
+    }
+
+    /**
+     * Computes the isochrones around a node.
+     * Travel times are taken from the edges, the profile only decides which edges are accessible.
+     * @param graph the graph
+     * @param startNode the start node ID
+     * @param profile the routing profile, only its accessibility is used
+     * @param budget the limits of the search, its weight limit is replaced by the largest time limit
+     * @param cellMeter the smallest cell size in meters, 0 for {@link #MIN_CELL_METER}
+     * @param limitsSeconds the travel time limits
+     * @return the isochrones in ascending order of their limits, empty unless the search completed, NOT_FOUND if the
+     * start node does not exist
+     */
+    public static ORIsochrones compute(OpenRouterGraph graph, int startNode, IRoutingProfile profile, ORSearchBudget budget,
+                                       double cellMeter, double... limitsSeconds)
+    {
+        if (limitsSeconds.length == 0) throw new IllegalArgumentException("At least one limit is required");
+        double[] limits = limitsSeconds.clone();
+        Arrays.sort(limits);
+        if (!(limits[0] > 0) || Double.isInfinite(limits[limits.length - 1]))
+        {
+            throw new IllegalArgumentException("Limits must be positive and finite");
+        }
+        double maxLimit = limits[limits.length - 1];
+
+        ORAdjacency adjacency = graph.getAdjacency();
+        if (!adjacency.nodeExists(startNode)) return new ORIsochrones(ORSearchStatus.NOT_FOUND, Collections.emptyList(), 0, 0);
+
+        int[] reached;
+        Raster raster = new Raster(graph, adjacency.getNode(startNode));
+        try (ORDijkstra dijkstra = ORDijkstra.acquire(graph))
+        {
+            ORSearchStatus status = dijkstra.searchAll(startNode, new TravelTimeProfile(profile), budget.withMaxWeight(maxLimit));
+            if (status != ORSearchStatus.FOUND) return new ORIsochrones(status, Collections.emptyList(), 0, 0);
+            reached = dijkstra.getReachedNodes();
+            raster.fill(dijkstra, reached, profile, maxLimit, cellMeter > 0 ? cellMeter : MIN_CELL_METER);
+        }
+
+        List<ORIsochrone> isochrones = new ArrayList<>(limits.length);
+        for (double limit : limits) isochrones.add(new ORIsochrone(limit, raster.trace(limit)));
+        return new ORIsochrones(ORSearchStatus.FOUND, isochrones, reached.length, raster.cell);
+    }
+
+    /**
+     * Returns how the search ended.
+     * @return FOUND if the isochrones are complete, NOT_FOUND if the start does not exist, otherwise why the search stopped
+     */
+    public ORSearchStatus getStatus()
+    {
+        return status;
+    }
+
+    public boolean isFound()
+    {
+        return status == ORSearchStatus.FOUND;
+    }
+
+    /**
+     * Returns the isochrones in ascending order of their limits.
+     * @return the isochrones, empty unless found
+     */
+    public List<ORIsochrone> getIsochrones()
+    {
+        return isochrones;
+    }
+
+    /**
+     * Returns the number of nodes reached within the largest limit.
+     * @return the number of nodes
+     */
+    public int getReachedNodeCount()
+    {
+        return reachedNodeCount;
+    }
+
+    /**
+     * Returns the cell size of the raster, the resolution of the polygons.
+     * @return the cell size in meters
+     */
+    public double getCellMeter()
+    {
+        return cellMeter;
+    }
+
+    /**
+     * Grid of the earliest arrival times in seconds, infinite for unreached cells.
+     * Coordinates are in meters relative to the start node, cell (0, 0) is the south-west corner.
+     */
+    private static final class Raster
+    {
+        private final ORAdjacency adjacency;
+        private final List<OpenRouterEdge> edges;
+        private final OpenRouterShapeStore shapes;
+        private final int latitudeE6;
+        private final int longitudeE6;
+        private final double scaleLat;
+        private final double scaleLon;
+
+        private double cell;
+        private double minX;
+        private double minY;
+        private int width;
+        private int height;
+        private float[] times;
+
+        Raster(OpenRouterGraph graph, OpenRouterNode origin)
+        {
+            this.adjacency = graph.getAdjacency();
+            this.edges = graph.getEdges();
+            this.shapes = graph.getShapeStore();
+            this.latitudeE6 = origin.getLatitudeE6();
+            this.longitudeE6 = origin.getLongitudeE6();
+            this.scaleLat = METERS_PER_DEGREE / 1E6;
+            this.scaleLon = scaleLat * Math.max(0.01, Math.cos(Math.toRadians(latitudeE6 / 1E6)));
+        }
+
+        void fill(ORDijkstra dijkstra, int[] reached, IRoutingProfile profile, double maxLimit, double minCell)
+        {
+            // the bounding box covers the nodes and the whole geometry of their edges
+            double maxX = 0;
+            double maxY = 0;
+            for (int node : reached)
+            {
+                for (int i = adjacency.getOutStart(node); i < adjacency.getOutEnd(node); i++)
+                {
+                    int e = adjacency.getOutEdge(i);
+                    if (!profile.isAccessible(adjacency.getEdgeMeta(e))) continue;
+                    double[] line = getLine(e);
+                    for (int p = 0; p < line.length; p += 2)
+                    {
+                        minX = Math.min(minX, line[p]);
+                        maxX = Math.max(maxX, line[p]);
+                        minY = Math.min(minY, line[p + 1]);
+                        maxY = Math.max(maxY, line[p + 1]);
+                    }
+                }
+            }
+            cell = Math.max(minCell, Math.max(maxX - minX, maxY - minY) / (MAX_GRID_CELLS - 2 * (FILTER_CELLS + 1)));
+            int border = FILTER_CELLS + 1;
+            minX -= border * cell;
+            minY -= border * cell;
+            width = (int) Math.ceil((maxX - minX) / cell) + border;
+            height = (int) Math.ceil((maxY - minY) / cell) + border;
+            times = new float[width * height];
+            Arrays.fill(times, Float.POSITIVE_INFINITY);
+
+            double step = cell / 2;
+            for (int node : reached)
+            {
+                double start = dijkstra.getWeight(node);
+                OpenRouterNode coordinate = adjacency.getNode(node);
+                set((coordinate.getLongitudeE6() - longitudeE6) * scaleLon, (coordinate.getLatitudeE6() - latitudeE6) * scaleLat, start);
+                for (int i = adjacency.getOutStart(node); i < adjacency.getOutEnd(node); i++)
+                {
+                    int e = adjacency.getOutEdge(i);
+                    long meta = adjacency.getEdgeMeta(e);
+                    if (!profile.isAccessible(meta)) continue;
+                    double time = OpenRouterEdgeMeta.travelTimeSeconds(meta);
+                    double fraction = time > 0 ? Math.min(1, (maxLimit - start) / time) : 1;
+                    sampleLine(getLine(e), fraction, start, time, step);
+                }
+            }
+            minFilter();
+        }
+
+        /**
+         * Samples the first fraction of a line at intervals of at most one step, with times interpolated by length.
+         */
+        private void sampleLine(double[] line, double fraction, double startTime, double time, double step)
+        {
+            double length = 0;
+            for (int p = 2; p < line.length; p += 2) length += Math.hypot(line[p] - line[p - 2], line[p + 1] - line[p - 1]);
+            if (length == 0) return;
+            double end = fraction * length;
+            double along = 0;
+            for (int p = 2; p < line.length && along < end; p += 2)
+            {
+                double ax = line[p - 2];
+                double ay = line[p - 1];
+                double segment = Math.hypot(line[p] - ax, line[p + 1] - ay);
+                double covered = Math.min(segment, end - along);
+                int samples = Math.max(1, (int) Math.ceil(covered / step));
+                for (int k = 1; k <= samples; k++)
+                {
+                    double s = covered * k / samples;
+                    double t = segment > 0 ? s / segment : 0;
+                    set(ax + t * (line[p] - ax), ay + t * (line[p + 1] - ay), startTime + time * (along + s) / length);
+                }
+                along += segment;
+            }
+        }
+
+        /**
+         * Returns the geometry of an edge as x, y pairs in meters.
+         */
+        private double[] getLine(int e)
+        {
+            OpenRouterEdge edge = edges.get(e);
+            int shapeCount = shapes != null ? shapes.getPointCount(edge.getShapeRef()) : 0;
+            double[] line = new double[(shapeCount + 2) * 2];
+            OpenRouterNode from = adjacency.getNode(adjacency.getEdgeFrom(e));
+            OpenRouterNode to = adjacency.getNode(adjacency.getEdgeTo(e));
+            line[0] = (from.getLongitudeE6() - longitudeE6) * scaleLon;
+            line[1] = (from.getLatitudeE6() - latitudeE6) * scaleLat;
+            for (int p = 0; p < shapeCount; p++)
+            {
+                line[p * 2 + 2] = (shapes.getLongitudeE6(edge.getShapeRef(), p) - longitudeE6) * scaleLon;
+                line[p * 2 + 3] = (shapes.getLatitudeE6(edge.getShapeRef(), p) - latitudeE6) * scaleLat;
+            }
+            line[line.length - 2] = (to.getLongitudeE6() - longitudeE6) * scaleLon;
+            line[line.length - 1] = (to.getLatitudeE6() - latitudeE6) * scaleLat;
+            return line;
+        }
+
+        private void set(double x, double y, double time)
+        {
+            int cx = (int) ((x - minX) / cell);
+            int cy = (int) ((y - minY) / cell);
+            if (cx < 0 || cy < 0 || cx >= width || cy >= height) return;
+            int index = cy * width + cx;
+            if (time < times[index]) times[index] = (float) time;
+        }
+
+        /**
+         * Replaces every cell by the minimum of the square of {@link #FILTER_CELLS} around it, rows first, then columns.
+         */
+        private void minFilter()
+        {
+            float[] rows = new float[times.length];
+            for (int y = 0; y < height; y++)
+            {
+                int row = y * width;
+                for (int x = 0; x < width; x++)
+                {
+                    float min = Float.POSITIVE_INFINITY;
+                    for (int k = Math.max(0, x - FILTER_CELLS); k <= Math.min(width - 1, x + FILTER_CELLS); k++)
+                    {
+                        min = Math.min(min, times[row + k]);
+                    }
+                    rows[row + x] = min;
+                }
+            }
+            for (int y = 0; y < height; y++)
+            {
+                for (int x = 0; x < width; x++)
+                {
+                    float min = Float.POSITIVE_INFINITY;
+                    for (int k = Math.max(0, y - FILTER_CELLS); k <= Math.min(height - 1, y + FILTER_CELLS); k++)
+                    {
+                        min = Math.min(min, rows[k * width + x]);
+                    }
+                    times[y * width + x] = min;
+                }
+            }
+        }
+
+        /**
+         * Traces the polygons of the cells within a limit.
+         * <p>
+         * Every boundary between a cell within and a cell beyond the limit is a directed edge between two grid
+         * vertices, oriented with the inside on its left. Following these edges yields counterclockwise outer rings and
+         * clockwise holes. Where two inside cells touch only at a corner, the left turn is taken, so inside cells
+         * connect only through sides and the rings never cross.
+         */
+        List<ORPolygon> trace(double limit)
+        {
+            int stride = width + 1;
+            byte[] out = new byte[stride * (height + 1)];
+            for (int y = 0; y < height; y++)
+            {
+                for (int x = 0; x < width; x++)
+                {
+                    if (!isInside(x, y, limit)) continue;
+                    if (!isInside(x, y - 1, limit)) out[y * stride + x] |= 1;
+                    if (!isInside(x + 1, y, limit)) out[y * stride + x + 1] |= 2;
+                    if (!isInside(x, y + 1, limit)) out[(y + 1) * stride + x + 1] |= 4;
+                    if (!isInside(x - 1, y, limit)) out[(y + 1) * stride + x] |= 8;
+                }
+            }
+
+            List<Ring> outers = new ArrayList<>();
+            List<Ring> holes = new ArrayList<>();
+            for (int vertex = 0; vertex < out.length; vertex++)
+            {
+                // rings start at vertices with a single edge, i.e. not where two cells touch at a corner
+                while (Integer.bitCount(out[vertex]) == 1)
+                {
+                    Ring ring = traceRing(out, vertex, stride);
+                    (ring.area2 > 0 ? outers : holes).add(ring);
+                }
+            }
+
+            for (Ring hole : holes)
+            {
+                // center of the inside cell left of the first edge, in doubled coordinates
+                int px = 2 * hole.xs[0] + DX[hole.direction] + DX[(hole.direction + 1) & 3];
+                int py = 2 * hole.ys[0] + DY[hole.direction] + DY[(hole.direction + 1) & 3];
+                Ring owner = null;
+                for (Ring outer : outers)
+                {
+                    if ((owner == null || outer.area2 < owner.area2) && outer.contains(px, py)) owner = outer;
+                }
+                if (owner != null) owner.holes.add(hole);
+            }
+
+            List<ORPolygon> polygons = new ArrayList<>(outers.size());
+            for (Ring outer : outers)
+            {
+                List<List<OpenRouterPoint>> holePoints = new ArrayList<>(outer.holes.size());
+                for (Ring hole : outer.holes) holePoints.add(toPoints(hole));
+                polygons.add(new ORPolygon(toPoints(outer), holePoints));
+            }
+            return polygons;
+        }
+
+        private boolean isInside(int x, int y, double limit)
+        {
+            return x >= 0 && y >= 0 && x < width && y < height && times[y * width + x] <= limit;
+        }
+
+        /**
+         * Follows and removes the edges of one ring, keeping only the vertices where the direction changes.
+         */
+        private static Ring traceRing(byte[] out, int start, int stride)
+        {
+            ORIntArrayList corners = new ORIntArrayList();
+            int firstDirection = Integer.numberOfTrailingZeros(out[start]);
+            int direction = firstDirection;
+            int vertex = start;
+            corners.add(start);
+            do
+            {
+                out[vertex] &= (byte) ~(1 << direction);
+                vertex += DX[direction] + DY[direction] * stride;
+                int next = -1;
+                for (int turn : TURNS)
+                {
+                    int candidate = (direction + turn) & 3;
+                    if ((out[vertex] & (1 << candidate)) != 0)
+                    {
+                        next = candidate;
+                        break;
+                    }
+                }
+                if (vertex == start || next < 0) break;
+                if (next != direction) corners.add(vertex);
+                direction = next;
+            }
+            while (true);
+            corners.add(start);
+
+            int[] xs = new int[corners.size()];
+            int[] ys = new int[corners.size()];
+            for (int i = 0; i < xs.length; i++)
+            {
+                xs[i] = corners.get(i) % stride;
+                ys[i] = corners.get(i) / stride;
+            }
+            return new Ring(xs, ys, firstDirection);
+        }
+
+        private List<OpenRouterPoint> toPoints(Ring ring)
+        {
+            List<OpenRouterPoint> points = new ArrayList<>(ring.xs.length);
+            for (int i = 0; i < ring.xs.length; i++)
+            {
+                double x = minX + ring.xs[i] * cell;
+                double y = minY + ring.ys[i] * cell;
+                points.add(new OpenRouterPoint(latitudeE6 + (int) Math.round(y / scaleLat), longitudeE6 + (int) Math.round(x / scaleLon)));
+            }
+            List<OpenRouterPoint> simplified = ORLineSimplifier.simplify(points, cell);
+            return simplified.size() >= 4 ? simplified : points;
+        }
+    }
+
+    /**
+     * Closed ring of grid vertices, the last vertex repeats the first one.
+     */
+    private static final class Ring
+    {
+        final int[] xs;
+        final int[] ys;
+        final int direction;
+        // twice the signed area in cells, positive if counterclockwise
+        final long area2;
+        final List<Ring> holes = new ArrayList<>();
+
+        Ring(int[] xs, int[] ys, int direction)
+        {
+            this.xs = xs;
+            this.ys = ys;
+            this.direction = direction;
+            long sum = 0;
+            for (int i = 0; i < xs.length - 1; i++) sum += (long) xs[i] * ys[i + 1] - (long) xs[i + 1] * ys[i];
+            this.area2 = sum;
+        }
+
+        /**
+         * Returns true if a point in doubled coordinates is inside, the point must not lie on the ring.
+         */
+        boolean contains(int px, int py)
+        {
+            boolean inside = false;
+            for (int i = 0; i < xs.length - 1; i++)
+            {
+                long ay = 2L * ys[i];
+                long by = 2L * ys[i + 1];
+                if ((ay > py) == (by > py)) continue;
+                double x = 2.0 * xs[i] + (py - ay) * (2.0 * xs[i + 1] - 2.0 * xs[i]) / (by - ay);
+                if (px < x) inside = !inside;
+            }
+            return inside;
+        }
+    }
+
+    /**
+     * Measures routes by travel time on the edges accessible for a profile.
+     */
+    private static final class TravelTimeProfile implements IRoutingProfile
+    {
+        private final IRoutingProfile profile;
+
+        TravelTimeProfile(IRoutingProfile profile)
+        {
+            this.profile = profile;
+        }
+
+        @Override
+        public double getWeight(long edgeMeta)
+        {
+            return OpenRouterEdgeMeta.travelTimeSeconds(edgeMeta);
+        }
+
+        @Override
+        public boolean isAccessible(long edgeMeta)
+        {
+            return profile.isAccessible(edgeMeta);
+        }
+
+        @Override
+        public String getName()
+        {
+            return profile.getName() + "-time";
+        }
+    }
+}
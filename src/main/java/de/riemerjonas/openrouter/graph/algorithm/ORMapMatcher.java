@@ -0,0 +1,520 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdgeMeta;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
+import de.riemerjonas.openrouter.graph.core.ORSegmentIndex;
+import de.riemerjonas.openrouter.graph.core.ORSegmentSnap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Matches GPS traces onto the edges of a graph with a hidden Markov model (after Newson and Krumm).
+ * <p>
+ * Candidates of a GPS point are the nearest points of the edges within the search radius, found with the
+ * {@link ORSegmentIndex}. A candidate is scored by its distance to the GPS point (Gaussian) and a transition by the
+ * difference between the driven distance and the great circle distance of the two GPS points (exponential).
+ * Driven distances come from one-to-many searches between consecutive candidates, bounded by a detour factor,
+ * on the reused search arrays of the thread. A session caches node to node distances, as consecutive points share
+ * most of their candidates.
+ * <p>
+ * Traces are matched incrementally with a sliding Viterbi window: a point is reported as soon as the paths of all
+ * current candidates pass the same candidate of it, and at the latest when the window is full.
+ * If no candidate of a point can be reached from the previous point, the trace is split there.
+ */
+public class ORMapMatcher
+{
+    public static final double DEFAULT_SEARCH_RADIUS = 50;
+    public static final double DEFAULT_GPS_SIGMA = 10;
+    public static final double DEFAULT_TRANSITION_BETA = 5;
+    public static final double DEFAULT_MAX_DETOUR_FACTOR = 3;
+    public static final int DEFAULT_MAX_CANDIDATES = 8;
+    public static final int DEFAULT_MAX_WINDOW = 64;
+    private static final int CACHE_SIZE = 8192;
+    private static final double BACKWARD_TOLERANCE_SIGMAS = 4;
+
+    private final OpenRouterGraph graph;
+    private final IRoutingProfile profile;
+    private double searchRadius = DEFAULT_SEARCH_RADIUS;
+    private double gpsSigma = DEFAULT_GPS_SIGMA;
+    private double transitionBeta = DEFAULT_TRANSITION_BETA;
+    private double maxDetourFactor = DEFAULT_MAX_DETOUR_FACTOR;
+    private int maxCandidates = DEFAULT_MAX_CANDIDATES;
+    private int maxWindow = DEFAULT_MAX_WINDOW;
+
+    /**
+     * Creates a new ORMapMatcher. Settings apply to sessions created afterwards.
+     * @param graph the graph to match onto
+     * @param profile the profile whose accessible edges are matched, routes are measured by distance
+     */
+    public ORMapMatcher(OpenRouterGraph graph, IRoutingProfile profile)
+    {
+        this.graph = graph;
+        this.profile = new DistanceProfile(profile);
+    }
+
+    /**
+     * Sets the maximum distance between a GPS point and its candidates.
+     * @param searchRadius the radius in meters
+     */
+    public void setSearchRadius(double searchRadius)
+    {
+        this.searchRadius = requirePositive(searchRadius);
+    }
+
+    /**
+     * Sets the standard deviation of the GPS error.
+     * @param gpsSigma the standard deviation in meters
+     */
+    public void setGpsSigma(double gpsSigma)
+    {
+        this.gpsSigma = requirePositive(gpsSigma);
+    }
+
+    /**
+     * Sets the scale of the transition probability, larger values tolerate larger detours between two points.
+     * @param transitionBeta the scale in meters
+     */
+    public void setTransitionBeta(double transitionBeta)
+    {
+        this.transitionBeta = requirePositive(transitionBeta);
+    }
+
+    /**
+     * Sets how much longer than the great circle distance the route between two points may be.
+     * @param maxDetourFactor the factor, the search radius is added twice on top
+     */
+    public void setMaxDetourFactor(double maxDetourFactor)
+    {
+        this.maxDetourFactor = requirePositive(maxDetourFactor);
+    }
+
+    /**
+     * Sets the maximum number of candidates per GPS point.
+     * @param maxCandidates the number of candidates
+     */
+    public void setMaxCandidates(int maxCandidates)
+    {
+        this.maxCandidates = (int) requirePositive(maxCandidates);
+    }
+
+    /**
+     * Sets the maximum number of points waiting for a decision, which bounds the delay and memory of a session.
+     * @param maxWindow the number of points
+     */
+    public void setMaxWindow(int maxWindow)
+    {
+        this.maxWindow = (int) requirePositive(maxWindow);
+    }
+
+    /**
+     * Starts matching a trace.
+     * @param listener receives the matched points in trace order
+     * @return the session
+     */
+    public Session newSession(Consumer<ORMatchedPoint> listener)
+    {
+        return new Session(this, listener);
+    }
+
+    /**
+     * Matches a complete trace.
+     * @param points the GPS points
+     * @return the matched points, points without candidates are left out
+     */
+    public List<ORMatchedPoint> match(List<? extends IGeoCoordinate> points)
+    {
+        List<ORMatchedPoint> result = new ArrayList<>(points.size());
+        Session session = newSession(result::add);
+        for (IGeoCoordinate point : points) session.add(point.getLatitude(), point.getLongitude());
+        session.finish();
+        return result;
+    }
+
+    private static double requirePositive(double value)
+    {
+        if (!(value > 0)) throw new IllegalArgumentException("Value must be positive");
+        return value;
+    }
+
+    /**
+     * Matching state of one trace. Points are added in order, matched points are passed to the listener as soon
+     * as they are decided. A session is not thread-safe, but may be moved between threads.
+     */
+    public static final class Session
+    {
+        private final OpenRouterGraph graph;
+        private final ORAdjacency adjacency;
+        private final ORSegmentIndex segmentIndex;
+        private final IRoutingProfile profile;
+        private final Consumer<ORMatchedPoint> listener;
+        private final double searchRadius;
+        private final double gpsSigma;
+        private final double transitionBeta;
+        private final double maxDetourFactor;
+        private final int maxCandidates;
+        private final int maxWindow;
+
+        // undecided steps, the last step is kept for the transitions of the next point even when decided
+        private final List<Step> window = new ArrayList<>();
+        private Step last;
+        private long pointCount;
+        private long skippedCount;
+        private long breakCount;
+        private long searchCount;
+
+        // node to node distances: >= 0 the distance, < 0 unreachable within the negated bound
+        private final Map<Long, Double> distances = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest)
+            {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        private Session(ORMapMatcher matcher, Consumer<ORMatchedPoint> listener)
+        {
+            this.graph = matcher.graph;
+            this.adjacency = graph.getAdjacency();
+            this.segmentIndex = graph.getSegmentIndex();
+            this.profile = matcher.profile;
+            this.listener = listener;
+            this.searchRadius = matcher.searchRadius;
+            this.gpsSigma = matcher.gpsSigma;
+            this.transitionBeta = matcher.transitionBeta;
+            this.maxDetourFactor = matcher.maxDetourFactor;
+            this.maxCandidates = matcher.maxCandidates;
+            this.maxWindow = matcher.maxWindow;
+        }
+
+        /**
+         * Adds the next GPS point of the trace.
+         * @param latitude the latitude in degrees
+         * @param longitude the longitude in degrees
+         */
+        public void add(double latitude, double longitude)
+        {
+            long index = pointCount++;
+            List<ORSegmentSnap> snaps = segmentIndex.snap(latitude, longitude, searchRadius, profile, maxCandidates);
+            if (snaps.isEmpty())
+            {
+                skippedCount++;
+                return;
+            }
+            Candidate[] candidates = new Candidate[snaps.size()];
+            for (int i = 0; i < candidates.length; i++)
+            {
+                ORSegmentSnap snap = snaps.get(i);
+                double length = OpenRouterEdgeMeta.distanceMeter(adjacency.getEdgeMeta(snap.getEdge()));
+                candidates[i] = new Candidate(snap, snap.getFraction() * length, length);
+            }
+            Step step = new Step(index, latitude, longitude, candidates);
+
+            if (last == null || !transition(last, step))
+            {
+                if (last != null) breakCount++;
+                flush();
+                for (Candidate candidate : candidates) candidate.score = emission(candidate);
+            }
+            normalize(step);
+            window.add(step);
+            last = step;
+
+            emitConverged();
+            if (window.size() > maxWindow) emitOldest();
+        }
+
+        /**
+         * Decides and reports all remaining points. The session may be continued with the next trace,
+         * which is not connected to the previous one.
+         */
+        public void finish()
+        {
+            flush();
+            last = null;
+        }
+
+        public long getPointCount()
+        {
+            return pointCount;
+        }
+
+        /**
+         * Returns the number of points without any edge within the search radius.
+         * @return the number of skipped points
+         */
+        public long getSkippedCount()
+        {
+            return skippedCount;
+        }
+
+        /**
+         * Returns how often the trace was split because no candidate could be reached from the previous point.
+         * @return the number of breaks
+         */
+        public long getBreakCount()
+        {
+            return breakCount;
+        }
+
+        /**
+         * Returns the number of searches run, distances found in the cache need none.
+         * @return the number of searches
+         */
+        public long getSearchCount()
+        {
+            return searchCount;
+        }
+
+        private double emission(Candidate candidate)
+        {
+            double normalized = candidate.snap.getDistance() / gpsSigma;
+            return -0.5 * normalized * normalized;
+        }
+
+        /**
+         * Scores the candidates of a step by the best transition from the previous step.
+         * @return false if no candidate is reachable
+         */
+        private boolean transition(Step previous, Step step)
+        {
+            double greatCircle = IGeoCoordinate.haversine(previous.latitude, previous.longitude, step.latitude, step.longitude);
+            double bound = greatCircle * maxDetourFactor + 2 * searchRadius;
+            int[] targets = new int[step.candidates.length];
+            for (int i = 0; i < targets.length; i++) targets[i] = adjacency.getEdgeFrom(step.candidates[i].snap.getEdge());
+
+            boolean reachable = false;
+            for (Candidate to : step.candidates) to.score = Double.NEGATIVE_INFINITY;
+            for (Candidate from : previous.candidates)
+            {
+                if (from.score == Double.NEGATIVE_INFINITY) continue;
+                for (Candidate to : step.candidates)
+                {
+                    double distance = routeDistance(from, to, bound, targets);
+                    if (distance > bound) continue;
+                    double score = from.score - Math.abs(distance - greatCircle) / transitionBeta;
+                    if (score > to.score)
+                    {
+                        to.score = score;
+                        to.previous = from;
+                        to.routeDistance = distance;
+                        reachable = true;
+                    }
+                }
+            }
+            for (Candidate to : step.candidates) to.score += emission(to);
+            return reachable;
+        }
+
+        private double routeDistance(Candidate from, Candidate to, double bound, int[] targets)
+        {
+            int edge = from.snap.getEdge();
+            // backward moves on the same edge within the noise of two GPS points are a standing vehicle, not a turn
+            if (edge == to.snap.getEdge() && to.offset >= from.offset - BACKWARD_TOLERANCE_SIGMAS * gpsSigma)
+            {
+                return Math.max(0, to.offset - from.offset);
+            }
+
+            double rest = from.length - from.offset;
+            double between = nodeDistance(adjacency.getEdgeTo(edge), adjacency.getEdgeFrom(to.snap.getEdge()), bound - rest, targets);
+            return rest + between + to.offset;
+        }
+
+        /**
+         * Returns the distance between two nodes, searching from the source to all targets of the step on a miss.
+         * @return the distance or infinity if it exceeds the bound
+         */
+        private double nodeDistance(int source, int target, double bound, int[] targets)
+        {
+            if (bound < 0) return Double.POSITIVE_INFINITY;
+            Double cached = distances.get(key(source, target));
+            if (cached == null || (cached < 0 && -cached < bound))
+            {
+                searchCount++;
+                try (ORDijkstra dijkstra = ORDijkstra.acquire(graph))
+                {
+                    ORSearchStatus status = dijkstra.search(source, targets, profile, ORSearchBudget.UNLIMITED.withMaxWeight(bound));
+                    // a search which ran out of nodes proves unreachability for every bound
+                    double unreachable = status == ORSearchStatus.BUDGET_EXCEEDED ? -bound : Double.NEGATIVE_INFINITY;
+                    for (int t : targets)
+                    {
+                        double weight = dijkstra.getWeight(t);
+                        distances.put(key(source, t), weight < Double.POSITIVE_INFINITY ? weight : unreachable);
+                    }
+                }
+                cached = distances.get(key(source, target));
+            }
+            return cached >= 0 && cached <= bound ? cached : Double.POSITIVE_INFINITY;
+        }
+
+        private void normalize(Step step)
+        {
+            double max = Double.NEGATIVE_INFINITY;
+            for (Candidate candidate : step.candidates) max = Math.max(max, candidate.score);
+            for (Candidate candidate : step.candidates) candidate.score -= max;
+        }
+
+        /**
+         * Reports the steps up to the newest one whose candidate lies on the path of every live candidate.
+         */
+        private void emitConverged()
+        {
+            List<Candidate> ancestors = new ArrayList<>(last.candidates.length);
+            for (Candidate candidate : last.candidates)
+            {
+                if (candidate.score > Double.NEGATIVE_INFINITY) ancestors.add(candidate);
+            }
+            for (int i = window.size() - 1; i >= 0; i--)
+            {
+                if (ancestors.size() == 1)
+                {
+                    emitUntil(i, ancestors.get(0));
+                    return;
+                }
+                if (i == 0) return;
+                List<Candidate> parents = new ArrayList<>(ancestors.size());
+                for (Candidate candidate : ancestors)
+                {
+                    if (!parents.contains(candidate.previous)) parents.add(candidate.previous);
+                }
+                ancestors = parents;
+            }
+        }
+
+        /**
+         * Decides the oldest step by the best current path and drops the paths through its other candidates.
+         */
+        private void emitOldest()
+        {
+            Candidate chosen = best(last);
+            for (int i = window.size() - 1; i > 0; i--) chosen = chosen.previous;
+            for (Candidate candidate : window.get(0).candidates)
+            {
+                if (candidate != chosen) candidate.score = Double.NEGATIVE_INFINITY;
+            }
+            for (int i = 1; i < window.size(); i++)
+            {
+                for (Candidate candidate : window.get(i).candidates)
+                {
+                    if (candidate.previous != null && candidate.previous.score == Double.NEGATIVE_INFINITY) candidate.score = Double.NEGATIVE_INFINITY;
+                }
+            }
+            emitUntil(0, chosen);
+        }
+
+        private void flush()
+        {
+            if (!window.isEmpty()) emitUntil(window.size() - 1, best(last));
+        }
+
+        /**
+         * Reports the steps up to the given window position along the path ending in the candidate.
+         */
+        private void emitUntil(int end, Candidate candidate)
+        {
+            Candidate[] path = new Candidate[end + 1];
+            for (int i = end; i >= 0; i--)
+            {
+                path[i] = candidate;
+                candidate = candidate.previous;
+            }
+            for (int i = 0; i <= end; i++)
+            {
+                Candidate matched = path[i];
+                ORSegmentSnap snap = matched.snap;
+                listener.accept(new ORMatchedPoint(window.get(i).index, snap.getEdge(), matched.offset, snap.getDistance(),
+                        matched.routeDistance, snap.getLatitudeE6(), snap.getLongitudeE6()));
+            }
+            window.subList(0, end + 1).clear();
+            // decided steps are not walked again, cut the links to free them
+            Step next = window.isEmpty() ? last : window.get(0);
+            for (Candidate remaining : next.candidates) remaining.previous = null;
+        }
+
+        private static Candidate best(Step step)
+        {
+            Candidate best = step.candidates[0];
+            for (Candidate candidate : step.candidates)
+            {
+                if (candidate.score > best.score) best = candidate;
+            }
+            return best;
+        }
+
+        private static long key(int source, int target)
+        {
+            return ((long) source << 32) | (target & 0xFFFFFFFFL);
+        }
+    }
+
+    private static final class Step
+    {
+        final long index;
+        final double latitude;
+        final double longitude;
+        final Candidate[] candidates;
+
+        Step(long index, double latitude, double longitude, Candidate[] candidates)
+        {
+            this.index = index;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.candidates = candidates;
+        }
+    }
+
+    private static final class Candidate
+    {
+        final ORSegmentSnap snap;
+        final double offset;
+        final double length;
+        double score;
+        Candidate previous;
+        double routeDistance = Double.NaN;
+
+        Candidate(ORSegmentSnap snap, double offset, double length)
+        {
+            this.snap = snap;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Measures routes by distance on the edges accessible for a profile.
+     */
+    private static final class DistanceProfile implements IRoutingProfile
+    {
+        private final IRoutingProfile profile;
+
+        DistanceProfile(IRoutingProfile profile)
+        {
+            this.profile = profile;
+        }
+
+        @Override
+        public double getWeight(long edgeMeta)
+        {
+            return OpenRouterEdgeMeta.distanceMeter(edgeMeta);
+        }
+
+        @Override
+        public boolean isAccessible(long edgeMeta)
+        {
+            return profile.isAccessible(edgeMeta);
+        }
+
+        @Override
+        public String getName()
+        {
+            return profile.getName() + "-distance";
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+/**
+ * A GPS point matched onto an edge by {@link ORMapMatcher}.
+ */
+public final class ORMatchedPoint implements IGeoCoordinate
+{
+    private final long index;
+    private final int edge;
+    private final double offset;
+    private final double gpsDistance;
+    private final double routeDistance;
+    private final int latitudeE6;
+    private final int longitudeE6;
+
+    ORMatchedPoint(long index, int edge, double offset, double gpsDistance, double routeDistance, int latitudeE6, int longitudeE6)
+    {
+        this.index = index;
+        this.edge = edge;
+        this.offset = offset;
+        this.gpsDistance = gpsDistance;
+        this.routeDistance = routeDistance;
+        this.latitudeE6 = latitudeE6;
+        this.longitudeE6 = longitudeE6;
+    }
+
+    /**
+     * Returns the position of the GPS point in its trace, counting all points added to the session.
+     * @return the index of the GPS point
+     */
+    public long getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Returns the edge the point was matched onto.
+     * @return the index of the edge in the edge list of the graph
+     */
+    public int getEdge()
+    {
+        return edge;
+    }
+
+    /**
+     * Returns the position on the edge.
+     * @return the distance from the start node of the edge in meters
+     */
+    public double getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Returns the distance between the GPS point and the matched point.
+     * @return the distance in meters
+     */
+    public double getGpsDistance()
+    {
+        return gpsDistance;
+    }
+
+    /**
+     * Returns the driven distance from the previous matched point.
+     * @return the distance in meters, NaN for the first point of a trace or after a gap without route
+     */
+    public double getRouteDistance()
+    {
+        return routeDistance;
+    }
+
+    @Override
+    public int getLatitudeE6()
+    {
+        return latitudeE6;
+    }
+
+    @Override
+    public int getLongitudeE6()
+    {
+        return longitudeE6;
+    }
+}
@@ -0,0 +1,398 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.core.ORGraphHolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces route requests into batches.
+ * <p>
+ * Requests are collected for a short window after the first one arrives. The batch is snapped to graph nodes and
+ * grouped by start node and profile, every group is answered with a single one-to-many search of
+ * {@link ORGraphRouter#searchRoutes}. Under load many requests share a start node (a depot, a popular origin, the
+ * rows of a matrix), so the number of searches drops while each request still gets its own future.
+ * Groups run in parallel on a fixed pool of worker threads, which reuse their search arrays.
+ * <p>
+ * A request can bring the graph it was leased for, so its caller gets a route of the same graph version it works
+ * with. Requests without a graph are routed on the current graph of the holder, leased per batch.
+ */
+public class ORRouteDispatcher implements AutoCloseable
+{
+    private static final String TAG = "ORRouteDispatcher";
+    public static final long DEFAULT_WINDOW_MICROS = 2000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private final ORGraphHolder holder;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private volatile ORSearchBudget budget = ORSearchBudget.UNLIMITED;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+    private final Thread collector;
+    private volatile boolean closed;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong searchCount = new AtomicLong();
+
+    /**
+     * Creates a new ORRouteDispatcher with the default window, batch size and one worker per processor.
+     * @param holder the holder of the graph to route on
+     */
+    public ORRouteDispatcher(ORGraphHolder holder)
+    {
+        this(holder, DEFAULT_WINDOW_MICROS, DEFAULT_MAX_BATCH_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new ORRouteDispatcher.
+     * @param holder the holder of the graph to route on
+     * @param windowMicros how long to collect requests after the first one, 0 to take only what is already queued
+     * @param maxBatchSize the maximum number of requests per batch
+     * @param workerThreads the number of threads running searches
+     */
+    public ORRouteDispatcher(ORGraphHolder holder, long windowMicros, int maxBatchSize, int workerThreads)
+    {
+        if (maxBatchSize < 1 || workerThreads < 1) throw new IllegalArgumentException("Batch size and worker threads must be positive");
+        this.holder = holder;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, windowMicros));
+        this.maxBatchSize = maxBatchSize;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, "ORRouteDispatcher-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.collector = new Thread(this::collect, "ORRouteDispatcher-collector");
+        this.collector.setDaemon(true);
+        this.collector.start();
+    }
+
+    /**
+     * Submits a route request on the current graph of the holder.
+     * @param from the start coordinate
+     * @param to the end coordinate
+     * @param profile the routing profile
+     * @return the future result. Cancelling the future stops the search once all requests sharing it are cancelled.
+     */
+    public CompletableFuture<ORRouteResult> submit(IGeoCoordinate from, IGeoCoordinate to, IRoutingProfile profile)
+    {
+        return submit(null, from, to, profile);
+    }
+
+    /**
+     * Submits a route request on the given graph, which the caller keeps leased until the future completes.
+     * Requests are only batched with requests of the same graph.
+     * @param graph the graph to route on, null for the current graph of the holder
+     * @param from the start coordinate
+     * @param to the end coordinate
+     * @param profile the routing profile
+     * @return the future result. Cancelling the future stops the search once all requests sharing it are cancelled.
+     */
+    public CompletableFuture<ORRouteResult> submit(OpenRouterGraph graph, IGeoCoordinate from, IGeoCoordinate to, IRoutingProfile profile)
+    {
+        Request request = new Request(graph, from, to, profile);
+        if (closed)
+        {
+            request.future.completeExceptionally(new IllegalStateException("Dispatcher is closed"));
+            return request.future;
+        }
+        requestCount.incrementAndGet();
+        queue.add(request);
+        if (closed && queue.remove(request))
+        {
+            // closed while adding, the collector may already be gone
+            request.future.completeExceptionally(new IllegalStateException("Dispatcher is closed"));
+        }
+        return request.future;
+    }
+
+    /**
+     * Sets the limits of every search, shared by all requests of a group.
+     * @param budget the budget
+     */
+    public void setBudget(ORSearchBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the number of submitted requests.
+     * @return the number of requests
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of dispatched batches.
+     * @return the number of batches
+     */
+    public long getBatchCount()
+    {
+        return batchCount.get();
+    }
+
+    /**
+     * Returns the number of searches run, at most the number of requests.
+     * @return the number of searches
+     */
+    public long getSearchCount()
+    {
+        return searchCount.get();
+    }
+
+    /**
+     * Stops the dispatcher. Queued requests fail with an IllegalStateException, running searches finish.
+     */
+    @Override
+    public void close()
+    {
+        if (closed) return;
+        closed = true;
+        collector.interrupt();
+        try
+        {
+            collector.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        List<Request> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        fail(pending, new IllegalStateException("Dispatcher is closed"));
+        workers.shutdown();
+    }
+
+    // --- batching ---
+
+    private void collect()
+    {
+        List<Request> batch = new ArrayList<>();
+        while (!closed)
+        {
+            try
+            {
+                Request first = queue.take();
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize)
+                {
+                    Request next = queue.poll();
+                    if (next == null)
+                    {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0) break;
+                        next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                    }
+                    batch.add(next);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                fail(batch, new IllegalStateException("Dispatcher is closed"));
+                return;
+            }
+
+            List<Request> dispatched = batch;
+            batch = new ArrayList<>();
+            batchCount.incrementAndGet();
+            try
+            {
+                workers.execute(() -> process(dispatched));
+            }
+            catch (RejectedExecutionException e)
+            {
+                fail(dispatched, new IllegalStateException("Dispatcher is closed"));
+            }
+        }
+    }
+
+    private void process(List<Request> batch)
+    {
+        // requests without a graph of their own share one lease of the current graph
+        ORGraphHolder.Lease lease = null;
+        Map<OpenRouterGraph, List<Request>> byGraph = new IdentityHashMap<>();
+        for (Request request : batch)
+        {
+            OpenRouterGraph graph = request.graph;
+            if (graph == null)
+            {
+                if (lease == null)
+                {
+                    try
+                    {
+                        lease = holder.acquire();
+                    }
+                    catch (IllegalStateException e)
+                    {
+                        request.future.completeExceptionally(e);
+                        continue;
+                    }
+                }
+                graph = lease.getGraph();
+            }
+            byGraph.computeIfAbsent(graph, g -> new ArrayList<>()).add(request);
+        }
+
+        List<List<Request>> groups = new ArrayList<>();
+        try
+        {
+            for (Map.Entry<OpenRouterGraph, List<Request>> entry : byGraph.entrySet())
+            {
+                groups.addAll(group(entry.getValue(), entry.getKey()));
+            }
+        }
+        catch (RuntimeException e)
+        {
+            OpenRouterLog.e(TAG, "Snapping failed", e);
+            fail(batch, e);
+            if (lease != null) lease.close();
+            return;
+        }
+        if (groups.isEmpty())
+        {
+            if (lease != null) lease.close();
+            return;
+        }
+
+        // the lease is released by the group finishing last, the batch's own thread takes the last group
+        ORGraphHolder.Lease batchLease = lease;
+        AtomicInteger pending = new AtomicInteger(groups.size());
+        for (int i = 0; i < groups.size(); i++)
+        {
+            List<Request> group = groups.get(i);
+            Runnable task = () -> {
+                try
+                {
+                    search(group);
+                }
+                finally
+                {
+                    if (pending.decrementAndGet() == 0 && batchLease != null) batchLease.close();
+                }
+            };
+            if (i == groups.size() - 1) task.run();
+            else
+            {
+                try
+                {
+                    workers.execute(task);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    task.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * Snaps the requests of one graph and groups them by profile and start node. Requests without nodes are completed
+     * as NOT_FOUND.
+     */
+    private static List<List<Request>> group(List<Request> batch, OpenRouterGraph graph)
+    {
+        Map<IRoutingProfile, Map<Integer, List<Request>>> byProfile = new IdentityHashMap<>();
+        List<List<Request>> groups = new ArrayList<>();
+        for (Request request : batch)
+        {
+            OpenRouterNode startNode = graph.getNearestNode(request.from);
+            OpenRouterNode endNode = graph.getNearestNode(request.to);
+            if (startNode == null || endNode == null)
+            {
+                request.future.complete(ORRouteResult.of(ORSearchStatus.NOT_FOUND));
+                continue;
+            }
+            request.graph = graph;
+            request.startId = startNode.getId();
+            request.endId = endNode.getId();
+
+            List<Request> group = byProfile.computeIfAbsent(request.profile, p -> new HashMap<>()).get(request.startId);
+            if (group == null)
+            {
+                group = new ArrayList<>();
+                byProfile.get(request.profile).put(request.startId, group);
+                groups.add(group);
+            }
+            group.add(request);
+        }
+        return groups;
+    }
+
+    private void search(List<Request> group)
+    {
+        List<Request> open = new ArrayList<>(group.size());
+        for (Request request : group)
+        {
+            if (!request.future.isDone()) open.add(request);
+        }
+        if (open.isEmpty()) return;
+
+        // the search is cancelled when every request waiting for it is cancelled
+        ORSearchBudget searchBudget = budget;
+        ORCancellationToken token = new ORCancellationToken(searchBudget.getToken());
+        AtomicInteger waiting = new AtomicInteger(open.size());
+        for (Request request : open)
+        {
+            request.future.whenComplete((result, error) -> {
+                if (waiting.decrementAndGet() == 0) token.cancel();
+            });
+        }
+
+        Request first = open.get(0);
+        int[] endIds = new int[open.size()];
+        for (int i = 0; i < open.size(); i++) endIds[i] = open.get(i).endId;
+        try
+        {
+            searchCount.incrementAndGet();
+            ORRouteResult[] results = ORGraphRouter.searchRoutes(first.startId, endIds, first.graph, first.profile, searchBudget.withToken(token));
+            for (int i = 0; i < open.size(); i++) open.get(i).future.complete(results[i]);
+        }
+        catch (RuntimeException e)
+        {
+            OpenRouterLog.e(TAG, "Search from node " + first.startId + " failed", e);
+            fail(open, e);
+        }
+    }
+
+    private static void fail(List<Request> requests, Throwable cause)
+    {
+        for (Request request : requests) request.future.completeExceptionally(cause);
+    }
+
+    private static class Request
+    {
+        final IGeoCoordinate from;
+        final IGeoCoordinate to;
+        final IRoutingProfile profile;
+        final CompletableFuture<ORRouteResult> future = new CompletableFuture<>();
+        OpenRouterGraph graph;
+        int startId;
+        int endId;
+
+        Request(OpenRouterGraph graph, IGeoCoordinate from, IGeoCoordinate to, IRoutingProfile profile)
+        {
+            this.graph = graph;
+            this.from = from;
+            this.to = to;
+            this.profile = profile;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+
+/**
+ * Result of a route search: the status, if found the route and, if requested, the {@link ORSearchStats}.
+ */
+public final class ORRouteResult
+{
+    private static final ORRouteResult NOT_FOUND = new ORRouteResult(ORSearchStatus.NOT_FOUND, null);
+    private static final ORRouteResult BUDGET_EXCEEDED = new ORRouteResult(ORSearchStatus.BUDGET_EXCEEDED, null);
+    private static final ORRouteResult CANCELLED = new ORRouteResult(ORSearchStatus.CANCELLED, null);
+
+    private final ORSearchStatus status;
+    private final OpenRouterRoute route;
+    private final ORSearchStats stats;
+
+    private ORRouteResult(ORSearchStatus status, OpenRouterRoute route)
+    {
+        this(status, route, null);
+    }
+
+    private ORRouteResult(ORSearchStatus status, OpenRouterRoute route, ORSearchStats stats)
+    {
+        this.status = status;
+        this.route = route;
+        this.stats = stats;
+    }
+
+    /**
+     * Returns a result for a found route.
+     * @param route the route
+     * @return the result
+     */
+    public static ORRouteResult found(OpenRouterRoute route)
+    {
+        return new ORRouteResult(ORSearchStatus.FOUND, route);
+    }
+
+    /**
+     * Returns a result without route.
+     * @param status the status, not FOUND
+     * @return the result
+     */
+    public static ORRouteResult of(ORSearchStatus status)
+    {
+        switch (status)
+        {
+            case NOT_FOUND: return NOT_FOUND;
+            case BUDGET_EXCEEDED: return BUDGET_EXCEEDED;
+            case CANCELLED: return CANCELLED;
+            default: throw new IllegalArgumentException("A found result needs a route");
+        }
+    }
+
+    public ORSearchStatus getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * Returns the route.
+     * @return the route or null if the status is not FOUND
+     */
+    public OpenRouterRoute getRoute()
+    {
+        return route;
+    }
+
+    /**
+     * Returns a copy of this result with statistics.
+     * @param stats the statistics of the search
+     * @return the result
+     */
+    public ORRouteResult withStats(ORSearchStats stats)
+    {
+        return new ORRouteResult(status, route, stats);
+    }
+
+    /**
+     * Returns the statistics of the search.
+     * @return the statistics or null if none were collected
+     */
+    public ORSearchStats getStats()
+    {
+        return stats;
+    }
+
+    public boolean isFound()
+    {
+        return status == ORSearchStatus.FOUND;
+    }
+}
@@ -0,0 +1,130 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import java.time.Duration;
+
+/**
+ * Limits of a single search: the number of settled nodes, the wall time, the weight and an optional cancellation token.
+ * A search exceeding a limit stops with {@link ORSearchStatus#BUDGET_EXCEEDED}, a cancelled or interrupted one
+ * with {@link ORSearchStatus#CANCELLED}. Budgets are immutable, the timeout starts when a search starts.
+ */
+public final class ORSearchBudget
+{
+    /** No limits, the search only stops if its thread is interrupted. */
+    public static final ORSearchBudget UNLIMITED = new ORSearchBudget(Integer.MAX_VALUE, Long.MAX_VALUE, Double.POSITIVE_INFINITY, null);
+
+    /** Number of settled nodes between two checks of the clock, the token and the interrupt flag. */
+    static final int CHECK_INTERVAL = 256;
+
+    private final int maxSettledNodes;
+    private final long maxNanos;
+    private final double maxWeight;
+    private final ORCancellationToken token;
+
+    private ORSearchBudget(int maxSettledNodes, long maxNanos, double maxWeight, ORCancellationToken token)
+    {
+        if (maxSettledNodes < 1 || maxNanos < 1 || !(maxWeight >= 0)) throw new IllegalArgumentException("Limits must be positive");
+        this.maxSettledNodes = maxSettledNodes;
+        this.maxNanos = maxNanos;
+        this.maxWeight = maxWeight;
+        this.token = token;
+    }
+
+    /**
+     * Creates a budget.
+     * @param maxSettledNodes the maximum number of settled nodes
+     * @param timeout the maximum wall time of a search
+     * @return the budget
+     */
+    public static ORSearchBudget of(int maxSettledNodes, Duration timeout)
+    {
+        return new ORSearchBudget(maxSettledNodes, toNanos(timeout), Double.POSITIVE_INFINITY, null);
+    }
+
+    /**
+     * Returns a copy with another settled node limit.
+     * @param maxSettledNodes the maximum number of settled nodes
+     * @return the budget
+     */
+    public ORSearchBudget withMaxSettledNodes(int maxSettledNodes)
+    {
+        return new ORSearchBudget(maxSettledNodes, maxNanos, maxWeight, token);
+    }
+
+    /**
+     * Returns a copy with another timeout.
+     * @param timeout the maximum wall time of a search
+     * @return the budget
+     */
+    public ORSearchBudget withTimeout(Duration timeout)
+    {
+        return new ORSearchBudget(maxSettledNodes, toNanos(timeout), maxWeight, token);
+    }
+
+    /**
+     * Returns a copy with a weight limit. The search stops before settling a node with a higher weight, so all
+     * nodes up to the limit are settled. Used for bounded searches, e.g. between consecutive GPS points.
+     * @param maxWeight the maximum weight of a settled node
+     * @return the budget
+     */
+    public ORSearchBudget withMaxWeight(double maxWeight)
+    {
+        return new ORSearchBudget(maxSettledNodes, maxNanos, maxWeight, token);
+    }
+
+    /**
+     * Returns a copy using a cancellation token.
+     * @param token the token, null for none
+     * @return the budget
+     */
+    public ORSearchBudget withToken(ORCancellationToken token)
+    {
+        return new ORSearchBudget(maxSettledNodes, maxNanos, maxWeight, token);
+    }
+
+    public int getMaxSettledNodes()
+    {
+        return maxSettledNodes;
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos;
+    }
+
+    public double getMaxWeight()
+    {
+        return maxWeight;
+    }
+
+    public ORCancellationToken getToken()
+    {
+        return token;
+    }
+
+    /**
+     * Returns the deadline of a search starting now.
+     * @param startNanos the start time from {@link System#nanoTime()}
+     * @return the deadline, {@link Long#MAX_VALUE} if there is no timeout
+     */
+    long getDeadline(long startNanos)
+    {
+        return maxNanos == Long.MAX_VALUE || startNanos + maxNanos < startNanos ? Long.MAX_VALUE : startNanos + maxNanos;
+    }
+
+    /**
+     * Checks the time, the token and the interrupt flag.
+     * @param deadline the deadline of the search
+     * @return null if the search may continue, otherwise the status to stop with
+     */
+    ORSearchStatus check(long deadline)
+    {
+        if ((token != null && token.isCancelled()) || Thread.currentThread().isInterrupted()) return ORSearchStatus.CANCELLED;
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) return ORSearchStatus.BUDGET_EXCEEDED;
+        return null;
+    }
+
+    private static long toNanos(Duration timeout)
+    {
+        return timeout == null ? Long.MAX_VALUE : Math.max(1, timeout.toNanos());
+    }
+}
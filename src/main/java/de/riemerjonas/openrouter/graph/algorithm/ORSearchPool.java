@@ -0,0 +1,81 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Idle {@link ORDijkstra} search objects of one graph, borrowed per query with {@link ORDijkstra#acquire}.
+ * <p>
+ * A search holds several arrays of the node count, so reusing it matters more than creating it cheaply. The pool
+ * belongs to its graph instead of to threads: short-lived threads like virtual threads per request still reuse the
+ * searches, and no thread keeps a replaced graph reachable. Acquiring never blocks, if no search is idle a new one is
+ * created. At most {@link #getCapacity()} searches are kept, more returned ones are dropped.
+ * {@link OpenRouterGraph#release()} clears the pool.
+ */
+public final class ORSearchPool
+{
+    private final OpenRouterGraph graph;
+    private final int capacity;
+    private final ArrayBlockingQueue<ORDijkstra> idle;
+    private volatile boolean cleared;
+
+    /**
+     * Creates a new ORSearchPool.
+     * @param graph the graph to search
+     * @param capacity the number of idle searches to keep
+     */
+    public ORSearchPool(OpenRouterGraph graph, int capacity)
+    {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        this.graph = graph;
+        this.capacity = capacity;
+        this.idle = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Returns the number of idle searches the pool keeps.
+     * @return the capacity
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of idle searches.
+     * @return the idle count
+     */
+    public int getIdleCount()
+    {
+        return idle.size();
+    }
+
+    /**
+     * Borrows an idle search or creates one.
+     * @return the search, to be returned with {@link ORDijkstra#close()}
+     */
+    ORDijkstra acquire()
+    {
+        ORDijkstra dijkstra = idle.poll();
+        return dijkstra != null ? dijkstra : new ORDijkstra(graph, this);
+    }
+
+    /**
+     * Takes a search back, unless the pool is full or cleared.
+     * @param dijkstra the search
+     */
+    void release(ORDijkstra dijkstra)
+    {
+        if (!cleared) idle.offer(dijkstra);
+    }
+
+    /**
+     * Drops all idle searches and keeps no returned ones.
+     */
+    public void clear()
+    {
+        cleared = true;
+        idle.clear();
+    }
+}
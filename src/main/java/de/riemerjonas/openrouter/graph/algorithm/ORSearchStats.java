@@ -0,0 +1,142 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+/**
+ * Statistics of one route query, filled by {@link ORGraphRouter} if passed to a search and returned with the
+ * {@link ORRouteResult}. Searches without statistics object skip the extra clock reads.
+ * <p>
+ * Phases not run by a query keep their initial values: zero counts and times, NaN snap distances.
+ * An object collects one query and is not thread-safe.
+ */
+public final class ORSearchStats
+{
+    private long snapNanos;
+    private long searchNanos;
+    private long unpackNanos;
+    private double startSnapDistance = Double.NaN;
+    private double endSnapDistance = Double.NaN;
+    private int snapCandidates;
+    private int settledNodes;
+    private long scannedEdges;
+    private long relaxedEdges;
+    private long heapPushes;
+    private long heapPops;
+
+    void recordSnap(long nanos, double startDistance, double endDistance, int candidates)
+    {
+        this.snapNanos = nanos;
+        this.startSnapDistance = startDistance;
+        this.endSnapDistance = endDistance;
+        this.snapCandidates = candidates;
+    }
+
+    void recordSearch(long nanos, ORDijkstra dijkstra)
+    {
+        this.searchNanos = nanos;
+        this.settledNodes = dijkstra.getSettledCount();
+        this.scannedEdges = dijkstra.getScannedEdgeCount();
+        this.relaxedEdges = dijkstra.getRelaxedEdgeCount();
+        this.heapPushes = dijkstra.getHeapPushCount();
+        this.heapPops = dijkstra.getHeapPopCount();
+    }
+
+    void recordUnpack(long nanos)
+    {
+        this.unpackNanos = nanos;
+    }
+
+    /**
+     * Returns the time of snapping start and end to nodes.
+     * @return the time in nanoseconds
+     */
+    public long getSnapNanos()
+    {
+        return snapNanos;
+    }
+
+    /**
+     * Returns the time of the search.
+     * @return the time in nanoseconds
+     */
+    public long getSearchNanos()
+    {
+        return searchNanos;
+    }
+
+    /**
+     * Returns the time of building the route from the search tree.
+     * @return the time in nanoseconds
+     */
+    public long getUnpackNanos()
+    {
+        return unpackNanos;
+    }
+
+    /**
+     * Returns the distance between the start coordinate and its node.
+     * @return the distance in meters
+     */
+    public double getStartSnapDistance()
+    {
+        return startSnapDistance;
+    }
+
+    /**
+     * Returns the distance between the end coordinate and its node.
+     * @return the distance in meters
+     */
+    public double getEndSnapDistance()
+    {
+        return endSnapDistance;
+    }
+
+    /**
+     * Returns the number of nodes in the tiles searched for the start and end node.
+     * @return the number of candidate nodes
+     */
+    public int getSnapCandidates()
+    {
+        return snapCandidates;
+    }
+
+    public int getSettledNodes()
+    {
+        return settledNodes;
+    }
+
+    /**
+     * Returns the number of edges of settled nodes, including inaccessible ones.
+     * @return the number of scanned edges
+     */
+    public long getScannedEdges()
+    {
+        return scannedEdges;
+    }
+
+    /**
+     * Returns the number of edges which improved the weight of a node.
+     * @return the number of relaxed edges
+     */
+    public long getRelaxedEdges()
+    {
+        return relaxedEdges;
+    }
+
+    public long getHeapPushes()
+    {
+        return heapPushes;
+    }
+
+    public long getHeapPops()
+    {
+        return heapPops;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "snap " + snapNanos / 1000 + " us (" + snapCandidates + " candidates, " + startSnapDistance + " m / "
+                + endSnapDistance + " m), search " + searchNanos / 1000 + " us (" + settledNodes + " settled, "
+                + scannedEdges + " scanned, " + relaxedEdges + " relaxed, " + heapPushes + " pushes, " + heapPops
+                + " pops), unpack " + unpackNanos / 1000 + " us";
+    }
+}
@@ -0,0 +1,16 @@
+package de.riemerjonas.openrouter.graph.algorithm;
+
+/**
+ * Outcome of a route search.
+ */
+public enum ORSearchStatus
+{
+    /** The route was found. */
+    FOUND,
+    /** The search completed, there is no route. */
+    NOT_FOUND,
+    /** The search was stopped by the settled node limit or the timeout of its {@link ORSearchBudget}. */
+    BUDGET_EXCEEDED,
+    /** The search was stopped by its {@link ORCancellationToken} or by interrupting the thread. */
+    CANCELLED
+}
@@ -0,0 +1,166 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+
+import java.util.List;
+
+/**
+ * Compressed sparse row view on the edges of a graph.
+ * Outgoing and incoming edges of every node are stored as ranges of edge indices, so
+ * algorithms can walk the graph over primitive arrays without per-query maps.
+ * Node IDs are used directly as array indices, missing IDs have no edges.
+ */
+public class ORAdjacency
+{
+    private final int nodeCount;
+    private final OpenRouterNode[] nodes;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final long[] edgeMeta;
+    private final int[] outStart;
+    private final int[] outEdges;
+    private final int[] inStart;
+    private final int[] inEdges;
+
+    private ORAdjacency(int nodeCount, OpenRouterNode[] nodes, int[] edgeFrom, int[] edgeTo, long[] edgeMeta)
+    {
+        this.nodeCount = nodeCount;
+        this.nodes = nodes;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeMeta = edgeMeta;
+        this.outStart = new int[nodeCount + 1];
+        this.outEdges = new int[edgeFrom.length];
+        this.inStart = new int[nodeCount + 1];
+        this.inEdges = new int[edgeFrom.length];
+        fill(edgeFrom, outStart, outEdges);
+        fill(edgeTo, inStart, inEdges);
+    }
+
+    /**
+     * Builds the adjacency of the given nodes and edges.
+     * @param nodes the nodes of the graph
+     * @param edges the edges of the graph
+     * @return the adjacency
+     */
+    public static ORAdjacency build(List<OpenRouterNode> nodes, List<OpenRouterEdge> edges)
+    {
+        int maxId = -1;
+        for (OpenRouterNode node : nodes) maxId = Math.max(maxId, node.getId());
+        for (OpenRouterEdge edge : edges) maxId = Math.max(maxId, Math.max(edge.getFromID(), edge.getToID()));
+
+        OpenRouterNode[] nodesById = new OpenRouterNode[maxId + 1];
+        for (OpenRouterNode node : nodes) nodesById[node.getId()] = node;
+
+        int[] edgeFrom = new int[edges.size()];
+        int[] edgeTo = new int[edges.size()];
+        long[] edgeMeta = new long[edges.size()];
+        for (int i = 0; i < edges.size(); i++)
+        {
+            OpenRouterEdge edge = edges.get(i);
+            edgeFrom[i] = edge.getFromID();
+            edgeTo[i] = edge.getToID();
+            edgeMeta[i] = edge.getMetaData();
+        }
+        return new ORAdjacency(maxId + 1, nodesById, edgeFrom, edgeTo, edgeMeta);
+    }
+
+    private static void fill(int[] key, int[] start, int[] sorted)
+    {
+        for (int k : key) start[k + 1]++;
+        for (int i = 0; i < start.length - 1; i++) start[i + 1] += start[i];
+        int[] position = new int[start.length - 1];
+        System.arraycopy(start, 0, position, 0, position.length);
+        for (int edge = 0; edge < key.length; edge++) sorted[position[key[edge]]++] = edge;
+    }
+
+    /**
+     * Returns the size of the node ID range, the largest node ID plus one.
+     * @return the node count including missing IDs
+     */
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    public boolean nodeExists(int node)
+    {
+        return node >= 0 && node < nodeCount && nodes[node] != null;
+    }
+
+    /**
+     * Returns the node with the given ID.
+     * @param node the node ID
+     * @return the node or null if the ID is not used
+     */
+    public OpenRouterNode getNode(int node)
+    {
+        return node >= 0 && node < nodeCount ? nodes[node] : null;
+    }
+
+    public int getEdgeCount()
+    {
+        return edgeFrom.length;
+    }
+
+    public int getEdgeFrom(int edge)
+    {
+        return edgeFrom[edge];
+    }
+
+    public int getEdgeTo(int edge)
+    {
+        return edgeTo[edge];
+    }
+
+    public long getEdgeMeta(int edge)
+    {
+        return edgeMeta[edge];
+    }
+
+    /**
+     * Returns the first position of the outgoing edges of a node, see {@link #getOutEdge(int)}.
+     * @param node the node ID
+     * @return the start position, inclusive
+     */
+    public int getOutStart(int node)
+    {
+        return outStart[node];
+    }
+
+    /**
+     * Returns the end of the outgoing edges of a node.
+     * @param node the node ID
+     * @return the end position, exclusive
+     */
+    public int getOutEnd(int node)
+    {
+        return outStart[node + 1];
+    }
+
+    /**
+     * Returns the edge index at the given position of the outgoing edge ranges.
+     * @param position the position
+     * @return the edge index in the edge list of the graph
+     */
+    public int getOutEdge(int position)
+    {
+        return outEdges[position];
+    }
+
+    public int getInStart(int node)
+    {
+        return inStart[node];
+    }
+
+    public int getInEnd(int node)
+    {
+        return inStart[node + 1];
+    }
+
+    public int getInEdge(int position)
+    {
+        return inEdges[position];
+    }
+}
@@ -0,0 +1,211 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Parsed content of an OSM change file (.osc or .osc.gz).
+ * Only nodes and ways are read, relations are ignored. If an element occurs
+ * multiple times, the last action in the file wins.
+ */
+public class ORChangeSet
+{
+    private final Map<Long, int[]> nodeCoordinates = new HashMap<>();
+    private final Set<Long> deletedNodes = new HashSet<>();
+    private final Map<Long, ChangedWay> changedWays = new HashMap<>();
+    private final Set<Long> deletedWays = new HashSet<>();
+
+    /**
+     * Returns the coordinates of all created or modified nodes as {latitudeE6, longitudeE6}.
+     * @return the node coordinates by OSM node ID
+     */
+    public Map<Long, int[]> getNodeCoordinates()
+    {
+        return nodeCoordinates;
+    }
+
+    /**
+     * Returns the OSM IDs of all deleted nodes.
+     * @return the deleted node IDs
+     */
+    public Set<Long> getDeletedNodes()
+    {
+        return deletedNodes;
+    }
+
+    /**
+     * Returns all created or modified ways.
+     * @return the ways by OSM way ID
+     */
+    public Map<Long, ChangedWay> getChangedWays()
+    {
+        return changedWays;
+    }
+
+    /**
+     * Returns the OSM IDs of all deleted ways.
+     * @return the deleted way IDs
+     */
+    public Set<Long> getDeletedWays()
+    {
+        return deletedWays;
+    }
+
+    /**
+     * Reads the given change file. Files ending with .gz are decompressed.
+     * @param file the change file
+     * @return the change set
+     * @throws IOException if reading or parsing fails
+     */
+    public static ORChangeSet read(File file) throws IOException
+    {
+        try (InputStream in = open(file))
+        {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a change set from the given stream.
+     * @param in the stream in osmChange XML format
+     * @return the change set
+     * @throws IOException if reading or parsing fails
+     */
+    public static ORChangeSet read(InputStream in) throws IOException
+    {
+        ORChangeSet changeSet = new ORChangeSet();
+        try
+        {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+            String action = null;
+            long wayId = -1;
+            List<Long> wayNodes = null;
+            Map<String, String> wayTags = null;
+
+            while (reader.hasNext())
+            {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT)
+                {
+                    switch (reader.getLocalName())
+                    {
+                        case "create":
+                        case "modify":
+                        case "delete":
+                            action = reader.getLocalName();
+                            break;
+                        case "node":
+                            changeSet.applyNode(action, reader);
+                            break;
+                        case "way":
+                            wayId = Long.parseLong(reader.getAttributeValue(null, "id"));
+                            wayNodes = new ArrayList<>();
+                            wayTags = new HashMap<>();
+                            break;
+                        case "nd":
+                            if (wayNodes != null) wayNodes.add(Long.parseLong(reader.getAttributeValue(null, "ref")));
+                            break;
+                        case "tag":
+                            if (wayTags != null) wayTags.put(reader.getAttributeValue(null, "k"), reader.getAttributeValue(null, "v"));
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("way") && wayNodes != null)
+                {
+                    changeSet.applyWay(action, wayId, wayNodes, wayTags);
+                    wayNodes = null;
+                    wayTags = null;
+                }
+            }
+            reader.close();
+        }
+        catch (XMLStreamException | NumberFormatException e)
+        {
+            throw new IOException("Invalid OSM change file", e);
+        }
+        return changeSet;
+    }
+
+    private void applyNode(String action, XMLStreamReader reader)
+    {
+        long id = Long.parseLong(reader.getAttributeValue(null, "id"));
+        if ("delete".equals(action))
+        {
+            nodeCoordinates.remove(id);
+            deletedNodes.add(id);
+            return;
+        }
+        String lat = reader.getAttributeValue(null, "lat");
+        String lon = reader.getAttributeValue(null, "lon");
+        if (lat == null || lon == null) return;
+
+        deletedNodes.remove(id);
+        nodeCoordinates.put(id, new int[] {
+                (int) Math.round(Double.parseDouble(lat) * 1E6),
+                (int) Math.round(Double.parseDouble(lon) * 1E6)
+        });
+    }
+
+    private void applyWay(String action, long id, List<Long> nodes, Map<String, String> tags)
+    {
+        if ("delete".equals(action))
+        {
+            changedWays.remove(id);
+            deletedWays.add(id);
+            return;
+        }
+        long[] refs = new long[nodes.size()];
+        for (int i = 0; i < refs.length; i++) refs[i] = nodes.get(i);
+
+        deletedWays.remove(id);
+        changedWays.put(id, new ChangedWay(id, refs, tags));
+    }
+
+    private static InputStream open(File file) throws IOException
+    {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    /**
+     * A created or modified way of a change set.
+     */
+    public static class ChangedWay
+    {
+        private final long id;
+        private final long[] nodeIds;
+        private final Map<String, String> tags;
+
+        ChangedWay(long id, long[] nodeIds, Map<String, String> tags)
+        {
+            this.id = id;
+            this.nodeIds = nodeIds;
+            this.tags = tags;
+        }
+
+        public long getId()
+        {
+            return id;
+        }
+
+        public long[] getNodeIds()
+        {
+            return nodeIds;
+        }
+
+        public Map<String, String> getTags()
+        {
+            return tags;
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterShapeStore;
+import de.riemerjonas.openrouter.core.OpenRouterTileMap;
+import de.riemerjonas.openrouter.core.collections.ORExternalSorter;
+import de.riemerjonas.openrouter.core.encoding.OpenRouterEdgeEncoder;
+import de.riemerjonas.openrouter.graph.core.pbf.ORPbfDecoder;
+import de.riemerjonas.openrouter.graph.core.pbf.ORPbfReader;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds a graph file from a PBF file without holding the graph in memory.
+ * <p>
+ * All intermediate data is written to sorted run files with {@link ORExternalSorter} and joined by streaming
+ * through them in OSM ID order, which requires a PBF file sorted by type and ID:
+ * <ol>
+ *     <li>the references of all routable ways are sorted, references occurring more than once are junctions,</li>
+ *     <li>the nodes are merge-joined with the sorted references, junctions get their graph ID,</li>
+ *     <li>every way reference is recorded with its position and sorted by node ID,</li>
+ *     <li>the references are merge-joined with the node coordinates and sorted back into way order,</li>
+ *     <li>the ways are replayed in order to create the compressed edges and their shapes,</li>
+ *     <li>the graph nodes are sorted by tile and the graph file is written sequentially.</li>
+ * </ol>
+ * The result is identical to {@link ORGraphHandler#buildFromPBF(File)} followed by {@link ORGraphHandler#save},
+ * including the OSM index and shape files. The memory budget limits the sort buffers; the PBF reader
+ * needs additional memory for the blocks in flight.
+ */
+public class ORExternalGraphBuilder
+{
+    private static final String TAG = "ORExternalGraphBuilder";
+    public static final long DEFAULT_MEMORY_BUDGET = 1L << 30;
+
+    private static final int IO_BUFFER = 1 << 16;
+    private static final long MISSING = -2;
+    private static final long NO_GRAPH_ID = -1;
+
+    private final long memoryBudget;
+    private final File tempDir;
+
+    /**
+     * Creates a new ORExternalGraphBuilder.
+     * @param memoryBudget the memory for sort buffers in bytes
+     * @param tempDir the directory for temporary files, needs several times the size of the PBF file
+     */
+    public ORExternalGraphBuilder(long memoryBudget, File tempDir)
+    {
+        this.memoryBudget = memoryBudget;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Creates a new ORExternalGraphBuilder with the {@link #DEFAULT_MEMORY_BUDGET} and the system temp directory.
+     */
+    public ORExternalGraphBuilder()
+    {
+        this(DEFAULT_MEMORY_BUDGET, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Builds the graph file.
+     * @param pbfFile the PBF file, sorted by type and ID
+     * @param graphFile the graph file to write, the OSM index and shape files are written next to it
+     * @throws IOException if reading or writing fails or the PBF file is not sorted
+     */
+    public void build(File pbfFile, File graphFile) throws IOException
+    {
+        OpenRouterLog.i(TAG, "Building graph from PBF file: " + pbfFile.getAbsolutePath() + " with "
+                + (memoryBudget >> 20) + " MB sort memory");
+        File work = Files.createTempDirectory(tempDir.toPath(), "openrouter-import").toFile();
+        try
+        {
+            ORPbfReader reader = new ORPbfReader();
+            File relevantFile = new File(work, "relevant.bin");
+            File coordsFile = new File(work, "coords.bin");
+            File nodeIdsFile = new File(work, "node-osm-ids.bin");
+            File waysFile = new File(work, "ways.bin");
+            File edgesFile = new File(work, "edges.bin");
+            File wayIdsFile = new File(work, "edge-way-ids.bin");
+            File shapePointIdsFile = new File(work, "shape-point-osm-ids.bin");
+
+            long relevantCount = collectRelevantNodes(reader, pbfFile, work, relevantFile);
+
+            try (ORExternalSorter tiles = new ORExternalSorter(2, memoryBudget / 4, work))
+            {
+                int nodeCount = loadNodes(reader, pbfFile, relevantFile, coordsFile, nodeIdsFile, tiles);
+                OpenRouterLog.d(TAG, "Loaded " + nodeCount + " graph nodes of " + relevantCount + " relevant nodes");
+
+                int edgeCount;
+                int shapePointCount;
+                try (ORExternalSorter resolved = new ORExternalSorter(4, memoryBudget * 3 / 8, work))
+                {
+                    try (ORExternalSorter references = new ORExternalSorter(2, memoryBudget * 3 / 8, work))
+                    {
+                        collectWays(reader, pbfFile, waysFile, references);
+                        resolveReferences(references, coordsFile, resolved);
+                    }
+                    try (OpenRouterShapeStore.SequentialWriter shapes = new OpenRouterShapeStore.SequentialWriter(work))
+                    {
+                        edgeCount = createEdges(waysFile, resolved, edgesFile, wayIdsFile, shapes, shapePointIdsFile);
+                        shapePointCount = shapes.getPointCount();
+                        shapes.finish(OpenRouterShapeStore.getShapeFile(graphFile));
+                    }
+                }
+                OpenRouterLog.d(TAG, "Created " + edgeCount + " edges");
+
+                writeGraphFile(graphFile, tiles, edgesFile, work);
+                OROsmIndex.save(OROsmIndex.getIndexFile(graphFile), nodeIdsFile, nodeCount, wayIdsFile, edgeCount,
+                        shapePointIdsFile, shapePointCount);
+            }
+            OpenRouterLog.i(TAG, "Graph saved to file: " + graphFile.getAbsolutePath());
+        }
+        finally
+        {
+            File[] files = work.listFiles();
+            if (files != null) for (File file : files) file.delete();
+            work.delete();
+        }
+    }
+
+    /**
+     * Step 1: sorts the references of all routable ways and writes every referenced node once
+     * with a flag whether it is a junction, see {@link ORGraphHandler#addWayReferences}.
+     */
+    private long collectRelevantNodes(ORPbfReader reader, File pbfFile, File work, File relevantFile) throws IOException
+    {
+        OpenRouterLog.d(TAG, "Collecting relevant nodes");
+        try (ORExternalSorter references = new ORExternalSorter(1, memoryBudget, work))
+        {
+            reader.read(pbfFile, new ORPbfDecoder(false, true), block -> {
+                for (int way = 0; way < block.getWayCount(); way++)
+                {
+                    if (ORWayAttributes.fromBlock(block, way) == null) continue;
+                    ORGraphHandler.addWayReferences(block, way, references::add);
+                }
+                return true;
+            });
+            OpenRouterLog.d(TAG, "Sorting " + references.size() + " references in " + references.getRunCount() + " runs");
+
+            long relevant = 0;
+            try (ORExternalSorter.Reader in = references.reader();
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(relevantFile), IO_BUFFER)))
+            {
+                long[] record = new long[1];
+                long current = 0;
+                int occurrences = 0;
+                while (in.next(record))
+                {
+                    if (occurrences > 0 && record[0] == current)
+                    {
+                        occurrences++;
+                        continue;
+                    }
+                    if (occurrences > 0)
+                    {
+                        writeRelevant(out, current, occurrences);
+                        relevant++;
+                    }
+                    current = record[0];
+                    occurrences = 1;
+                }
+                if (occurrences > 0)
+                {
+                    writeRelevant(out, current, occurrences);
+                    relevant++;
+                }
+            }
+            return relevant;
+        }
+    }
+
+    private static void writeRelevant(DataOutputStream out, long osmId, int occurrences) throws IOException
+    {
+        out.writeLong(osmId);
+        out.writeBoolean(occurrences > 1);
+    }
+
+    /**
+     * Step 2: joins the nodes of the PBF file with the relevant nodes. Writes the coordinates and graph ID
+     * of every relevant node in OSM ID order and adds the graph nodes to the tile sorter.
+     * @return the number of graph nodes
+     */
+    private int loadNodes(ORPbfReader reader, File pbfFile, File relevantFile, File coordsFile, File nodeIdsFile,
+                          ORExternalSorter tiles) throws IOException
+    {
+        OpenRouterLog.d(TAG, "Loading relevant nodes");
+        int[] graphNodeCount = new int[1];
+        try (RelevantReader relevant = new RelevantReader(relevantFile);
+             DataOutputStream coords = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(coordsFile), IO_BUFFER));
+             DataOutputStream nodeIds = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(nodeIdsFile), IO_BUFFER)))
+        {
+            long[] lastId = {Long.MIN_VALUE};
+            boolean[] nodesSeen = new boolean[1];
+            reader.read(pbfFile, new ORPbfDecoder(true, false), block -> {
+                if (block.getNodeCount() == 0) return !nodesSeen[0];
+                nodesSeen[0] = true;
+                for (int node = 0; node < block.getNodeCount(); node++)
+                {
+                    long id = block.getNodeId(node);
+                    if (id <= lastId[0]) throw new IOException("PBF file is not sorted by node ID at node " + id);
+                    lastId[0] = id;
+                    if (!relevant.advanceTo(id)) continue;
+
+                    int lat = block.getNodeLatitudeE6(node);
+                    int lon = block.getNodeLongitudeE6(node);
+                    long graphId = NO_GRAPH_ID;
+                    if (relevant.junction)
+                    {
+                        graphId = graphNodeCount[0]++;
+                        short tile = OpenRouterTileMap.getTileID(lat / 1E6, lon / 1E6);
+                        tiles.add(((long) tile << 32) | graphId, pack(lat, lon));
+                        nodeIds.writeLong(id);
+                    }
+                    coords.writeLong(id);
+                    coords.writeLong(pack(lat, lon));
+                    coords.writeLong(graphId);
+                }
+                return true;
+            });
+        }
+        return graphNodeCount[0];
+    }
+
+    /**
+     * Step 3: writes the attributes of every routable way in file order and records each reference
+     * with its position among all references.
+     */
+    private void collectWays(ORPbfReader reader, File pbfFile, File waysFile, ORExternalSorter references) throws IOException
+    {
+        OpenRouterLog.d(TAG, "Collecting ways");
+        try (DataOutputStream ways = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(waysFile), IO_BUFFER)))
+        {
+            long[] position = new long[1];
+            reader.read(pbfFile, new ORPbfDecoder(false, true), block -> {
+                for (int way = 0; way < block.getWayCount(); way++)
+                {
+                    ORWayAttributes attributes = ORWayAttributes.fromBlock(block, way);
+                    if (attributes == null) continue;
+
+                    int count = block.getWayNodeCount(way);
+                    ways.writeLong(block.getWayId(way));
+                    ways.writeLong(attributes.createMeta(0));
+                    ways.writeBoolean(attributes.isOneway());
+                    ways.writeInt(count);
+                    for (int i = 0; i < count; i++) references.add(block.getWayNodeId(way, i), position[0]++);
+                }
+                return true;
+            });
+        }
+        OpenRouterLog.d(TAG, "Sorting " + references.size() + " way references in " + references.getRunCount() + " runs");
+    }
+
+    /**
+     * Step 4: joins the references sorted by node ID with the coordinates and sorts them back by position.
+     */
+    private void resolveReferences(ORExternalSorter references, File coordsFile, ORExternalSorter resolved) throws IOException
+    {
+        OpenRouterLog.d(TAG, "Resolving way references");
+        try (ORExternalSorter.Reader in = references.reader();
+             DataInputStream coords = new DataInputStream(new BufferedInputStream(new FileInputStream(coordsFile), IO_BUFFER)))
+        {
+            long[] record = new long[2];
+            long coordId = Long.MIN_VALUE, coordLatLon = 0, coordGraphId = MISSING;
+            boolean coordsLeft = true;
+            while (in.next(record))
+            {
+                while (coordsLeft && coordId < record[0])
+                {
+                    try
+                    {
+                        coordId = coords.readLong();
+                        coordLatLon = coords.readLong();
+                        coordGraphId = coords.readLong();
+                    }
+                    catch (EOFException e)
+                    {
+                        coordsLeft = false;
+                    }
+                }
+                if (coordId == record[0]) resolved.add(record[1], coordLatLon, coordGraphId, coordId);
+                else resolved.add(record[1], 0, MISSING, record[0]);
+            }
+        }
+        OpenRouterLog.d(TAG, "Sorting " + resolved.size() + " resolved references in " + resolved.getRunCount() + " runs");
+    }
+
+    /**
+     * Step 5: replays the ways with their resolved references and creates the edges between junctions.
+     * @return the number of edges
+     */
+    private int createEdges(File waysFile, ORExternalSorter resolved, File edgesFile, File wayIdsFile,
+                            OpenRouterShapeStore.SequentialWriter shapes, File shapePointIdsFile) throws IOException
+    {
+        OpenRouterLog.d(TAG, "Creating edges");
+        int edgeCount = 0;
+        long missing = 0;
+        ORGraphHandler.ChainBuilder chain = new ORGraphHandler.ChainBuilder();
+        try (DataInputStream ways = new DataInputStream(new BufferedInputStream(new FileInputStream(waysFile), IO_BUFFER));
+             ORExternalSorter.Reader references = resolved.reader();
+             DataOutputStream edges = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(edgesFile), IO_BUFFER));
+             DataOutputStream wayIds = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(wayIdsFile), IO_BUFFER));
+             DataOutputStream shapePointIds = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(shapePointIdsFile), IO_BUFFER)))
+        {
+            long[] reference = new long[4];
+            while (true)
+            {
+                long wayId;
+                try
+                {
+                    wayId = ways.readLong();
+                }
+                catch (EOFException e)
+                {
+                    break;
+                }
+                long baseMeta = ways.readLong();
+                boolean oneway = ways.readBoolean();
+                int count = ways.readInt();
+
+                chain.reset();
+                for (int i = 0; i < count; i++)
+                {
+                    if (!references.next(reference)) throw new IOException("Way references ended early in way " + wayId);
+                    if (reference[2] == MISSING)
+                    {
+                        missing++;
+                        chain.reset();
+                        continue;
+                    }
+
+                    int lat = (int) (reference[1] >> 32);
+                    int lon = (int) reference[1];
+                    if (reference[2] == NO_GRAPH_ID)
+                    {
+                        chain.addShapePoint(reference[3], lat, lon);
+                        continue;
+                    }
+
+                    int graphId = (int) reference[2];
+                    chain.addJunction(lat, lon);
+                    if (chain.hasStart() && chain.start != graphId)
+                    {
+                        int shapeRef = OpenRouterShapeStore.NO_SHAPE;
+                        if (chain.shapeCount > 0)
+                        {
+                            int shapeId = shapes.addShape(chain.shapeLat, chain.shapeLon, chain.shapeCount);
+                            for (int p = 0; p < chain.shapeCount; p++) shapePointIds.writeLong(chain.shapeOsmIds[p]);
+                            shapeRef = OpenRouterShapeStore.toShapeRef(shapeId, false);
+                        }
+                        long meta = OpenRouterEdgeEncoder.DISTANCE_DM.set(baseMeta, Math.round(chain.distance * 10));
+                        writeEdge(edges, wayIds, shapes, chain.start, graphId, chain.withBearings(meta, false), shapeRef, wayId);
+                        edgeCount++;
+                        if (!oneway)
+                        {
+                            int reverseRef = shapeRef == OpenRouterShapeStore.NO_SHAPE ? shapeRef : shapeRef | 1;
+                            writeEdge(edges, wayIds, shapes, graphId, chain.start, chain.withBearings(meta, true), reverseRef, wayId);
+                            edgeCount++;
+                        }
+                    }
+                    chain.startAt(graphId, lat, lon);
+                }
+            }
+        }
+        if (missing > 0) OpenRouterLog.w(TAG, missing + " way references point to nodes missing in the PBF file");
+        return edgeCount;
+    }
+
+    private static void writeEdge(DataOutputStream edges, DataOutputStream wayIds, OpenRouterShapeStore.SequentialWriter shapes,
+                                  int from, int to, long meta, int shapeRef, long wayId) throws IOException
+    {
+        // same layout as OpenRouterEdge.serialize
+        edges.writeInt(from);
+        edges.writeInt(to);
+        edges.writeLong(meta);
+        wayIds.writeLong(wayId);
+        shapes.addEdge(shapeRef);
+    }
+
+    /**
+     * Step 6: writes the graph file in the layout of {@link ORGraphHandler#save}: tile index, tile data, edges.
+     */
+    private void writeGraphFile(File graphFile, ORExternalSorter tiles, File edgesFile, File work) throws IOException
+    {
+        OpenRouterLog.d(TAG, "Writing graph file");
+        File tileDataFile = new File(work, "tiles.bin");
+        List<long[]> index = new ArrayList<>();
+        try (ORExternalSorter.Reader in = tiles.reader();
+             DataOutputStream tileData = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tileDataFile), IO_BUFFER)))
+        {
+            long[] record = new long[2];
+            long written = 0;
+            long currentTile = Long.MIN_VALUE;
+            long tileOffset = 0;
+            while (in.next(record))
+            {
+                long tile = record[0] >> 32;
+                if (tile != currentTile)
+                {
+                    if (currentTile != Long.MIN_VALUE) index.add(new long[] {currentTile, tileOffset, written - tileOffset});
+                    currentTile = tile;
+                    tileOffset = written;
+                }
+                tileData.writeShort(12);
+                tileData.writeInt((int) record[0]);
+                tileData.writeLong(record[1]);
+                written += 14;
+            }
+            if (currentTile != Long.MIN_VALUE) index.add(new long[] {currentTile, tileOffset, written - tileOffset});
+            if (written > Integer.MAX_VALUE) throw new IOException("Tile data exceeds the 2 GB limit of the graph format");
+        }
+        index.sort(Comparator.comparingLong(entry -> entry[1]));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(graphFile), IO_BUFFER)))
+        {
+            out.writeShort(index.size());
+            for (long[] entry : index)
+            {
+                out.writeShort((short) entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+            }
+            Files.copy(tileDataFile.toPath(), out);
+            Files.copy(edgesFile.toPath(), out);
+        }
+        OpenRouterLog.d(TAG, "Wrote " + index.size() + " tiles");
+    }
+
+    /**
+     * Packs a coordinate into a long, latitude in the upper half. Also the layout of a node in the tile data
+     * after its ID.
+     */
+    private static long pack(int latE6, int lonE6)
+    {
+        return ((long) latE6 << 32) | (lonE6 & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Walks the relevant node file in ascending OSM ID order.
+     */
+    private static class RelevantReader implements Closeable
+    {
+        private final DataInputStream in;
+        private long id = Long.MIN_VALUE;
+        private boolean junction;
+        private boolean done;
+
+        RelevantReader(File file) throws IOException
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER));
+        }
+
+        /**
+         * Advances to the given ID.
+         * @return true if the ID is a relevant node
+         */
+        boolean advanceTo(long target) throws IOException
+        {
+            while (!done && id < target)
+            {
+                try
+                {
+                    id = in.readLong();
+                    junction = in.readBoolean();
+                }
+                catch (EOFException e)
+                {
+                    done = true;
+                }
+            }
+            return !done && id == target;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.*;
+import de.riemerjonas.openrouter.core.collections.ORLongArrayList;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Cuts a region out of an existing graph.
+ * An edge is kept if one of its nodes or shape points lies inside the region, the nodes of all kept edges
+ * are kept as well. Node IDs are renumbered densely and only the used shapes are copied,
+ * so the extracted graph does not carry any data of the original graph outside the region.
+ */
+public class ORGraphExtractor
+{
+    private static final String TAG = "ORGraphExtractor";
+
+    /**
+     * Loads the graph, cuts out the region and saves the result.
+     * @param graphFile the existing graph file
+     * @param region the region to keep
+     * @param outputFile the file to write the extracted graph to
+     * @return the extracted graph or null if loading failed
+     */
+    public static OpenRouterGraph extract(File graphFile, ORRegion region, File outputFile)
+    {
+        OpenRouterGraph graph = ORGraphHandler.load(graphFile);
+        if (graph == null) return null;
+
+        OpenRouterGraph extracted = extract(graph, region);
+        ORGraphHandler.save(outputFile, extracted);
+        return extracted;
+    }
+
+    /**
+     * Cuts the region out of the given graph. The given graph is not modified.
+     * @param graph the graph
+     * @param region the region to keep
+     * @return the extracted graph
+     */
+    public static OpenRouterGraph extract(OpenRouterGraph graph, ORRegion region)
+    {
+        List<OpenRouterNode> oldNodes = graph.getNodes();
+        int maxId = -1;
+        for (OpenRouterNode node : oldNodes) maxId = Math.max(maxId, node.getId());
+
+        OpenRouterNode[] nodes = new OpenRouterNode[maxId + 1];
+        boolean[] inside = new boolean[maxId + 1];
+        for (OpenRouterNode node : oldNodes)
+        {
+            nodes[node.getId()] = node;
+            inside[node.getId()] = region.containsE6(node.getLatitudeE6(), node.getLongitudeE6());
+        }
+
+        OpenRouterShapeStore oldShapes = graph.getShapeStore();
+        OpenRouterShapeStore shapes = oldShapes != null ? new OpenRouterShapeStore() : null;
+        int[] shapeIds = new int[oldShapes != null ? oldShapes.getShapeCount() : 0];
+        Arrays.fill(shapeIds, -1);
+        ShapePointIds shapePointIds = new ShapePointIds(graph.getOsmIndex(), oldShapes);
+
+        int[] newIds = new int[maxId + 1];
+        Arrays.fill(newIds, -1);
+        List<OpenRouterNode> newNodes = new ArrayList<>();
+
+        OROsmIndex index = graph.getOsmIndex();
+        List<OpenRouterEdge> oldEdges = graph.getEdges();
+        List<OpenRouterEdge> edges = new ArrayList<>();
+        long[] edgeWayIds = new long[oldEdges.size()];
+        long[] nodeOsmIds = OROsmIndex.emptyNodeIds(oldNodes.size());
+
+        for (int i = 0; i < oldEdges.size(); i++)
+        {
+            OpenRouterEdge edge = oldEdges.get(i);
+            int from = edge.getFromID();
+            int to = edge.getToID();
+            if (!inside[from] && !inside[to] && !shapeTouchesRegion(oldShapes, edge.getShapeRef(), region)) continue;
+
+            for (int id : new int[] {from, to})
+            {
+                if (newIds[id] >= 0) continue;
+                newIds[id] = newNodes.size();
+                newNodes.add(new OpenRouterNode(newIds[id], new OpenRouterPoint(nodes[id].getLatitudeE6(), nodes[id].getLongitudeE6())));
+                if (index != null) nodeOsmIds[newIds[id]] = index.getNodeOsmId(id);
+            }
+
+            int shapeRef = copyShape(oldShapes, shapes, shapeIds, edge.getShapeRef(), shapePointIds);
+            if (index != null) edgeWayIds[edges.size()] = index.getEdgeWayId(i);
+            edges.add(new OpenRouterEdge(newIds[from], newIds[to], edge.getMetaData(), shapeRef));
+        }
+
+        OpenRouterGraph extracted = new OpenRouterGraph(OpenRouterTileMap.create(newNodes), edges);
+        extracted.setShapeStore(shapes);
+        if (index != null)
+        {
+            extracted.setOsmIndex(new OROsmIndex(Arrays.copyOf(nodeOsmIds, newNodes.size()), Arrays.copyOf(edgeWayIds, edges.size()),
+                    shapePointIds.toArray()));
+        }
+        OpenRouterLog.i(TAG, "Extracted " + newNodes.size() + " of " + oldNodes.size() + " nodes and "
+                + edges.size() + " of " + oldEdges.size() + " edges for region " + region.getName());
+        return extracted;
+    }
+
+    /**
+     * Extracts the subgraph of a set of nodes: the accepted nodes and the edges between them.
+     * New node IDs are assigned in the order of the original IDs, so the original ID of a node is the
+     * n-th accepted ID.
+     * @param graph the graph, not modified
+     * @param filter accepts original node IDs
+     * @return the extracted graph
+     */
+    public static OpenRouterGraph extract(OpenRouterGraph graph, IntPredicate filter)
+    {
+        ORAdjacency adjacency = graph.getAdjacency();
+        int[] newIds = new int[adjacency.getNodeCount()];
+        Arrays.fill(newIds, -1);
+        List<OpenRouterNode> newNodes = new ArrayList<>();
+        OROsmIndex index = graph.getOsmIndex();
+        long[] nodeOsmIds = OROsmIndex.emptyNodeIds(adjacency.getNodeCount());
+        for (int id = 0; id < adjacency.getNodeCount(); id++)
+        {
+            OpenRouterNode node = adjacency.getNode(id);
+            if (node == null || !filter.test(id)) continue;
+            newIds[id] = newNodes.size();
+            newNodes.add(new OpenRouterNode(newIds[id], new OpenRouterPoint(node.getLatitudeE6(), node.getLongitudeE6())));
+            if (index != null) nodeOsmIds[newIds[id]] = index.getNodeOsmId(id);
+        }
+
+        OpenRouterShapeStore oldShapes = graph.getShapeStore();
+        OpenRouterShapeStore shapes = oldShapes != null ? new OpenRouterShapeStore() : null;
+        int[] shapeIds = new int[oldShapes != null ? oldShapes.getShapeCount() : 0];
+        Arrays.fill(shapeIds, -1);
+        ShapePointIds shapePointIds = new ShapePointIds(graph.getOsmIndex(), oldShapes);
+
+        List<OpenRouterEdge> oldEdges = graph.getEdges();
+        List<OpenRouterEdge> edges = new ArrayList<>();
+        long[] edgeWayIds = new long[oldEdges.size()];
+        for (int i = 0; i < oldEdges.size(); i++)
+        {
+            OpenRouterEdge edge = oldEdges.get(i);
+            int from = newIds[edge.getFromID()];
+            int to = newIds[edge.getToID()];
+            if (from < 0 || to < 0) continue;
+
+            int shapeRef = copyShape(oldShapes, shapes, shapeIds, edge.getShapeRef(), shapePointIds);
+            if (index != null) edgeWayIds[edges.size()] = index.getEdgeWayId(i);
+            edges.add(new OpenRouterEdge(from, to, edge.getMetaData(), shapeRef));
+        }
+
+        OpenRouterGraph extracted = new OpenRouterGraph(OpenRouterTileMap.create(newNodes), edges);
+        extracted.setShapeStore(shapes);
+        if (index != null)
+        {
+            extracted.setOsmIndex(new OROsmIndex(Arrays.copyOf(nodeOsmIds, newNodes.size()), Arrays.copyOf(edgeWayIds, edges.size()),
+                    shapePointIds.toArray()));
+        }
+        OpenRouterLog.i(TAG, "Extracted " + newNodes.size() + " nodes and " + edges.size() + " of " + oldEdges.size() + " edges");
+        return extracted;
+    }
+
+    private static boolean shapeTouchesRegion(OpenRouterShapeStore shapes, int shapeRef, ORRegion region)
+    {
+        if (shapes == null) return false;
+        for (int i = 0; i < shapes.getPointCount(shapeRef); i++)
+        {
+            if (region.containsE6(shapes.getLatitudeE6(shapeRef, i), shapes.getLongitudeE6(shapeRef, i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the shape of an edge into the new store once, both directions share the copy.
+     * @return the shape reference in the new store
+     */
+    private static int copyShape(OpenRouterShapeStore from, OpenRouterShapeStore to, int[] shapeIds, int shapeRef,
+                                 ShapePointIds shapePointIds)
+    {
+        if (from == null || shapeRef == OpenRouterShapeStore.NO_SHAPE) return OpenRouterShapeStore.NO_SHAPE;
+        int oldId = shapeRef >>> 1;
+        if (shapeIds[oldId] < 0)
+        {
+            int forward = OpenRouterShapeStore.toShapeRef(oldId, false);
+            int count = from.getPointCount(forward);
+            int[] lat = new int[count];
+            int[] lon = new int[count];
+            for (int i = 0; i < count; i++)
+            {
+                lat[i] = from.getLatitudeE6(forward, i);
+                lon[i] = from.getLongitudeE6(forward, i);
+            }
+            shapeIds[oldId] = to.addShape(lat, lon, count);
+            shapePointIds.copy(from, forward, count);
+        }
+        return OpenRouterShapeStore.toShapeRef(shapeIds[oldId], (shapeRef & 1) != 0);
+    }
+
+    /**
+     * OSM node IDs of the copied shape points, in the order of the new store. Nothing is collected if the OSM index
+     * of the graph does not cover its shape points.
+     */
+    private static class ShapePointIds
+    {
+        private final OROsmIndex index;
+        private final ORLongArrayList ids = new ORLongArrayList();
+
+        ShapePointIds(OROsmIndex index, OpenRouterShapeStore shapes)
+        {
+            boolean covered = index != null && shapes != null && index.hasShapePoints(shapes.getTotalPointCount());
+            this.index = covered ? index : null;
+        }
+
+        void copy(OpenRouterShapeStore from, int shapeRef, int count)
+        {
+            if (index == null) return;
+            for (int i = 0; i < count; i++) ids.add(index.getShapePointOsmId(from.getPointIndex(shapeRef, i)));
+        }
+
+        long[] toArray()
+        {
+            return index != null ? ids.toArray() : new long[0];
+        }
+    }
+}
@@ -1,25 +1,27 @@
 package de.riemerjonas.openrouter.graph.core;
 
 import de.riemerjonas.openrouter.core.*;
+import de.riemerjonas.openrouter.core.collections.ORIntArrayList;
+import de.riemerjonas.openrouter.core.collections.ORLongArrayList;
+import de.riemerjonas.openrouter.core.collections.ORLongIntArrayMap;
+import de.riemerjonas.openrouter.core.collections.ORSortedLongArray;
+import de.riemerjonas.openrouter.core.geometry.ORDistance;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
 import de.riemerjonas.openrouter.graph.OpenRouterGraph;
-import de.topobyte.osm4j.core.model.iface.EntityContainer;
-import de.topobyte.osm4j.core.model.iface.EntityType;
-import de.topobyte.osm4j.core.model.iface.OsmNode;
-import de.topobyte.osm4j.core.model.iface.OsmWay;
-import de.topobyte.osm4j.pbf.seq.PbfIterator;
+import de.riemerjonas.openrouter.graph.algorithm.ORHubLabels;
+import de.riemerjonas.openrouter.graph.core.pbf.ORPbfBlock;
+import de.riemerjonas.openrouter.graph.core.pbf.ORPbfDecoder;
+import de.riemerjonas.openrouter.graph.core.pbf.ORPbfReader;
+import de.riemerjonas.openrouter.metrics.ORGraphLoadEvent;
+import de.riemerjonas.openrouter.metrics.ORMetrics;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.IntToLongFunction;
 
 public class ORGraphHandler
 {
     private static final String TAG = "ORGraphHandler";
-    private static Set<String> carHighways = Set.of(
-            "motorway", "trunk", "primary", "secondary", "tertiary",
-            "unclassified", "residential", "motorway_link", "trunk_link",
-            "primary_link", "secondary_link", "tertiary_link", "living_street",
-            "service", "bus_guideway", "road"
-    );
 
     /**
      * Saves the given graph to the given file.
@@ -28,6 +30,7 @@ public class ORGraphHandler
      */
     public static void save(File file, OpenRouterGraph graph)
     {
+        long start = ORMetrics.GRAPH_SAVE.start();
         OpenRouterTileMap tileMap  = graph.getTileMap();
         try
         {
@@ -40,9 +43,18 @@ public class ORGraphHandler
                 fos.write(serializedEdges);
                 fos.flush();
             }
+            if (graph.getOsmIndex() != null)
+            {
+                OROsmIndex.save(OROsmIndex.getIndexFile(file), graph.getOsmIndex());
+            }
+            if (graph.getShapeStore() != null)
+            {
+                OpenRouterShapeStore.save(OpenRouterShapeStore.getShapeFile(file), graph.getShapeStore(), graph.getEdges());
+            }
             OpenRouterLog.d(TAG, "Saved " + graph.getEdges().size() + " edges");
             OpenRouterLog.d(TAG, "Saved " + tileMap.getTileMap().size() + " tiles");
             OpenRouterLog.i(TAG, "Graph saved to file: " + file.getAbsolutePath());
+            ORMetrics.GRAPH_SAVE.stop(start);
         }
         catch (Exception e)
         {
@@ -52,11 +64,15 @@ public class ORGraphHandler
 
     /**
      * Loads the graph from the given file.
+     * Recorded as {@link ORGraphLoadEvent} while Flight Recorder is running.
      * @param file the file to load from
      * @return the loaded graph
      */
     public static OpenRouterGraph load(File file)
     {
+        long start = ORMetrics.GRAPH_LOAD.start();
+        ORGraphLoadEvent event = new ORGraphLoadEvent();
+        event.begin();
         try (FileInputStream fis = new FileInputStream(file))
         {
             byte[] fullData = fis.readAllBytes();
@@ -100,23 +116,21 @@ public class ORGraphHandler
             // --- EDGES: restliche Daten parsen ---
             int edgeDataOffset = tileDataStart + tileIndexMap.values().stream().mapToInt(t -> t.length).sum();
             int edgeBytes = fullData.length - edgeDataOffset;
-            int edgeCount = edgeBytes / 12;
+            int edgeCount = edgeBytes / OpenRouterEdge.BYTES;
+
+            int[] shapeRefs = new int[edgeCount];
+            Arrays.fill(shapeRefs, OpenRouterShapeStore.NO_SHAPE);
+            OpenRouterShapeStore shapeStore = null;
+            File shapeFile = OpenRouterShapeStore.getShapeFile(file);
+            if (shapeFile.exists())
+            {
+                shapeStore = OpenRouterShapeStore.load(shapeFile, shapeRefs);
+            }
 
             List<OpenRouterEdge> edges = new ArrayList<>(edgeCount);
             for (int i = 0; i < edgeCount; i++)
             {
-                int base = edgeDataOffset + i * 12;
-
-                int fromID = ((fullData[base] & 0xFF) << 24) | ((fullData[base + 1] & 0xFF) << 16) |
-                        ((fullData[base + 2] & 0xFF) << 8) | (fullData[base + 3] & 0xFF);
-
-                int toID = ((fullData[base + 4] & 0xFF) << 24) | ((fullData[base + 5] & 0xFF) << 16) |
-                        ((fullData[base + 6] & 0xFF) << 8) | (fullData[base + 7] & 0xFF);
-
-                int metaData = ((fullData[base + 8] & 0xFF) << 24) | ((fullData[base + 9] & 0xFF) << 16) |
-                        ((fullData[base + 10] & 0xFF) << 8) | (fullData[base + 11] & 0xFF);
-
-                edges.add(new OpenRouterEdge(fromID, toID, metaData));
+                edges.add(OpenRouterEdge.deserialize(fullData, edgeDataOffset + i * OpenRouterEdge.BYTES, shapeRefs[i]));
             }
 
             // --- Aufbau Graph-Objekt ---
@@ -126,7 +140,26 @@ public class ORGraphHandler
             OpenRouterLog.d(TAG, "Loaded " + tileIndexMap.size() + " tile indices");
 
             OpenRouterTileMap orm = new OpenRouterTileMap(tileMap);
-            return new OpenRouterGraph(orm, edges);
+            OpenRouterGraph graph = new OpenRouterGraph(orm, edges);
+            graph.setShapeStore(shapeStore);
+
+            File indexFile = OROsmIndex.getIndexFile(file);
+            if (indexFile.exists())
+            {
+                graph.setOsmIndex(OROsmIndex.load(indexFile));
+            }
+            ORHubLabels.attachAll(file, graph);
+            ORMetrics.GRAPH_LOAD.stop(start);
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.file = file.getPath();
+                event.size = fullData.length;
+                for (List<OpenRouterNode> nodes : tileMap.values()) event.nodes += nodes.size();
+                event.edges = edgeCount;
+                event.commit();
+            }
+            return graph;
         }
         catch (IOException e)
         {
@@ -146,98 +179,203 @@ public class ORGraphHandler
     }
 
     /**
-     * Builds the graph from PBF file.
+     * Builds the graph from PBF file with compressed chains.
      * @param file the PBF file
      * @return the graph
+     * @see #buildFromPBF(File, boolean)
      */
     public static OpenRouterGraph buildFromPBF(File file)
+    {
+        return buildFromPBF(file, true);
+    }
+
+    /**
+     * Builds the graph from PBF file.
+     * The file is read twice with {@link ORPbfReader}, decoding blocks in parallel: the first pass collects
+     * the nodes of all routable ways, the second pass loads these nodes and, since PBF files store all nodes
+     * before the ways, creates the edges from the ways following them in the same pass.
+     * <p>
+     * With chain compression only junctions (nodes shared by several ways) and way ends become graph nodes.
+     * The nodes in between are merged into a single edge with the summed distance and stored as shape points.
+     * @param file the PBF file
+     * @param compressChains true to merge chains of degree-2 nodes into single edges
+     * @return the graph
+     */
+    public static OpenRouterGraph buildFromPBF(File file, boolean compressChains)
+    {
+        return buildFromPBF(file, compressChains, null);
+    }
+
+    /**
+     * Builds the graph of a region from PBF file.
+     * With a region an additional pass over the nodes collects all nodes inside the region first,
+     * only ways with at least one of these nodes are imported. Ways crossing the border are kept completely.
+     * @param file the PBF file
+     * @param compressChains true to merge chains of degree-2 nodes into single edges
+     * @param region the region to import or null for the whole file
+     * @return the graph
+     * @see #buildFromPBF(File, boolean)
+     */
+    public static OpenRouterGraph buildFromPBF(File file, boolean compressChains, ORRegion region)
     {
         OpenRouterLog.i(TAG, "Building graph from PBF file: " + file.getAbsolutePath());
         try
         {
-            // Step 1: Collect all nodes of relevant highway ways
-            OpenRouterLog.d(TAG, "Collecting relevant nodes from PBF file");
-            Set<Long> relevantNodeIds = new HashSet<>();
-            InputStream stream = new FileInputStream(file);
-            PbfIterator iterator = new PbfIterator(stream, true);
-            for (EntityContainer container : iterator)
-            {
-                if (container.getType().equals(EntityType.Way))
-                {
-                    OsmWay way = (OsmWay) container.getEntity();
-                    if (!isHighway(way)) continue;
+            ORPbfReader reader = new ORPbfReader();
 
-                    for (int i = 0; i < way.getNumberOfNodes(); i++)
+            // Step 0: Collect all nodes inside the region
+            ORSortedLongArray regionNodeIds = null;
+            if (region != null)
+            {
+                OpenRouterLog.d(TAG, "Collecting nodes inside region " + region.getName());
+                ORLongArrayList insideIds = new ORLongArrayList(1 << 20);
+                boolean[] nodesSeen = new boolean[1];
+                reader.read(file, new ORPbfDecoder(true, false), block -> {
+                    // nodes precede the ways in sorted files, the first block without nodes ends the pass
+                    if (block.getNodeCount() == 0) return !nodesSeen[0];
+                    nodesSeen[0] = true;
+                    for (int node = 0; node < block.getNodeCount(); node++)
                     {
-                        relevantNodeIds.add(way.getNodeId(i));
+                        if (region.containsE6(block.getNodeLatitudeE6(node), block.getNodeLongitudeE6(node)))
+                        {
+                            insideIds.add(block.getNodeId(node));
+                        }
                     }
-                }
+                    return true;
+                });
+                regionNodeIds = insideIds.toSortedArray();
+                OpenRouterLog.d(TAG, "Found " + regionNodeIds.size() + " nodes inside region");
             }
-            OpenRouterLog.d(TAG, "Collected " + relevantNodeIds.size() + " relevant nodes");
+            ORSortedLongArray regionFilter = regionNodeIds;
 
-            // Step 2: Load only relevant nodes
-            OpenRouterLog.d(TAG, "Loading relevant nodes from PBF file");
-            Map<Long, OpenRouterNode> nodeMap = new HashMap<>();
-            iterator = new PbfIterator(new FileInputStream(file), false);
-            for (EntityContainer container : iterator)
-            {
-                if (container.getType().equals(EntityType.Node))
+            // Step 1: Collect all nodes of relevant highway ways
+            OpenRouterLog.d(TAG, "Collecting relevant nodes from PBF file");
+            ORLongArrayList wayNodeIds = new ORLongArrayList(1 << 20);
+            reader.read(file, new ORPbfDecoder(false, true), block -> {
+                for (int way = 0; way < block.getWayCount(); way++)
+                {
+                    if (ORWayAttributes.fromBlock(block, way) == null) continue;
+                    if (regionFilter != null && !touchesRegion(block, way, regionFilter)) continue;
+
+                    addWayReferences(block, way, wayNodeIds::add);
+                }
+                return true;
+            });
+            BitSet junctions = new BitSet();
+            ORSortedLongArray relevantNodeIds = wayNodeIds.toSortedArray(junctions);
+            if (!compressChains) junctions.set(0, relevantNodeIds.size());
+            OpenRouterLog.d(TAG, "Collected " + relevantNodeIds.size() + " relevant nodes, " + junctions.cardinality() + " junctions");
+
+            // Step 2: Load relevant nodes and create edges between all consecutive junctions
+            OpenRouterLog.d(TAG, "Loading relevant nodes and creating edges from PBF file");
+            ORLongIntArrayMap nodeIdMap = new ORLongIntArrayMap(relevantNodeIds);
+            ORSortedLongArray.Cursor nodeCursor = relevantNodeIds.cursor();
+            int[] latitudes = new int[relevantNodeIds.size()];
+            int[] longitudes = new int[relevantNodeIds.size()];
+            BitSet loaded = new BitSet(relevantNodeIds.size());
+            ORIntArrayList graphNodeIndex = new ORIntArrayList(junctions.cardinality());
+            EdgeCollector edges = new EdgeCollector();
+            OpenRouterShapeStore shapeStore = compressChains ? new OpenRouterShapeStore() : null;
+            ORLongArrayList shapePointOsmIds = new ORLongArrayList();
+            ChainBuilder chain = new ChainBuilder();
+            boolean[] waysStarted = new boolean[1];
+            reader.read(file, new ORPbfDecoder(true, true), block -> {
+                if (block.getNodeCount() > 0 && waysStarted[0])
+                {
+                    OpenRouterLog.w(TAG, "Nodes after ways in block " + block.getSequence() + ", PBF file is not sorted");
+                }
+                for (int node = 0; node < block.getNodeCount(); node++)
                 {
-                    OsmNode node = (OsmNode) container.getEntity();
-                    if (relevantNodeIds.contains(node.getId()))
+                    // node IDs are ascending, so the cursor walks the sorted array instead of searching it
+                    int index = nodeCursor.indexOf(block.getNodeId(node));
+                    if (index >= 0 && !loaded.get(index))
                     {
-                        nodeMap.put(node.getId(), new OpenRouterNode(nodeMap.size(), node.getLatitude(), node.getLongitude()));
+                        loaded.set(index);
+                        latitudes[index] = block.getNodeLatitudeE6(node);
+                        longitudes[index] = block.getNodeLongitudeE6(node);
+                        if (junctions.get(index))
+                        {
+                            nodeIdMap.setByIndex(index, graphNodeIndex.size());
+                            graphNodeIndex.add(index);
+                        }
                     }
                 }
-            }
-            OpenRouterLog.d(TAG, "Loaded " + nodeMap.size() + " relevant nodes");
-
-            // 3. Create edges between all consecutive nodes
-            OpenRouterLog.d(TAG, "Creating edges from PBF file");
-            List<OpenRouterEdge> edges = new ArrayList<>();
-            iterator = new PbfIterator(new FileInputStream(file), false);
-            for (EntityContainer container : iterator) {
-                if (container.getType().equals(EntityType.Way)) {
-                    OsmWay way = (OsmWay) container.getEntity();
-                    if (!isHighway(way)) continue;
-
-                    short maxSpeed = parseShortTag(way, "maxspeed", (short) 100);
-
-                    // Roundabouts sind immer Einbahnstraße
-                    boolean isOneway = isOneway(way) || isRoundabout(way);
-
-                    for (int i = 1; i < way.getNumberOfNodes(); i++) {
-                        long fromOsm = way.getNodeId(i - 1);
-                        long toOsm   = way.getNodeId(i);
-
-                        OpenRouterNode fromNode = nodeMap.get(fromOsm);
-                        OpenRouterNode toNode = nodeMap.get(toOsm);
-                        if (fromNode == null || toNode == null)
+                for (int way = 0; way < block.getWayCount(); way++)
+                {
+                    waysStarted[0] = true;
+                    ORWayAttributes attributes = ORWayAttributes.fromBlock(block, way);
+                    if (attributes == null) continue;
+                    if (regionFilter != null && !touchesRegion(block, way, regionFilter)) continue;
+
+                    long wayId = block.getWayId(way);
+                    chain.reset();
+                    for (int i = 0; i < block.getWayNodeCount(way); i++)
+                    {
+                        long osmId = block.getWayNodeId(way, i);
+                        int index = relevantNodeIds.indexOf(osmId);
+                        if (index < 0 || !loaded.get(index))
                         {
-                            OpenRouterLog.w(TAG, "Node not found in map: " + fromOsm + " or " + toOsm);
+                            OpenRouterLog.w(TAG, "Node not found in map: " + osmId);
+                            chain.reset();
                             continue;
-                        };
-
-                        int from = fromNode.getId();
-                        int to   = toNode.getId();
-                        short distance = (short) Math.round(fromNode.distanceTo(toNode));
+                        }
 
-                        OpenRouterEdgeMeta meta = new OpenRouterEdgeMeta((short) Math.round(maxSpeed * 3.6), distance, (short) 0);
-                        edges.add(new OpenRouterEdge(from, to, meta));
+                        int lat = latitudes[index];
+                        int lon = longitudes[index];
+                        if (!junctions.get(index))
+                        {
+                            chain.addShapePoint(osmId, lat, lon);
+                            continue;
+                        }
 
-                        if (!isOneway) edges.add(new OpenRouterEdge(to, from, meta));
+                        int graphId = nodeIdMap.getByIndex(index);
+                        chain.addJunction(lat, lon);
+                        if (chain.hasStart() && chain.start != graphId)
+                        {
+                            int shapeRef = OpenRouterShapeStore.NO_SHAPE;
+                            if (shapeStore != null && chain.shapeCount > 0)
+                            {
+                                int shapeId = shapeStore.addShape(chain.shapeLat, chain.shapeLon, chain.shapeCount);
+                                for (int p = 0; p < chain.shapeCount; p++) shapePointOsmIds.add(chain.shapeOsmIds[p]);
+                                shapeRef = OpenRouterShapeStore.toShapeRef(shapeId, false);
+                            }
+                            long meta = attributes.createMeta(chain.distance);
+                            edges.add(new OpenRouterEdge(chain.start, graphId, chain.withBearings(meta, false), shapeRef), wayId);
+                            if (!attributes.isOneway())
+                            {
+                                int reverseRef = shapeRef == OpenRouterShapeStore.NO_SHAPE ? shapeRef : shapeRef | 1;
+                                edges.add(new OpenRouterEdge(graphId, chain.start, chain.withBearings(meta, true), reverseRef), wayId);
+                            }
+                        }
+                        chain.startAt(graphId, lat, lon);
                     }
                 }
+                return true;
+            });
+            OpenRouterLog.d(TAG, "Loaded " + loaded.cardinality() + " relevant nodes, " + graphNodeIndex.size() + " graph nodes");
+            OpenRouterLog.d(TAG, "Created " + edges.edges.size() + " edges");
+            if (shapeStore != null)
+            {
+                OpenRouterLog.d(TAG, "Stored " + shapeStore.getTotalPointCount() + " shape points in " + shapeStore.getShapeCount() + " shapes");
             }
-            OpenRouterLog.d(TAG, "Created " + edges.size() + " edges");
             OpenRouterLog.i(TAG, "Finished building graph from PBF file");
 
-            // Step 4: Create tile map
+            // Step 3: Create tile map
             OpenRouterLog.d(TAG, "Creating tile map");
-            List<OpenRouterNode> nodes = new ArrayList<>(nodeMap.values());
+            List<OpenRouterNode> nodes = new ArrayList<>(graphNodeIndex.size());
+            long[] nodeOsmIds = OROsmIndex.emptyNodeIds(graphNodeIndex.size());
+            for (int id = 0; id < graphNodeIndex.size(); id++)
+            {
+                int index = graphNodeIndex.get(id);
+                nodes.add(new OpenRouterNode(id, new OpenRouterPoint(latitudes[index], longitudes[index])));
+                nodeOsmIds[id] = relevantNodeIds.get(index);
+            }
             OpenRouterTileMap tileMap = OpenRouterTileMap.create(nodes);
 
-            return new OpenRouterGraph(tileMap, edges);
+            OpenRouterGraph graph = new OpenRouterGraph(tileMap, edges.edges);
+            graph.setOsmIndex(new OROsmIndex(nodeOsmIds, Arrays.copyOf(edges.wayIds, edges.edges.size()), shapePointOsmIds.toArray()));
+            graph.setShapeStore(shapeStore);
+            return graph;
         }
         catch (Exception e)
         {
@@ -246,56 +384,185 @@ public class ORGraphHandler
         }
     }
 
-    private static boolean isHighway(OsmWay way)
+    /**
+     * Adds the node references of a way for the junction detection, where references occurring more than once are
+     * junctions. Way ends are added twice, so they are always junctions. A way returning to one of its nodes also adds
+     * a node halfway along the loop twice, so the loop is split into two edges instead of starting and ending at the
+     * same junction.
+     * @param block the block of the way
+     * @param way the index of the way in the block
+     * @param references receives the node IDs
+     * @throws E if the references cannot be stored
+     */
+    static <E extends Exception> void addWayReferences(ORPbfBlock block, int way, ReferenceSink<E> references) throws E
+    {
+        addWayReferences(block.getWayNodeCount(way), i -> block.getWayNodeId(way, i), references);
+    }
+
+    /**
+     * Adds the node references of a way given by index, see {@link #addWayReferences(ORPbfBlock, int, ReferenceSink)}.
+     * @param count the number of way nodes
+     * @param nodeIds the node ID per way node index
+     * @param references receives the node IDs
+     * @throws E if the references cannot be stored
+     */
+    static <E extends Exception> void addWayReferences(int count, IntToLongFunction nodeIds, ReferenceSink<E> references) throws E
     {
-        for (int i = 0; i < way.getNumberOfTags(); i++)
+        for (int i = 0; i < count; i++)
         {
-            if (way.getTag(i).getKey().equals("highway") && carHighways.contains(way.getTag(i).getValue()))
+            long osmId = nodeIds.applyAsLong(i);
+            references.accept(osmId);
+            // ways are short, a backward scan is cheaper than a set per way
+            for (int previous = i - 1; previous >= 0; previous--)
             {
-                return true;
+                if (nodeIds.applyAsLong(previous) != osmId) continue;
+                if (i - previous >= 2) references.accept(nodeIds.applyAsLong((previous + i) / 2));
+                break;
             }
         }
-        return false;
+        if (count > 0)
+        {
+            references.accept(nodeIds.applyAsLong(0));
+            references.accept(nodeIds.applyAsLong(count - 1));
+        }
     }
 
-    private static boolean isRoundabout(OsmWay way)
+    private static boolean touchesRegion(ORPbfBlock block, int way, ORSortedLongArray regionNodeIds)
     {
-        for (int i = 0; i < way.getNumberOfTags(); i++)
+        for (int i = 0; i < block.getWayNodeCount(way); i++)
         {
-            if (way.getTag(i).getKey().equals("junction") && way.getTag(i).getValue().equals("roundabout"))
-            {
-                return true;
-            }
+            if (regionNodeIds.contains(block.getWayNodeId(way, i))) return true;
         }
         return false;
     }
 
-    private static boolean isOneway(OsmWay way)
+    /**
+     * Builds the graph file from PBF file with bounded memory, for extracts whose graph does not fit into memory.
+     * @param file the PBF file, sorted by type and ID
+     * @param graphFile the graph file to write
+     * @param memoryBudget the memory for sort buffers in bytes
+     * @return true if the graph file was written
+     * @see ORExternalGraphBuilder
+     */
+    public static boolean buildFromPBF(File file, File graphFile, long memoryBudget)
     {
-        for (int i = 0; i < way.getNumberOfTags(); i++)
+        try
         {
-            if (way.getTag(i).getKey().equals("oneway") && way.getTag(i).getValue().equals("yes"))
-            {
-                return true;
-            }
+            new ORExternalGraphBuilder(memoryBudget, graphFile.getAbsoluteFile().getParentFile()).build(file, graphFile);
+            return true;
         }
-        return false;
+        catch (IOException e)
+        {
+            OpenRouterLog.e(TAG, "Unable to build graph from PBF file: " + file.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Receives the node references of ways, see {@link #addWayReferences}.
+     */
+    interface ReferenceSink<E extends Exception>
+    {
+        void accept(long osmId) throws E;
     }
 
-    private static short parseShortTag(OsmWay way, String key, short defaultValue)
+    /**
+     * Accumulates the nodes of a way between two junctions.
+     */
+    static class ChainBuilder
     {
-        for (int i = 0; i < way.getNumberOfTags(); i++)
+        int start = -1;
+        double distance;
+        int lastLat, lastLon;
+        double firstBearing, lastBearing;
+        boolean hasBearing;
+        int shapeCount;
+        int[] shapeLat = new int[64];
+        int[] shapeLon = new int[64];
+        long[] shapeOsmIds = new long[64];
+
+        boolean hasStart()
+        {
+            return start >= 0;
+        }
+
+        void reset()
+        {
+            start = -1;
+            distance = 0;
+            shapeCount = 0;
+            hasBearing = false;
+        }
+
+        void startAt(int graphId, int lat, int lon)
+        {
+            start = graphId;
+            distance = 0;
+            shapeCount = 0;
+            hasBearing = false;
+            lastLat = lat;
+            lastLon = lon;
+        }
+
+        void addShapePoint(long osmId, int lat, int lon)
         {
-            if (way.getTag(i).getKey().equals(key))
+            if (!hasStart()) return;
+            advance(lat, lon);
+            if (shapeCount == shapeLat.length)
             {
-                try
-                {
-                    String val = way.getTag(i).getValue().replaceAll("[^0-9.]", "");
-                    return (short) Float.parseFloat(val);
-                }
-                catch (Exception ignored) {}
+                shapeLat = Arrays.copyOf(shapeLat, shapeCount * 2);
+                shapeLon = Arrays.copyOf(shapeLon, shapeCount * 2);
+                shapeOsmIds = Arrays.copyOf(shapeOsmIds, shapeCount * 2);
             }
+            shapeLat[shapeCount] = lat;
+            shapeLon[shapeCount] = lon;
+            shapeOsmIds[shapeCount] = osmId;
+            shapeCount++;
+        }
+
+        void addJunction(int lat, int lon)
+        {
+            if (hasStart()) advance(lat, lon);
+        }
+
+        /**
+         * Stores the bearings of the first and the last segment of the chain in the meta data of its edge.
+         * A chain without any segment of non-zero length gets bearing 0 at both ends, like a zero-length edge of the
+         * updater.
+         * @param reverse true for the edge from the end of the chain back to its start
+         */
+        long withBearings(long meta, boolean reverse)
+        {
+            if (!hasBearing) return OpenRouterEdgeMeta.withBearings(meta, 0, 0);
+            if (reverse) return OpenRouterEdgeMeta.withBearings(meta, lastBearing + 180, firstBearing + 180);
+            return OpenRouterEdgeMeta.withBearings(meta, firstBearing, lastBearing);
+        }
+
+        private void advance(int lat, int lon)
+        {
+            if (lat == lastLat && lon == lastLon) return;
+            distance += ORDistance.flat(lastLat, lastLon, lat, lon);
+            lastBearing = IGeoCoordinate.bearing(lastLat / 1E6, lastLon / 1E6, lat / 1E6, lon / 1E6);
+            if (!hasBearing) firstBearing = lastBearing;
+            hasBearing = true;
+            lastLat = lat;
+            lastLon = lon;
+        }
+    }
+
+    /**
+     * Collects edges together with the OSM way they belong to.
+     */
+    private static class EdgeCollector
+    {
+        final List<OpenRouterEdge> edges = new ArrayList<>();
+        long[] wayIds = new long[1024];
+
+        void add(OpenRouterEdge edge, long wayId)
+        {
+            if (edges.size() == wayIds.length) wayIds = Arrays.copyOf(wayIds, wayIds.length * 2);
+            wayIds[edges.size()] = wayId;
+            edges.add(edge);
         }
-        return defaultValue;
     }
 }
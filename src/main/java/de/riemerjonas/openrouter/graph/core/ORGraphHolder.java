@@ -0,0 +1,251 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Holds the currently served graph and allows replacing it without downtime.
+ * <p>
+ * Queries acquire a {@link Lease} on the current graph. A new graph is loaded and validated in
+ * the background and then published atomically: queries that already hold a lease finish on the
+ * old graph, new queries get the new one. The old graph is released as soon as its last lease is closed.
+ * Acquiring and closing a lease is lock-free (one CAS and one decrement).
+ */
+public class ORGraphHolder implements AutoCloseable
+{
+    private static final String TAG = "ORGraphHolder";
+
+    private final AtomicReference<Version> current = new AtomicReference<>();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ORGraphHolder-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Predicate<OpenRouterGraph> validator;
+    private final AtomicInteger versionCounter = new AtomicInteger();
+
+    /**
+     * Creates a new ORGraphHolder with the default validation.
+     * @param graph the initial graph, may be null
+     */
+    public ORGraphHolder(OpenRouterGraph graph)
+    {
+        this(graph, ORGraphHolder::validate);
+    }
+
+    /**
+     * Creates a new ORGraphHolder.
+     * @param graph the initial graph, may be null
+     * @param validator checks a loaded graph before it gets published
+     */
+    public ORGraphHolder(OpenRouterGraph graph, Predicate<OpenRouterGraph> validator)
+    {
+        this.validator = validator;
+        if (graph != null) publish(graph);
+    }
+
+    /**
+     * Acquires a lease on the current graph. The lease must be closed after the query.
+     * @return the lease
+     * @throws IllegalStateException if no graph is loaded
+     */
+    public Lease acquire()
+    {
+        while (true)
+        {
+            Version version = current.get();
+            if (version == null) throw new IllegalStateException("No graph loaded");
+            if (version.tryRetain()) return new Lease(version);
+            // version got retired in the meantime, the next read sees its successor
+        }
+    }
+
+    /**
+     * Runs the given query on the current graph.
+     * @param query the query
+     * @param <T> the result type
+     * @return the result of the query
+     */
+    public <T> T query(Function<OpenRouterGraph, T> query)
+    {
+        try (Lease lease = acquire())
+        {
+            return query.apply(lease.getGraph());
+        }
+    }
+
+    /**
+     * Returns the version number of the current graph, increasing with every swap.
+     * @return the version number or 0 if no graph is loaded
+     */
+    public int getVersion()
+    {
+        Version version = current.get();
+        return version == null ? 0 : version.number;
+    }
+
+    /**
+     * Loads the given graph file in the background and publishes it if it is valid.
+     * @param file the graph file
+     * @return completes with true if the graph got published
+     */
+    public CompletableFuture<Boolean> reload(File file)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            OpenRouterLog.i(TAG, "Loading graph in background: " + file.getAbsolutePath());
+            OpenRouterGraph graph = ORGraphHandler.load(file);
+            return swap(graph);
+        }, loader);
+    }
+
+    /**
+     * Validates and publishes the given graph.
+     * @param graph the new graph
+     * @return true if the graph got published
+     */
+    public boolean swap(OpenRouterGraph graph)
+    {
+        if (graph == null || !validator.test(graph))
+        {
+            OpenRouterLog.e(TAG, "Graph validation failed, keeping current graph");
+            if (graph != null) graph.release();
+            return false;
+        }
+        publish(graph);
+        return true;
+    }
+
+    private void publish(OpenRouterGraph graph)
+    {
+        Version next = new Version(graph, versionCounter.incrementAndGet());
+        Version previous = current.getAndSet(next);
+        OpenRouterLog.i(TAG, "Published graph version " + next.number);
+        if (previous != null) previous.releaseReference();
+    }
+
+    /**
+     * Stops the background loader and releases the current graph once all leases are closed.
+     */
+    @Override
+    public void close()
+    {
+        loader.shutdown();
+        Version previous = current.getAndSet(null);
+        if (previous != null) previous.releaseReference();
+    }
+
+    /**
+     * Default validation: the graph has nodes and edges and all edges point to existing nodes.
+     * @param graph the graph to validate
+     * @return true if the graph is valid
+     */
+    public static boolean validate(OpenRouterGraph graph)
+    {
+        List<OpenRouterNode> nodes = graph.getNodes();
+        List<OpenRouterEdge> edges = graph.getEdges();
+        if (nodes.isEmpty() || edges.isEmpty()) return false;
+
+        int maxId = 0;
+        for (OpenRouterNode node : nodes) maxId = Math.max(maxId, node.getId());
+        boolean[] exists = new boolean[maxId + 1];
+        for (OpenRouterNode node : nodes) exists[node.getId()] = true;
+
+        for (OpenRouterEdge edge : edges)
+        {
+            int from = edge.getFromID();
+            int to = edge.getToID();
+            if (from < 0 || from > maxId || to < 0 || to > maxId || !exists[from] || !exists[to]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * A published graph with its reference count. The holder owns one reference while the
+     * version is current, every lease owns one more. At zero the graph is released and the
+     * count can never be raised again.
+     */
+    private static final class Version
+    {
+        final OpenRouterGraph graph;
+        final int number;
+        final AtomicInteger references = new AtomicInteger(1);
+
+        Version(OpenRouterGraph graph, int number)
+        {
+            this.graph = graph;
+            this.number = number;
+        }
+
+        boolean tryRetain()
+        {
+            while (true)
+            {
+                int count = references.get();
+                if (count == 0) return false;
+                if (references.compareAndSet(count, count + 1)) return true;
+            }
+        }
+
+        void releaseReference()
+        {
+            if (references.decrementAndGet() == 0)
+            {
+                OpenRouterLog.i(TAG, "Releasing graph version " + number);
+                graph.release();
+            }
+        }
+    }
+
+    /**
+     * Access to one graph version for the duration of a query.
+     */
+    public static final class Lease implements AutoCloseable
+    {
+        private Version version;
+
+        private Lease(Version version)
+        {
+            this.version = version;
+        }
+
+        /**
+         * Returns the graph of this lease.
+         * @return the graph
+         */
+        public OpenRouterGraph getGraph()
+        {
+            return version.graph;
+        }
+
+        /**
+         * Returns the version number of the leased graph.
+         * @return the version number
+         */
+        public int getVersion()
+        {
+            return version.number;
+        }
+
+        @Override
+        public void close()
+        {
+            if (version != null)
+            {
+                version.releaseReference();
+                version = null;
+            }
+        }
+    }
+}
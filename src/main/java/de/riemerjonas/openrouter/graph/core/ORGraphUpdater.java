@@ -0,0 +1,720 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.*;
+import de.riemerjonas.openrouter.core.collections.ORIntArrayList;
+import de.riemerjonas.openrouter.core.collections.ORLongArrayList;
+import de.riemerjonas.openrouter.core.collections.ORLongIntArrayMap;
+import de.riemerjonas.openrouter.core.collections.ORPagedBitSet;
+import de.riemerjonas.openrouter.core.encoding.OpenRouterEdgeEncoder;
+import de.riemerjonas.openrouter.core.geometry.ORDistance;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Applies OSM change files to an existing graph without rebuilding it from the PBF file.
+ * The graph must carry an {@link OROsmIndex}, which is written by {@link ORGraphHandler#buildFromPBF(File)}.
+ * <p>
+ * Changed ways replace all of their edges. Moved nodes keep their graph ID, change their tile
+ * if necessary and update the distance of all incident edges. Nodes that are referenced by a
+ * changed way but are neither part of the graph nor of the change file cannot be resolved, the
+ * affected segments are skipped.
+ * <p>
+ * On graphs with compressed chains the other nodes of a changed way are shape points. The OSM index stores
+ * their node IDs, so nodes missing in the change file take their position from any shape. A shape point of an
+ * unchanged way that a changed way references becomes a junction, the edges of the unchanged way are split
+ * there. Changed ways are compressed like on import, nodes become junctions if they are graph nodes already
+ * or referenced more than once. Indexes written without shape points fall back to the shape of the old edge
+ * between the same junctions and cannot split unchanged ways. A node that still cannot be resolved fails the
+ * update instead of dropping the segment. Moved shape points of unchanged ways are not updated.
+ * <p>
+ * The given graph is not modified, tile lists are copied on write so the old graph stays usable.
+ */
+public class ORGraphUpdater
+{
+    private static final String TAG = "ORGraphUpdater";
+
+    /**
+     * Loads the graph, applies the change file and saves the result.
+     * @param graphFile the existing graph file
+     * @param changeFile the OSM change file (.osc or .osc.gz)
+     * @param outputFile the file to write the updated graph to
+     * @return the updated graph or null if the update failed
+     */
+    public static OpenRouterGraph update(File graphFile, File changeFile, File outputFile)
+    {
+        OpenRouterGraph graph = ORGraphHandler.load(graphFile);
+        if (graph == null) return null;
+
+        OpenRouterGraph updated = applyChange(graph, changeFile);
+        if (updated != null) ORGraphHandler.save(outputFile, updated);
+        return updated;
+    }
+
+    /**
+     * Applies the given change file to the graph.
+     * @param graph the graph to update
+     * @param changeFile the OSM change file (.osc or .osc.gz)
+     * @return the updated graph or null if the change file cannot be read or applied, see
+     * {@link #applyChange(OpenRouterGraph, ORChangeSet)}
+     */
+    public static OpenRouterGraph applyChange(OpenRouterGraph graph, File changeFile)
+    {
+        ORChangeSet changeSet;
+        try
+        {
+            changeSet = ORChangeSet.read(changeFile);
+        }
+        catch (IOException e)
+        {
+            OpenRouterLog.e(TAG, "Unable to read change file: " + changeFile.getAbsolutePath(), e);
+            return null;
+        }
+        try
+        {
+            return applyChange(graph, changeSet);
+        }
+        catch (IllegalStateException e)
+        {
+            OpenRouterLog.e(TAG, "Unable to apply change file: " + changeFile.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Applies the given change set to the graph.
+     * @param graph the graph to update
+     * @param changeSet the parsed change set
+     * @return the updated graph
+     * @throws IllegalStateException if the graph has no OSM index, or if it has compressed chains and a node of a
+     * changed way cannot be resolved
+     */
+    public static OpenRouterGraph applyChange(OpenRouterGraph graph, ORChangeSet changeSet)
+    {
+        OROsmIndex index = graph.getOsmIndex();
+        if (index == null)
+        {
+            throw new IllegalStateException("Graph has no OSM index, rebuild it from PBF first");
+        }
+
+        // --- Current state ---
+        List<OpenRouterNode> oldNodes = graph.getNodes();
+        int maxId = -1;
+        for (OpenRouterNode node : oldNodes) maxId = Math.max(maxId, node.getId());
+
+        OpenRouterNode[] nodes = new OpenRouterNode[maxId + 1];
+        for (OpenRouterNode node : oldNodes) nodes[node.getId()] = node;
+
+        NodeLookup graphIdByOsmId = new NodeLookup(index, nodes);
+
+        TileUpdate tiles = new TileUpdate(graph.getTileMap().getTileMap());
+
+        // --- Nodes ---
+        boolean[] moved = new boolean[nodes.length];
+        boolean[] removed = new boolean[nodes.length];
+        int movedCount = 0;
+        for (Map.Entry<Long, int[]> entry : changeSet.getNodeCoordinates().entrySet())
+        {
+            int id = graphIdByOsmId.get(entry.getKey());
+            if (id < 0) continue;
+
+            OpenRouterNode old = nodes[id];
+            int[] c = entry.getValue();
+            if (old.getLatitudeE6() == c[0] && old.getLongitudeE6() == c[1]) continue;
+
+            OpenRouterNode node = new OpenRouterNode(id, new OpenRouterPoint(c[0], c[1]));
+            tiles.remove(old);
+            tiles.add(node);
+            nodes[id] = node;
+            moved[id] = true;
+            movedCount++;
+        }
+        for (long osmId : changeSet.getDeletedNodes())
+        {
+            int id = graphIdByOsmId.remove(osmId);
+            if (id < 0) continue;
+            tiles.remove(nodes[id]);
+            nodes[id] = null;
+            removed[id] = true;
+        }
+
+        // --- Existing edges ---
+        ORPagedBitSet changedWays = new ORPagedBitSet();
+        for (long wayId : changeSet.getChangedWays().keySet()) changedWays.set(wayId);
+        for (long wayId : changeSet.getDeletedWays()) changedWays.set(wayId);
+
+        OpenRouterShapeStore shapes = graph.getShapeStore();
+        List<OpenRouterEdge> oldEdges = graph.getEdges();
+        EdgeList edges = new EdgeList(oldEdges.size());
+        Map<Long, List<OpenRouterEdge>> changedWayEdges = new HashMap<>();
+        BitSet keptShapes = new BitSet();
+        boolean[] touched = new boolean[nodes.length];
+        for (int i = 0; i < oldEdges.size(); i++)
+        {
+            OpenRouterEdge edge = oldEdges.get(i);
+            int from = edge.getFromID();
+            int to = edge.getToID();
+            long wayId = index.getEdgeWayId(i);
+            if ((wayId >= 0 && changedWays.get(wayId)) || removed[from] || removed[to])
+            {
+                if (shapes != null && wayId >= 0 && changedWays.get(wayId))
+                {
+                    changedWayEdges.computeIfAbsent(edgeKey(from, to), k -> new ArrayList<>(1)).add(edge);
+                }
+                touched[from] = true;
+                touched[to] = true;
+                continue;
+            }
+
+            long meta = edge.getMetaData();
+            if (moved[from] || moved[to])
+            {
+                double distance = shapes == null
+                        ? ORDistance.flat(nodes[from].getLatitudeE6(), nodes[from].getLongitudeE6(),
+                                nodes[to].getLatitudeE6(), nodes[to].getLongitudeE6())
+                        : shapes.getLength(nodes[from], nodes[to], edge.getShapeRef());
+                meta = OpenRouterEdgeEncoder.DISTANCE_DM.set(meta, Math.round(distance * 10));
+                meta = OpenRouterEdgeMeta.withBearings(meta, nodes[from], nodes[to], shapes, edge.getShapeRef());
+                edge = edge.withMetaData(meta);
+            }
+            if (edge.getShapeRef() != OpenRouterShapeStore.NO_SHAPE) keptShapes.set(edge.getShapeRef() >>> 1);
+            edges.add(edge, wayId);
+        }
+        int keptEdges = edges.size();
+
+        // --- Shape points and junctions of the changed ways ---
+        List<OpenRouterNode> addedNodes = new ArrayList<>();
+        int nextId = maxId + 1;
+        ShapeUpdate shapeUpdate = shapes != null ? new ShapeUpdate(shapes, index) : null;
+        Map<Long, int[]> shapeCoordinates = new HashMap<>();
+        Map<Long, Integer> referenceCounts = new HashMap<>();
+        Map<Integer, ORIntArrayList> splitPositions = new HashMap<>();
+        if (shapes != null)
+        {
+            ORPagedBitSet wanted = new ORPagedBitSet();
+            for (ORChangeSet.ChangedWay way : changeSet.getChangedWays().values())
+            {
+                if (ORWayAttributes.fromTags(way.getTags()) == null) continue;
+                long[] refs = way.getNodeIds();
+                ORGraphHandler.addWayReferences(refs.length, i -> refs[i], osmId -> referenceCounts.merge(osmId, 1, Integer::sum));
+                for (long osmId : refs) if (osmId >= 0 && graphIdByOsmId.get(osmId) < 0) wanted.set(osmId);
+            }
+
+            if (shapeUpdate.hasPointOsmIds())
+            {
+                // shape points are known by OSM ID: take their positions, and split unchanged edges at the points
+                // a changed way connects to, like the import makes a node shared by two ways a junction
+                BitSet scanned = new BitSet(shapes.getShapeCount());
+                for (OpenRouterEdge edge : oldEdges)
+                {
+                    if (edge.getShapeRef() == OpenRouterShapeStore.NO_SHAPE) continue;
+                    int shapeId = edge.getShapeRef() >>> 1;
+                    if (scanned.get(shapeId)) continue;
+                    scanned.set(shapeId);
+
+                    int forward = OpenRouterShapeStore.toShapeRef(shapeId, false);
+                    for (int p = 0; p < shapes.getPointCount(forward); p++)
+                    {
+                        long osmId = index.getShapePointOsmId(shapes.getPointIndex(forward, p));
+                        if (osmId < 0 || !wanted.get(osmId)) continue;
+                        shapeCoordinates.put(osmId, new int[] {shapes.getLatitudeE6(forward, p), shapes.getLongitudeE6(forward, p)});
+                        if (keptShapes.get(shapeId)) splitPositions.computeIfAbsent(shapeId, k -> new ORIntArrayList()).add(p);
+                    }
+                }
+            }
+            else
+            {
+                // older index without shape points: match the shape of the old edge between the same junctions
+                for (ORChangeSet.ChangedWay way : changeSet.getChangedWays().values())
+                {
+                    long[] refs = way.getNodeIds();
+                    int last = -1;
+                    for (int i = 0; i < refs.length; i++)
+                    {
+                        int id = graphIdByOsmId.get(refs[i]);
+                        if (id < 0) continue;
+                        if (last >= 0 && i - last > 1)
+                        {
+                            restoreShape(refs, last, i, graphIdByOsmId.get(refs[last]), id, changedWayEdges, shapes,
+                                    changeSet.getNodeCoordinates(), shapeCoordinates);
+                        }
+                        last = i;
+                    }
+                }
+            }
+        }
+
+        // --- Split unchanged edges at new junctions ---
+        int splitEdges = 0;
+        if (!splitPositions.isEmpty())
+        {
+            for (Map.Entry<Integer, ORIntArrayList> entry : splitPositions.entrySet())
+            {
+                int forward = OpenRouterShapeStore.toShapeRef(entry.getKey(), false);
+                for (int p : entry.getValue().toArray())
+                {
+                    long osmId = index.getShapePointOsmId(shapes.getPointIndex(forward, p));
+                    if (graphIdByOsmId.get(osmId) >= 0) continue;
+                    int[] c = changeSet.getNodeCoordinates().getOrDefault(osmId, shapeCoordinates.get(osmId));
+                    OpenRouterNode node = new OpenRouterNode(nextId, new OpenRouterPoint(c[0], c[1]));
+                    graphIdByOsmId.add(osmId, nextId);
+                    addedNodes.add(node);
+                    tiles.add(node);
+                    nextId++;
+                }
+            }
+
+            EdgeList unsplit = edges;
+            edges = new EdgeList(unsplit.size() + 2 * splitPositions.size());
+            Map<Integer, int[]> pieces = new HashMap<>();
+            for (int i = 0; i < unsplit.size(); i++)
+            {
+                OpenRouterEdge edge = unsplit.get(i);
+                ORIntArrayList positions = edge.getShapeRef() == OpenRouterShapeStore.NO_SHAPE ? null
+                        : splitPositions.get(edge.getShapeRef() >>> 1);
+                if (positions == null)
+                {
+                    edges.add(edge, unsplit.getWayId(i));
+                    continue;
+                }
+                int[] split = positions.toArray();
+                Arrays.sort(split);
+                int[] pieceShapes = pieces.computeIfAbsent(edge.getShapeRef() >>> 1, id -> splitShape(shapes, id, split, index, shapeUpdate));
+                splitEdge(edge, unsplit.getWayId(i), split, pieceShapes, shapes, index, graphIdByOsmId, nodes, addedNodes,
+                        shapeUpdate.get(), edges);
+                splitEdges++;
+            }
+        }
+
+        // --- New and modified ways ---
+        ORGraphHandler.ChainBuilder chain = new ORGraphHandler.ChainBuilder();
+        int unresolved = 0;
+        for (ORChangeSet.ChangedWay way : changeSet.getChangedWays().values())
+        {
+            ORWayAttributes attributes = ORWayAttributes.fromTags(way.getTags());
+            if (attributes == null) continue;
+
+            long[] refs = way.getNodeIds();
+            chain.reset();
+            for (long osmId : refs)
+            {
+                OpenRouterNode current = null;
+                int id = graphIdByOsmId.get(osmId);
+                if (id >= 0)
+                {
+                    current = node(id, nodes, addedNodes);
+                }
+                else
+                {
+                    int[] c = changeSet.getNodeCoordinates().get(osmId);
+                    if (c == null) c = shapeCoordinates.get(osmId);
+                    if (c == null)
+                    {
+                        unresolved++;
+                        chain.reset();
+                        continue;
+                    }
+                    if (shapes != null && referenceCounts.getOrDefault(osmId, 0) < 2)
+                    {
+                        chain.addShapePoint(osmId, c[0], c[1]);
+                        continue;
+                    }
+                    current = new OpenRouterNode(nextId, new OpenRouterPoint(c[0], c[1]));
+                    graphIdByOsmId.add(osmId, nextId);
+                    addedNodes.add(current);
+                    tiles.add(current);
+                    nextId++;
+                }
+
+                chain.addJunction(current.getLatitudeE6(), current.getLongitudeE6());
+                if (chain.hasStart() && chain.start != current.getId())
+                {
+                    int shapeRef = OpenRouterShapeStore.NO_SHAPE;
+                    if (chain.shapeCount > 0)
+                    {
+                        int shapeId = shapeUpdate.add(chain.shapeLat, chain.shapeLon, chain.shapeOsmIds, chain.shapeCount);
+                        shapeRef = OpenRouterShapeStore.toShapeRef(shapeId, false);
+                    }
+                    long meta = attributes.createMeta(chain.distance);
+                    edges.add(new OpenRouterEdge(chain.start, current.getId(), chain.withBearings(meta, false), shapeRef), way.getId());
+                    if (!attributes.isOneway())
+                    {
+                        int reverseRef = shapeRef == OpenRouterShapeStore.NO_SHAPE ? shapeRef : shapeRef | 1;
+                        edges.add(new OpenRouterEdge(current.getId(), chain.start, chain.withBearings(meta, true), reverseRef), way.getId());
+                    }
+                }
+                chain.startAt(current.getId(), current.getLatitudeE6(), current.getLongitudeE6());
+            }
+        }
+        if (unresolved > 0)
+        {
+            if (shapes != null)
+            {
+                throw new IllegalStateException(unresolved + " way node references could not be resolved, "
+                        + "the graph has compressed chains, rebuild it from PBF");
+            }
+            OpenRouterLog.w(TAG, unresolved + " way node references could not be resolved");
+        }
+
+        // --- Drop nodes which lost all of their edges ---
+        boolean[] connected = new boolean[nextId];
+        for (int i = 0; i < edges.size(); i++)
+        {
+            OpenRouterEdge edge = edges.get(i);
+            connected[edge.getFromID()] = true;
+            connected[edge.getToID()] = true;
+        }
+        int dropped = 0;
+        for (int id = 0; id < touched.length; id++)
+        {
+            if (touched[id] && !removed[id] && nodes[id] != null && !connected[id])
+            {
+                tiles.remove(nodes[id]);
+                nodes[id] = null;
+                removed[id] = true;
+                dropped++;
+            }
+        }
+
+        // --- New OSM index ---
+        long[] nodeOsmIds = graphIdByOsmId.toNodeOsmIds(nextId, removed);
+
+        OpenRouterLog.i(TAG, "Applied change set: " + movedCount + " moved nodes, " + addedNodes.size() + " added nodes, "
+                + (changeSet.getDeletedNodes().size() + dropped) + " removed nodes, "
+                + (oldEdges.size() - keptEdges) + " removed edges, " + splitEdges + " split edges, "
+                + (edges.size() - keptEdges) + " added edges");
+
+        OpenRouterGraph updated = new OpenRouterGraph(new OpenRouterTileMap(tiles.finish()), edges.edges);
+        updated.setShapeStore(shapeUpdate != null ? shapeUpdate.get() : null);
+        updated.setOsmIndex(new OROsmIndex(nodeOsmIds, edges.getWayIds(),
+                shapeUpdate != null ? shapeUpdate.getPointOsmIds() : new long[0]));
+        return updated;
+    }
+
+    /**
+     * Takes the positions of the nodes between two junctions of a changed way from an old edge of the way
+     * between the same junctions. The shape of the edge either has one point per node, or one point per node
+     * which is not part of the change file, in the order of the way.
+     * @param refs the node references of the way
+     * @param first the index of the first junction
+     * @param last the index of the second junction
+     * @param from the graph ID of the first junction
+     * @param to the graph ID of the second junction
+     * @param oldEdges the old edges of the changed ways by {@link #edgeKey}
+     * @param shapes the shape store of the old graph
+     * @param changed the node positions of the change file
+     * @param positions receives the restored node positions
+     */
+    private static void restoreShape(long[] refs, int first, int last, int from, int to, Map<Long, List<OpenRouterEdge>> oldEdges,
+                                     OpenRouterShapeStore shapes, Map<Long, int[]> changed, Map<Long, int[]> positions)
+    {
+        int count = last - first - 1;
+        int missing = 0;
+        for (int i = first + 1; i < last; i++) if (!changed.containsKey(refs[i])) missing++;
+        if (missing == 0) return;
+
+        List<Integer> candidates = new ArrayList<>(2);
+        for (OpenRouterEdge edge : oldEdges.getOrDefault(edgeKey(from, to), List.of())) candidates.add(edge.getShapeRef());
+        for (OpenRouterEdge edge : oldEdges.getOrDefault(edgeKey(to, from), List.of()))
+        {
+            // read the shape of the opposite edge against its direction
+            if (edge.getShapeRef() != OpenRouterShapeStore.NO_SHAPE) candidates.add(edge.getShapeRef() ^ 1);
+        }
+        for (int shapeRef : candidates)
+        {
+            int points = shapes.getPointCount(shapeRef);
+            if (points != count && points != missing) continue;
+            int point = 0;
+            for (int i = first + 1; i < last; i++)
+            {
+                boolean known = changed.containsKey(refs[i]);
+                if (!known) positions.put(refs[i], new int[] {shapes.getLatitudeE6(shapeRef, point), shapes.getLongitudeE6(shapeRef, point)});
+                if (!known || points == count) point++;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Stores the pieces of a shape between the positions where it is split, in the order of the shape.
+     * @param shapes the shape store of the old graph
+     * @param shapeId the shape to split
+     * @param split the ascending positions of the new junctions
+     * @param index the OSM index of the old graph
+     * @param shapeUpdate receives the new shapes
+     * @return the shape ID per piece, -1 for a piece without points
+     */
+    private static int[] splitShape(OpenRouterShapeStore shapes, int shapeId, int[] split, OROsmIndex index, ShapeUpdate shapeUpdate)
+    {
+        int forward = OpenRouterShapeStore.toShapeRef(shapeId, false);
+        int count = shapes.getPointCount(forward);
+        int[] pieceShapes = new int[split.length + 1];
+        for (int piece = 0; piece <= split.length; piece++)
+        {
+            int first = piece == 0 ? 0 : split[piece - 1] + 1;
+            int end = piece == split.length ? count : split[piece];
+            int n = end - first;
+            if (n == 0)
+            {
+                pieceShapes[piece] = -1;
+                continue;
+            }
+            int[] lat = new int[n];
+            int[] lon = new int[n];
+            long[] osmIds = new long[n];
+            for (int i = 0; i < n; i++)
+            {
+                lat[i] = shapes.getLatitudeE6(forward, first + i);
+                lon[i] = shapes.getLongitudeE6(forward, first + i);
+                osmIds[i] = index.getShapePointOsmId(shapes.getPointIndex(forward, first + i));
+            }
+            pieceShapes[piece] = shapeUpdate.add(lat, lon, osmIds, n);
+        }
+        return pieceShapes;
+    }
+
+    /**
+     * Replaces an edge by the pieces between its new junctions. Pieces keep the attributes of the edge and get their
+     * own distance and bearings.
+     */
+    private static void splitEdge(OpenRouterEdge edge, long wayId, int[] split, int[] pieceShapes, OpenRouterShapeStore shapes,
+                                  OROsmIndex index, NodeLookup graphIdByOsmId, OpenRouterNode[] nodes,
+                                  List<OpenRouterNode> addedNodes, OpenRouterShapeStore updatedShapes, EdgeList edges)
+    {
+        // junctions in the order of the stored shape, a reversed edge runs from the last to the first
+        boolean reversed = (edge.getShapeRef() & 1) != 0;
+        int[] junctions = new int[split.length + 2];
+        junctions[0] = reversed ? edge.getToID() : edge.getFromID();
+        junctions[junctions.length - 1] = reversed ? edge.getFromID() : edge.getToID();
+        int forward = edge.getShapeRef() & ~1;
+        for (int i = 0; i < split.length; i++)
+        {
+            junctions[i + 1] = graphIdByOsmId.get(index.getShapePointOsmId(shapes.getPointIndex(forward, split[i])));
+        }
+
+        for (int j = 0; j <= split.length; j++)
+        {
+            int piece = reversed ? split.length - j : j;
+            int from = reversed ? junctions[piece + 1] : junctions[piece];
+            int to = reversed ? junctions[piece] : junctions[piece + 1];
+            int shapeRef = pieceShapes[piece] < 0 ? OpenRouterShapeStore.NO_SHAPE
+                    : OpenRouterShapeStore.toShapeRef(pieceShapes[piece], reversed);
+            OpenRouterNode fromNode = node(from, nodes, addedNodes);
+            OpenRouterNode toNode = node(to, nodes, addedNodes);
+            double distance = updatedShapes.getLength(fromNode, toNode, shapeRef);
+            long meta = OpenRouterEdgeEncoder.DISTANCE_DM.set(edge.getMetaData(), Math.round(distance * 10));
+            meta = OpenRouterEdgeMeta.withBearings(meta, fromNode, toNode, updatedShapes, shapeRef);
+            edges.add(new OpenRouterEdge(from, to, meta, shapeRef), wayId);
+        }
+    }
+
+    private static OpenRouterNode node(int id, OpenRouterNode[] nodes, List<OpenRouterNode> addedNodes)
+    {
+        return id < nodes.length ? nodes[id] : addedNodes.get(id - nodes.length);
+    }
+
+    private static long edgeKey(int from, int to)
+    {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Edges together with the OSM way they belong to.
+     */
+    private static class EdgeList
+    {
+        final List<OpenRouterEdge> edges;
+        private long[] wayIds;
+
+        EdgeList(int capacity)
+        {
+            edges = new ArrayList<>(capacity);
+            wayIds = new long[Math.max(16, capacity)];
+        }
+
+        void add(OpenRouterEdge edge, long wayId)
+        {
+            if (edges.size() == wayIds.length) wayIds = Arrays.copyOf(wayIds, wayIds.length * 2);
+            wayIds[edges.size()] = wayId;
+            edges.add(edge);
+        }
+
+        OpenRouterEdge get(int i)
+        {
+            return edges.get(i);
+        }
+
+        long getWayId(int i)
+        {
+            return wayIds[i];
+        }
+
+        int size()
+        {
+            return edges.size();
+        }
+
+        long[] getWayIds()
+        {
+            return Arrays.copyOf(wayIds, edges.size());
+        }
+    }
+
+    /**
+     * Copy-on-write view on the shape store with the OSM node IDs of its points. The old graph keeps its store,
+     * the first added shape copies it.
+     */
+    private static class ShapeUpdate
+    {
+        private final OpenRouterShapeStore original;
+        private final long[] originalOsmIds;
+        private final ORLongArrayList addedOsmIds = new ORLongArrayList();
+        private OpenRouterShapeStore copy;
+
+        ShapeUpdate(OpenRouterShapeStore shapes, OROsmIndex index)
+        {
+            this.original = shapes;
+            this.originalOsmIds = index.hasShapePoints(shapes.getTotalPointCount()) ? index.getShapePointOsmIds() : null;
+        }
+
+        boolean hasPointOsmIds()
+        {
+            return originalOsmIds != null;
+        }
+
+        int add(int[] latitudesE6, int[] longitudesE6, long[] osmIds, int count)
+        {
+            if (copy == null) copy = original.copy();
+            for (int i = 0; i < count; i++) addedOsmIds.add(osmIds[i]);
+            return copy.addShape(latitudesE6, longitudesE6, count);
+        }
+
+        OpenRouterShapeStore get()
+        {
+            return copy != null ? copy : original;
+        }
+
+        long[] getPointOsmIds()
+        {
+            if (originalOsmIds == null) return new long[0];
+            long[] ids = Arrays.copyOf(originalOsmIds, originalOsmIds.length + addedOsmIds.size());
+            for (int i = 0; i < addedOsmIds.size(); i++) ids[originalOsmIds.length + i] = addedOsmIds.get(i);
+            return ids;
+        }
+    }
+
+    /**
+     * OSM node ID to graph node ID lookup. Existing nodes are held in a primitive array map,
+     * the few nodes added by the change set in a hash map.
+     */
+    private static class NodeLookup
+    {
+        private final ORLongIntArrayMap existing;
+        private final Map<Long, Integer> added = new HashMap<>();
+
+        NodeLookup(OROsmIndex index, OpenRouterNode[] nodes)
+        {
+            ORLongArrayList osmIds = new ORLongArrayList(nodes.length);
+            ORIntArrayList graphIds = new ORIntArrayList(nodes.length);
+            for (int id = 0; id < nodes.length; id++)
+            {
+                long osmId = index.getNodeOsmId(id);
+                if (osmId < 0 || nodes[id] == null) continue;
+                osmIds.add(osmId);
+                graphIds.add(id);
+            }
+            this.existing = ORLongIntArrayMap.fromUnsorted(osmIds.toArray(), graphIds.toArray());
+        }
+
+        int get(long osmId)
+        {
+            int id = existing.get(osmId);
+            if (id != ORLongIntArrayMap.NO_VALUE) return id;
+            Integer addedId = added.get(osmId);
+            return addedId == null ? -1 : addedId;
+        }
+
+        void add(long osmId, int id)
+        {
+            added.put(osmId, id);
+        }
+
+        int remove(long osmId)
+        {
+            int id = existing.get(osmId);
+            if (id != ORLongIntArrayMap.NO_VALUE)
+            {
+                existing.put(osmId, ORLongIntArrayMap.NO_VALUE);
+                return id;
+            }
+            Integer addedId = added.remove(osmId);
+            return addedId == null ? -1 : addedId;
+        }
+
+        long[] toNodeOsmIds(int nodeCount, boolean[] removed)
+        {
+            long[] nodeOsmIds = OROsmIndex.emptyNodeIds(nodeCount);
+            for (int i = 0; i < existing.size(); i++)
+            {
+                int id = existing.getByIndex(i);
+                if (id != ORLongIntArrayMap.NO_VALUE && !removed[id]) nodeOsmIds[id] = existing.getKeys().get(i);
+            }
+            for (Map.Entry<Long, Integer> entry : added.entrySet())
+            {
+                nodeOsmIds[entry.getValue()] = entry.getKey();
+            }
+            return nodeOsmIds;
+        }
+    }
+
+    /**
+     * Copy-on-write view on the tile map. Only tiles that are changed get copied.
+     */
+    private static class TileUpdate
+    {
+        private final Map<Short, List<OpenRouterNode>> tileMap;
+        private final Map<Short, Set<OpenRouterNode>> removals = new HashMap<>();
+        private final Set<Short> copied = new HashSet<>();
+
+        TileUpdate(Map<Short, List<OpenRouterNode>> original)
+        {
+            this.tileMap = new HashMap<>(original);
+        }
+
+        void add(OpenRouterNode node)
+        {
+            tile(OpenRouterTileMap.getTileID(node.getCoordinate())).add(node);
+        }
+
+        void remove(OpenRouterNode node)
+        {
+            short tileID = OpenRouterTileMap.getTileID(node.getCoordinate());
+            tile(tileID);
+            // removal by instance, a moved node keeps its ID but is a new instance
+            removals.computeIfAbsent(tileID, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(node);
+        }
+
+        private List<OpenRouterNode> tile(short tileID)
+        {
+            if (copied.add(tileID))
+            {
+                List<OpenRouterNode> original = tileMap.get(tileID);
+                tileMap.put(tileID, original == null ? new ArrayList<>() : new ArrayList<>(original));
+            }
+            return tileMap.get(tileID);
+        }
+
+        Map<Short, List<OpenRouterNode>> finish()
+        {
+            for (Map.Entry<Short, Set<OpenRouterNode>> entry : removals.entrySet())
+            {
+                List<OpenRouterNode> nodes = tileMap.get(entry.getKey());
+                nodes.removeIf(entry.getValue()::contains);
+                if (nodes.isEmpty()) tileMap.remove(entry.getKey());
+            }
+            return tileMap;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses OSM maxspeed values and caches the results.
+ * A country has only a few hundred distinct maxspeed strings, so after the first ways every value is a map lookup.
+ * Supported are plain numbers, mph and knots, implicit zones like {@code DE:urban} and lists like {@code 30;50},
+ * of which the first value is used.
+ */
+public final class ORMaxSpeedParser
+{
+    /** Returned for values without a usable limit, the default speed of the road class applies. */
+    public static final short NO_LIMIT = -1;
+
+    private static final int MAX_CACHE_SIZE = 4096;
+    private static final double MPH = 1.609344;
+    private static final double KNOTS = 1.852;
+
+    private static final Map<String, Short> zones = Map.ofEntries(
+            Map.entry("urban", (short) 50),
+            Map.entry("living_street", (short) 7),
+            Map.entry("walk", (short) 7),
+            Map.entry("bicycle_road", (short) 30),
+            Map.entry("DE:rural", (short) 100),
+            Map.entry("AT:rural", (short) 100),
+            Map.entry("CH:rural", (short) 80),
+            Map.entry("CH:trunk", (short) 100),
+            Map.entry("CH:motorway", (short) 120),
+            Map.entry("AT:motorway", (short) 130),
+            Map.entry("FR:rural", (short) 80),
+            Map.entry("FR:motorway", (short) 130),
+            Map.entry("IT:rural", (short) 90),
+            Map.entry("IT:motorway", (short) 130),
+            Map.entry("CZ:rural", (short) 90),
+            Map.entry("CZ:motorway", (short) 130),
+            Map.entry("PL:rural", (short) 90),
+            Map.entry("NL:rural", (short) 80),
+            Map.entry("NL:motorway", (short) 100)
+    );
+
+    private static final Map<String, Short> cache = new ConcurrentHashMap<>();
+
+    private ORMaxSpeedParser()
+    {
+    }
+
+    /**
+     * Returns the speed limit of a maxspeed value.
+     * @param value the value of the maxspeed tag
+     * @return the speed in km/h or {@link #NO_LIMIT}
+     */
+    public static short parse(String value)
+    {
+        if (value == null) return NO_LIMIT;
+        Short cached = cache.get(value);
+        if (cached != null) return cached;
+
+        short speed = parseUncached(value);
+        if (cache.size() < MAX_CACHE_SIZE) cache.put(value, speed);
+        return speed;
+    }
+
+    private static short parseUncached(String value)
+    {
+        String v = value.trim();
+        int separator = v.indexOf(';');
+        if (separator >= 0) v = v.substring(0, separator).trim();
+        if (v.isEmpty() || v.equals("none") || v.equals("signals") || v.equals("variable")) return NO_LIMIT;
+
+        Short zone = zones.get(v);
+        if (zone != null) return zone;
+        int colon = v.indexOf(':');
+        if (colon >= 0)
+        {
+            // e.g. DE:urban, DE:living_street, DE:motorway (no general limit)
+            zone = zones.get(v.substring(colon + 1));
+            return zone != null ? zone : NO_LIMIT;
+        }
+
+        int end = 0;
+        while (end < v.length() && (Character.isDigit(v.charAt(end)) || v.charAt(end) == '.')) end++;
+        if (end == 0) return NO_LIMIT;
+        double number;
+        try
+        {
+            number = Double.parseDouble(v.substring(0, end));
+        }
+        catch (NumberFormatException e)
+        {
+            return NO_LIMIT;
+        }
+
+        String unit = v.substring(end).trim();
+        if (unit.equals("mph")) number *= MPH;
+        else if (unit.equals("knots")) number *= KNOTS;
+        else if (!unit.isEmpty() && !unit.equals("km/h") && !unit.equals("kmh")) return NO_LIMIT;
+
+        long speed = Math.round(number);
+        return speed > 0 && speed <= Short.MAX_VALUE ? (short) speed : NO_LIMIT;
+    }
+}
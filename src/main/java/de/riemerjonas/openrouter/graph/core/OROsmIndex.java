@@ -0,0 +1,201 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Maps graph elements back to their OSM origin.
+ * For every graph node the OSM node ID, for every edge the OSM way ID and for every point of the
+ * {@link de.riemerjonas.openrouter.core.OpenRouterShapeStore} the OSM node ID is stored, which allows applying
+ * OSM change files to an existing graph. Index files written before shape points were stored have none.
+ * The index is stored next to the graph file with the suffix {@value #FILE_SUFFIX}.
+ */
+public class OROsmIndex
+{
+    private static final String TAG = "OROsmIndex";
+    public static final String FILE_SUFFIX = ".osmidx";
+
+    private final long[] nodeOsmIds;
+    private final long[] edgeWayIds;
+    private final long[] shapePointOsmIds;
+
+    /**
+     * Creates a new OROsmIndex without shape points.
+     * @param nodeOsmIds the OSM node ID per graph node ID, -1 if unknown
+     * @param edgeWayIds the OSM way ID per edge index
+     */
+    public OROsmIndex(long[] nodeOsmIds, long[] edgeWayIds)
+    {
+        this(nodeOsmIds, edgeWayIds, new long[0]);
+    }
+
+    /**
+     * Creates a new OROsmIndex.
+     * @param nodeOsmIds the OSM node ID per graph node ID, -1 if unknown
+     * @param edgeWayIds the OSM way ID per edge index
+     * @param shapePointOsmIds the OSM node ID per point of the shape store, in the order of the store
+     */
+    public OROsmIndex(long[] nodeOsmIds, long[] edgeWayIds, long[] shapePointOsmIds)
+    {
+        this.nodeOsmIds = nodeOsmIds;
+        this.edgeWayIds = edgeWayIds;
+        this.shapePointOsmIds = shapePointOsmIds;
+    }
+
+    /**
+     * Returns the OSM node ID of the given graph node.
+     * @param nodeId the graph node ID
+     * @return the OSM node ID or -1 if unknown
+     */
+    public long getNodeOsmId(int nodeId)
+    {
+        return nodeId >= 0 && nodeId < nodeOsmIds.length ? nodeOsmIds[nodeId] : -1;
+    }
+
+    /**
+     * Returns the OSM way ID of the edge at the given index.
+     * @param edgeIndex the index in the edge list of the graph
+     * @return the OSM way ID or -1 if unknown
+     */
+    public long getEdgeWayId(int edgeIndex)
+    {
+        return edgeIndex >= 0 && edgeIndex < edgeWayIds.length ? edgeWayIds[edgeIndex] : -1;
+    }
+
+    /**
+     * Returns the OSM node ID of a shape point.
+     * @param pointIndex the index of the point in the shape store, see
+     * {@link de.riemerjonas.openrouter.core.OpenRouterShapeStore#getPointIndex}
+     * @return the OSM node ID or -1 if unknown
+     */
+    public long getShapePointOsmId(int pointIndex)
+    {
+        return pointIndex >= 0 && pointIndex < shapePointOsmIds.length ? shapePointOsmIds[pointIndex] : -1;
+    }
+
+    /**
+     * Returns true if the index knows the OSM node IDs of the given number of shape points.
+     * @param pointCount the number of points in the shape store
+     * @return true if the shape points are covered
+     */
+    public boolean hasShapePoints(int pointCount)
+    {
+        return shapePointOsmIds.length == pointCount;
+    }
+
+    public long[] getNodeOsmIds()
+    {
+        return nodeOsmIds;
+    }
+
+    public long[] getEdgeWayIds()
+    {
+        return edgeWayIds;
+    }
+
+    public long[] getShapePointOsmIds()
+    {
+        return shapePointOsmIds;
+    }
+
+    /**
+     * Returns the index file belonging to the given graph file.
+     * @param graphFile the graph file
+     * @return the index file
+     */
+    public static File getIndexFile(File graphFile)
+    {
+        return new File(graphFile.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * Saves the index to the given file.
+     * @param file the file to save to
+     * @param index the index to save
+     * @throws IOException if writing fails
+     */
+    public static void save(File file, OROsmIndex index) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+        {
+            out.writeInt(index.nodeOsmIds.length);
+            for (long id : index.nodeOsmIds) out.writeLong(id);
+            out.writeInt(index.edgeWayIds.length);
+            for (long id : index.edgeWayIds) out.writeLong(id);
+            out.writeInt(index.shapePointOsmIds.length);
+            for (long id : index.shapePointOsmIds) out.writeLong(id);
+        }
+        OpenRouterLog.d(TAG, "Saved OSM index to file: " + file.getAbsolutePath());
+    }
+
+    /**
+     * Saves an index whose IDs were written to temporary files as consecutive longs.
+     * @param file the file to save to
+     * @param nodeOsmIds the file with the OSM node ID per graph node ID
+     * @param nodeCount the number of graph nodes
+     * @param edgeWayIds the file with the OSM way ID per edge index
+     * @param edgeCount the number of edges
+     * @param shapePointOsmIds the file with the OSM node ID per shape point
+     * @param shapePointCount the number of shape points
+     * @throws IOException if writing fails
+     */
+    static void save(File file, File nodeOsmIds, int nodeCount, File edgeWayIds, int edgeCount,
+                     File shapePointOsmIds, int shapePointCount) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+        {
+            out.writeInt(nodeCount);
+            Files.copy(nodeOsmIds.toPath(), out);
+            out.writeInt(edgeCount);
+            Files.copy(edgeWayIds.toPath(), out);
+            out.writeInt(shapePointCount);
+            Files.copy(shapePointOsmIds.toPath(), out);
+        }
+        OpenRouterLog.d(TAG, "Saved OSM index to file: " + file.getAbsolutePath());
+    }
+
+    /**
+     * Loads the index from the given file.
+     * @param file the file to load from
+     * @return the index
+     * @throws IOException if reading fails
+     */
+    public static OROsmIndex load(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+        {
+            long[] nodeOsmIds = new long[in.readInt()];
+            for (int i = 0; i < nodeOsmIds.length; i++) nodeOsmIds[i] = in.readLong();
+            long[] edgeWayIds = new long[in.readInt()];
+            for (int i = 0; i < edgeWayIds.length; i++) edgeWayIds[i] = in.readLong();
+            long[] shapePointOsmIds;
+            try
+            {
+                shapePointOsmIds = new long[in.readInt()];
+            }
+            catch (EOFException e)
+            {
+                // written before shape points were indexed
+                shapePointOsmIds = new long[0];
+            }
+            for (int i = 0; i < shapePointOsmIds.length; i++) shapePointOsmIds[i] = in.readLong();
+            OpenRouterLog.d(TAG, "Loaded OSM index from file: " + file.getAbsolutePath());
+            return new OROsmIndex(nodeOsmIds, edgeWayIds, shapePointOsmIds);
+        }
+    }
+
+    /**
+     * Creates a node ID array of the given size filled with -1.
+     * @param size the number of graph nodes
+     * @return the array
+     */
+    static long[] emptyNodeIds(int size)
+    {
+        long[] ids = new long[size];
+        Arrays.fill(ids, -1);
+        return ids;
+    }
+}
@@ -0,0 +1,257 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.collections.ORIntArrayList;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A region given by one or more polygons, used to extract sub-graphs.
+ * Polygons are read from Osmosis poly files, sections starting with {@code !} are holes.
+ * <p>
+ * The point-in-polygon test uses the even-odd rule over all rings. The bounding box is divided into a grid:
+ * cells without a polygon segment are classified once, so most points are answered by a table lookup. Points in
+ * boundary cells are tested by casting a ray through the segments of their grid row only.
+ */
+public class ORRegion
+{
+    private static final String TAG = "ORRegion";
+    private static final int GRID_SIZE = 256;
+
+    private static final byte CELL_OUTSIDE = 0;
+    private static final byte CELL_INSIDE = 1;
+    private static final byte CELL_BOUNDARY = 2;
+
+    private final String name;
+    private final int minLat, maxLat, minLon, maxLon;
+    private final double cellHeight, cellWidth;
+
+    // segments in E6 coordinates
+    private final int[] segLat1, segLon1, segLat2, segLon2;
+    private final int[] rowStart;
+    private final int[] rowSegments;
+    private final byte[] cells;
+
+    private ORRegion(String name, List<int[][]> rings)
+    {
+        this.name = name;
+        int segmentCount = 0;
+        int minLat = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE, minLon = Integer.MAX_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int[][] ring : rings)
+        {
+            segmentCount += ring[0].length;
+            for (int i = 0; i < ring[0].length; i++)
+            {
+                minLat = Math.min(minLat, ring[0][i]);
+                maxLat = Math.max(maxLat, ring[0][i]);
+                minLon = Math.min(minLon, ring[1][i]);
+                maxLon = Math.max(maxLon, ring[1][i]);
+            }
+        }
+        if (segmentCount == 0) throw new IllegalArgumentException("Region " + name + " has no polygon points");
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLon = minLon;
+        this.maxLon = maxLon;
+        this.cellHeight = Math.max(1, (double) (maxLat - minLat + 1) / GRID_SIZE);
+        this.cellWidth = Math.max(1, (double) (maxLon - minLon + 1) / GRID_SIZE);
+
+        segLat1 = new int[segmentCount];
+        segLon1 = new int[segmentCount];
+        segLat2 = new int[segmentCount];
+        segLon2 = new int[segmentCount];
+        int s = 0;
+        for (int[][] ring : rings)
+        {
+            int n = ring[0].length;
+            for (int i = 0; i < n; i++)
+            {
+                int j = (i + 1) % n;
+                segLat1[s] = ring[0][i];
+                segLon1[s] = ring[1][i];
+                segLat2[s] = ring[0][j];
+                segLon2[s] = ring[1][j];
+                s++;
+            }
+        }
+
+        // rows: segments overlapping the latitude band of each grid row
+        cells = new byte[GRID_SIZE * GRID_SIZE];
+        rowStart = new int[GRID_SIZE + 1];
+        for (int i = 0; i < segmentCount; i++)
+        {
+            for (int row = row(Math.min(segLat1[i], segLat2[i])); row <= row(Math.max(segLat1[i], segLat2[i])); row++)
+            {
+                rowStart[row + 1]++;
+            }
+        }
+        for (int row = 0; row < GRID_SIZE; row++) rowStart[row + 1] += rowStart[row];
+        rowSegments = new int[rowStart[GRID_SIZE]];
+        int[] position = new int[GRID_SIZE];
+        System.arraycopy(rowStart, 0, position, 0, GRID_SIZE);
+        for (int i = 0; i < segmentCount; i++)
+        {
+            int lastRow = row(Math.max(segLat1[i], segLat2[i]));
+            int lastColumn = column(Math.max(segLon1[i], segLon2[i]));
+            for (int row = row(Math.min(segLat1[i], segLat2[i])); row <= lastRow; row++)
+            {
+                rowSegments[position[row]++] = i;
+                for (int column = column(Math.min(segLon1[i], segLon2[i])); column <= lastColumn; column++)
+                {
+                    cells[row * GRID_SIZE + column] = CELL_BOUNDARY;
+                }
+            }
+        }
+
+        // cells without segments are entirely inside or outside, their center decides
+        for (int row = 0; row < GRID_SIZE; row++)
+        {
+            for (int column = 0; column < GRID_SIZE; column++)
+            {
+                int cell = row * GRID_SIZE + column;
+                if (cells[cell] == CELL_BOUNDARY) continue;
+                double lat = minLat + (row + 0.5) * cellHeight;
+                double lon = minLon + (column + 0.5) * cellWidth;
+                cells[cell] = castRay(row, lat, lon) ? CELL_INSIDE : CELL_OUTSIDE;
+            }
+        }
+        OpenRouterLog.d(TAG, "Created region " + name + " with " + rings.size() + " rings and " + segmentCount + " segments");
+    }
+
+    /**
+     * Creates a rectangular region.
+     * @param minLatitude the minimum latitude in degrees
+     * @param minLongitude the minimum longitude in degrees
+     * @param maxLatitude the maximum latitude in degrees
+     * @param maxLongitude the maximum longitude in degrees
+     * @return the region
+     */
+    public static ORRegion fromBoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+    {
+        int minLat = (int) Math.round(minLatitude * 1E6);
+        int minLon = (int) Math.round(minLongitude * 1E6);
+        int maxLat = (int) Math.round(maxLatitude * 1E6);
+        int maxLon = (int) Math.round(maxLongitude * 1E6);
+        int[][] ring = new int[][] {{minLat, maxLat, maxLat, minLat}, {minLon, minLon, maxLon, maxLon}};
+        List<int[][]> rings = new ArrayList<>();
+        rings.add(ring);
+        return new ORRegion("bbox", rings);
+    }
+
+    /**
+     * Reads a region from an Osmosis poly file.
+     * @param file the poly file
+     * @return the region
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static ORRegion fromPolyFile(File file) throws IOException
+    {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+        {
+            String name = reader.readLine();
+            if (name == null) throw new IOException("Empty poly file: " + file);
+
+            List<int[][]> rings = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (line.equals("END")) break;
+
+                ORIntArrayList lats = new ORIntArrayList(256);
+                ORIntArrayList lons = new ORIntArrayList(256);
+                while (true)
+                {
+                    String point = reader.readLine();
+                    if (point == null) throw new IOException("Unterminated section " + line + " in poly file: " + file);
+                    point = point.trim();
+                    if (point.isEmpty()) continue;
+                    if (point.equals("END")) break;
+
+                    String[] parts = point.split("\\s+");
+                    if (parts.length < 2) throw new IOException("Invalid poly coordinate: " + point);
+                    try
+                    {
+                        lons.add((int) Math.round(Double.parseDouble(parts[0]) * 1E6));
+                        lats.add((int) Math.round(Double.parseDouble(parts[1]) * 1E6));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        throw new IOException("Invalid poly coordinate: " + point, e);
+                    }
+                }
+                if (lats.size() < 3)
+                {
+                    OpenRouterLog.w(TAG, "Skipping section " + line + " with less than 3 points");
+                    continue;
+                }
+                rings.add(new int[][] {lats.toArray(), lons.toArray()});
+            }
+            return new ORRegion(name.trim(), rings);
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns true if the point is inside the region.
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @return true if inside
+     */
+    public boolean contains(double latitude, double longitude)
+    {
+        return containsE6((int) Math.round(latitude * 1E6), (int) Math.round(longitude * 1E6));
+    }
+
+    /**
+     * Returns true if the point is inside the region.
+     * @param latE6 the latitude in E6 format
+     * @param lonE6 the longitude in E6 format
+     * @return true if inside
+     */
+    public boolean containsE6(int latE6, int lonE6)
+    {
+        if (latE6 < minLat || latE6 > maxLat || lonE6 < minLon || lonE6 > maxLon) return false;
+        int row = row(latE6);
+        byte cell = cells[row * GRID_SIZE + column(lonE6)];
+        if (cell != CELL_BOUNDARY) return cell == CELL_INSIDE;
+        return castRay(row, latE6, lonE6);
+    }
+
+    /**
+     * Counts the crossings of a ray from the point in positive longitude direction with the segments of a row.
+     */
+    private boolean castRay(int row, double lat, double lon)
+    {
+        boolean inside = false;
+        for (int k = rowStart[row]; k < rowStart[row + 1]; k++)
+        {
+            int s = rowSegments[k];
+            double lat1 = segLat1[s], lat2 = segLat2[s];
+            if ((lat1 > lat) == (lat2 > lat)) continue;
+            double crossLon = segLon1[s] + (segLon2[s] - segLon1[s]) * (lat - lat1) / (lat2 - lat1);
+            if (lon < crossLon) inside = !inside;
+        }
+        return inside;
+    }
+
+    private int row(int latE6)
+    {
+        return Math.min(GRID_SIZE - 1, (int) ((latE6 - minLat) / cellHeight));
+    }
+
+    private int column(int lonE6)
+    {
+        return Math.min(GRID_SIZE - 1, (int) ((lonE6 - minLon) / cellWidth));
+    }
+}
@@ -0,0 +1,226 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterShapeStore;
+import de.riemerjonas.openrouter.core.collections.ORIntArrayList;
+import de.riemerjonas.openrouter.core.collections.ORLongArrayList;
+import de.riemerjonas.openrouter.core.collections.ORSortedLongArray;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Grid index of the edge geometries of a graph, snaps coordinates onto edges instead of nodes.
+ * <p>
+ * Every edge is listed in the grid cells its segments pass, long segments are split into pieces of at most one cell.
+ * The sorted cell keys map to ranges of one edge array, as in {@link ORAdjacency}.
+ * Queries project the coordinate onto all segments of the edges in the cells within the radius, in a local
+ * equirectangular projection which is accurate enough for radii of some hundred meters.
+ * The index is immutable and thread-safe.
+ */
+public final class ORSegmentIndex
+{
+    /** Cell size in E6 degrees, about 220 m in latitude. */
+    static final int CELL_E6 = 2000;
+    private static final double METERS_PER_DEGREE = 6371000 * Math.PI / 180;
+
+    private final ORAdjacency adjacency;
+    private final List<OpenRouterEdge> edges;
+    private final OpenRouterShapeStore shapes;
+    private final ORSortedLongArray cells;
+    private final int[] cellStart;
+    private final int[] cellEdges;
+
+    private ORSegmentIndex(ORAdjacency adjacency, List<OpenRouterEdge> edges, OpenRouterShapeStore shapes,
+                           ORSortedLongArray cells, int[] cellStart, int[] cellEdges)
+    {
+        this.adjacency = adjacency;
+        this.edges = edges;
+        this.shapes = shapes;
+        this.cells = cells;
+        this.cellStart = cellStart;
+        this.cellEdges = cellEdges;
+    }
+
+    /**
+     * Builds the index of all edges of a graph.
+     * @param graph the graph
+     * @return the index
+     */
+    public static ORSegmentIndex build(OpenRouterGraph graph)
+    {
+        ORAdjacency adjacency = graph.getAdjacency();
+        List<OpenRouterEdge> edges = graph.getEdges();
+        OpenRouterShapeStore shapes = graph.getShapeStore();
+
+        ORLongArrayList keys = new ORLongArrayList(edges.size() * 2);
+        ORIntArrayList owners = new ORIntArrayList(edges.size() * 2);
+        ORLongArrayList edgeCells = new ORLongArrayList();
+        for (int e = 0; e < edges.size(); e++)
+        {
+            OpenRouterEdge edge = edges.get(e);
+            OpenRouterNode from = adjacency.getNode(edge.getFromID());
+            OpenRouterNode to = adjacency.getNode(edge.getToID());
+            if (from == null || to == null) continue;
+
+            edgeCells.clear();
+            int shapeCount = getShapeCount(shapes, edge);
+            int lat0 = from.getLatitudeE6();
+            int lon0 = from.getLongitudeE6();
+            for (int p = 1; p <= shapeCount + 1; p++)
+            {
+                int lat1 = p <= shapeCount ? shapes.getLatitudeE6(edge.getShapeRef(), p - 1) : to.getLatitudeE6();
+                int lon1 = p <= shapeCount ? shapes.getLongitudeE6(edge.getShapeRef(), p - 1) : to.getLongitudeE6();
+                int pieces = 1 + Math.max(Math.abs(lat1 - lat0), Math.abs(lon1 - lon0)) / CELL_E6;
+                for (int k = 0; k < pieces; k++)
+                {
+                    long aLat = lat0 + (long) (lat1 - lat0) * k / pieces;
+                    long aLon = lon0 + (long) (lon1 - lon0) * k / pieces;
+                    long bLat = lat0 + (long) (lat1 - lat0) * (k + 1) / pieces;
+                    long bLon = lon0 + (long) (lon1 - lon0) * (k + 1) / pieces;
+                    addCells(Math.min(aLat, bLat), Math.max(aLat, bLat), Math.min(aLon, bLon), Math.max(aLon, bLon), edgeCells);
+                }
+                lat0 = lat1;
+                lon0 = lon1;
+            }
+            for (int i = 0; i < edgeCells.size(); i++)
+            {
+                keys.add(edgeCells.get(i));
+                owners.add(e);
+            }
+        }
+
+        long[] pairKeys = keys.toArray();
+        ORSortedLongArray cells = keys.toSortedArray();
+        int[] cellStart = new int[cells.size() + 1];
+        int[] pairCells = new int[pairKeys.length];
+        for (int i = 0; i < pairKeys.length; i++)
+        {
+            pairCells[i] = cells.indexOf(pairKeys[i]);
+            cellStart[pairCells[i] + 1]++;
+        }
+        for (int i = 0; i < cells.size(); i++) cellStart[i + 1] += cellStart[i];
+        int[] position = Arrays.copyOf(cellStart, cells.size());
+        int[] cellEdges = new int[pairKeys.length];
+        for (int i = 0; i < pairKeys.length; i++) cellEdges[position[pairCells[i]]++] = owners.get(i);
+        return new ORSegmentIndex(adjacency, edges, shapes, cells, cellStart, cellEdges);
+    }
+
+    /**
+     * Returns the edges near a coordinate, each with the nearest point of its geometry.
+     * Both edges of a two-way road are returned, they differ in direction and fraction.
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @param radiusMeter the maximum distance
+     * @param profile only edges accessible for this profile are returned, null for all edges
+     * @param maxResults the maximum number of results
+     * @return the projections ordered by distance
+     */
+    public List<ORSegmentSnap> snap(double latitude, double longitude, double radiusMeter, IRoutingProfile profile, int maxResults)
+    {
+        int latE6 = (int) Math.round(latitude * 1E6);
+        int lonE6 = (int) Math.round(longitude * 1E6);
+        double cosLat = Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+        long radiusLatE6 = (long) Math.ceil(radiusMeter / METERS_PER_DEGREE * 1E6);
+        long radiusLonE6 = (long) Math.ceil(radiusLatE6 / cosLat);
+
+        ORIntArrayList found = new ORIntArrayList();
+        long minCellLat = Math.floorDiv(latE6 - radiusLatE6, CELL_E6);
+        long maxCellLat = Math.floorDiv(latE6 + radiusLatE6, CELL_E6);
+        long minCellLon = Math.floorDiv(lonE6 - radiusLonE6, CELL_E6);
+        long maxCellLon = Math.floorDiv(lonE6 + radiusLonE6, CELL_E6);
+        for (long cellLat = minCellLat; cellLat <= maxCellLat; cellLat++)
+        {
+            for (long cellLon = minCellLon; cellLon <= maxCellLon; cellLon++)
+            {
+                int cell = cells.indexOf(cellKey(cellLat, cellLon));
+                if (cell < 0) continue;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) found.add(cellEdges[i]);
+            }
+        }
+        int[] candidates = found.toArray();
+        Arrays.sort(candidates);
+
+        // coordinates in meters relative to the query point
+        double scaleLat = METERS_PER_DEGREE / 1E6;
+        double scaleLon = scaleLat * cosLat;
+        List<ORSegmentSnap> result = new ArrayList<>();
+        for (int c = 0; c < candidates.length; c++)
+        {
+            int e = candidates[c];
+            if (c > 0 && candidates[c - 1] == e) continue;
+            if (profile != null && !profile.isAccessible(adjacency.getEdgeMeta(e))) continue;
+
+            OpenRouterEdge edge = edges.get(e);
+            int shapeCount = getShapeCount(shapes, edge);
+            OpenRouterNode from = adjacency.getNode(edge.getFromID());
+            OpenRouterNode to = adjacency.getNode(edge.getToID());
+            double ax = (from.getLongitudeE6() - lonE6) * scaleLon;
+            double ay = (from.getLatitudeE6() - latE6) * scaleLat;
+            double length = 0;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            double bestAlong = 0;
+            double bestX = ax;
+            double bestY = ay;
+            for (int p = 1; p <= shapeCount + 1; p++)
+            {
+                int pointLat = p <= shapeCount ? shapes.getLatitudeE6(edge.getShapeRef(), p - 1) : to.getLatitudeE6();
+                int pointLon = p <= shapeCount ? shapes.getLongitudeE6(edge.getShapeRef(), p - 1) : to.getLongitudeE6();
+                double bx = (pointLon - lonE6) * scaleLon;
+                double by = (pointLat - latE6) * scaleLat;
+                double dx = bx - ax;
+                double dy = by - ay;
+                double squared = dx * dx + dy * dy;
+                double t = squared > 0 ? Math.max(0, Math.min(1, -(ax * dx + ay * dy) / squared)) : 0;
+                double px = ax + t * dx;
+                double py = ay + t * dy;
+                double distance = Math.sqrt(px * px + py * py);
+                double segment = Math.sqrt(squared);
+                if (distance < bestDistance)
+                {
+                    bestDistance = distance;
+                    bestAlong = length + t * segment;
+                    bestX = px;
+                    bestY = py;
+                }
+                length += segment;
+                ax = bx;
+                ay = by;
+            }
+            if (bestDistance > radiusMeter) continue;
+            result.add(new ORSegmentSnap(e, bestDistance, length > 0 ? bestAlong / length : 0,
+                    latE6 + (int) Math.round(bestY / scaleLat), lonE6 + (int) Math.round(bestX / scaleLon)));
+        }
+        result.sort(Comparator.comparingDouble(ORSegmentSnap::getDistance));
+        return result.size() > maxResults ? new ArrayList<>(result.subList(0, maxResults)) : result;
+    }
+
+    private static int getShapeCount(OpenRouterShapeStore shapes, OpenRouterEdge edge)
+    {
+        return shapes != null ? shapes.getPointCount(edge.getShapeRef()) : 0;
+    }
+
+    private static void addCells(long minLat, long maxLat, long minLon, long maxLon, ORLongArrayList edgeCells)
+    {
+        for (long cellLat = Math.floorDiv(minLat, CELL_E6); cellLat <= Math.floorDiv(maxLat, CELL_E6); cellLat++)
+        {
+            for (long cellLon = Math.floorDiv(minLon, CELL_E6); cellLon <= Math.floorDiv(maxLon, CELL_E6); cellLon++)
+            {
+                long key = cellKey(cellLat, cellLon);
+                boolean known = false;
+                for (int i = edgeCells.size() - 1; i >= 0 && !known; i--) known = edgeCells.get(i) == key;
+                if (!known) edgeCells.add(key);
+            }
+        }
+    }
+
+    private static long cellKey(long cellLat, long cellLon)
+    {
+        return (cellLat << 32) | (cellLon & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,63 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+
+/**
+ * Projection of a coordinate onto the geometry of an edge, see {@link ORSegmentIndex}.
+ */
+public final class ORSegmentSnap implements IGeoCoordinate
+{
+    private final int edge;
+    private final double distance;
+    private final double fraction;
+    private final int latitudeE6;
+    private final int longitudeE6;
+
+    ORSegmentSnap(int edge, double distance, double fraction, int latitudeE6, int longitudeE6)
+    {
+        this.edge = edge;
+        this.distance = distance;
+        this.fraction = fraction;
+        this.latitudeE6 = latitudeE6;
+        this.longitudeE6 = longitudeE6;
+    }
+
+    /**
+     * Returns the index of the edge in the edge list of the graph.
+     * @return the edge index
+     */
+    public int getEdge()
+    {
+        return edge;
+    }
+
+    /**
+     * Returns the distance between the coordinate and its projection.
+     * @return the distance in meters
+     */
+    public double getDistance()
+    {
+        return distance;
+    }
+
+    /**
+     * Returns the position of the projection along the edge geometry.
+     * @return 0 at the start node to 1 at the end node
+     */
+    public double getFraction()
+    {
+        return fraction;
+    }
+
+    @Override
+    public int getLatitudeE6()
+    {
+        return latitudeE6;
+    }
+
+    @Override
+    public int getLongitudeE6()
+    {
+        return longitudeE6;
+    }
+}
@@ -0,0 +1,163 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.types.RoadClass;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Integer codes for the tag keys and values the import interprets.
+ * Strings are translated to codes once, per string table of a PBF block, afterwards way classification
+ * compares integers and looks up highway properties in arrays. Strings outside the vocabulary map to {@link #UNKNOWN}.
+ * Keys and values share one code space.
+ */
+public final class ORTagDictionary
+{
+    public static final int UNKNOWN = 0;
+
+    // keys
+    public static final int HIGHWAY = 1;
+    public static final int ONEWAY = 2;
+    public static final int JUNCTION = 3;
+    public static final int MAXSPEED = 4;
+    public static final int TOLL = 5;
+    public static final int ACCESS = 6;
+    public static final int VEHICLE = 7;
+    public static final int MOTOR_VEHICLE = 8;
+    public static final int MOTORCAR = 9;
+    public static final int BICYCLE = 10;
+    public static final int FOOT = 11;
+
+    // values
+    public static final int YES = 12;
+    public static final int TRUE = 13;
+    public static final int ONE = 14;
+    public static final int ROUNDABOUT = 15;
+    public static final int NO = 16;
+    public static final int PRIVATE = 17;
+    public static final int AGRICULTURAL = 18;
+    public static final int FORESTRY = 19;
+
+    private static final String[] FIXED = {null, "highway", "oneway", "junction", "maxspeed", "toll",
+            "access", "vehicle", "motor_vehicle", "motorcar", "bicycle", "foot",
+            "yes", "true", "1", "roundabout", "no", "private", "agricultural", "forestry"};
+
+    /**
+     * Routable highway values with their road class and default speed in km/h if the way has no usable maxspeed.
+     */
+    private static final Object[][] HIGHWAYS = {
+            {"motorway", RoadClass.MOTORWAY, 130},
+            {"motorway_link", RoadClass.MOTORWAY, 60},
+            {"trunk", RoadClass.TRUNK, 100},
+            {"trunk_link", RoadClass.TRUNK, 60},
+            {"primary", RoadClass.PRIMARY, 90},
+            {"primary_link", RoadClass.PRIMARY, 50},
+            {"secondary", RoadClass.SECONDARY, 80},
+            {"secondary_link", RoadClass.SECONDARY, 50},
+            {"tertiary", RoadClass.TERTIARY, 70},
+            {"tertiary_link", RoadClass.TERTIARY, 40},
+            {"unclassified", RoadClass.UNCLASSIFIED, 50},
+            {"residential", RoadClass.RESIDENTIAL, 40},
+            {"living_street", RoadClass.LIVING_STREET, 7},
+            {"service", RoadClass.SERVICE, 20},
+            {"road", RoadClass.ROAD, 50},
+            {"bus_guideway", RoadClass.BUS_GUIDEWAY, 50},
+    };
+    private static final int FIRST_HIGHWAY = FIXED.length;
+    private static final int CODE_COUNT = FIRST_HIGHWAY + HIGHWAYS.length;
+
+    private static final Map<String, Integer> codes = new HashMap<>();
+    private static final RoadClass[] roadClasses = new RoadClass[CODE_COUNT];
+    private static final short[] defaultSpeeds = new short[CODE_COUNT];
+
+    static
+    {
+        for (int code = 1; code < FIXED.length; code++) codes.put(FIXED[code], code);
+        for (int i = 0; i < HIGHWAYS.length; i++)
+        {
+            int code = FIRST_HIGHWAY + i;
+            codes.put((String) HIGHWAYS[i][0], code);
+            roadClasses[code] = (RoadClass) HIGHWAYS[i][1];
+            defaultSpeeds[code] = ((Integer) HIGHWAYS[i][2]).shortValue();
+        }
+    }
+
+    private ORTagDictionary()
+    {
+    }
+
+    /**
+     * Returns the code of a string.
+     * @param value the key or value
+     * @return the code or {@link #UNKNOWN}
+     */
+    public static int getCode(String value)
+    {
+        if (value == null) return UNKNOWN;
+        Integer code = codes.get(value);
+        return code != null ? code : UNKNOWN;
+    }
+
+    /**
+     * Returns the codes of all strings of a string table.
+     * @param strings the string table
+     * @return the code per string
+     */
+    public static int[] getCodes(String[] strings)
+    {
+        int[] result = new int[strings.length];
+        for (int i = 0; i < strings.length; i++) result[i] = getCode(strings[i]);
+        return result;
+    }
+
+    /**
+     * Returns true if the code is a highway value routable by car.
+     * @param code the code of the highway value
+     * @return true if routable
+     */
+    public static boolean isCarHighway(int code)
+    {
+        return code >= FIRST_HIGHWAY && code < CODE_COUNT;
+    }
+
+    /**
+     * Returns the road class of a highway value.
+     * @param code the code of the highway value
+     * @return the road class, OTHER if not routable
+     */
+    public static RoadClass getRoadClass(int code)
+    {
+        return isCarHighway(code) ? roadClasses[code] : RoadClass.OTHER;
+    }
+
+    /**
+     * Returns the default speed of a highway value.
+     * @param code the code of the highway value
+     * @return the speed in km/h, 0 if not routable
+     */
+    public static short getDefaultSpeed(int code)
+    {
+        return isCarHighway(code) ? defaultSpeeds[code] : 0;
+    }
+
+    /**
+     * Returns true for the values which mean yes: yes, true and 1.
+     * @param code the code of the value
+     * @return true if the value is affirmative
+     */
+    public static boolean isYes(int code)
+    {
+        return code == YES || code == TRUE || code == ONE;
+    }
+
+    /**
+     * Returns true for the access values which exclude general traffic: no, private, agricultural and forestry.
+     * Other values like destination or permissive allow it.
+     * @param code the code of the value
+     * @return true if the value denies access
+     */
+    public static boolean isDenied(int code)
+    {
+        return code == NO || code == PRIVATE || code == AGRICULTURAL || code == FORESTRY;
+    }
+}
@@ -0,0 +1,190 @@
+package de.riemerjonas.openrouter.graph.core;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdgeMeta;
+import de.riemerjonas.openrouter.core.types.RoadClass;
+import de.riemerjonas.openrouter.core.types.VehicleType;
+import de.riemerjonas.openrouter.graph.core.pbf.ORPbfBlock;
+
+import java.util.Map;
+
+/**
+ * Routing relevant attributes of an OSM way.
+ * Shared by the PBF import and the incremental updater so both create identical edges.
+ * Tags are evaluated as {@link ORTagDictionary} codes in a single pass, maxspeed values are parsed by
+ * {@link ORMaxSpeedParser}, ways without a usable maxspeed get the default speed of their highway type.
+ * Access per vehicle is given by the most specific access tag present, e.g. motorcar before motor_vehicle before
+ * vehicle before access for cars. Without any tag cars may use every routable way, bicycles and pedestrians every
+ * way except motorways.
+ */
+public class ORWayAttributes
+{
+    // code of a tag the way does not have, unlike UNKNOWN for a value outside the vocabulary
+    private static final int ABSENT = -1;
+
+    private final RoadClass roadClass;
+    private final short maxSpeedKmh;
+    private final boolean oneway;
+    private final boolean roundabout;
+    private final boolean toll;
+    private final int accessFlags;
+
+    private ORWayAttributes(RoadClass roadClass, short maxSpeedKmh, boolean oneway, boolean roundabout, boolean toll,
+                            int accessFlags)
+    {
+        this.roadClass = roadClass;
+        this.maxSpeedKmh = maxSpeedKmh;
+        this.oneway = oneway;
+        this.roundabout = roundabout;
+        this.toll = toll;
+        this.accessFlags = accessFlags;
+    }
+
+    /**
+     * Returns the attributes of a way of a decoded PBF block.
+     * @param block the block
+     * @param way the index of the way in the block
+     * @return the attributes or null if the way is not routable
+     */
+    public static ORWayAttributes fromBlock(ORPbfBlock block, int way)
+    {
+        int highway = ORTagDictionary.UNKNOWN;
+        int oneway = ORTagDictionary.UNKNOWN;
+        int junction = ORTagDictionary.UNKNOWN;
+        int toll = ORTagDictionary.UNKNOWN;
+        int[] access = {ABSENT, ABSENT, ABSENT, ABSENT, ABSENT, ABSENT};
+        int maxspeedTag = -1;
+        for (int i = 0; i < block.getWayTagCount(way); i++)
+        {
+            switch (block.getWayTagKeyCode(way, i))
+            {
+                case ORTagDictionary.HIGHWAY: highway = block.getWayTagValueCode(way, i); break;
+                case ORTagDictionary.ONEWAY: oneway = block.getWayTagValueCode(way, i); break;
+                case ORTagDictionary.JUNCTION: junction = block.getWayTagValueCode(way, i); break;
+                case ORTagDictionary.TOLL: toll = block.getWayTagValueCode(way, i); break;
+                case ORTagDictionary.MAXSPEED: maxspeedTag = i; break;
+                case ORTagDictionary.ACCESS:
+                case ORTagDictionary.VEHICLE:
+                case ORTagDictionary.MOTOR_VEHICLE:
+                case ORTagDictionary.MOTORCAR:
+                case ORTagDictionary.BICYCLE:
+                case ORTagDictionary.FOOT:
+                    access[block.getWayTagKeyCode(way, i) - ORTagDictionary.ACCESS] = block.getWayTagValueCode(way, i);
+                    break;
+                default: break;
+            }
+        }
+        if (!ORTagDictionary.isCarHighway(highway)) return null;
+        String maxspeed = maxspeedTag >= 0 ? block.getWayTagValue(way, maxspeedTag) : null;
+        return create(highway, oneway, junction, maxspeed, toll, access);
+    }
+
+    /**
+     * Returns the attributes of a way given by its tags.
+     * @param tags the tags of the way
+     * @return the attributes or null if the way is not routable
+     */
+    public static ORWayAttributes fromTags(Map<String, String> tags)
+    {
+        int highway = ORTagDictionary.getCode(tags.get("highway"));
+        if (!ORTagDictionary.isCarHighway(highway)) return null;
+        int[] access = {getAccessCode(tags, "access"), getAccessCode(tags, "vehicle"), getAccessCode(tags, "motor_vehicle"),
+                getAccessCode(tags, "motorcar"), getAccessCode(tags, "bicycle"), getAccessCode(tags, "foot")};
+        return create(highway, ORTagDictionary.getCode(tags.get("oneway")), ORTagDictionary.getCode(tags.get("junction")),
+                tags.get("maxspeed"), ORTagDictionary.getCode(tags.get("toll")), access);
+    }
+
+    private static int getAccessCode(Map<String, String> tags, String key)
+    {
+        String value = tags.get(key);
+        return value != null ? ORTagDictionary.getCode(value) : ABSENT;
+    }
+
+    /**
+     * @param access the value codes of the access tags in the order of their keys, from access to foot
+     */
+    private static ORWayAttributes create(int highway, int oneway, int junction, String maxspeed, int toll, int[] access)
+    {
+        boolean isRoundabout = junction == ORTagDictionary.ROUNDABOUT;
+        // Roundabouts sind immer Einbahnstraße
+        boolean isOneway = ORTagDictionary.isYes(oneway) || isRoundabout;
+        short speed = ORMaxSpeedParser.parse(maxspeed);
+        if (speed == ORMaxSpeedParser.NO_LIMIT) speed = ORTagDictionary.getDefaultSpeed(highway);
+        RoadClass roadClass = ORTagDictionary.getRoadClass(highway);
+        boolean motorway = roadClass == RoadClass.MOTORWAY;
+        int accessFlags = 0;
+        if (isAllowed(true, access, ORTagDictionary.MOTORCAR, ORTagDictionary.MOTOR_VEHICLE, ORTagDictionary.VEHICLE, ORTagDictionary.ACCESS))
+        {
+            accessFlags |= VehicleType.CAR.getAccessBit();
+        }
+        if (isAllowed(!motorway, access, ORTagDictionary.BICYCLE, ORTagDictionary.VEHICLE, ORTagDictionary.ACCESS))
+        {
+            accessFlags |= VehicleType.BIKE.getAccessBit();
+        }
+        if (isAllowed(!motorway, access, ORTagDictionary.FOOT, ORTagDictionary.ACCESS))
+        {
+            accessFlags |= VehicleType.FOOT.getAccessBit();
+        }
+        return new ORWayAttributes(roadClass, speed, isOneway, isRoundabout, ORTagDictionary.isYes(toll), accessFlags);
+    }
+
+    /**
+     * Evaluates the first present access tag.
+     * @param defaultAccess the access if none of the tags is present
+     * @param access the value codes of the access tags
+     * @param keys the keys to check, most specific first
+     */
+    private static boolean isAllowed(boolean defaultAccess, int[] access, int... keys)
+    {
+        for (int key : keys)
+        {
+            int value = access[key - ORTagDictionary.ACCESS];
+            if (value != ABSENT) return !ORTagDictionary.isDenied(value);
+        }
+        return defaultAccess;
+    }
+
+    /**
+     * Creates the packed edge meta data for a segment of this way.
+     * @param distanceMeter the length of the segment in meters
+     * @return the packed meta data
+     */
+    public long createMeta(double distanceMeter)
+    {
+        return new OpenRouterEdgeMeta(distanceMeter, maxSpeedKmh, roadClass,
+                accessFlags, oneway, roundabout, toll, 0).getPackedData();
+    }
+
+    public RoadClass getRoadClass()
+    {
+        return roadClass;
+    }
+
+    public short getMaxSpeedKmh()
+    {
+        return maxSpeedKmh;
+    }
+
+    public boolean isOneway()
+    {
+        return oneway;
+    }
+
+    public boolean isRoundabout()
+    {
+        return roundabout;
+    }
+
+    public boolean isToll()
+    {
+        return toll;
+    }
+
+    /**
+     * Returns the vehicles allowed on this way.
+     * @return the combined bits of {@link VehicleType#getAccessBit()}
+     */
+    public int getAccessFlags()
+    {
+        return accessFlags;
+    }
+}
@@ -0,0 +1,149 @@
+package de.riemerjonas.openrouter.graph.core.pbf;
+
+/**
+ * A decoded OSM PBF data block stored in primitive arrays.
+ * Nodes keep ID and coordinate, ways keep ID, node references and tags.
+ * Tags are indices into the string table of the block, the strings are also available as
+ * {@link de.riemerjonas.openrouter.graph.core.ORTagDictionary} codes.
+ */
+public class ORPbfBlock
+{
+    final int sequence;
+    String[] strings = new String[0];
+    int[] stringCodes = new int[0];
+
+    int nodeCount;
+    long[] nodeIds = new long[0];
+    int[] nodeLatE6 = new int[0];
+    int[] nodeLonE6 = new int[0];
+
+    int wayCount;
+    long[] wayIds = new long[0];
+    int[] wayRefStart = new int[] {0};
+    long[] wayRefs = new long[0];
+    int[] wayTagStart = new int[] {0};
+    int[] wayTagKeys = new int[0];
+    int[] wayTagValues = new int[0];
+
+    ORPbfBlock(int sequence)
+    {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the position of this block in the file, counting data blocks only.
+     * @return the sequence number
+     */
+    public int getSequence()
+    {
+        return sequence;
+    }
+
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    public long getNodeId(int node)
+    {
+        return nodeIds[node];
+    }
+
+    public int getNodeLatitudeE6(int node)
+    {
+        return nodeLatE6[node];
+    }
+
+    public int getNodeLongitudeE6(int node)
+    {
+        return nodeLonE6[node];
+    }
+
+    public int getWayCount()
+    {
+        return wayCount;
+    }
+
+    public long getWayId(int way)
+    {
+        return wayIds[way];
+    }
+
+    public int getWayNodeCount(int way)
+    {
+        return wayRefStart[way + 1] - wayRefStart[way];
+    }
+
+    public long getWayNodeId(int way, int index)
+    {
+        return wayRefs[wayRefStart[way] + index];
+    }
+
+    public int getWayTagCount(int way)
+    {
+        return wayTagStart[way + 1] - wayTagStart[way];
+    }
+
+    public String getWayTagKey(int way, int index)
+    {
+        return strings[wayTagKeys[wayTagStart[way] + index]];
+    }
+
+    public String getWayTagValue(int way, int index)
+    {
+        return strings[wayTagValues[wayTagStart[way] + index]];
+    }
+
+    /**
+     * Returns the string table of this block.
+     * @return the strings, index 0 is always the empty string
+     */
+    public String[] getStrings()
+    {
+        return strings;
+    }
+
+    /**
+     * Returns the string table index of a tag key of a way.
+     * @param way the way
+     * @param index the tag index
+     * @return the string table index
+     */
+    public int getWayTagKeyIndex(int way, int index)
+    {
+        return wayTagKeys[wayTagStart[way] + index];
+    }
+
+    /**
+     * Returns the string table index of a tag value of a way.
+     * @param way the way
+     * @param index the tag index
+     * @return the string table index
+     */
+    public int getWayTagValueIndex(int way, int index)
+    {
+        return wayTagValues[wayTagStart[way] + index];
+    }
+
+    /**
+     * Returns the tag dictionary code of a tag key of a way.
+     * @param way the way
+     * @param index the tag index
+     * @return the code
+     */
+    public int getWayTagKeyCode(int way, int index)
+    {
+        return stringCodes[wayTagKeys[wayTagStart[way] + index]];
+    }
+
+    /**
+     * Returns the tag dictionary code of a tag value of a way.
+     * @param way the way
+     * @param index the tag index
+     * @return the code
+     */
+    public int getWayTagValueCode(int way, int index)
+    {
+        return stringCodes[wayTagValues[wayTagStart[way] + index]];
+    }
+}
@@ -0,0 +1,352 @@
+package de.riemerjonas.openrouter.graph.core.pbf;
+
+import com.google.protobuf.CodedInputStream;
+import de.riemerjonas.openrouter.graph.core.ORTagDictionary;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes a single OSMData blob into an {@link ORPbfBlock}.
+ * Only the parts needed for routing are read: node IDs and coordinates and way IDs, references and tags.
+ * Metadata and relations are skipped. Decoding is stateless, so blobs can be decoded on any thread.
+ */
+public class ORPbfDecoder
+{
+    private static final int WIRETYPE_VARINT = 0;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
+    private final boolean decodeNodes;
+    private final boolean decodeWays;
+
+    /**
+     * Creates a new ORPbfDecoder.
+     * @param decodeNodes true to decode nodes, otherwise node groups are skipped
+     * @param decodeWays true to decode ways, otherwise way groups are skipped
+     */
+    public ORPbfDecoder(boolean decodeNodes, boolean decodeWays)
+    {
+        this.decodeNodes = decodeNodes;
+        this.decodeWays = decodeWays;
+    }
+
+    /**
+     * Decodes the given raw blob.
+     * @param sequence the sequence number of the blob
+     * @param blob the serialized Blob message
+     * @return the decoded block
+     * @throws IOException if the blob is malformed or uses an unsupported compression
+     */
+    public ORPbfBlock decode(int sequence, byte[] blob) throws IOException
+    {
+        byte[] data = uncompress(blob);
+        ORPbfBlock block = new ORPbfBlock(sequence);
+
+        long granularity = 100;
+        long latOffset = 0;
+        long lonOffset = 0;
+        List<byte[]> groups = new ArrayList<>();
+
+        CodedInputStream in = CodedInputStream.newInstance(data);
+        in.setSizeLimit(Integer.MAX_VALUE);
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            switch (tag >>> 3)
+            {
+                case 1: readStringTable(block, in.readByteArray()); break;
+                case 2: groups.add(in.readByteArray()); break;
+                case 17: granularity = in.readInt32(); break;
+                case 19: latOffset = in.readInt64(); break;
+                case 20: lonOffset = in.readInt64(); break;
+                default: in.skipField(tag); break;
+            }
+        }
+
+        // granularity and offsets follow the groups, so groups are parsed afterwards
+        Coordinates coordinates = new Coordinates(granularity, latOffset, lonOffset);
+        for (byte[] group : groups)
+        {
+            readGroup(block, group, coordinates);
+        }
+        return block;
+    }
+
+    private static byte[] uncompress(byte[] blob) throws IOException
+    {
+        CodedInputStream in = CodedInputStream.newInstance(blob);
+        in.setSizeLimit(Integer.MAX_VALUE);
+        byte[] raw = null;
+        byte[] zlib = null;
+        int rawSize = -1;
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            switch (tag >>> 3)
+            {
+                case 1: raw = in.readByteArray(); break;
+                case 2: rawSize = in.readInt32(); break;
+                case 3: zlib = in.readByteArray(); break;
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    throw new IOException("Unsupported blob compression (field " + (tag >>> 3) + ")");
+                default: in.skipField(tag); break;
+            }
+        }
+        if (raw != null) return raw;
+        if (zlib == null || rawSize < 0) throw new IOException("Blob without data");
+
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(zlib);
+            byte[] out = new byte[rawSize];
+            int length = 0;
+            while (length < rawSize && !inflater.finished())
+            {
+                int read = inflater.inflate(out, length, rawSize - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += read;
+            }
+            if (length != rawSize) throw new IOException("Truncated zlib blob: " + length + " of " + rawSize + " bytes");
+            return out;
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("Invalid zlib blob", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    private static void readStringTable(ORPbfBlock block, byte[] data) throws IOException
+    {
+        CodedInputStream in = CodedInputStream.newInstance(data);
+        List<String> strings = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            if (tag >>> 3 == 1) strings.add(new String(in.readByteArray(), StandardCharsets.UTF_8));
+            else in.skipField(tag);
+        }
+        block.strings = strings.toArray(new String[0]);
+        block.stringCodes = ORTagDictionary.getCodes(block.strings);
+    }
+
+    private void readGroup(ORPbfBlock block, byte[] data, Coordinates coordinates) throws IOException
+    {
+        CodedInputStream in = CodedInputStream.newInstance(data);
+        in.setSizeLimit(Integer.MAX_VALUE);
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            int field = tag >>> 3;
+            if (field == 1 && decodeNodes) readNode(block, in, coordinates);
+            else if (field == 2 && decodeNodes) readDenseNodes(block, in, coordinates);
+            else if (field == 3 && decodeWays) readWay(block, in);
+            else in.skipField(tag);
+        }
+    }
+
+    private static void readNode(ORPbfBlock block, CodedInputStream in, Coordinates coordinates) throws IOException
+    {
+        int limit = in.pushLimit(in.readRawVarint32());
+        long id = 0, lat = 0, lon = 0;
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            switch (tag >>> 3)
+            {
+                case 1: id = in.readSInt64(); break;
+                case 8: lat = in.readSInt64(); break;
+                case 9: lon = in.readSInt64(); break;
+                default: in.skipField(tag); break;
+            }
+        }
+        in.popLimit(limit);
+        addNode(block, id, coordinates.latitudeE6(lat), coordinates.longitudeE6(lon));
+    }
+
+    private static void readDenseNodes(ORPbfBlock block, CodedInputStream in, Coordinates coordinates) throws IOException
+    {
+        int limit = in.pushLimit(in.readRawVarint32());
+        LongBuffer ids = new LongBuffer();
+        LongBuffer lats = new LongBuffer();
+        LongBuffer lons = new LongBuffer();
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            switch (tag >>> 3)
+            {
+                case 1: readSInt64s(in, tag, ids); break;
+                case 8: readSInt64s(in, tag, lats); break;
+                case 9: readSInt64s(in, tag, lons); break;
+                default: in.skipField(tag); break;
+            }
+        }
+        in.popLimit(limit);
+        if (ids.size != lats.size || ids.size != lons.size) throw new IOException("Inconsistent dense node arrays");
+
+        ensureNodeCapacity(block, block.nodeCount + ids.size);
+        long id = 0, lat = 0, lon = 0;
+        for (int i = 0; i < ids.size; i++)
+        {
+            id += ids.values[i];
+            lat += lats.values[i];
+            lon += lons.values[i];
+            block.nodeIds[block.nodeCount] = id;
+            block.nodeLatE6[block.nodeCount] = coordinates.latitudeE6(lat);
+            block.nodeLonE6[block.nodeCount] = coordinates.longitudeE6(lon);
+            block.nodeCount++;
+        }
+    }
+
+    private static void readWay(ORPbfBlock block, CodedInputStream in) throws IOException
+    {
+        int limit = in.pushLimit(in.readRawVarint32());
+        long id = 0;
+        LongBuffer keys = new LongBuffer();
+        LongBuffer values = new LongBuffer();
+        LongBuffer refs = new LongBuffer();
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            switch (tag >>> 3)
+            {
+                case 1: id = in.readInt64(); break;
+                case 2: readUInt32s(in, tag, keys); break;
+                case 3: readUInt32s(in, tag, values); break;
+                case 8: readSInt64s(in, tag, refs); break;
+                default: in.skipField(tag); break;
+            }
+        }
+        in.popLimit(limit);
+        if (keys.size != values.size) throw new IOException("Inconsistent way tag arrays in way " + id);
+
+        int way = block.wayCount;
+        if (way + 1 >= block.wayIds.length)
+        {
+            int capacity = Math.max(16, block.wayIds.length * 2);
+            block.wayIds = Arrays.copyOf(block.wayIds, capacity);
+            block.wayRefStart = Arrays.copyOf(block.wayRefStart, capacity + 1);
+            block.wayTagStart = Arrays.copyOf(block.wayTagStart, capacity + 1);
+        }
+        block.wayIds[way] = id;
+
+        int refStart = block.wayRefStart[way];
+        if (refStart + refs.size > block.wayRefs.length)
+        {
+            block.wayRefs = Arrays.copyOf(block.wayRefs, Math.max(refStart + refs.size, block.wayRefs.length * 2));
+        }
+        long ref = 0;
+        for (int i = 0; i < refs.size; i++)
+        {
+            ref += refs.values[i];
+            block.wayRefs[refStart + i] = ref;
+        }
+        block.wayRefStart[way + 1] = refStart + refs.size;
+
+        int tagStart = block.wayTagStart[way];
+        if (tagStart + keys.size > block.wayTagKeys.length)
+        {
+            int capacity = Math.max(tagStart + keys.size, block.wayTagKeys.length * 2);
+            block.wayTagKeys = Arrays.copyOf(block.wayTagKeys, capacity);
+            block.wayTagValues = Arrays.copyOf(block.wayTagValues, capacity);
+        }
+        for (int i = 0; i < keys.size; i++)
+        {
+            block.wayTagKeys[tagStart + i] = (int) keys.values[i];
+            block.wayTagValues[tagStart + i] = (int) values.values[i];
+        }
+        block.wayTagStart[way + 1] = tagStart + keys.size;
+        block.wayCount++;
+    }
+
+    private static void addNode(ORPbfBlock block, long id, int latE6, int lonE6)
+    {
+        ensureNodeCapacity(block, block.nodeCount + 1);
+        block.nodeIds[block.nodeCount] = id;
+        block.nodeLatE6[block.nodeCount] = latE6;
+        block.nodeLonE6[block.nodeCount] = lonE6;
+        block.nodeCount++;
+    }
+
+    private static void ensureNodeCapacity(ORPbfBlock block, int size)
+    {
+        if (size <= block.nodeIds.length) return;
+        int capacity = Math.max(size, block.nodeIds.length * 2);
+        block.nodeIds = Arrays.copyOf(block.nodeIds, capacity);
+        block.nodeLatE6 = Arrays.copyOf(block.nodeLatE6, capacity);
+        block.nodeLonE6 = Arrays.copyOf(block.nodeLonE6, capacity);
+    }
+
+    private static void readSInt64s(CodedInputStream in, int tag, LongBuffer out) throws IOException
+    {
+        if ((tag & 7) == WIRETYPE_VARINT)
+        {
+            out.add(in.readSInt64());
+            return;
+        }
+        int limit = in.pushLimit(in.readRawVarint32());
+        while (in.getBytesUntilLimit() > 0) out.add(in.readSInt64());
+        in.popLimit(limit);
+    }
+
+    private static void readUInt32s(CodedInputStream in, int tag, LongBuffer out) throws IOException
+    {
+        if ((tag & 7) != WIRETYPE_LENGTH_DELIMITED)
+        {
+            out.add(in.readUInt32() & 0xFFFFFFFFL);
+            return;
+        }
+        int limit = in.pushLimit(in.readRawVarint32());
+        while (in.getBytesUntilLimit() > 0) out.add(in.readUInt32() & 0xFFFFFFFFL);
+        in.popLimit(limit);
+    }
+
+    private static class Coordinates
+    {
+        final long granularity;
+        final long latOffset;
+        final long lonOffset;
+
+        Coordinates(long granularity, long latOffset, long lonOffset)
+        {
+            this.granularity = granularity;
+            this.latOffset = latOffset;
+            this.lonOffset = lonOffset;
+        }
+
+        // PBF coordinates are in nanodegrees: offset + granularity * value
+        int latitudeE6(long lat)
+        {
+            return (int) Math.round((latOffset + granularity * lat) / 1000.0);
+        }
+
+        int longitudeE6(long lon)
+        {
+            return (int) Math.round((lonOffset + granularity * lon) / 1000.0);
+        }
+    }
+
+    private static class LongBuffer
+    {
+        long[] values = new long[64];
+        int size;
+
+        void add(long value)
+        {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
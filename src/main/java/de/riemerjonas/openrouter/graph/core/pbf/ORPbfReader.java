@@ -0,0 +1,181 @@
+package de.riemerjonas.openrouter.graph.core.pbf;
+
+import com.google.protobuf.CodedInputStream;
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+/**
+ * Pipelined reader for OSM PBF files.
+ * <p>
+ * A reader thread splits the file into blobs and hands them to a pool of decoder threads.
+ * The pending results are queued in file order in a bounded queue, so the consumer receives
+ * the blocks in their original order while up to {@code queueSize} blocks are decoded in parallel.
+ * The bounded queue limits memory when the consumer is slower than the decoders.
+ */
+public class ORPbfReader
+{
+    private static final String TAG = "ORPbfReader";
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Receives decoded blocks in file order.
+     */
+    public interface BlockConsumer
+    {
+        /**
+         * Handles a decoded block.
+         * @param block the block
+         * @return false to stop reading the file
+         * @throws IOException if handling fails, reading is stopped
+         */
+        boolean accept(ORPbfBlock block) throws IOException;
+    }
+
+    private final int threads;
+    private final int queueSize;
+
+    /**
+     * Creates a new ORPbfReader.
+     * @param threads the number of decoder threads
+     * @param queueSize the maximum number of blocks in flight
+     */
+    public ORPbfReader(int threads, int queueSize)
+    {
+        this.threads = Math.max(1, threads);
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    /**
+     * Creates a new ORPbfReader using all available cores.
+     */
+    public ORPbfReader()
+    {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Reads the given file and passes all data blocks to the consumer in file order.
+     * @param file the PBF file
+     * @param decoder the decoder to use
+     * @param consumer the consumer of the blocks
+     * @throws IOException if reading, decoding or consuming fails
+     */
+    public void read(File file, ORPbfDecoder decoder, BlockConsumer consumer) throws IOException
+    {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, daemonFactory("ORPbfReader-decoder"));
+        ExecutorService readerThread = Executors.newSingleThreadExecutor(daemonFactory("ORPbfReader-reader"));
+        BlockingQueue<Future<ORPbfBlock>> queue = new ArrayBlockingQueue<>(queueSize);
+
+        Future<?> reading = readerThread.submit(() -> {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 20)))
+            {
+                int sequence = 0;
+                byte[] blob;
+                while ((blob = nextDataBlob(in)) != null)
+                {
+                    final int seq = sequence++;
+                    final byte[] data = blob;
+                    queue.put(workers.submit(() -> decoder.decode(seq, data)));
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            catch (IOException e)
+            {
+                queue.put(CompletableFuture.failedFuture(e));
+                return null;
+            }
+            queue.put(CompletableFuture.completedFuture(null));
+            return null;
+        });
+
+        try
+        {
+            while (true)
+            {
+                ORPbfBlock block = queue.take().get();
+                if (block == null || !consumer.accept(block)) break;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading PBF file interrupted");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Decoding PBF block failed", cause);
+        }
+        finally
+        {
+            reading.cancel(true);
+            readerThread.shutdownNow();
+            workers.shutdownNow();
+            queue.clear();
+        }
+    }
+
+    /**
+     * Reads blob headers until the next OSMData blob and returns its raw content.
+     * @param in the file stream
+     * @return the blob or null at the end of the file
+     * @throws IOException if the file is malformed
+     */
+    private static byte[] nextDataBlob(DataInputStream in) throws IOException
+    {
+        while (true)
+        {
+            int headerSize;
+            try
+            {
+                headerSize = in.readInt();
+            }
+            catch (EOFException e)
+            {
+                return null;
+            }
+            if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) throw new IOException("Invalid blob header size: " + headerSize);
+
+            byte[] header = new byte[headerSize];
+            in.readFully(header);
+            String type = null;
+            int dataSize = -1;
+
+            CodedInputStream headerIn = CodedInputStream.newInstance(header);
+            int tag;
+            while ((tag = headerIn.readTag()) != 0)
+            {
+                switch (tag >>> 3)
+                {
+                    case 1: type = new String(headerIn.readByteArray(), StandardCharsets.UTF_8); break;
+                    case 3: dataSize = headerIn.readInt32(); break;
+                    default: headerIn.skipField(tag); break;
+                }
+            }
+            if (dataSize < 0 || dataSize > MAX_BLOB_SIZE) throw new IOException("Invalid blob size: " + dataSize);
+
+            byte[] blob = new byte[dataSize];
+            in.readFully(blob);
+            if ("OSMData".equals(type)) return blob;
+            if (!"OSMHeader".equals(type)) OpenRouterLog.w(TAG, "Skipping unknown blob type: " + type);
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String name)
+    {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
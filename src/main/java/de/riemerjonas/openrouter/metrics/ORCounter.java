@@ -0,0 +1,42 @@
+package de.riemerjonas.openrouter.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counter, striped over cells by {@link LongAdder} so concurrent threads do not contend.
+ */
+public final class ORCounter
+{
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    ORCounter(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void increment()
+    {
+        if (ORMetrics.isEnabled()) value.increment();
+    }
+
+    public void add(long amount)
+    {
+        if (ORMetrics.isEnabled()) value.add(amount);
+    }
+
+    public long get()
+    {
+        return value.sum();
+    }
+
+    void reset()
+    {
+        value.reset();
+    }
+}
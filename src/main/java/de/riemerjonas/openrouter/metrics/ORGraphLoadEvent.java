@@ -0,0 +1,30 @@
+package de.riemerjonas.openrouter.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of loading a graph file.
+ */
+@Name("openrouter.GraphLoad")
+@Label("Graph Load")
+@Category("OpenRouter")
+@Description("Loading a graph file")
+public final class ORGraphLoadEvent extends jdk.jfr.Event
+{
+    @Label("File")
+    public String file;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+
+    @Label("Nodes")
+    public int nodes;
+
+    @Label("Edges")
+    public int edges;
+}
@@ -0,0 +1,153 @@
+package de.riemerjonas.openrouter.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of non-negative long values.
+ * <p>
+ * Every power of two is split into 16 linear sub-buckets, so a bucket is at most 6.25% wide relative to its values
+ * and the whole long range fits into 960 buckets. Recording is one atomic increment on a bucket of a stripe chosen by
+ * the thread, stripes keep concurrent threads from contending on the same cache line. Stripes are merged on read.
+ * No sum is kept, the mean is estimated from the bucket midpoints.
+ */
+public final class ORHistogram
+{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    private static final int MAX_STRIPES = 16;
+
+    private final int stripeShift;
+    private final AtomicLongArray counts;
+    private final AtomicLong max = new AtomicLong();
+
+    public ORHistogram()
+    {
+        // next power of two of the processor count, at least 2
+        int stripes = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripes);
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+    }
+
+    /**
+     * Records a value.
+     * @param value the value, negative values are recorded as 0
+     */
+    public void record(long value)
+    {
+        if (value < 0) value = 0;
+        // Fibonacci hashing of the thread ID spreads consecutive IDs over the stripes
+        int stripe = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> stripeShift);
+        counts.getAndIncrement(stripe * BUCKETS + bucketOf(value));
+        if (value > max.get()) max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Returns the merged state of all stripes. Values recorded concurrently may be missing.
+     * @return the snapshot
+     */
+    public Snapshot snapshot()
+    {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++)
+        {
+            long c = counts.get(i);
+            merged[i % BUCKETS] += c;
+            count += c;
+        }
+        double sum = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            if (merged[bucket] > 0) sum += merged[bucket] * ((lowestValueOf(bucket) + (double) highestValueOf(bucket)) / 2);
+        }
+        return new Snapshot(merged, count, sum, max.get());
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        max.set(0);
+    }
+
+    static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowestValueOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = (bucket >> SUB_BITS) + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << (exponent - SUB_BITS);
+    }
+
+    static long highestValueOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = (bucket >> SUB_BITS) + SUB_BITS - 1;
+        return lowestValueOf(bucket) + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Merged counts of a histogram at one point in time.
+     */
+    public static final class Snapshot
+    {
+        private final long[] buckets;
+        private final long count;
+        private final double sum;
+        private final long max;
+
+        Snapshot(long[] buckets, long count, double sum, long max)
+        {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public long getMax()
+        {
+            return max;
+        }
+
+        /**
+         * Returns the mean, estimated from the bucket midpoints with the relative error of the bucket width.
+         * @return the mean
+         */
+        public double getMean()
+        {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * Returns the value below which the given fraction of the recorded values lies.
+         * @param quantile the fraction, e.g. 0.99
+         * @return the upper bound of the bucket containing the quantile, at most the maximum
+         */
+        public long getValueAtQuantile(double quantile)
+        {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < buckets.length; bucket++)
+            {
+                seen += buckets[bucket];
+                if (seen >= rank) return Math.min(highestValueOf(bucket), max);
+            }
+            return max;
+        }
+    }
+}
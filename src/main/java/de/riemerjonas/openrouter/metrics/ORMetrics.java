@@ -0,0 +1,134 @@
+package de.riemerjonas.openrouter.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the process wide timers and counters.
+ * <p>
+ * Metrics are enabled unless the system property {@code openrouter.metrics} is {@code false}, they can also be
+ * switched at runtime. The standard timers of the router are constants of this class, further metrics are created
+ * on first use by name. {@link #snapshot()} exports all of them as text.
+ */
+public final class ORMetrics
+{
+    private static final Map<String, ORTimer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, ORCounter> counters = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = !"false".equals(System.getProperty("openrouter.metrics"));
+
+    /** Loading a graph file. */
+    public static final ORTimer GRAPH_LOAD = timer("graph.load");
+    /** Saving a graph file. */
+    public static final ORTimer GRAPH_SAVE = timer("graph.save");
+    /** Finding the nearest node of a coordinate. */
+    public static final ORTimer SNAP = timer("route.snap");
+    /** The shortest path search. */
+    public static final ORTimer SEARCH = timer("route.search");
+    /** Building the route from the search tree. */
+    public static final ORTimer UNPACK = timer("route.unpack");
+    /** Writing a route response. */
+    public static final ORTimer SERIALIZE = timer("route.serialize");
+
+    private ORMetrics()
+    {
+    }
+
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables recording. Disabled timers do not read the clock.
+     * @param enabled true to record
+     */
+    public static void setEnabled(boolean enabled)
+    {
+        ORMetrics.enabled = enabled;
+    }
+
+    /**
+     * Returns the timer with the given name, creating it on first use.
+     * @param name the name, e.g. {@code route.search}
+     * @return the timer
+     */
+    public static ORTimer timer(String name)
+    {
+        return timers.computeIfAbsent(name, ORTimer::new);
+    }
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     * @param name the name, e.g. {@code server.requests}
+     * @return the counter
+     */
+    public static ORCounter counter(String name)
+    {
+        return counters.computeIfAbsent(name, ORCounter::new);
+    }
+
+    /**
+     * Clears all timers and counters.
+     */
+    public static void reset()
+    {
+        timers.values().forEach(ORTimer::reset);
+        counters.values().forEach(ORCounter::reset);
+    }
+
+    /**
+     * Writes all metrics sorted by name, one per line. Durations are in milliseconds.
+     * <pre>
+     * route.search count=1200 mean=0.812 p50=0.701 p99=3.146 p999=7.864 max=9.201
+     * server.requests 1234
+     * </pre>
+     * @param out the target
+     * @throws IOException if writing fails
+     */
+    public static void writeSnapshot(Appendable out) throws IOException
+    {
+        for (ORTimer timer : new TreeMap<>(timers).values())
+        {
+            ORHistogram.Snapshot snapshot = timer.snapshot();
+            out.append(timer.getName())
+                    .append(" count=").append(Long.toString(snapshot.getCount()))
+                    .append(" mean=").append(millis(snapshot.getMean()))
+                    .append(" p50=").append(millis(snapshot.getValueAtQuantile(0.5)))
+                    .append(" p99=").append(millis(snapshot.getValueAtQuantile(0.99)))
+                    .append(" p999=").append(millis(snapshot.getValueAtQuantile(0.999)))
+                    .append(" max=").append(millis(snapshot.getMax()))
+                    .append('\n');
+        }
+        for (ORCounter counter : new TreeMap<>(counters).values())
+        {
+            out.append(counter.getName()).append(' ').append(Long.toString(counter.get())).append('\n');
+        }
+    }
+
+    /**
+     * Returns all metrics as text, see {@link #writeSnapshot(Appendable)}.
+     * @return the snapshot
+     */
+    public static String snapshot()
+    {
+        StringBuilder builder = new StringBuilder();
+        try
+        {
+            writeSnapshot(builder);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    private static String millis(double nanos)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1E6);
+    }
+}
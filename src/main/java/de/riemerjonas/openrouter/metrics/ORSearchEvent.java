@@ -0,0 +1,40 @@
+package de.riemerjonas.openrouter.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of one Dijkstra search.
+ */
+@Name("openrouter.Search")
+@Label("Search")
+@Category("OpenRouter")
+@Description("Dijkstra search from one node to one or many targets")
+public final class ORSearchEvent extends jdk.jfr.Event
+{
+    @Label("Profile")
+    public String profile;
+
+    @Label("Start Node")
+    public int startNode;
+
+    @Label("Targets")
+    public int targets;
+
+    @Label("Backward")
+    public boolean backward;
+
+    @Label("Status")
+    public String status;
+
+    @Label("Settled Nodes")
+    public int settledNodes;
+
+    @Label("Scanned Edges")
+    public long scannedEdges;
+
+    @Label("Heap Pushes")
+    public long heapPushes;
+}
@@ -0,0 +1,34 @@
+package de.riemerjonas.openrouter.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of snapping a coordinate to its nearest node.
+ */
+@Name("openrouter.Snap")
+@Label("Snap")
+@Category("OpenRouter")
+@Description("Search of the nearest node of a coordinate")
+public final class ORSnapEvent extends jdk.jfr.Event
+{
+    @Label("Latitude")
+    public double latitude;
+
+    @Label("Longitude")
+    public double longitude;
+
+    @Label("Node")
+    @Description("ID of the nearest node, -1 if none was found")
+    public int node;
+
+    @Label("Distance")
+    @Description("Distance to the nearest node in meters")
+    public double distance;
+
+    @Label("Candidates")
+    @Description("Number of nodes in the tile of the coordinate")
+    public int candidates;
+}
@@ -0,0 +1,73 @@
+package de.riemerjonas.openrouter.metrics;
+
+/**
+ * Measures the duration of an operation in nanoseconds into an {@link ORHistogram}.
+ * <pre>
+ * long start = timer.start();
+ * ...
+ * timer.stop(start);
+ * </pre>
+ * While metrics are disabled {@link #start()} does not read the clock and {@link #stop(long)} records nothing.
+ */
+public final class ORTimer
+{
+    private static final long DISABLED = Long.MIN_VALUE;
+
+    private final String name;
+    private final ORHistogram histogram = new ORHistogram();
+
+    ORTimer(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Starts a measurement.
+     * @return the start time to pass to {@link #stop(long)}
+     */
+    public long start()
+    {
+        return ORMetrics.isEnabled() ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Ends a measurement and records its duration.
+     * @param start the value returned by {@link #start()}
+     * @return the duration in nanoseconds, 0 if metrics were disabled at the start
+     */
+    public long stop(long start)
+    {
+        if (start == DISABLED) return 0;
+        long duration = System.nanoTime() - start;
+        histogram.record(duration);
+        return duration;
+    }
+
+    /**
+     * Records a duration measured elsewhere.
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos)
+    {
+        if (ORMetrics.isEnabled()) histogram.record(nanos);
+    }
+
+    /**
+     * Returns the recorded durations in nanoseconds.
+     * @return the snapshot
+     */
+    public ORHistogram.Snapshot snapshot()
+    {
+        return histogram.snapshot();
+    }
+
+    void reset()
+    {
+        histogram.reset();
+    }
+}
@@ -0,0 +1,179 @@
+package de.riemerjonas.openrouter.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON writer.
+ * Values are written directly to the underlying writer, so large responses like route geometries
+ * are never built as a string in memory. Commas are inserted automatically.
+ */
+public class ORJsonWriter
+{
+    private final Writer out;
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public ORJsonWriter(Writer out)
+    {
+        this.out = out;
+    }
+
+    public ORJsonWriter beginObject() throws IOException
+    {
+        open('{');
+        return this;
+    }
+
+    public ORJsonWriter endObject() throws IOException
+    {
+        close('}');
+        return this;
+    }
+
+    public ORJsonWriter beginArray() throws IOException
+    {
+        open('[');
+        return this;
+    }
+
+    public ORJsonWriter endArray() throws IOException
+    {
+        close(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next object member.
+     * @param name the member name
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public ORJsonWriter name(String name) throws IOException
+    {
+        separate();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public ORJsonWriter value(String value) throws IOException
+    {
+        separate();
+        if (value == null) out.write("null");
+        else writeString(value);
+        return this;
+    }
+
+    public ORJsonWriter value(long value) throws IOException
+    {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    public ORJsonWriter value(boolean value) throws IOException
+    {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes a number, non-finite values are written as null.
+     * @param value the value
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public ORJsonWriter value(double value) throws IOException
+    {
+        separate();
+        if (Double.isNaN(value) || Double.isInfinite(value)) out.write("null");
+        else if (value == Math.rint(value) && Math.abs(value) < 1E15) out.write(Long.toString((long) value));
+        else out.write(Double.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a coordinate in E6 format as decimal degrees without floating point formatting.
+     * @param valueE6 the coordinate in E6 format
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public ORJsonWriter valueE6(int valueE6) throws IOException
+    {
+        separate();
+        long abs = Math.abs((long) valueE6);
+        if (valueE6 < 0) out.write('-');
+        out.write(Long.toString(abs / 1_000_000));
+        out.write('.');
+        String fraction = Long.toString(abs % 1_000_000);
+        for (int i = fraction.length(); i < 6; i++) out.write('0');
+        out.write(fraction);
+        return this;
+    }
+
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    private void open(char bracket) throws IOException
+    {
+        separate();
+        out.write(bracket);
+        if (++depth == hasElements.length) hasElements = Arrays.copyOf(hasElements, depth * 2);
+        hasElements[depth] = false;
+    }
+
+    private void close(char bracket) throws IOException
+    {
+        if (depth == 0) throw new IllegalStateException("No open JSON object or array");
+        depth--;
+        out.write(bracket);
+    }
+
+    private void separate() throws IOException
+    {
+        if (afterName)
+        {
+            afterName = false;
+            return;
+        }
+        if (depth > 0)
+        {
+            if (hasElements[depth]) out.write(',');
+            hasElements[depth] = true;
+        }
+    }
+
+    private void writeString(String value) throws IOException
+    {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20)
+                    {
+                        String hex = Integer.toHexString(c);
+                        out.write("\\u");
+                        for (int k = hex.length(); k < 4; k++) out.write('0');
+                        out.write(hex);
+                    }
+                    else out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
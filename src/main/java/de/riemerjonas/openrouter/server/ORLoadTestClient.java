@@ -0,0 +1,175 @@
+package de.riemerjonas.openrouter.server;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test client for {@link ORRoutingServer}.
+ * A number of workers send route requests between random points of a bounding box over kept-alive
+ * connections for a fixed duration. Reports throughput, status codes and latency percentiles.
+ */
+public class ORLoadTestClient
+{
+    private static final String TAG = "ORLoadTestClient";
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    private final String baseUrl;
+    private final int concurrency;
+    private final double minLat, minLon, maxLat, maxLon;
+
+    /**
+     * Creates a new ORLoadTestClient.
+     * @param baseUrl the server URL, e.g. {@code http://localhost:8989}
+     * @param concurrency the number of concurrent workers
+     * @param minLat the minimum latitude of the random points
+     * @param minLon the minimum longitude of the random points
+     * @param maxLat the maximum latitude of the random points
+     * @param maxLon the maximum longitude of the random points
+     */
+    public ORLoadTestClient(String baseUrl, int concurrency, double minLat, double minLon, double maxLat, double maxLon)
+    {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.concurrency = concurrency;
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.maxLat = maxLat;
+        this.maxLon = maxLon;
+    }
+
+    /**
+     * Runs the load test.
+     * @param endpoint {@code route} or {@code nearest}
+     * @param duration the duration of the test
+     * @return the result
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public Result run(String endpoint, Duration duration) throws InterruptedException
+    {
+        ExecutorService workers = ORServerExecutors.newRequestExecutor("ORLoadTestClient", concurrency);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long[] latencies = new long[MAX_SAMPLES];
+        AtomicLong sampleCount = new AtomicLong();
+        AtomicLong ok = new AtomicLong();
+        AtomicLong notFound = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long end = System.nanoTime() + duration.toNanos();
+
+        long start = System.nanoTime();
+        for (int w = 0; w < concurrency; w++)
+        {
+            workers.execute(() -> {
+                while (System.nanoTime() < end)
+                {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + endpoint + "?" + randomQuery(endpoint)))
+                            .timeout(Duration.ofSeconds(30)).GET().build();
+                    long t0 = System.nanoTime();
+                    try
+                    {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() == 200) ok.incrementAndGet();
+                        else if (response.statusCode() == 404) notFound.incrementAndGet();
+                        else failed.incrementAndGet();
+                    }
+                    catch (Exception e)
+                    {
+                        failed.incrementAndGet();
+                        if (e instanceof InterruptedException) return;
+                        continue;
+                    }
+                    long sample = sampleCount.getAndIncrement();
+                    if (sample < MAX_SAMPLES) latencies[(int) sample] = System.nanoTime() - t0;
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(duration.toMillis() + 60_000, TimeUnit.MILLISECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        int samples = (int) Math.min(sampleCount.get(), MAX_SAMPLES);
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        return new Result(ok.get(), notFound.get(), failed.get(), elapsed, sorted);
+    }
+
+    private String randomQuery(String endpoint)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String a = String.format(Locale.ROOT, "%.6f,%.6f", random.nextDouble(minLat, maxLat), random.nextDouble(minLon, maxLon));
+        if (endpoint.equals("nearest")) return "point=" + a;
+        String b = String.format(Locale.ROOT, "%.6f,%.6f", random.nextDouble(minLat, maxLat), random.nextDouble(minLon, maxLon));
+        return "from=" + a + "&to=" + b;
+    }
+
+    /**
+     * Result of a load test.
+     */
+    public static class Result
+    {
+        private final long ok, notFound, failed;
+        private final long elapsedNanos;
+        private final long[] sortedLatencies;
+
+        Result(long ok, long notFound, long failed, long elapsedNanos, long[] sortedLatencies)
+        {
+            this.ok = ok;
+            this.notFound = notFound;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatencies = sortedLatencies;
+        }
+
+        public double getRequestsPerSecond()
+        {
+            return (ok + notFound + failed) / (elapsedNanos / 1E9);
+        }
+
+        /**
+         * Returns a latency percentile.
+         * @param percentile the percentile between 0 and 100
+         * @return the latency in milliseconds
+         */
+        public double getLatencyMillis(double percentile)
+        {
+            if (sortedLatencies.length == 0) return Double.NaN;
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile / 100 * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(0, index)] / 1E6;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(Locale.ROOT, "%.0f req/s, ok=%d, not found=%d, failed=%d, p50=%.2f ms, p99=%.2f ms, max=%.2f ms",
+                    getRequestsPerSecond(), ok, notFound, failed, getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(100));
+        }
+    }
+
+    /**
+     * Runs a load test against a running server.
+     * @param args base URL, concurrency, seconds, minLat, minLon, maxLat, maxLon and optionally the endpoint
+     * @throws InterruptedException if interrupted
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        if (args.length < 7)
+        {
+            System.err.println("Usage: ORLoadTestClient <url> <concurrency> <seconds> <minLat> <minLon> <maxLat> <maxLon> [route|nearest]");
+            return;
+        }
+        ORLoadTestClient client = new ORLoadTestClient(args[0], Integer.parseInt(args[1]),
+                Double.parseDouble(args[3]), Double.parseDouble(args[4]), Double.parseDouble(args[5]), Double.parseDouble(args[6]));
+        String endpoint = args.length > 7 ? args[7] : "route";
+        Result result = client.run(endpoint, Duration.ofSeconds(Long.parseLong(args[2])));
+        OpenRouterLog.i(TAG, endpoint + ": " + result);
+    }
+}
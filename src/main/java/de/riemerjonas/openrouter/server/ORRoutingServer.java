@@ -0,0 +1,675 @@
+package de.riemerjonas.openrouter.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterEdgeMeta;
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterPoint;
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.geometry.ORLineSimplifier;
+import de.riemerjonas.openrouter.core.geometry.ORPolygon;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.core.io.ORRouteWriter;
+import de.riemerjonas.openrouter.core.profiles.RoutingProfileFast;
+import de.riemerjonas.openrouter.core.profiles.RoutingProfileShort;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.algorithm.ORGraphRouter;
+import de.riemerjonas.openrouter.graph.algorithm.ORHubLabels;
+import de.riemerjonas.openrouter.graph.algorithm.ORInstruction;
+import de.riemerjonas.openrouter.graph.algorithm.ORInstructions;
+import de.riemerjonas.openrouter.graph.algorithm.ORIsochrone;
+import de.riemerjonas.openrouter.graph.algorithm.ORIsochrones;
+import de.riemerjonas.openrouter.graph.algorithm.ORRouteDispatcher;
+import de.riemerjonas.openrouter.graph.algorithm.ORRouteResult;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchBudget;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchStats;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchStatus;
+import de.riemerjonas.openrouter.graph.core.ORGraphHandler;
+import de.riemerjonas.openrouter.graph.core.ORGraphHolder;
+import de.riemerjonas.openrouter.metrics.ORCounter;
+import de.riemerjonas.openrouter.metrics.ORMetrics;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Embedded HTTP server for a graph, based on the JDK's {@code com.sun.net.httpserver}.
+ * <p>
+ * Endpoints, all GET with coordinates as {@code lat,lon}:
+ * <ul>
+ *     <li>{@code /route?from=..&to=..&profile=fast} - distance, time, weight, geometry and turn instructions of the route,
+ *     {@code &format=gpx|geojson|polyline|polyline6} streams the geometry in that format instead,
+ *     {@code &tolerance=<meters>} or {@code &zoom=<level>} simplifies the geometry,
+ *     {@code &stats=true} adds the {@link ORSearchStats} of the query to the JSON</li>
+ *     <li>{@code /nearest?point=..} - the nearest graph node</li>
+ *     <li>{@code /matrix?points=..;..;..&profile=fast} - weights between all pairs of points, from the
+ *     {@link ORHubLabels} of the profile if the graph has them</li>
+ *     <li>{@code /isochrone?point=..&minutes=5,10,15&profile=fast} - GeoJSON feature collection with the area reachable
+ *     within each time as MultiPolygon, {@code &cell=<meters>} sets the resolution</li>
+ *     <li>{@code /health} - size of the served graph</li>
+ *     <li>{@code /metrics} - text snapshot of {@link ORMetrics}</li>
+ * </ul>
+ * Responses are streamed as chunked JSON, connections are kept alive. Requests run on virtual threads if the
+ * runtime supports them, see {@link ORServerExecutors}. The graph is served through an {@link ORGraphHolder},
+ * so it can be swapped while the server is running.
+ */
+public class ORRoutingServer implements AutoCloseable
+{
+    private static final String TAG = "ORRoutingServer";
+    private static final ORCounter REQUESTS = ORMetrics.counter("server.requests");
+    private static final ORCounter REJECTED = ORMetrics.counter("server.rejected");
+    private static final ORCounter ERRORS = ORMetrics.counter("server.errors");
+    public static final int DEFAULT_PORT = 8989;
+    public static final int MAX_MATRIX_POINTS = 100;
+    public static final int MAX_ISOCHRONE_LIMITS = 10;
+    public static final int MAX_ISOCHRONE_MINUTES = 120;
+    public static final ORSearchBudget DEFAULT_BUDGET = ORSearchBudget.UNLIMITED.withTimeout(Duration.ofSeconds(10));
+
+    private final ORGraphHolder holder;
+    private final Map<String, IRoutingProfile> profiles = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+    private volatile ORRouteDispatcher dispatcher;
+    private volatile ORSearchBudget budget = DEFAULT_BUDGET;
+
+    /**
+     * Creates a new ORRoutingServer with the profiles {@code fast} and {@code short}.
+     * @param holder the holder of the served graph
+     */
+    public ORRoutingServer(ORGraphHolder holder)
+    {
+        this.holder = holder;
+        profiles.put("fast", new RoutingProfileFast());
+        profiles.put("short", new RoutingProfileShort());
+    }
+
+    /**
+     * Registers a routing profile, selected by the {@code profile} parameter.
+     * @param name the parameter value
+     * @param profile the profile
+     */
+    public void registerProfile(String name, IRoutingProfile profile)
+    {
+        profiles.put(name, profile);
+    }
+
+    /**
+     * Sets the limits of every search. Searches exceeding them are answered with status 422.
+     * Requests routed through a dispatcher use the budget of the dispatcher.
+     * @param budget the budget
+     */
+    public void setBudget(ORSearchBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    /**
+     * Routes requests to {@code /route} through a dispatcher, which answers concurrent requests from the same
+     * start node with a single search. Must be set before {@link #start(int)}.
+     * @param dispatcher the dispatcher, null to route every request on its own
+     */
+    public void setDispatcher(ORRouteDispatcher dispatcher)
+    {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Starts the server.
+     * @param port the port, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start(int port) throws IOException
+    {
+        if (server != null) throw new IllegalStateException("Server is already running");
+        // small chunked responses on kept-alive connections must not wait for delayed ACKs
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        executor = ORServerExecutors.newRequestExecutor("ORRoutingServer", Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+        server.setExecutor(executor);
+        server.createContext("/route", exchange -> handle(exchange, this::route));
+        server.createContext("/nearest", exchange -> handle(exchange, this::nearest));
+        server.createContext("/matrix", exchange -> handle(exchange, this::matrix));
+        server.createContext("/isochrone", exchange -> handle(exchange, this::isochrone));
+        server.createContext("/health", exchange -> handle(exchange, this::health));
+        server.createContext("/metrics", ORRoutingServer::metrics);
+        server.start();
+        OpenRouterLog.i(TAG, "Listening on port " + getPort() + (ORServerExecutors.hasVirtualThreads() ? " with virtual threads" : ""));
+    }
+
+    /**
+     * Returns the bound port.
+     * @return the port
+     */
+    public synchronized int getPort()
+    {
+        if (server == null) throw new IllegalStateException("Server is not running");
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, running requests get one second to finish.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (server == null) return;
+        server.stop(1);
+        executor.shutdownNow();
+        server = null;
+        OpenRouterLog.i(TAG, "Stopped");
+    }
+
+    // --- Endpoints ---
+
+    private Body route(Map<String, String> params, OpenRouterGraph graph) throws RequestException
+    {
+        OpenRouterPoint from = parsePoint(params, "from");
+        OpenRouterPoint to = parsePoint(params, "to");
+        IRoutingProfile profile = parseProfile(params);
+        String format = params.getOrDefault("format", "json");
+        ORRouteWriter writer = format.equals("json") ? null : ORRouteWriter.forName(format);
+        if (writer == null && !format.equals("json")) throw new RequestException(400, "Unknown format: " + format);
+
+        double tolerance = parseTolerance(params, from);
+
+        ORRouteResult result;
+        if (Boolean.parseBoolean(params.get("stats")))
+        {
+            // searched on its own, a batched search would mix the statistics of several queries
+            result = ORGraphRouter.searchRoute(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude(),
+                    graph, profile, budget, new ORSearchStats());
+        }
+        else
+        {
+            // the dispatcher routes on the graph of this request's lease, which the instructions are built from
+            result = dispatcher != null ? await(dispatcher.submit(graph, from, to, profile)) : ORGraphRouter.searchRoute(from, to, graph, profile, budget);
+        }
+        OpenRouterRoute route = getRoute(result);
+        ORSearchStats stats = result.getStats();
+        List<OpenRouterPoint> geometry = route.getGeometry(tolerance);
+
+        if (writer != null)
+        {
+            return (exchange, status) -> {
+                exchange.getResponseHeaders().set("Content-Type", writer.getContentType());
+                exchange.sendResponseHeaders(status, 0);
+                try (OutputStream out = exchange.getResponseBody())
+                {
+                    writer.write(route, geometry, "route", out);
+                }
+            };
+        }
+        List<ORInstruction> instructions = ORInstructions.create(route, graph);
+        return (JsonBody) json -> {
+            double time = 0;
+            for (OpenRouterEdge edge : route.getEdges()) time += OpenRouterEdgeMeta.travelTimeSeconds(edge.getMetaData());
+            json.beginObject()
+                    .name("distance").value(Math.round(route.getDistanceMeter() * 10) / 10.0)
+                    .name("time").value(Math.round(time * 10) / 10.0)
+                    .name("weight").value(route.getWeight())
+                    .name("geometry").beginArray();
+            for (OpenRouterPoint point : geometry)
+            {
+                json.beginArray().valueE6(point.getLatitudeE6()).valueE6(point.getLongitudeE6()).endArray();
+            }
+            json.endArray().name("instructions").beginArray();
+            for (ORInstruction instruction : instructions)
+            {
+                json.beginObject()
+                        .name("turn").value(instruction.getTurn().name())
+                        .name("angle").value(instruction.getTurnAngle())
+                        .name("distance").value(Math.round(instruction.getDistanceFromStart() * 10) / 10.0)
+                        .name("lat").valueE6(instruction.getNode().getLatitudeE6())
+                        .name("lon").valueE6(instruction.getNode().getLongitudeE6())
+                        .endObject();
+            }
+            json.endArray();
+            if (stats != null) writeStats(json, stats);
+            json.endObject();
+        };
+    }
+
+    private static void writeStats(ORJsonWriter json, ORSearchStats stats) throws IOException
+    {
+        json.name("stats").beginObject()
+                .name("snapMicros").value(stats.getSnapNanos() / 1000)
+                .name("searchMicros").value(stats.getSearchNanos() / 1000)
+                .name("unpackMicros").value(stats.getUnpackNanos() / 1000)
+                .name("startSnapDistance").value(Math.round(stats.getStartSnapDistance() * 10) / 10.0)
+                .name("endSnapDistance").value(Math.round(stats.getEndSnapDistance() * 10) / 10.0)
+                .name("snapCandidates").value(stats.getSnapCandidates())
+                .name("settledNodes").value(stats.getSettledNodes())
+                .name("scannedEdges").value(stats.getScannedEdges())
+                .name("relaxedEdges").value(stats.getRelaxedEdges())
+                .name("heapPushes").value(stats.getHeapPushes())
+                .name("heapPops").value(stats.getHeapPops())
+                .endObject();
+    }
+
+    private static OpenRouterRoute getRoute(ORRouteResult result) throws RequestException
+    {
+        switch (result.getStatus())
+        {
+            case FOUND: return result.getRoute();
+            case BUDGET_EXCEEDED: throw new RequestException(422, "Search budget exceeded");
+            case CANCELLED: throw new RequestException(503, "Search cancelled");
+            default: throw new RequestException(404, "No route found");
+        }
+    }
+
+    private static ORRouteResult await(Future<ORRouteResult> future) throws RequestException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RequestException(503, "Interrupted");
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IllegalStateException) throw new RequestException(503, e.getCause().getMessage());
+            throw new IllegalStateException("Routing failed", e.getCause());
+        }
+    }
+
+    private JsonBody nearest(Map<String, String> params, OpenRouterGraph graph) throws RequestException
+    {
+        OpenRouterPoint point = parsePoint(params, "point");
+        OpenRouterNode node = graph.getNearestNode(point);
+        if (node == null) throw new RequestException(404, "No node found");
+
+        return json -> json.beginObject()
+                .name("id").value(node.getId())
+                .name("lat").valueE6(node.getLatitudeE6())
+                .name("lon").valueE6(node.getLongitudeE6())
+                .name("distance").value(Math.round(node.distanceTo(point) * 10) / 10.0)
+                .endObject();
+    }
+
+    private JsonBody matrix(Map<String, String> params, OpenRouterGraph graph) throws RequestException
+    {
+        String value = params.get("points");
+        if (value == null) throw new RequestException(400, "Missing parameter: points");
+        String[] parts = value.split(";");
+        if (parts.length < 2 || parts.length > MAX_MATRIX_POINTS)
+        {
+            throw new RequestException(400, "Matrix needs 2 to " + MAX_MATRIX_POINTS + " points");
+        }
+        List<OpenRouterPoint> points = new ArrayList<>(parts.length);
+        for (String part : parts) points.add(parsePoint(part, "points"));
+        IRoutingProfile profile = parseProfile(params);
+
+        // one search per row instead of one per pair
+        int[] nodeIds = new int[points.size()];
+        for (int i = 0; i < points.size(); i++)
+        {
+            OpenRouterNode node = graph.getNearestNode(points.get(i));
+            nodeIds[i] = node != null ? node.getId() : -1;
+        }
+        double[][] weights = new double[points.size()][points.size()];
+        ORHubLabels labels = graph.getHubLabels(profile);
+        if (labels != null)
+        {
+            // label intersections, no search at all
+            for (int i = 0; i < points.size(); i++)
+            {
+                for (int j = 0; j < points.size(); j++)
+                {
+                    if (i == j) continue;
+                    double weight = nodeIds[i] >= 0 && nodeIds[j] >= 0 ? labels.getWeight(nodeIds[i], nodeIds[j]) : Double.POSITIVE_INFINITY;
+                    weights[i][j] = Double.isInfinite(weight) ? Double.NaN : weight;
+                }
+            }
+        }
+        else
+        {
+            for (int i = 0; i < points.size(); i++)
+            {
+                ORRouteResult[] results = ORGraphRouter.searchRoutes(nodeIds[i], nodeIds, graph, profile, budget);
+                for (int j = 0; j < points.size(); j++)
+                {
+                    if (i == j) continue;
+                    ORSearchStatus status = results[j].getStatus();
+                    // a stopped search rejects the whole matrix
+                    if (status == ORSearchStatus.BUDGET_EXCEEDED || status == ORSearchStatus.CANCELLED) getRoute(results[j]);
+                    weights[i][j] = results[j].isFound() ? results[j].getRoute().getWeight() : Double.NaN;
+                }
+            }
+        }
+
+        return json -> {
+            json.beginObject().name("weights").beginArray();
+            for (double[] row : weights)
+            {
+                json.beginArray();
+                for (double weight : row) json.value(weight);
+                json.endArray();
+            }
+            json.endArray().endObject();
+        };
+    }
+
+    private JsonBody isochrone(Map<String, String> params, OpenRouterGraph graph) throws RequestException
+    {
+        OpenRouterPoint point = parsePoint(params, "point");
+        IRoutingProfile profile = parseProfile(params);
+        String value = params.get("minutes");
+        if (value == null) throw new RequestException(400, "Missing parameter: minutes");
+        String[] parts = value.split(",");
+        if (parts.length > MAX_ISOCHRONE_LIMITS) throw new RequestException(400, "At most " + MAX_ISOCHRONE_LIMITS + " limits");
+        double[] limits = new double[parts.length];
+        double cell;
+        try
+        {
+            for (int i = 0; i < parts.length; i++)
+            {
+                double minutes = Double.parseDouble(parts[i].trim());
+                if (!(minutes > 0 && minutes <= MAX_ISOCHRONE_MINUTES)) throw new NumberFormatException();
+                limits[i] = minutes * 60;
+            }
+            cell = Double.parseDouble(params.getOrDefault("cell", "0"));
+            if (!(cell >= 0)) throw new NumberFormatException();
+        }
+        catch (NumberFormatException e)
+        {
+            throw new RequestException(400, "Minutes must be between 0 and " + MAX_ISOCHRONE_MINUTES + ", cell must be positive");
+        }
+
+        OpenRouterNode start = graph.getNearestNode(point);
+        if (start == null) throw new RequestException(404, "No node found");
+        ORIsochrones result = ORIsochrones.compute(graph, start.getId(), profile, budget, cell, limits);
+        switch (result.getStatus())
+        {
+            case FOUND: break;
+            case BUDGET_EXCEEDED: throw new RequestException(422, "Search budget exceeded");
+            case CANCELLED: throw new RequestException(503, "Search cancelled");
+            default: throw new RequestException(404, "No node found");
+        }
+
+        return json -> {
+            json.beginObject().name("type").value("FeatureCollection").name("features").beginArray();
+            for (ORIsochrone isochrone : result.getIsochrones())
+            {
+                json.beginObject().name("type").value("Feature")
+                        .name("properties").beginObject()
+                        .name("minutes").value(isochrone.getLimitSeconds() / 60)
+                        .name("area").value(Math.round(isochrone.getArea()))
+                        .endObject()
+                        .name("geometry").beginObject().name("type").value("MultiPolygon").name("coordinates").beginArray();
+                for (ORPolygon polygon : isochrone.getPolygons())
+                {
+                    json.beginArray();
+                    writeRing(json, polygon.getOuter());
+                    for (List<OpenRouterPoint> hole : polygon.getHoles()) writeRing(json, hole);
+                    json.endArray();
+                }
+                json.endArray().endObject().endObject();
+            }
+            json.endArray().endObject();
+        };
+    }
+
+    private static void writeRing(ORJsonWriter json, List<OpenRouterPoint> ring) throws IOException
+    {
+        // GeoJSON positions are longitude first
+        json.beginArray();
+        for (OpenRouterPoint point : ring)
+        {
+            json.beginArray().valueE6(point.getLongitudeE6()).valueE6(point.getLatitudeE6()).endArray();
+        }
+        json.endArray();
+    }
+
+    private JsonBody health(Map<String, String> params, OpenRouterGraph graph)
+    {
+        int nodes = graph.getNodes().size();
+        int edges = graph.getEdges().size();
+        return json -> json.beginObject()
+                .name("status").value("ok")
+                .name("nodes").value(nodes)
+                .name("edges").value(edges)
+                .endObject();
+    }
+
+    // --- Request handling ---
+
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException
+    {
+        REQUESTS.increment();
+        try (exchange)
+        {
+            // the request body must be consumed for the connection to be reused
+            exchange.getRequestBody().readAllBytes();
+            if (!"GET".equals(exchange.getRequestMethod()))
+            {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+
+            ORGraphHolder.Lease lease;
+            try
+            {
+                lease = holder.acquire();
+            }
+            catch (IllegalStateException e)
+            {
+                sendError(exchange, 503, "No graph loaded");
+                return;
+            }
+            try (lease)
+            {
+                Body body;
+                try
+                {
+                    body = endpoint.handle(parseQuery(exchange.getRequestURI().getRawQuery()), lease.getGraph());
+                }
+                catch (RequestException e)
+                {
+                    REJECTED.increment();
+                    sendError(exchange, e.status, e.getMessage());
+                    return;
+                }
+                long start = ORMetrics.SERIALIZE.start();
+                body.send(exchange, 200);
+                ORMetrics.SERIALIZE.stop(start);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            ERRORS.increment();
+            OpenRouterLog.e(TAG, "Request failed: " + exchange.getRequestURI(), e);
+            try
+            {
+                sendError(exchange, 500, "Internal error");
+            }
+            catch (IOException | RuntimeException ignored)
+            {
+                // headers were already sent
+            }
+        }
+    }
+
+    /**
+     * Answers {@code /metrics}, also while no graph is loaded.
+     */
+    private static void metrics(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = ORMetrics.snapshot().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException
+    {
+        JsonBody body = json -> json.beginObject().name("error").value(message).endObject();
+        body.send(exchange, status);
+    }
+
+    private static Map<String, String> parseQuery(String query)
+    {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) return params;
+        for (String pair : query.split("&"))
+        {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static OpenRouterPoint parsePoint(Map<String, String> params, String name) throws RequestException
+    {
+        String value = params.get(name);
+        if (value == null) throw new RequestException(400, "Missing parameter: " + name);
+        return parsePoint(value, name);
+    }
+
+    private static OpenRouterPoint parsePoint(String value, String name) throws RequestException
+    {
+        int comma = value.indexOf(',');
+        try
+        {
+            if (comma < 0) throw new NumberFormatException();
+            double lat = Double.parseDouble(value.substring(0, comma).trim());
+            double lon = Double.parseDouble(value.substring(comma + 1).trim());
+            if (Math.abs(lat) > 90 || Math.abs(lon) > 180) throw new NumberFormatException();
+            return new OpenRouterPoint(lat, lon);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new RequestException(400, "Invalid coordinate for " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Reads the simplification tolerance from {@code tolerance} in meters or from {@code zoom}.
+     * @return the tolerance in meters, 0 for the full geometry
+     */
+    private static double parseTolerance(Map<String, String> params, OpenRouterPoint location) throws RequestException
+    {
+        String tolerance = params.get("tolerance");
+        String zoom = params.get("zoom");
+        try
+        {
+            if (tolerance != null)
+            {
+                double value = Double.parseDouble(tolerance);
+                if (!(value >= 0)) throw new NumberFormatException();
+                return value;
+            }
+            if (zoom != null) return ORLineSimplifier.toleranceForZoom(Integer.parseInt(zoom), location.getLatitude());
+            return 0;
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new RequestException(400, "Invalid tolerance or zoom");
+        }
+    }
+
+    private IRoutingProfile parseProfile(Map<String, String> params) throws RequestException
+    {
+        String name = params.getOrDefault("profile", "fast");
+        IRoutingProfile profile = profiles.get(name);
+        if (profile == null) throw new RequestException(400, "Unknown profile: " + name);
+        return profile;
+    }
+
+    /**
+     * Handles the parameters of a request and returns the response body.
+     */
+    private interface Endpoint
+    {
+        Body handle(Map<String, String> params, OpenRouterGraph graph) throws RequestException;
+    }
+
+    /**
+     * Sends the response headers and body, called while the graph lease is still held.
+     */
+    private interface Body
+    {
+        void send(HttpExchange exchange, int status) throws IOException;
+    }
+
+    /**
+     * Writes a JSON response body.
+     */
+    private interface JsonBody extends Body
+    {
+        void write(ORJsonWriter json) throws IOException;
+
+        @Override
+        default void send(HttpExchange exchange, int status) throws IOException
+        {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, 0);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 8192);
+            ORJsonWriter json = new ORJsonWriter(writer);
+            write(json);
+            json.flush();
+            writer.close();
+        }
+    }
+
+    /**
+     * Rejects a request with an HTTP status.
+     */
+    private static class RequestException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        RequestException(int status, String message)
+        {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Serves a graph file.
+     * @param args the graph file and optionally the port
+     * @throws IOException if the server cannot be started
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: ORRoutingServer <graph file> [port]");
+            return;
+        }
+        OpenRouterGraph graph = ORGraphHandler.load(new File(args[0]));
+        if (graph == null) return;
+
+        ORGraphHolder holder = new ORGraphHolder(graph);
+        ORRoutingServer server = new ORRoutingServer(holder);
+        ORRouteDispatcher dispatcher = new ORRouteDispatcher(holder);
+        dispatcher.setBudget(DEFAULT_BUDGET);
+        server.setDispatcher(dispatcher);
+        server.start(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+    }
+}
@@ -0,0 +1,76 @@
+package de.riemerjonas.openrouter.server;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors for request handling.
+ * On Java 21 and newer every request runs on its own virtual thread. The project targets Java 17, so the
+ * virtual thread executor is looked up by reflection; on older runtimes a bounded pool of platform threads is used.
+ */
+public final class ORServerExecutors
+{
+    private static final String TAG = "ORServerExecutors";
+
+    private ORServerExecutors()
+    {
+    }
+
+    /**
+     * Returns true if the runtime supports virtual threads.
+     * @return true on Java 21 and newer
+     */
+    public static boolean hasVirtualThreads()
+    {
+        return findVirtualThreadFactory() != null;
+    }
+
+    /**
+     * Creates an executor running each task on a new virtual thread, or a pool of platform threads as fallback.
+     * @param name the name prefix of platform threads
+     * @param platformThreads the number of platform threads used without virtual thread support
+     * @return the executor
+     */
+    public static ExecutorService newRequestExecutor(String name, int platformThreads)
+    {
+        Method factory = findVirtualThreadFactory();
+        if (factory != null)
+        {
+            try
+            {
+                return (ExecutorService) factory.invoke(null);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                OpenRouterLog.w(TAG, "Unable to create virtual thread executor: " + e.getMessage());
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(platformThreads, platformThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static Method findVirtualThreadFactory()
+    {
+        try
+        {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package de.riemerjonas.openrouter.server.shard;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdge;
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterShapeStore;
+import de.riemerjonas.openrouter.core.OpenRouterTileMap;
+import de.riemerjonas.openrouter.core.collections.ORIntArrayList;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.core.profiles.RoutingProfileFast;
+import de.riemerjonas.openrouter.core.profiles.RoutingProfileShort;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.algorithm.ORDijkstra;
+import de.riemerjonas.openrouter.graph.core.ORAdjacency;
+import de.riemerjonas.openrouter.graph.core.ORGraphExtractor;
+import de.riemerjonas.openrouter.graph.core.ORGraphHandler;
+
+import java.io.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Splits a graph into shards for {@link ORShardServer} processes and writes the {@link ORShardOverlay} for the
+ * {@link ORShardCoordinator}.
+ * <p>
+ * Shards are contiguous ranges of tiles with about the same number of nodes. A shard keeps its nodes and the edges
+ * between them, edges between shards become cross edges of the overlay and their nodes boundary nodes.
+ * For every profile and shard the weights between all boundary nodes inside the shard are precomputed, with one
+ * one-to-many search per boundary node.
+ * <p>
+ * Files in the output directory: {@code shard-<n>.graph} with its sidecar files, {@code shard-<n>.ids} with the
+ * global node IDs of the shard and {@code overlay.shards}.
+ */
+public class ORShardBuilder
+{
+    private static final String TAG = "ORShardBuilder";
+    private static final int IDS_MAGIC = 0x4F525349; // ORSI
+
+    /**
+     * Returns the profiles built by default, {@code fast} and {@code short}.
+     * @return the profiles by name
+     */
+    public static Map<String, IRoutingProfile> createDefaultProfiles()
+    {
+        Map<String, IRoutingProfile> profiles = new LinkedHashMap<>();
+        profiles.put("fast", new RoutingProfileFast());
+        profiles.put("short", new RoutingProfileShort());
+        return profiles;
+    }
+
+    public static File getOverlayFile(File directory)
+    {
+        return new File(directory, "overlay.shards");
+    }
+
+    public static File getGraphFile(File directory, int shard)
+    {
+        return new File(directory, "shard-" + shard + ".graph");
+    }
+
+    static File getIdsFile(File directory, int shard)
+    {
+        return new File(directory, "shard-" + shard + ".ids");
+    }
+
+    /**
+     * Splits the graph and writes all shard files.
+     * @param graph the graph
+     * @param shardCount the number of shards
+     * @param profiles the profiles to precompute boundary tables for
+     * @param directory the output directory
+     * @return the overlay
+     * @throws IOException if writing fails
+     */
+    public static ORShardOverlay build(OpenRouterGraph graph, int shardCount, Map<String, IRoutingProfile> profiles, File directory) throws IOException
+    {
+        if (shardCount < 1) throw new IllegalArgumentException("Shard count must be positive");
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create directory " + directory);
+
+        short[] shardStartTiles = partitionTiles(graph.getTileMap(), shardCount);
+        ORAdjacency adjacency = graph.getAdjacency();
+        int[] shardOf = new int[adjacency.getNodeCount()];
+        Arrays.fill(shardOf, -1);
+        for (int id = 0; id < adjacency.getNodeCount(); id++)
+        {
+            OpenRouterNode node = adjacency.getNode(id);
+            if (node != null) shardOf[id] = ORShardOverlay.getShardOfTile(OpenRouterTileMap.getTileID(node.getCoordinate()), shardStartTiles);
+        }
+
+        // cross edges and boundary nodes
+        List<OpenRouterEdge> edges = graph.getEdges();
+        OpenRouterShapeStore shapes = graph.getShapeStore();
+        ORIntArrayList crossEdges = new ORIntArrayList();
+        boolean[] boundary = new boolean[adjacency.getNodeCount()];
+        for (int i = 0; i < edges.size(); i++)
+        {
+            OpenRouterEdge edge = edges.get(i);
+            if (shardOf[edge.getFromID()] == shardOf[edge.getToID()]) continue;
+            crossEdges.add(i);
+            boundary[edge.getFromID()] = true;
+            boundary[edge.getToID()] = true;
+        }
+        int[] crossFrom = new int[crossEdges.size()];
+        int[] crossTo = new int[crossEdges.size()];
+        long[] crossMeta = new long[crossEdges.size()];
+        int[][] crossLat = new int[crossEdges.size()][];
+        int[][] crossLon = new int[crossEdges.size()][];
+        for (int c = 0; c < crossEdges.size(); c++)
+        {
+            OpenRouterEdge edge = edges.get(crossEdges.get(c));
+            crossFrom[c] = edge.getFromID();
+            crossTo[c] = edge.getToID();
+            crossMeta[c] = edge.getMetaData();
+            int shapeCount = shapes != null ? shapes.getPointCount(edge.getShapeRef()) : 0;
+            crossLat[c] = new int[shapeCount + 2];
+            crossLon[c] = new int[shapeCount + 2];
+            OpenRouterNode from = adjacency.getNode(edge.getFromID());
+            OpenRouterNode to = adjacency.getNode(edge.getToID());
+            crossLat[c][0] = from.getLatitudeE6();
+            crossLon[c][0] = from.getLongitudeE6();
+            for (int p = 0; p < shapeCount; p++)
+            {
+                crossLat[c][p + 1] = shapes.getLatitudeE6(edge.getShapeRef(), p);
+                crossLon[c][p + 1] = shapes.getLongitudeE6(edge.getShapeRef(), p);
+            }
+            crossLat[c][shapeCount + 1] = to.getLatitudeE6();
+            crossLon[c][shapeCount + 1] = to.getLongitudeE6();
+        }
+
+        int[][] boundaryIds = new int[shardCount][];
+        Map<String, float[][]> tables = new LinkedHashMap<>();
+        for (String name : profiles.keySet()) tables.put(name, new float[shardCount][]);
+
+        for (int shard = 0; shard < shardCount; shard++)
+        {
+            ORIntArrayList globalIds = new ORIntArrayList();
+            ORIntArrayList boundaryGlobal = new ORIntArrayList();
+            ORIntArrayList boundaryLocal = new ORIntArrayList();
+            for (int id = 0; id < shardOf.length; id++)
+            {
+                if (shardOf[id] != shard) continue;
+                if (boundary[id])
+                {
+                    boundaryGlobal.add(id);
+                    boundaryLocal.add(globalIds.size());
+                }
+                globalIds.add(id);
+            }
+            boundaryIds[shard] = boundaryGlobal.toArray();
+
+            int current = shard;
+            OpenRouterGraph shardGraph = ORGraphExtractor.extract(graph, id -> shardOf[id] == current);
+            ORGraphHandler.save(getGraphFile(directory, shard), shardGraph);
+            writeIds(getIdsFile(directory, shard), globalIds.toArray(), boundaryIds[shard]);
+
+            int[] locals = boundaryLocal.toArray();
+            for (Map.Entry<String, IRoutingProfile> profile : profiles.entrySet())
+            {
+                tables.get(profile.getKey())[shard] = computeTable(shardGraph, locals, profile.getValue());
+            }
+            OpenRouterLog.i(TAG, "Shard " + shard + ": " + globalIds.size() + " nodes, " + shardGraph.getEdges().size()
+                    + " edges, " + locals.length + " boundary nodes");
+        }
+
+        ORShardOverlay overlay = new ORShardOverlay(shardStartTiles, boundaryIds, crossFrom, crossTo, crossMeta, crossLat, crossLon, tables);
+        overlay.save(getOverlayFile(directory));
+        OpenRouterLog.i(TAG, "Wrote " + shardCount + " shards with " + crossFrom.length + " cross edges to " + directory);
+        return overlay;
+    }
+
+    /**
+     * Splits the sorted tiles into ranges with about the same number of nodes.
+     * @return the first tile of every shard, the first shard starts at the minimum tile ID
+     */
+    static short[] partitionTiles(OpenRouterTileMap tileMap, int shardCount)
+    {
+        Map<Short, List<OpenRouterNode>> tiles = tileMap.getTileMap();
+        if (tiles.size() < shardCount)
+        {
+            throw new IllegalArgumentException("Cannot split " + tiles.size() + " tiles into " + shardCount + " shards");
+        }
+        short[] sorted = new short[tiles.size()];
+        long total = 0;
+        int n = 0;
+        for (Map.Entry<Short, List<OpenRouterNode>> tile : tiles.entrySet())
+        {
+            sorted[n++] = tile.getKey();
+            total += tile.getValue().size();
+        }
+        Arrays.sort(sorted);
+
+        short[] starts = new short[shardCount];
+        starts[0] = Short.MIN_VALUE;
+        int shard = 0;
+        long before = 0;
+        for (int i = 0; i < sorted.length && shard < shardCount - 1; i++)
+        {
+            boolean full = before >= (shard + 1) * total / shardCount;
+            boolean lastTiles = sorted.length - i == shardCount - 1 - shard;
+            if (i > 0 && (full || lastTiles)) starts[++shard] = sorted[i];
+            before += tiles.get(sorted[i]).size();
+        }
+        return starts;
+    }
+
+    private static float[] computeTable(OpenRouterGraph shardGraph, int[] boundaryLocal, IRoutingProfile profile)
+    {
+        int n = boundaryLocal.length;
+        float[] table = new float[n * n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            try (ORDijkstra dijkstra = ORDijkstra.acquire(shardGraph))
+            {
+                dijkstra.search(boundaryLocal[i], boundaryLocal, profile);
+                for (int j = 0; j < n; j++) table[i * n + j] = (float) dijkstra.getWeight(boundaryLocal[j]);
+            }
+        });
+        return table;
+    }
+
+    static void writeIds(File file, int[] globalIds, int[] boundaryIds) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+        {
+            out.writeInt(IDS_MAGIC);
+            ORShardOverlay.writeInts(out, globalIds);
+            ORShardOverlay.writeInts(out, boundaryIds);
+        }
+    }
+
+    /**
+     * Reads the ID file of a shard.
+     * @return the global IDs indexed by local ID and the global IDs of the boundary nodes
+     */
+    static int[][] readIds(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+        {
+            if (in.readInt() != IDS_MAGIC) throw new IOException("Not a shard ID file: " + file);
+            return new int[][]{ORShardOverlay.readInts(in), ORShardOverlay.readInts(in)};
+        }
+    }
+
+    /**
+     * Splits a graph file.
+     * @param args the graph file, the number of shards and the output directory
+     * @throws IOException if writing fails
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 3)
+        {
+            System.err.println("Usage: ORShardBuilder <graph file> <shard count> <output directory>");
+            return;
+        }
+        OpenRouterGraph graph = ORGraphHandler.load(new File(args[0]));
+        if (graph == null) return;
+        build(graph, Integer.parseInt(args[1]), createDefaultProfiles(), new File(args[2]));
+    }
+}
@@ -0,0 +1,190 @@
+package de.riemerjonas.openrouter.server.shard;
+
+import de.riemerjonas.openrouter.core.OpenRouterPoint;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchStatus;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Connection to one {@link ORShardServer}. Idle connections are pooled, so concurrent requests use separate
+ * connections and sequential requests reuse them. A connection failing during a request is discarded.
+ */
+class ORShardClient implements Closeable
+{
+    private static final ORSearchStatus[] STATUSES = ORSearchStatus.values();
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final InetSocketAddress address;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    ORShardClient(InetSocketAddress address)
+    {
+        this.address = address;
+    }
+
+    /**
+     * Weights between a node and all boundary nodes of its shard.
+     */
+    static final class SearchResult
+    {
+        final ORSearchStatus status;
+        final double[] boundaryWeights;
+        final double targetWeight;
+
+        SearchResult(ORSearchStatus status, double[] boundaryWeights, double targetWeight)
+        {
+            this.status = status;
+            this.boundaryWeights = boundaryWeights;
+            this.targetWeight = targetWeight;
+        }
+    }
+
+    int snap(double latitude, double longitude) throws IOException
+    {
+        Connection connection = borrow();
+        try
+        {
+            connection.out.writeByte(ORShardProtocol.SNAP);
+            connection.out.writeDouble(latitude);
+            connection.out.writeDouble(longitude);
+            connection.send();
+            int id = connection.in.readInt();
+            release(connection);
+            return id;
+        }
+        catch (IOException e)
+        {
+            connection.close();
+            throw e;
+        }
+    }
+
+    SearchResult search(String profile, int node, boolean backward, int target) throws IOException
+    {
+        Connection connection = borrow();
+        try
+        {
+            connection.out.writeByte(ORShardProtocol.SEARCH);
+            connection.out.writeUTF(profile);
+            connection.out.writeInt(node);
+            connection.out.writeBoolean(backward);
+            connection.out.writeInt(target);
+            connection.send();
+            ORSearchStatus status = STATUSES[connection.in.readByte()];
+            double[] weights = new double[connection.in.readInt()];
+            for (int i = 0; i < weights.length; i++) weights[i] = connection.in.readDouble();
+            double targetWeight = connection.in.readDouble();
+            release(connection);
+            return new SearchResult(status, weights, targetWeight);
+        }
+        catch (IOException e)
+        {
+            connection.close();
+            throw e;
+        }
+    }
+
+    ORShardRoute segment(String profile, int from, int to) throws IOException
+    {
+        Connection connection = borrow();
+        try
+        {
+            connection.out.writeByte(ORShardProtocol.SEGMENT);
+            connection.out.writeUTF(profile);
+            connection.out.writeInt(from);
+            connection.out.writeInt(to);
+            connection.send();
+            ORSearchStatus status = STATUSES[connection.in.readByte()];
+            ORShardRoute route = ORShardRoute.of(status);
+            if (status == ORSearchStatus.FOUND)
+            {
+                double weight = connection.in.readDouble();
+                double distance = connection.in.readDouble();
+                int count = connection.in.readInt();
+                List<OpenRouterPoint> geometry = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) geometry.add(new OpenRouterPoint(connection.in.readInt(), connection.in.readInt()));
+                route = new ORShardRoute(status, weight, distance, geometry);
+            }
+            release(connection);
+            return route;
+        }
+        catch (IOException e)
+        {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private Connection borrow() throws IOException
+    {
+        if (closed) throw new IOException("Client is closed");
+        Connection connection = idle.poll();
+        return connection != null ? connection : new Connection(address);
+    }
+
+    private void release(Connection connection)
+    {
+        idle.add(connection);
+        if (closed && idle.remove(connection)) connection.close();
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) connection.close();
+    }
+
+    private static final class Connection
+    {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException
+        {
+            socket = new Socket();
+            try
+            {
+                socket.setTcpNoDelay(true);
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            }
+            catch (IOException e)
+            {
+                socket.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Flushes the request and reads the response header.
+         * @throws IOException if the shard answered with an error
+         */
+        void send() throws IOException
+        {
+            out.flush();
+            if (in.readByte() == ORShardProtocol.ERROR) throw new IOException("Shard error: " + in.readUTF());
+        }
+
+        void close()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ignored)
+            {
+                // already broken
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package de.riemerjonas.openrouter.server.shard;
+
+import de.riemerjonas.openrouter.core.OpenRouterEdgeMeta;
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterPoint;
+import de.riemerjonas.openrouter.core.ifaces.IGeoCoordinate;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchStatus;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers route queries over shards served by {@link ORShardServer} processes.
+ * <p>
+ * A query asks the shard of the start for the weights from the start to its boundary nodes and the shard of the
+ * end for the weights from its boundary nodes to the end. The coordinator then searches the overlay graph of all
+ * boundary nodes: cross edges connect shards, the precomputed tables connect the boundary nodes of a shard.
+ * Finally the route is unpacked into one segment request per shard passed, the segments and cross edges are joined.
+ * Routes inside one shard also consider leaving the shard, the result is the same as on the whole graph.
+ */
+public class ORShardCoordinator implements AutoCloseable
+{
+    private static final String TAG = "ORShardCoordinator";
+
+    private static final int FROM_START = -1;
+
+    private final ORShardOverlay overlay;
+    private final ORShardClient[] clients;
+    private final Map<String, IRoutingProfile> profiles = new ConcurrentHashMap<>(ORShardBuilder.createDefaultProfiles());
+
+    /**
+     * Creates a new ORShardCoordinator.
+     * @param overlay the overlay written by {@link ORShardBuilder}
+     * @param shardAddresses the address of the server of every shard, in shard order
+     */
+    public ORShardCoordinator(ORShardOverlay overlay, List<InetSocketAddress> shardAddresses)
+    {
+        if (shardAddresses.size() != overlay.getShardCount())
+        {
+            throw new IllegalArgumentException("Expected " + overlay.getShardCount() + " shard addresses, got " + shardAddresses.size());
+        }
+        this.overlay = overlay;
+        this.clients = new ORShardClient[shardAddresses.size()];
+        for (int i = 0; i < clients.length; i++) clients[i] = new ORShardClient(shardAddresses.get(i));
+    }
+
+    /**
+     * Registers a routing profile, used for the weights of cross edges. The overlay must contain its tables.
+     * @param name the profile name
+     * @param profile the profile
+     */
+    public void registerProfile(String name, IRoutingProfile profile)
+    {
+        profiles.put(name, profile);
+    }
+
+    /**
+     * Searches the route between the nearest nodes of the given coordinates.
+     * @param from the start coordinate
+     * @param to the end coordinate
+     * @param profileName the name of the routing profile
+     * @return the route, NOT_FOUND if there is none, BUDGET_EXCEEDED or CANCELLED if a shard stopped its search
+     * @throws IOException if a shard cannot be reached
+     */
+    public ORShardRoute findRoute(IGeoCoordinate from, IGeoCoordinate to, String profileName) throws IOException
+    {
+        IRoutingProfile profile = profiles.get(profileName);
+        if (profile == null || overlay.getTable(profileName, 0) == null) throw new IllegalArgumentException("Unknown profile: " + profileName);
+
+        int startShard = overlay.getShard(from.getLatitude(), from.getLongitude());
+        int endShard = overlay.getShard(to.getLatitude(), to.getLongitude());
+        int start = clients[startShard].snap(from.getLatitude(), from.getLongitude());
+        int end = clients[endShard].snap(to.getLatitude(), to.getLongitude());
+        if (start < 0 || end < 0) return ORShardRoute.of(ORSearchStatus.NOT_FOUND);
+
+        ORShardClient.SearchResult forward = clients[startShard].search(profileName, start, false, startShard == endShard ? end : -1);
+        if (isStopped(forward.status)) return ORShardRoute.of(forward.status);
+        ORShardClient.SearchResult backward = clients[endShard].search(profileName, end, true, -1);
+        if (isStopped(backward.status)) return ORShardRoute.of(backward.status);
+
+        // overlay search, seeded with the boundary weights of the start shard
+        int count = overlay.getOverlayNodeCount();
+        double[] weights = new double[count];
+        int[] previous = new int[count];
+        int[] previousCross = new int[count];
+        boolean[] settled = new boolean[count];
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        PriorityQueue<double[]> queue = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        int startOffset = overlay.getShardOffset(startShard);
+        for (int i = 0; i < forward.boundaryWeights.length; i++)
+        {
+            if (forward.boundaryWeights[i] == Double.POSITIVE_INFINITY) continue;
+            weights[startOffset + i] = forward.boundaryWeights[i];
+            previous[startOffset + i] = FROM_START;
+            previousCross[startOffset + i] = -1;
+            queue.add(new double[]{forward.boundaryWeights[i], startOffset + i});
+        }
+
+        double best = forward.targetWeight;
+        int bestNode = FROM_START;
+        int endOffset = overlay.getShardOffset(endShard);
+        while (!queue.isEmpty())
+        {
+            double[] entry = queue.poll();
+            double weight = entry[0];
+            int node = (int) entry[1];
+            if (weight >= best) break;
+            if (settled[node]) continue;
+            settled[node] = true;
+
+            int shard = overlay.getOverlayShard(node);
+            int offset = overlay.getShardOffset(shard);
+            int index = node - offset;
+            if (shard == endShard && weight + backward.boundaryWeights[index] < best)
+            {
+                best = weight + backward.boundaryWeights[index];
+                bestNode = node;
+            }
+
+            float[] table = overlay.getTable(profileName, shard);
+            int n = overlay.getBoundaryIds(shard).length;
+            for (int j = 0; j < n; j++)
+            {
+                double newWeight = weight + table[index * n + j];
+                if (j == index || newWeight >= weights[offset + j]) continue;
+                weights[offset + j] = newWeight;
+                previous[offset + j] = node;
+                previousCross[offset + j] = -1;
+                queue.add(new double[]{newWeight, offset + j});
+            }
+            for (int i = overlay.getCrossOutStart(node); i < overlay.getCrossOutEnd(node); i++)
+            {
+                int cross = overlay.getCrossOutEdge(i);
+                long meta = overlay.getCrossMeta(cross);
+                if (!profile.isAccessible(meta)) continue;
+                int neighbor = overlay.getCrossOverlayTo(cross);
+                double newWeight = weight + profile.getWeight(meta);
+                if (newWeight >= weights[neighbor]) continue;
+                weights[neighbor] = newWeight;
+                previous[neighbor] = node;
+                previousCross[neighbor] = cross;
+                queue.add(new double[]{newWeight, neighbor});
+            }
+        }
+        if (best == Double.POSITIVE_INFINITY) return ORShardRoute.of(ORSearchStatus.NOT_FOUND);
+        if (bestNode == FROM_START) return clients[startShard].segment(profileName, start, end);
+        if (OpenRouterLog.isDebugEnabled()) OpenRouterLog.d(TAG, "Route from shard " + startShard + " to " + endShard + " with weight " + best);
+
+        // unpack: start segment, then per hop a table segment or a cross edge, then the end segment
+        List<Integer> path = new ArrayList<>();
+        for (int node = bestNode; node != FROM_START; node = previous[node]) path.add(node);
+        Collections.reverse(path);
+
+        Stitcher stitcher = new Stitcher();
+        int first = path.get(0);
+        if (!stitcher.add(clients[startShard].segment(profileName, start, overlay.getOverlayGlobalId(first)))) return stitcher.failure;
+        for (int i = 1; i < path.size(); i++)
+        {
+            int node = path.get(i);
+            int cross = previousCross[node];
+            if (cross >= 0)
+            {
+                stitcher.addCrossEdge(cross, profile);
+                continue;
+            }
+            int shard = overlay.getOverlayShard(node);
+            ORShardRoute segment = clients[shard].segment(profileName, overlay.getOverlayGlobalId(path.get(i - 1)), overlay.getOverlayGlobalId(node));
+            if (!stitcher.add(segment)) return stitcher.failure;
+        }
+        if (!stitcher.add(clients[endShard].segment(profileName, overlay.getOverlayGlobalId(bestNode), end))) return stitcher.failure;
+        return stitcher.toRoute();
+    }
+
+    private static boolean isStopped(ORSearchStatus status)
+    {
+        return status == ORSearchStatus.BUDGET_EXCEEDED || status == ORSearchStatus.CANCELLED;
+    }
+
+    @Override
+    public void close()
+    {
+        for (ORShardClient client : clients) client.close();
+    }
+
+    /**
+     * Joins segments and cross edges, the shared point between two parts is kept once.
+     */
+    private final class Stitcher
+    {
+        final List<OpenRouterPoint> geometry = new ArrayList<>();
+        double weight;
+        double distance;
+        ORShardRoute failure;
+
+        boolean add(ORShardRoute segment)
+        {
+            if (!segment.isFound())
+            {
+                // the tables promised a route, only a stopped search can miss it
+                failure = segment;
+                return false;
+            }
+            weight += segment.getWeight();
+            distance += segment.getDistanceMeter();
+            append(segment.getGeometry());
+            return true;
+        }
+
+        void addCrossEdge(int cross, IRoutingProfile profile)
+        {
+            long meta = overlay.getCrossMeta(cross);
+            weight += profile.getWeight(meta);
+            distance += OpenRouterEdgeMeta.distanceMeter(meta);
+            int[] lat = overlay.getCrossLatitudesE6(cross);
+            int[] lon = overlay.getCrossLongitudesE6(cross);
+            List<OpenRouterPoint> points = new ArrayList<>(lat.length);
+            for (int i = 0; i < lat.length; i++) points.add(new OpenRouterPoint(lat[i], lon[i]));
+            append(points);
+        }
+
+        private void append(List<OpenRouterPoint> points)
+        {
+            int skip = 0;
+            if (!geometry.isEmpty() && !points.isEmpty())
+            {
+                OpenRouterPoint last = geometry.get(geometry.size() - 1);
+                OpenRouterPoint next = points.get(0);
+                if (last.getLatitudeE6() == next.getLatitudeE6() && last.getLongitudeE6() == next.getLongitudeE6()) skip = 1;
+            }
+            geometry.addAll(points.subList(skip, points.size()));
+        }
+
+        ORShardRoute toRoute()
+        {
+            return new ORShardRoute(ORSearchStatus.FOUND, weight, distance, geometry);
+        }
+    }
+
+    /**
+     * Loads the overlay of a shard directory and connects to the shard servers.
+     * @param directory the directory written by {@link ORShardBuilder}
+     * @param shardAddresses the address of the server of every shard, in shard order
+     * @return the coordinator
+     * @throws IOException if the overlay cannot be read
+     */
+    public static ORShardCoordinator open(File directory, List<InetSocketAddress> shardAddresses) throws IOException
+    {
+        return new ORShardCoordinator(ORShardOverlay.load(ORShardBuilder.getOverlayFile(directory)), shardAddresses);
+    }
+
+    /**
+     * Answers queries from standard input, one per line: {@code fromLat,fromLon toLat,toLon [profile]}.
+     * @param args the shard directory and the {@code host:port} of every shard server
+     * @throws IOException if the overlay cannot be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: ORShardCoordinator <shard directory> <host:port>...");
+            return;
+        }
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+        {
+            int colon = args[i].lastIndexOf(':');
+            addresses.add(new InetSocketAddress(args[i].substring(0, colon), Integer.parseInt(args[i].substring(colon + 1))));
+        }
+
+        try (ORShardCoordinator coordinator = open(new File(args[0]), addresses))
+        {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length < 2) continue;
+                try
+                {
+                    ORShardRoute route = coordinator.findRoute(parsePoint(parts[0]), parsePoint(parts[1]), parts.length > 2 ? parts[2] : "fast");
+                    System.out.println(route.getStatus() + (route.isFound()
+                            ? " weight=" + route.getWeight() + " distance=" + Math.round(route.getDistanceMeter()) + " points=" + route.getGeometry().size()
+                            : ""));
+                }
+                catch (IOException | IllegalArgumentException e)
+                {
+                    System.out.println("ERROR " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static OpenRouterPoint parsePoint(String value)
+    {
+        int comma = value.indexOf(',');
+        if (comma < 0) throw new IllegalArgumentException("Invalid coordinate: " + value);
+        return new OpenRouterPoint(Double.parseDouble(value.substring(0, comma)), Double.parseDouble(value.substring(comma + 1)));
+    }
+}
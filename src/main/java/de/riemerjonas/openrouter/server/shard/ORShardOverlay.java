@@ -0,0 +1,317 @@
+package de.riemerjonas.openrouter.server.shard;
+
+import de.riemerjonas.openrouter.core.OpenRouterTileMap;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything a coordinator needs to stitch routes across shards, without any shard graph:
+ * <ul>
+ *     <li>the tile range of every shard, shards are contiguous ranges of tiles</li>
+ *     <li>the boundary nodes of every shard, nodes with an edge to another shard, by global node ID</li>
+ *     <li>the cross edges between shards with their metadata and geometry</li>
+ *     <li>per profile and shard the table of route weights between all boundary nodes inside the shard</li>
+ * </ul>
+ * The boundary nodes of all shards form the overlay graph. An overlay node is numbered by its shard's offset
+ * plus its index in the shard's sorted boundary list.
+ */
+public class ORShardOverlay
+{
+    private static final int MAGIC = 0x4F525348; // ORSH
+    private static final int VERSION = 1;
+
+    private final short[] shardStartTiles;
+    private final int[][] boundaryIds;
+    private final int[] crossFrom;
+    private final int[] crossTo;
+    private final long[] crossMeta;
+    private final int[][] crossLatitudesE6;
+    private final int[][] crossLongitudesE6;
+    private final Map<String, float[][]> tables;
+
+    // derived
+    private final int[] shardOffsets;
+    private final int[] overlayShards;
+    private final int[] crossOutStart;
+    private final int[] crossOutEdges;
+    private final int[] crossOverlayTo;
+
+    /**
+     * Creates a new ORShardOverlay.
+     * @param shardStartTiles the first tile ID of every shard, ascending, the first shard starts at the minimum
+     * @param boundaryIds the sorted global IDs of the boundary nodes per shard
+     * @param crossFrom the global start node per cross edge
+     * @param crossTo the global end node per cross edge
+     * @param crossMeta the edge metadata per cross edge
+     * @param crossLatitudesE6 the geometry per cross edge including both nodes
+     * @param crossLongitudesE6 the geometry per cross edge including both nodes
+     * @param tables per profile name and shard the row-major boundary weight table
+     */
+    public ORShardOverlay(short[] shardStartTiles, int[][] boundaryIds, int[] crossFrom, int[] crossTo, long[] crossMeta,
+                          int[][] crossLatitudesE6, int[][] crossLongitudesE6, Map<String, float[][]> tables)
+    {
+        this.shardStartTiles = shardStartTiles;
+        this.boundaryIds = boundaryIds;
+        this.crossFrom = crossFrom;
+        this.crossTo = crossTo;
+        this.crossMeta = crossMeta;
+        this.crossLatitudesE6 = crossLatitudesE6;
+        this.crossLongitudesE6 = crossLongitudesE6;
+        this.tables = tables;
+
+        shardOffsets = new int[boundaryIds.length + 1];
+        for (int shard = 0; shard < boundaryIds.length; shard++) shardOffsets[shard + 1] = shardOffsets[shard] + boundaryIds[shard].length;
+        overlayShards = new int[shardOffsets[boundaryIds.length]];
+        for (int shard = 0; shard < boundaryIds.length; shard++) Arrays.fill(overlayShards, shardOffsets[shard], shardOffsets[shard + 1], shard);
+
+        // cross edges grouped by overlay start node
+        crossOverlayTo = new int[crossFrom.length];
+        int[] crossOverlayFrom = new int[crossFrom.length];
+        crossOutStart = new int[overlayShards.length + 1];
+        for (int i = 0; i < crossFrom.length; i++)
+        {
+            crossOverlayFrom[i] = findOverlayNode(crossFrom[i]);
+            crossOverlayTo[i] = findOverlayNode(crossTo[i]);
+            if (crossOverlayFrom[i] < 0 || crossOverlayTo[i] < 0) throw new IllegalArgumentException("Cross edge " + i + " does not connect boundary nodes");
+            crossOutStart[crossOverlayFrom[i] + 1]++;
+        }
+        for (int i = 0; i < overlayShards.length; i++) crossOutStart[i + 1] += crossOutStart[i];
+        crossOutEdges = new int[crossFrom.length];
+        int[] fill = Arrays.copyOf(crossOutStart, overlayShards.length);
+        for (int i = 0; i < crossFrom.length; i++) crossOutEdges[fill[crossOverlayFrom[i]]++] = i;
+    }
+
+    private int findOverlayNode(int globalId)
+    {
+        for (int shard = 0; shard < boundaryIds.length; shard++)
+        {
+            int index = Arrays.binarySearch(boundaryIds[shard], globalId);
+            if (index >= 0) return shardOffsets[shard] + index;
+        }
+        return -1;
+    }
+
+    public int getShardCount()
+    {
+        return boundaryIds.length;
+    }
+
+    /**
+     * Returns the shard serving a coordinate, the shard whose tile range contains its tile.
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @return the shard index
+     */
+    public int getShard(double latitude, double longitude)
+    {
+        return getShardOfTile(OpenRouterTileMap.getTileID(latitude, longitude), shardStartTiles);
+    }
+
+    static int getShardOfTile(short tile, short[] shardStartTiles)
+    {
+        int shard = 0;
+        while (shard + 1 < shardStartTiles.length && tile >= shardStartTiles[shard + 1]) shard++;
+        return shard;
+    }
+
+    /**
+     * Returns the sorted global IDs of the boundary nodes of a shard.
+     * @param shard the shard index
+     * @return the boundary node IDs
+     */
+    public int[] getBoundaryIds(int shard)
+    {
+        return boundaryIds[shard];
+    }
+
+    /**
+     * Returns the boundary weight table of a shard, entry {@code i * n + j} is the weight from boundary node
+     * i to boundary node j inside the shard, infinite if there is no route inside the shard.
+     * @param profile the profile name
+     * @param shard the shard index
+     * @return the table or null if the profile is unknown
+     */
+    public float[] getTable(String profile, int shard)
+    {
+        float[][] shardTables = tables.get(profile);
+        return shardTables != null ? shardTables[shard] : null;
+    }
+
+    public Set<String> getProfiles()
+    {
+        return tables.keySet();
+    }
+
+    // --- overlay graph ---
+
+    public int getOverlayNodeCount()
+    {
+        return overlayShards.length;
+    }
+
+    public int getShardOffset(int shard)
+    {
+        return shardOffsets[shard];
+    }
+
+    public int getOverlayShard(int overlayNode)
+    {
+        return overlayShards[overlayNode];
+    }
+
+    public int getOverlayGlobalId(int overlayNode)
+    {
+        int shard = overlayShards[overlayNode];
+        return boundaryIds[shard][overlayNode - shardOffsets[shard]];
+    }
+
+    public int getCrossOutStart(int overlayNode)
+    {
+        return crossOutStart[overlayNode];
+    }
+
+    public int getCrossOutEnd(int overlayNode)
+    {
+        return crossOutStart[overlayNode + 1];
+    }
+
+    public int getCrossOutEdge(int position)
+    {
+        return crossOutEdges[position];
+    }
+
+    public int getCrossEdgeCount()
+    {
+        return crossFrom.length;
+    }
+
+    public int getCrossOverlayTo(int crossEdge)
+    {
+        return crossOverlayTo[crossEdge];
+    }
+
+    public long getCrossMeta(int crossEdge)
+    {
+        return crossMeta[crossEdge];
+    }
+
+    public int[] getCrossLatitudesE6(int crossEdge)
+    {
+        return crossLatitudesE6[crossEdge];
+    }
+
+    public int[] getCrossLongitudesE6(int crossEdge)
+    {
+        return crossLongitudesE6[crossEdge];
+    }
+
+    // --- file ---
+
+    /**
+     * Saves the overlay.
+     * @param file the file
+     * @throws IOException if writing fails
+     */
+    public void save(File file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(shardStartTiles.length);
+            for (short tile : shardStartTiles) out.writeShort(tile);
+            for (int[] ids : boundaryIds) writeInts(out, ids);
+
+            out.writeInt(crossFrom.length);
+            for (int i = 0; i < crossFrom.length; i++)
+            {
+                out.writeInt(crossFrom[i]);
+                out.writeInt(crossTo[i]);
+                out.writeLong(crossMeta[i]);
+                writeInts(out, crossLatitudesE6[i]);
+                writeInts(out, crossLongitudesE6[i]);
+            }
+
+            out.writeInt(tables.size());
+            for (Map.Entry<String, float[][]> entry : tables.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                for (float[] table : entry.getValue())
+                {
+                    out.writeInt(table.length);
+                    for (float weight : table) out.writeFloat(weight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads an overlay.
+     * @param file the file
+     * @return the overlay
+     * @throws IOException if reading fails or the file is not an overlay
+     */
+    public static ORShardOverlay load(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+        {
+            if (in.readInt() != MAGIC) throw new IOException("Not a shard overlay: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported shard overlay version " + version);
+
+            int shardCount = in.readInt();
+            short[] shardStartTiles = new short[shardCount];
+            for (int i = 0; i < shardCount; i++) shardStartTiles[i] = in.readShort();
+            int[][] boundaryIds = new int[shardCount][];
+            for (int i = 0; i < shardCount; i++) boundaryIds[i] = readInts(in);
+
+            int crossCount = in.readInt();
+            int[] crossFrom = new int[crossCount];
+            int[] crossTo = new int[crossCount];
+            long[] crossMeta = new long[crossCount];
+            int[][] crossLat = new int[crossCount][];
+            int[][] crossLon = new int[crossCount][];
+            for (int i = 0; i < crossCount; i++)
+            {
+                crossFrom[i] = in.readInt();
+                crossTo[i] = in.readInt();
+                crossMeta[i] = in.readLong();
+                crossLat[i] = readInts(in);
+                crossLon[i] = readInts(in);
+            }
+
+            int profileCount = in.readInt();
+            Map<String, float[][]> tables = new HashMap<>();
+            for (int p = 0; p < profileCount; p++)
+            {
+                String name = in.readUTF();
+                float[][] shardTables = new float[shardCount][];
+                for (int shard = 0; shard < shardCount; shard++)
+                {
+                    float[] table = new float[in.readInt()];
+                    for (int i = 0; i < table.length; i++) table[i] = in.readFloat();
+                    shardTables[shard] = table;
+                }
+                tables.put(name, shardTables);
+            }
+            return new ORShardOverlay(shardStartTiles, boundaryIds, crossFrom, crossTo, crossMeta, crossLat, crossLon, tables);
+        }
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException
+    {
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+
+    static int[] readInts(DataInputStream in) throws IOException
+    {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readInt();
+        return values;
+    }
+}
@@ -0,0 +1,27 @@
+package de.riemerjonas.openrouter.server.shard;
+
+/**
+ * Binary request/response protocol between coordinator and shards over a TCP connection, written with
+ * Data streams. A connection carries any number of requests one after another.
+ * <ul>
+ *     <li>{@link #SNAP}: latitude, longitude as doubles - the global ID of the nearest node or -1</li>
+ *     <li>{@link #SEARCH}: profile, global node ID, backward flag, global target ID or -1 - the search status,
+ *     the weights between the node and all boundary nodes of the shard and the weight to the target</li>
+ *     <li>{@link #SEGMENT}: profile, global start and end ID - the search status and if found the weight,
+ *     the distance and the geometry as E6 pairs</li>
+ * </ul>
+ * Every response starts with {@link #OK}, or {@link #ERROR} followed by a message.
+ */
+final class ORShardProtocol
+{
+    static final byte SNAP = 1;
+    static final byte SEARCH = 2;
+    static final byte SEGMENT = 3;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    private ORShardProtocol()
+    {
+    }
+}
@@ -0,0 +1,61 @@
+package de.riemerjonas.openrouter.server.shard;
+
+import de.riemerjonas.openrouter.core.OpenRouterPoint;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchStatus;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A route answered by shards. Only the values which can be stitched from several shards are kept:
+ * weight, distance and geometry.
+ */
+public final class ORShardRoute
+{
+    private final ORSearchStatus status;
+    private final double weight;
+    private final double distanceMeter;
+    private final List<OpenRouterPoint> geometry;
+
+    ORShardRoute(ORSearchStatus status, double weight, double distanceMeter, List<OpenRouterPoint> geometry)
+    {
+        this.status = status;
+        this.weight = weight;
+        this.distanceMeter = distanceMeter;
+        this.geometry = Collections.unmodifiableList(geometry);
+    }
+
+    static ORShardRoute of(ORSearchStatus status)
+    {
+        return new ORShardRoute(status, Double.POSITIVE_INFINITY, 0, Collections.emptyList());
+    }
+
+    public ORSearchStatus getStatus()
+    {
+        return status;
+    }
+
+    public boolean isFound()
+    {
+        return status == ORSearchStatus.FOUND;
+    }
+
+    public double getWeight()
+    {
+        return weight;
+    }
+
+    public double getDistanceMeter()
+    {
+        return distanceMeter;
+    }
+
+    /**
+     * Returns the geometry of the route.
+     * @return the points, empty if no route was found
+     */
+    public List<OpenRouterPoint> getGeometry()
+    {
+        return geometry;
+    }
+}
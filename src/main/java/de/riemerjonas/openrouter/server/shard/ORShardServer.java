@@ -0,0 +1,269 @@
+package de.riemerjonas.openrouter.server.shard;
+
+import de.riemerjonas.openrouter.core.OpenRouterLog;
+import de.riemerjonas.openrouter.core.OpenRouterNode;
+import de.riemerjonas.openrouter.core.OpenRouterPoint;
+import de.riemerjonas.openrouter.core.OpenRouterRoute;
+import de.riemerjonas.openrouter.core.ifaces.IRoutingProfile;
+import de.riemerjonas.openrouter.graph.OpenRouterGraph;
+import de.riemerjonas.openrouter.graph.algorithm.ORDijkstra;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchBudget;
+import de.riemerjonas.openrouter.graph.algorithm.ORSearchStatus;
+import de.riemerjonas.openrouter.graph.core.ORGraphHandler;
+import de.riemerjonas.openrouter.server.ORRoutingServer;
+import de.riemerjonas.openrouter.server.ORServerExecutors;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Serves one shard written by {@link ORShardBuilder} to a {@link ORShardCoordinator}.
+ * Only the graph of the shard is loaded. Requests and responses use global node IDs, see {@link ORShardProtocol}.
+ */
+public class ORShardServer implements AutoCloseable
+{
+    private static final String TAG = "ORShardServer";
+
+    private final int shard;
+    private final OpenRouterGraph graph;
+    private final int[] globalIds;
+    private final int[] boundaryLocal;
+    private final Map<String, IRoutingProfile> profiles = new ConcurrentHashMap<>(ORShardBuilder.createDefaultProfiles());
+    private volatile ORSearchBudget budget = ORRoutingServer.DEFAULT_BUDGET;
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+
+    /**
+     * Loads a shard.
+     * @param directory the directory written by {@link ORShardBuilder}
+     * @param shard the shard index
+     * @throws IOException if the shard files cannot be read
+     */
+    public ORShardServer(File directory, int shard) throws IOException
+    {
+        this.shard = shard;
+        this.graph = ORGraphHandler.load(ORShardBuilder.getGraphFile(directory, shard));
+        if (graph == null) throw new IOException("Cannot load shard " + shard + " from " + directory);
+        int[][] ids = ORShardBuilder.readIds(ORShardBuilder.getIdsFile(directory, shard));
+        this.globalIds = ids[0];
+        this.boundaryLocal = new int[ids[1].length];
+        for (int i = 0; i < boundaryLocal.length; i++) boundaryLocal[i] = toLocal(ids[1][i]);
+    }
+
+    /**
+     * Registers a routing profile. The coordinator's overlay must contain tables for the same profile.
+     * @param name the profile name
+     * @param profile the profile
+     */
+    public void registerProfile(String name, IRoutingProfile profile)
+    {
+        profiles.put(name, profile);
+    }
+
+    /**
+     * Sets the limits of every search.
+     * @param budget the budget
+     */
+    public void setBudget(ORSearchBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    /**
+     * Starts accepting connections.
+     * @param port the port, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start(int port) throws IOException
+    {
+        if (serverSocket != null) throw new IllegalStateException("Server is already running");
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(port), 128);
+        executor = ORServerExecutors.newRequestExecutor("ORShardServer-" + shard, 64);
+        ServerSocket accepting = serverSocket;
+        Thread acceptor = new Thread(() -> accept(accepting), "ORShardServer-" + shard + "-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        OpenRouterLog.i(TAG, "Shard " + shard + " listening on port " + getPort());
+    }
+
+    /**
+     * Returns the bound port.
+     * @return the port
+     */
+    public synchronized int getPort()
+    {
+        if (serverSocket == null) throw new IllegalStateException("Server is not running");
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (serverSocket == null) return;
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException e)
+        {
+            OpenRouterLog.w(TAG, "Closing the server socket failed: " + e.getMessage());
+        }
+        executor.shutdownNow();
+        serverSocket = null;
+        OpenRouterLog.i(TAG, "Shard " + shard + " stopped");
+    }
+
+    private void accept(ServerSocket accepting)
+    {
+        while (!accepting.isClosed())
+        {
+            try
+            {
+                Socket socket = accepting.accept();
+                executor.execute(() -> serve(socket));
+            }
+            catch (IOException e)
+            {
+                if (!accepting.isClosed()) OpenRouterLog.e(TAG, "Accepting a connection failed", e);
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        try (socket)
+        {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            int op;
+            while ((op = in.read()) >= 0)
+            {
+                switch (op)
+                {
+                    case ORShardProtocol.SNAP: snap(in, out); break;
+                    case ORShardProtocol.SEARCH: search(in, out); break;
+                    case ORShardProtocol.SEGMENT: segment(in, out); break;
+                    default: throw new IOException("Unknown request " + op);
+                }
+                out.flush();
+            }
+        }
+        catch (SocketException | EOFException e)
+        {
+            // connection closed by the coordinator
+        }
+        catch (IOException | RuntimeException e)
+        {
+            OpenRouterLog.e(TAG, "Connection failed", e);
+        }
+    }
+
+    private void snap(DataInputStream in, DataOutputStream out) throws IOException
+    {
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        OpenRouterNode node = graph.getNearestNode(latitude, longitude);
+        out.writeByte(ORShardProtocol.OK);
+        out.writeInt(node != null ? globalIds[node.getId()] : -1);
+    }
+
+    private void search(DataInputStream in, DataOutputStream out) throws IOException
+    {
+        IRoutingProfile profile = profiles.get(in.readUTF());
+        int node = toLocal(in.readInt());
+        boolean backward = in.readBoolean();
+        int target = toLocal(in.readInt());
+        if (profile == null || node < 0)
+        {
+            writeError(out, profile == null ? "Unknown profile" : "Node is not in shard " + shard);
+            return;
+        }
+
+        int[] targets = Arrays.copyOf(boundaryLocal, boundaryLocal.length + 1);
+        targets[boundaryLocal.length] = target;
+        try (ORDijkstra dijkstra = ORDijkstra.acquire(graph))
+        {
+            ORSearchStatus status = backward
+                    ? dijkstra.searchBackward(node, targets, profile, budget)
+                    : dijkstra.search(node, targets, profile, budget);
+
+            out.writeByte(ORShardProtocol.OK);
+            out.writeByte(status.ordinal());
+            out.writeInt(boundaryLocal.length);
+            for (int local : boundaryLocal) out.writeDouble(dijkstra.getWeight(local));
+            out.writeDouble(target >= 0 ? dijkstra.getWeight(target) : Double.POSITIVE_INFINITY);
+        }
+    }
+
+    private void segment(DataInputStream in, DataOutputStream out) throws IOException
+    {
+        IRoutingProfile profile = profiles.get(in.readUTF());
+        int from = toLocal(in.readInt());
+        int to = toLocal(in.readInt());
+        if (profile == null || from < 0 || to < 0)
+        {
+            writeError(out, profile == null ? "Unknown profile" : "Node is not in shard " + shard);
+            return;
+        }
+
+        // a plain search like the one that priced the boundary tables, so a leg the overlay used is found again
+        ORSearchStatus status;
+        OpenRouterRoute route = null;
+        try (ORDijkstra dijkstra = ORDijkstra.acquire(graph))
+        {
+            status = dijkstra.search(from, new int[]{to}, profile, budget);
+            if (status == ORSearchStatus.FOUND) route = dijkstra.getRoute(to);
+        }
+        out.writeByte(ORShardProtocol.OK);
+        out.writeByte(status.ordinal());
+        if (route == null) return;
+
+        out.writeDouble(route.getWeight());
+        out.writeDouble(route.getDistanceMeter());
+        List<OpenRouterPoint> geometry = route.getGeometry();
+        out.writeInt(geometry.size());
+        for (OpenRouterPoint point : geometry)
+        {
+            out.writeInt(point.getLatitudeE6());
+            out.writeInt(point.getLongitudeE6());
+        }
+    }
+
+    private static void writeError(DataOutputStream out, String message) throws IOException
+    {
+        out.writeByte(ORShardProtocol.ERROR);
+        out.writeUTF(message);
+    }
+
+    private int toLocal(int globalId)
+    {
+        if (globalId < 0) return -1;
+        int local = Arrays.binarySearch(globalIds, globalId);
+        return local >= 0 ? local : -1;
+    }
+
+    /**
+     * Serves a shard.
+     * @param args the shard directory, the shard index and the port
+     * @throws IOException if the shard cannot be loaded or the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 3)
+        {
+            System.err.println("Usage: ORShardServer <shard directory> <shard> <port>");
+            return;
+        }
+        new ORShardServer(new File(args[0]), Integer.parseInt(args[1])).start(Integer.parseInt(args[2]));
+    }
+}